@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.client;
+
+import sockslib.utils.LatencyHistogram;
+
+/**
+ * The class <code>ClientLatencies</code> holds latency histograms of the steps of
+ * {@link Socks5#buildConnection()} and {@link Socks5#requestConnect(String, int)}, shared by all
+ * {@link Socks5} proxies in the process.
+ * <pre>
+ * LatencyHistogram.Snapshot snapshot =
+ *     ClientLatencies.get(ClientLatencies.Phase.CONNECT_REQUEST).intervalSnapshot();
+ * long p99 = snapshot.getValueAtPercentile(99);
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:37 AM
+ */
+public final class ClientLatencies {
+
+    /**
+     * The enumeration <code>Phase</code> represents a timed step of a client.
+     */
+    public enum Phase {
+
+        /**
+         * Connecting to the SOCKS server.
+         */
+        PROXY_CONNECT,
+
+        /**
+         * Negotiating a method and running it, e.g. authenticating.
+         */
+        NEGOTIATION,
+
+        /**
+         * Looking up a destination locally, when addresses are always resolved locally.
+         */
+        DNS,
+
+        /**
+         * Sending a CONNECT command and reading its reply.
+         */
+        CONNECT_REQUEST
+    }
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[Phase.values()
+            .length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private ClientLatencies() {
+    }
+
+    public static LatencyHistogram get(Phase phase) {
+        return HISTOGRAMS[phase.ordinal()];
+    }
+
+    /**
+     * Records the time of a phase which started at the given time.
+     *
+     * @param phase      Phase.
+     * @param startNanos Start time from {@link System#nanoTime()}.
+     * @return End time of the phase.
+     */
+    static long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        HISTOGRAMS[phase.ordinal()].record(now - startNanos);
+        return now;
+    }
+}
@@ -14,8 +14,6 @@
 
 package sockslib.client;
 
-import android.util.Log;
-
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,8 +27,8 @@ import sockslib.common.AddressType;
 import sockslib.common.ProtocolErrorException;
 import sockslib.common.SocksCommand;
 import sockslib.common.SocksException;
-import sockslib.utils.LogMessageBuilder;
 import sockslib.utils.LogMessageBuilder.MsgType;
+import sockslib.utils.Logger;
 import sockslib.utils.UnsignedByte;
 
 /**
@@ -42,7 +40,7 @@ import sockslib.utils.UnsignedByte;
  */
 public class GenericSocksCommandSender implements SocksCommandSender {
 
-    private static final String TAG = "SocksCommandSender";
+    private static final Logger logger = Logger.getLogger("SocksCommandSender");
 
     /**
      * length of IPv4 address.
@@ -96,7 +94,7 @@ public class GenericSocksCommandSender implements SocksCommandSender {
 
         outputStream.write(bufferSent);
         outputStream.flush();
-        Log.d(TAG, LogMessageBuilder.build(bufferSent, MsgType.SEND));
+        logger.debugBytes(MsgType.SEND, bufferSent, bufferSent.length);
 
         return checkServerReply(inputStream);
     }
@@ -121,7 +119,7 @@ public class GenericSocksCommandSender implements SocksCommandSender {
 
         outputStream.write(bufferSent);
         outputStream.flush();
-        Log.d(TAG, LogMessageBuilder.build(bufferSent, MsgType.SEND));
+        logger.debugBytes(MsgType.SEND, bufferSent, bufferSent.length);
 
         return checkServerReply(inputStream);
     }
@@ -162,7 +160,7 @@ public class GenericSocksCommandSender implements SocksCommandSender {
         }
         byte[] receivedData = byteArrayOutputStream.toByteArray();
         int length = receivedData.length;
-        Log.d(TAG, LogMessageBuilder.build(receivedData, length, MsgType.RECEIVE));
+        logger.debugBytes(MsgType.RECEIVE, receivedData, length);
         byte[] addressBytes = null;
         byte[] portBytes = new byte[2];
 
@@ -175,8 +173,11 @@ public class GenericSocksCommandSender implements SocksCommandSender {
             int d = UnsignedByte.toInt(addressBytes[3]);
             portBytes[0] = receivedData[8];
             portBytes[1] = receivedData[9];
-            Log.d(TAG, String.format("Server replied:Address as IPv4:%d.%d.%d.%d, port:%d", a, b, c, d,
-                    (UnsignedByte.toInt(portBytes[0]) << 8) | (UnsignedByte.toInt(portBytes[1]))));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Server replied:Address as IPv4:{}.{}.{}.{}, port:{}", a, b, c, d,
+                        (UnsignedByte.toInt(portBytes[0]) << 8) | (UnsignedByte.toInt
+                                (portBytes[1])));
+            }
         } else if (receivedData[3] == AddressType.DOMAIN_NAME) {
             int size = receivedData[4];
             size = size & 0xFF;
@@ -185,8 +186,11 @@ public class GenericSocksCommandSender implements SocksCommandSender {
             portBytes[0] = receivedData[4 + size];
             portBytes[1] = receivedData[5 + size];
 
-            Log.d(TAG, String.format("Server replied:Address as host:%s, port:%d", new String(addressBytes),
-                    (UnsignedByte.toInt(portBytes[0]) << 8) | (UnsignedByte.toInt(portBytes[1]))));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Server replied:Address as host:{}, port:{}", new String(addressBytes),
+                        (UnsignedByte.toInt(portBytes[0]) << 8) | (UnsignedByte.toInt
+                                (portBytes[1])));
+            }
         } else if (receivedData[3] == AddressType.IPV6) {
             int size = receivedData[4];
             size = size & 0xFF;
@@ -194,7 +198,9 @@ public class GenericSocksCommandSender implements SocksCommandSender {
             for (int i = 0; i < addressBytes.length; i++) {
                 addressBytes[i] = receivedData[4 + i];
             }
-            Log.d(TAG, String.format("Server replied:Address as IPv6:%s", new String(addressBytes)));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Server replied:Address as IPv6:{}", new String(addressBytes));
+            }
         }
 
 
@@ -204,7 +210,7 @@ public class GenericSocksCommandSender implements SocksCommandSender {
             throw SocksException.serverReplyException(serverReply);
         }
 
-        Log.d(TAG, "SOCKS server response success");
+        logger.debug("SOCKS server response success");
 
         byte[] receivedBytes = new byte[length];
         System.arraycopy(receivedData, 0, receivedBytes, 0, length);
@@ -188,44 +188,61 @@ public class Socks5 implements SocksProxy {
             throw new IllegalArgumentException(
                     "Please set inetAddress before calling buildConnection.");
         }
+        long phaseStart = System.nanoTime();
         if (proxySocket == null) {
             proxySocket = createProxySocket(inetAddress, port);
             proxySocket.setSoTimeout(mTimeOut);
+            phaseStart = ClientLatencies.record(ClientLatencies.Phase.PROXY_CONNECT, phaseStart);
         } else if (!proxySocket.isConnected()) {
             proxySocket.connect(new InetSocketAddress(inetAddress, port), mTimeOut);
+            phaseStart = ClientLatencies.record(ClientLatencies.Phase.PROXY_CONNECT, phaseStart);
         }
 
         SocksMethod method =
                 socksMethodRequester.doRequest(acceptableMethods, proxySocket, SOCKS_VERSION);
         method.doMethod(this);
+        ClientLatencies.record(ClientLatencies.Phase.NEGOTIATION, phaseStart);
     }
 
     @Override
     public CommandReplyMessage requestConnect(String host, int port) throws SocksException,
             IOException {
+        long phaseStart = System.nanoTime();
+        CommandReplyMessage reply;
         if (!alwaysResolveAddressLocally) {
             // resolve address in SOCKS server
-            return socksCmdSender.send(proxySocket, SocksCommand.CONNECT, host, port,
+            reply = socksCmdSender.send(proxySocket, SocksCommand.CONNECT, host, port,
                     SOCKS_VERSION);
 
         } else {
             // resolve address in local.
             InetAddress address = InetAddress.getByName(host);
-            return socksCmdSender.send(proxySocket, SocksCommand.CONNECT, address, port,
+            phaseStart = ClientLatencies.record(ClientLatencies.Phase.DNS, phaseStart);
+            reply = socksCmdSender.send(proxySocket, SocksCommand.CONNECT, address, port,
                     SOCKS_VERSION);
         }
+        ClientLatencies.record(ClientLatencies.Phase.CONNECT_REQUEST, phaseStart);
+        return reply;
     }
 
     @Override
     public CommandReplyMessage requestConnect(InetAddress address, int port) throws SocksException,
             IOException {
-        return socksCmdSender.send(proxySocket, SocksCommand.CONNECT, address, port, SOCKS_VERSION);
+        long phaseStart = System.nanoTime();
+        CommandReplyMessage reply = socksCmdSender.send(proxySocket, SocksCommand.CONNECT,
+                address, port, SOCKS_VERSION);
+        ClientLatencies.record(ClientLatencies.Phase.CONNECT_REQUEST, phaseStart);
+        return reply;
     }
 
     @Override
     public CommandReplyMessage requestConnect(SocketAddress address) throws SocksException,
             IOException {
-        return socksCmdSender.send(proxySocket, SocksCommand.CONNECT, address, SOCKS_VERSION);
+        long phaseStart = System.nanoTime();
+        CommandReplyMessage reply = socksCmdSender.send(proxySocket, SocksCommand.CONNECT,
+                address, SOCKS_VERSION);
+        ClientLatencies.record(ClientLatencies.Phase.CONNECT_REQUEST, phaseStart);
+        return reply;
     }
 
     @Override
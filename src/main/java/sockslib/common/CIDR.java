@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * The class <code>CIDR</code> represents an IPv4 or IPv6 address block in CIDR notation, such as
+ * <code>10.0.0.0/8</code> or <code>2001:db8::/32</code>.
+ * <p>
+ * Unlike {@link IPRange}, a <code>CIDR</code> is not limited to IPv4. The address is always stored
+ * with the host bits cleared.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 18, 2026 11:59 PM
+ * @see CIDRTrie
+ */
+public final class CIDR implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Length of IPv4 address in bytes.
+     */
+    public static final int IPV4_LENGTH = 4;
+
+    /**
+     * Length of IPv6 address in bytes.
+     */
+    public static final int IPV6_LENGTH = 16;
+
+    /**
+     * Network address, host bits are cleared.
+     */
+    private final byte[] address;
+
+    /**
+     * Number of leading bits that are significant.
+     */
+    private final int prefixLength;
+
+    /**
+     * Constructs a <code>CIDR</code> by address bytes and prefix length.
+     *
+     * @param address      4 bytes for IPv4 or 16 bytes for IPv6.
+     * @param prefixLength Number of significant bits.
+     */
+    public CIDR(byte[] address, int prefixLength) {
+        checkNotNull(address, "Argument [address] may not be null");
+        checkArgument(address.length == IPV4_LENGTH || address.length == IPV6_LENGTH,
+                "Address must be 4 or 16 bytes");
+        checkArgument(prefixLength >= 0 && prefixLength <= address.length * 8,
+                "Invalid prefix length:" + prefixLength);
+        this.address = mask(address, prefixLength);
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * Constructs a <code>CIDR</code> by an {@link InetAddress} and prefix length.
+     *
+     * @param address      IP address.
+     * @param prefixLength Number of significant bits.
+     */
+    public CIDR(InetAddress address, int prefixLength) {
+        this(checkNotNull(address, "Argument [address] may not be null").getAddress(),
+                prefixLength);
+    }
+
+    /**
+     * Creates a <code>CIDR</code> instance by a string. If the string doesn't contain a prefix
+     * length, the whole address is significant.
+     *
+     * @param cidr a string such as "192.168.1.0/24", "fe80::/10" or "10.1.1.1".
+     * @return Instance of <code>CIDR</code>.
+     */
+    public static CIDR parse(String cidr) {
+        checkNotNull(cidr, "Argument [cidr] may not be null");
+        String value = cidr.trim();
+        int slash = value.indexOf('/');
+        String host = slash < 0 ? value : value.substring(0, slash);
+        checkArgument(isIPLiteral(host), "Not an IP address literal:" + cidr);
+        byte[] address;
+        try {
+            address = InetAddress.getByName(host).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Not an IP address literal:" + cidr, e);
+        }
+        int prefixLength = address.length * 8;
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(value.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length:" + cidr, e);
+            }
+        }
+        return new CIDR(address, prefixLength);
+    }
+
+    /**
+     * Returns <code>true</code> if the address is an IPv4 or IPv6 literal. This check makes sure
+     * {@link InetAddress#getByName(String)} never performs a DNS lookup during parsing.
+     */
+    private static boolean isIPLiteral(String host) {
+        if (host.isEmpty()) {
+            return false;
+        }
+        boolean colon = false;
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c == ':') {
+                colon = true;
+            } else if (!(c == '.' || Character.digit(c, 16) >= 0)) {
+                return false;
+            }
+        }
+        return colon || IP.isValid(host);
+    }
+
+    /**
+     * Returns a copy of address with all bits after <code>prefixLength</code> cleared.
+     *
+     * @param address      Address bytes.
+     * @param prefixLength Number of significant bits.
+     * @return Masked copy of the address.
+     */
+    static byte[] mask(byte[] address, int prefixLength) {
+        byte[] masked = new byte[address.length];
+        int fullBytes = prefixLength >>> 3;
+        System.arraycopy(address, 0, masked, 0, fullBytes);
+        int remain = prefixLength & 7;
+        if (remain != 0) {
+            masked[fullBytes] = (byte) (address[fullBytes] & (0xff << (8 - remain)));
+        }
+        return masked;
+    }
+
+    /**
+     * Returns <code>true</code> if the first <code>bits</code> bits of two addresses are equal.
+     * Both arrays must have at least <code>(bits + 7) / 8</code> bytes.
+     */
+    static boolean prefixEquals(byte[] a, byte[] b, int bits) {
+        int fullBytes = bits >>> 3;
+        for (int i = 0; i < fullBytes; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        int remain = bits & 7;
+        if (remain == 0) {
+            return true;
+        }
+        int m = 0xff << (8 - remain);
+        return ((a[fullBytes] ^ b[fullBytes]) & m) == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the given address is in the block.
+     *
+     * @param address IP address. An IPv4 address never matches an IPv6 block and vice versa.
+     * @return If the address is in the block return <code>true</code>.
+     */
+    public boolean contains(InetAddress address) {
+        return address != null && contains(address.getAddress());
+    }
+
+    /**
+     * Returns <code>true</code> if the given address is in the block.
+     *
+     * @param address Address bytes.
+     * @return If the address is in the block return <code>true</code>.
+     */
+    public boolean contains(byte[] address) {
+        return address != null && address.length == this.address.length && prefixEquals(address,
+                this.address, prefixLength);
+    }
+
+    /**
+     * Returns <code>true</code> if it's an IPv4 block.
+     *
+     * @return <code>true</code> if it's an IPv4 block.
+     */
+    public boolean isIPv4() {
+        return address.length == IPV4_LENGTH;
+    }
+
+    /**
+     * Returns network address bytes.
+     *
+     * @return A copy of the network address.
+     */
+    public byte[] getAddress() {
+        return address.clone();
+    }
+
+    /**
+     * Returns prefix length.
+     *
+     * @return Prefix length.
+     */
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof CIDR) {
+            CIDR that = (CIDR) obj;
+            return prefixLength == that.prefixLength && Arrays.equals(address, that.address);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(address) + prefixLength;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return InetAddress.getByAddress(address).getHostAddress() + "/" + prefixLength;
+        } catch (UnknownHostException e) {
+            // Never happens, length of address has been checked.
+            throw new IllegalStateException(e);
+        }
+    }
+}
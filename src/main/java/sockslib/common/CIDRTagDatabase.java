@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The class <code>CIDRTagDatabase</code> is a read-only, memory-mapped database which maps IPv4 and
+ * IPv6 addresses to small integer tags, such as country, ASN or "internal network" ids. The file
+ * is created by {@link CIDRTagDatabaseBuilder}.
+ * <p>
+ * The file is mapped rather than loaded, so opening a database is nearly instant and the data lives
+ * outside the Java heap. A lookup is a binary search over fixed-size records and doesn't allocate
+ * any object (except {@link #lookup(InetAddress)}, which copies the address bytes).
+ * </p>
+ * <p>
+ * File format (big-endian):
+ * </p>
+ * <pre>
+ * header:  magic(4) version(4) ipv4Count(4) ipv6Count(4) ipv4Offset(4) ipv6Offset(4)
+ * ipv4:    ipv4Count x [start(4) tag(4)]
+ * ipv6:    ipv6Count x [startHigh(8) startLow(8) tag(4)]
+ * </pre>
+ * <p>
+ * Records of each family are sorted by start address and cover the whole address space, a record
+ * ends where the next one starts. Addresses without tag have {@link #NO_TAG}.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:03 AM
+ * @see CIDRTagDatabaseBuilder
+ */
+public final class CIDRTagDatabase {
+
+    /**
+     * Tag of addresses that are not in any block.
+     */
+    public static final int NO_TAG = -1;
+
+    static final int MAGIC = 0x534c5447; // "SLTG"
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 24;
+
+    static final int IPV4_RECORD_SIZE = 8;
+
+    static final int IPV6_RECORD_SIZE = 20;
+
+    private final ByteBuffer buffer;
+
+    private final int ipv4Count;
+
+    private final int ipv6Count;
+
+    private final int ipv4Offset;
+
+    private final int ipv6Offset;
+
+    /**
+     * Creates a database on a buffer, the buffer is usually mapped from a file.
+     *
+     * @param buffer Buffer that contains the database.
+     * @throws IOException If the buffer isn't a valid database.
+     */
+    public CIDRTagDatabase(ByteBuffer buffer) throws IOException {
+        this.buffer = checkNotNull(buffer, "Argument [buffer] may not be null").duplicate();
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a CIDR tag database");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported CIDR tag database version:" + buffer.getInt(4));
+        }
+        ipv4Count = buffer.getInt(8);
+        ipv6Count = buffer.getInt(12);
+        ipv4Offset = buffer.getInt(16);
+        ipv6Offset = buffer.getInt(20);
+        if (ipv4Count < 0 || ipv6Count < 0 || ipv4Offset < HEADER_SIZE
+                || (long) ipv4Offset + (long) ipv4Count * IPV4_RECORD_SIZE > buffer.limit()
+                || ipv6Offset < HEADER_SIZE
+                || (long) ipv6Offset + (long) ipv6Count * IPV6_RECORD_SIZE > buffer.limit()) {
+            throw new IOException("Corrupted CIDR tag database");
+        }
+    }
+
+    /**
+     * Maps a database file into memory.
+     *
+     * @param file Database file.
+     * @return Instance of {@link CIDRTagDatabase}.
+     * @throws IOException If an I/O error occurred or the file isn't a valid database.
+     */
+    public static CIDRTagDatabase open(File file) throws IOException {
+        checkNotNull(file, "Argument [file] may not be null");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel is closed.
+            return new CIDRTagDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns tag of an address.
+     *
+     * @param address IP address.
+     * @return Tag of the address, or {@link #NO_TAG}.
+     */
+    public int lookup(InetAddress address) {
+        return address == null ? NO_TAG : lookup(address.getAddress());
+    }
+
+    /**
+     * Returns tag of an address.
+     *
+     * @param address 4 or 16 bytes of address.
+     * @return Tag of the address, or {@link #NO_TAG}.
+     */
+    public int lookup(byte[] address) {
+        if (address.length == CIDR.IPV4_LENGTH) {
+            return lookupIPv4(readInt(address, 0));
+        } else if (address.length == CIDR.IPV6_LENGTH) {
+            return lookupIPv6(readLong(address, 0), readLong(address, 8));
+        }
+        return NO_TAG;
+    }
+
+    /**
+     * Returns tag of an IPv4 address.
+     *
+     * @param address IPv4 address as an int, such as <code>0x0a000001</code> for 10.0.0.1.
+     * @return Tag of the address, or {@link #NO_TAG}.
+     */
+    public int lookupIPv4(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int low = 0;
+        int high = ipv4Count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = buffer.getInt(ipv4Offset + mid * IPV4_RECORD_SIZE) ^ Integer.MIN_VALUE;
+            if (start <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? NO_TAG : buffer.getInt(ipv4Offset + found * IPV4_RECORD_SIZE + 4);
+    }
+
+    /**
+     * Returns tag of an IPv6 address.
+     *
+     * @param high High 64 bits of address.
+     * @param low  Low 64 bits of address.
+     * @return Tag of the address, or {@link #NO_TAG}.
+     */
+    public int lookupIPv6(long high, long low) {
+        long keyHigh = high ^ Long.MIN_VALUE;
+        long keyLow = low ^ Long.MIN_VALUE;
+        int lowIndex = 0;
+        int highIndex = ipv6Count - 1;
+        int found = -1;
+        while (lowIndex <= highIndex) {
+            int mid = (lowIndex + highIndex) >>> 1;
+            int position = ipv6Offset + mid * IPV6_RECORD_SIZE;
+            long startHigh = buffer.getLong(position) ^ Long.MIN_VALUE;
+            long startLow = buffer.getLong(position + 8) ^ Long.MIN_VALUE;
+            if (startHigh < keyHigh || (startHigh == keyHigh && startLow <= keyLow)) {
+                found = mid;
+                lowIndex = mid + 1;
+            } else {
+                highIndex = mid - 1;
+            }
+        }
+        return found < 0 ? NO_TAG : buffer.getInt(ipv6Offset + found * IPV6_RECORD_SIZE + 16);
+    }
+
+    /**
+     * Returns number of IPv4 records.
+     *
+     * @return Number of IPv4 records.
+     */
+    public int getIPv4RecordCount() {
+        return ipv4Count;
+    }
+
+    /**
+     * Returns number of IPv6 records.
+     *
+     * @return Number of IPv6 records.
+     */
+    public int getIPv6RecordCount() {
+        return ipv6Count;
+    }
+
+    static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    static long readLong(byte[] bytes, int offset) {
+        return ((long) readInt(bytes, offset) << 32) | (readInt(bytes, offset + 4) & 0xffffffffL);
+    }
+
+    @Override
+    public String toString() {
+        return "CIDRTagDatabase{ipv4Records=" + ipv4Count + ", ipv6Records=" + ipv6Count + '}';
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The class <code>CIDRTagDatabaseBuilder</code> builds the file of {@link CIDRTagDatabase}.
+ * <p>
+ * Blocks may be nested, the most specific block decides the tag of an address. If the same block
+ * is added twice, the later tag wins.
+ * </p>
+ * <pre>
+ * CIDRTagDatabaseBuilder builder = new CIDRTagDatabaseBuilder();
+ * builder.load(reader);
+ * builder.write(new File("output.db"));
+ * </pre>
+ * <p>
+ * Each line of input is <code>&lt;cidr&gt; &lt;tag&gt;</code>, such as
+ * <code>10.0.0.0/8 1</code>. Empty lines and lines starting with <code>#</code> are ignored.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:03 AM
+ */
+public class CIDRTagDatabaseBuilder {
+
+    private static final BigInteger IPV4_MAX = BigInteger.ONE.shiftLeft(32).subtract(BigInteger.ONE);
+
+    private static final BigInteger IPV6_MAX = BigInteger.ONE.shiftLeft(128).subtract(BigInteger
+            .ONE);
+
+    private final List<Block> ipv4Blocks = new ArrayList<>();
+
+    private final List<Block> ipv6Blocks = new ArrayList<>();
+
+    /**
+     * Adds a block with a tag.
+     *
+     * @param cidr CIDR block.
+     * @param tag  Tag, must not be negative.
+     * @return This builder.
+     */
+    public CIDRTagDatabaseBuilder add(CIDR cidr, int tag) {
+        checkNotNull(cidr, "Argument [cidr] may not be null");
+        checkArgument(tag >= 0, "Tag must not be negative");
+        List<Block> blocks = cidr.isIPv4() ? ipv4Blocks : ipv6Blocks;
+        blocks.add(new Block(cidr, tag, blocks.size()));
+        return this;
+    }
+
+    public CIDRTagDatabaseBuilder add(String cidr, int tag) {
+        return add(CIDR.parse(cidr), tag);
+    }
+
+    /**
+     * Reads blocks from a reader. Each line is <code>&lt;cidr&gt; &lt;tag&gt;</code>.
+     *
+     * @param reader Reader.
+     * @return This builder.
+     * @throws IOException If an I/O error occurred.
+     */
+    public CIDRTagDatabaseBuilder load(Reader reader) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("[\\s,]+");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid line " + lineNumber + ":" + line);
+            }
+            add(parts[0], Integer.parseInt(parts[1]));
+        }
+        return this;
+    }
+
+    /**
+     * Writes the database.
+     *
+     * @param outputStream Output stream, it will not be closed.
+     * @throws IOException If an I/O error occurred.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        List<Segment> ipv4 = flatten(ipv4Blocks, IPV4_MAX);
+        List<Segment> ipv6 = flatten(ipv6Blocks, IPV6_MAX);
+        int ipv4Offset = CIDRTagDatabase.HEADER_SIZE;
+        int ipv6Offset = ipv4Offset + ipv4.size() * CIDRTagDatabase.IPV4_RECORD_SIZE;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(CIDRTagDatabase.MAGIC);
+        out.writeInt(CIDRTagDatabase.VERSION);
+        out.writeInt(ipv4.size());
+        out.writeInt(ipv6.size());
+        out.writeInt(ipv4Offset);
+        out.writeInt(ipv6Offset);
+        for (Segment segment : ipv4) {
+            out.writeInt(segment.start.intValue());
+            out.writeInt(segment.tag);
+        }
+        for (Segment segment : ipv6) {
+            out.writeLong(segment.start.shiftRight(64).longValue());
+            out.writeLong(segment.start.longValue());
+            out.writeInt(segment.tag);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the database to a file.
+     *
+     * @param file Output file.
+     * @throws IOException If an I/O error occurred.
+     */
+    public void write(File file) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            write(outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Converts nested blocks into sorted, non-overlapping segments which cover the whole address
+     * space. Blocks are either disjoint or nested, so a stack of enclosing blocks is enough.
+     */
+    private static List<Segment> flatten(List<Block> blocks, BigInteger max) {
+        List<Block> sorted = new ArrayList<>(blocks);
+        Collections.sort(sorted, new Comparator<Block>() {
+            @Override
+            public int compare(Block a, Block b) {
+                int result = a.start.compareTo(b.start);
+                if (result == 0) {
+                    result = a.prefixLength - b.prefixLength;
+                }
+                if (result == 0) {
+                    result = a.order - b.order;
+                }
+                return result;
+            }
+        });
+        List<Segment> segments = new ArrayList<>();
+        segments.add(new Segment(BigInteger.ZERO, CIDRTagDatabase.NO_TAG));
+        List<Block> stack = new ArrayList<>();
+        for (Block block : sorted) {
+            popEndedBlocks(stack, segments, block.start, max);
+            emit(segments, block.start, block.tag);
+            stack.add(block);
+        }
+        popEndedBlocks(stack, segments, null, max);
+        return segments;
+    }
+
+    private static void popEndedBlocks(List<Block> stack, List<Segment> segments, BigInteger
+            before, BigInteger max) {
+        while (!stack.isEmpty()) {
+            Block top = stack.get(stack.size() - 1);
+            if (before != null && top.end.compareTo(before) >= 0) {
+                return;
+            }
+            stack.remove(stack.size() - 1);
+            if (top.end.compareTo(max) < 0) {
+                int tag = stack.isEmpty() ? CIDRTagDatabase.NO_TAG : stack.get(stack.size() - 1).tag;
+                emit(segments, top.end.add(BigInteger.ONE), tag);
+            }
+        }
+    }
+
+    private static void emit(List<Segment> segments, BigInteger start, int tag) {
+        Segment last = segments.get(segments.size() - 1);
+        if (last.start.equals(start)) {
+            last.tag = tag;
+            if (segments.size() > 1 && segments.get(segments.size() - 2).tag == tag) {
+                segments.remove(segments.size() - 1);
+            }
+        } else if (last.tag != tag) {
+            segments.add(new Segment(start, tag));
+        }
+    }
+
+    private static final class Block {
+
+        final BigInteger start;
+
+        final BigInteger end;
+
+        final int prefixLength;
+
+        final int tag;
+
+        final int order;
+
+        Block(CIDR cidr, int tag, int order) {
+            int bits = cidr.isIPv4() ? 32 : 128;
+            this.start = new BigInteger(1, cidr.getAddress());
+            this.end = start.add(BigInteger.ONE.shiftLeft(bits - cidr.getPrefixLength()))
+                    .subtract(BigInteger.ONE);
+            this.prefixLength = cidr.getPrefixLength();
+            this.tag = tag;
+            this.order = order;
+        }
+    }
+
+    private static final class Segment {
+
+        final BigInteger start;
+
+        int tag;
+
+        Segment(BigInteger start, int tag) {
+            this.start = start;
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>CIDRTrie</code> is a path-compressed binary radix trie which maps
+ * {@link CIDR} blocks to values and answers longest-prefix-match queries.
+ * <p>
+ * IPv4 and IPv6 blocks are kept in two separate tries. A lookup visits at most one node per
+ * branching bit, so its cost is bounded by the prefix length and doesn't depend on the number of
+ * blocks in the trie.
+ * </p>
+ * <p>
+ * This class is not thread-safe for writing. A trie should be fully built and then published, after
+ * that any number of threads can query it concurrently.
+ * </p>
+ *
+ * @param <V> Type of value.
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 18, 2026 11:59 PM
+ */
+public class CIDRTrie<V> {
+
+    private final Node<V> ipv4Root = new Node<>(new byte[CIDR.IPV4_LENGTH], 0);
+
+    private final Node<V> ipv6Root = new Node<>(new byte[CIDR.IPV6_LENGTH], 0);
+
+    private int size = 0;
+
+    /**
+     * Associates a value with a CIDR block. An old value of the same block will be replaced.
+     *
+     * @param cidr  CIDR block.
+     * @param value Value, may not be <code>null</code>.
+     * @return The previous value of the block, or <code>null</code>.
+     */
+    public V put(CIDR cidr, V value) {
+        checkNotNull(cidr, "Argument [cidr] may not be null");
+        checkNotNull(value, "Argument [value] may not be null");
+        return put(cidr.getAddress(), cidr.getPrefixLength(), value);
+    }
+
+    private V put(byte[] key, int length, V value) {
+        Node<V> node = key.length == CIDR.IPV4_LENGTH ? ipv4Root : ipv6Root;
+        while (true) {
+            if (node.bits == length) {
+                V old = node.value;
+                if (old == null) {
+                    size++;
+                }
+                node.value = value;
+                return old;
+            }
+            int bit = bitAt(key, node.bits);
+            Node<V> child = node.child(bit);
+            if (child == null) {
+                node.setChild(bit, new Node<>(key, length, value));
+                size++;
+                return null;
+            }
+            int common = commonPrefixLength(child.key, key, node.bits, Math.min(child.bits,
+                    length));
+            if (common == child.bits) {
+                node = child;
+                continue;
+            }
+            Node<V> inserted;
+            if (common == length) {
+                inserted = new Node<>(key, length, value);
+            } else {
+                inserted = new Node<>(key, common);
+                inserted.setChild(bitAt(key, common), new Node<>(key, length, value));
+            }
+            inserted.setChild(bitAt(child.key, common), child);
+            node.setChild(bit, inserted);
+            size++;
+            return null;
+        }
+    }
+
+    /**
+     * Returns the value of the most specific block that contains the address.
+     *
+     * @param address IP address.
+     * @return Value of the longest matched block, or <code>null</code> if nothing matches.
+     */
+    public V longestMatch(InetAddress address) {
+        return address == null ? null : longestMatch(address.getAddress());
+    }
+
+    /**
+     * Returns the value of the most specific block that contains the address.
+     *
+     * @param address 4 or 16 bytes of address.
+     * @return Value of the longest matched block, or <code>null</code> if nothing matches.
+     */
+    public V longestMatch(byte[] address) {
+        Node<V> node;
+        if (address.length == CIDR.IPV4_LENGTH) {
+            node = ipv4Root;
+        } else if (address.length == CIDR.IPV6_LENGTH) {
+            node = ipv6Root;
+        } else {
+            return null;
+        }
+        final int total = address.length * 8;
+        V best = node.value;
+        while (node.bits < total) {
+            node = node.child(bitAt(address, node.bits));
+            if (node == null || !CIDR.prefixEquals(node.key, address, node.bits)) {
+                break;
+            }
+            if (node.value != null) {
+                best = node.value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns values of all blocks that contain the address, from the least specific to the most
+     * specific one.
+     *
+     * @param address 4 or 16 bytes of address.
+     * @param result  List which matched values will be added to.
+     */
+    public void allMatches(byte[] address, List<V> result) {
+        Node<V> node;
+        if (address.length == CIDR.IPV4_LENGTH) {
+            node = ipv4Root;
+        } else if (address.length == CIDR.IPV6_LENGTH) {
+            node = ipv6Root;
+        } else {
+            return;
+        }
+        final int total = address.length * 8;
+        if (node.value != null) {
+            result.add(node.value);
+        }
+        while (node.bits < total) {
+            node = node.child(bitAt(address, node.bits));
+            if (node == null || !CIDR.prefixEquals(node.key, address, node.bits)) {
+                break;
+            }
+            if (node.value != null) {
+                result.add(node.value);
+            }
+        }
+    }
+
+    /**
+     * Returns number of blocks in the trie.
+     *
+     * @return Number of blocks.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns all values in the trie.
+     *
+     * @return All values.
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        collect(ipv4Root, values);
+        collect(ipv6Root, values);
+        return values;
+    }
+
+    private void collect(Node<V> node, List<V> values) {
+        if (node == null) {
+            return;
+        }
+        if (node.value != null) {
+            values.add(node.value);
+        }
+        collect(node.zero, values);
+        collect(node.one, values);
+    }
+
+    static int bitAt(byte[] key, int index) {
+        return (key[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * Returns the number of leading equal bits of two keys, searching from bit <code>from</code> up
+     * to bit <code>to</code> (exclusive).
+     */
+    private static int commonPrefixLength(byte[] a, byte[] b, int from, int to) {
+        int i = from;
+        while (i < to && (i & 7) != 0) {
+            if (bitAt(a, i) != bitAt(b, i)) {
+                return i;
+            }
+            i++;
+        }
+        while (i + 8 <= to && a[i >>> 3] == b[i >>> 3]) {
+            i += 8;
+        }
+        while (i < to) {
+            if (bitAt(a, i) != bitAt(b, i)) {
+                return i;
+            }
+            i++;
+        }
+        return to;
+    }
+
+    private static final class Node<V> {
+
+        final byte[] key;
+
+        final int bits;
+
+        V value;
+
+        Node<V> zero;
+
+        Node<V> one;
+
+        Node(byte[] key, int bits) {
+            this.key = CIDR.mask(key, bits);
+            this.bits = bits;
+        }
+
+        Node(byte[] key, int bits, V value) {
+            this(key, bits);
+            this.value = value;
+        }
+
+        Node<V> child(int bit) {
+            return bit == 0 ? zero : one;
+        }
+
+        void setChild(int bit, Node<V> child) {
+            if (bit == 0) {
+                zero = child;
+            } else {
+                one = child;
+            }
+        }
+    }
+}
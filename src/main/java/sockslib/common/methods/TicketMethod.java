@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common.methods;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import sockslib.client.SocksProxy;
+import sockslib.common.AuthenticationException;
+import sockslib.common.Credentials;
+import sockslib.common.SocksException;
+import sockslib.common.UsernamePasswordCredentials;
+import sockslib.server.Session;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.auth.TicketAuthority;
+import sockslib.server.manager.User;
+import sockslib.server.msg.TicketMessage;
+import sockslib.server.msg.TicketResponseMessage;
+import sockslib.utils.Logger;
+
+/**
+ * The class <code>TicketMethod</code> represents a private SOCKS5 method (<code>0x80</code>) which
+ * authenticates with username and password once, then with a ticket issued by the server.
+ * <p>
+ * The first connection sends username and password like {@link UsernamePasswordMethod}, and the
+ * server responds with a ticket signed by its {@link TicketAuthority}. Later connections send the
+ * ticket instead, which the server verifies with a single HMAC, without looking up the user. When
+ * the ticket expires, the client sends the password again.
+ * </p>
+ * <p>
+ * Tickets are revoked by expiring: a deleted user or an old password keeps working until the
+ * ticket expires, keep the lifetime of the {@link TicketAuthority} short. Removing a key revokes
+ * all tickets it signed at once. If {@link #setCheckUsers(boolean)} is set to <code>true</code>,
+ * the user of each ticket is looked up too, so tickets of deleted users are rejected at once, at
+ * the cost of a user store lookup per connection.
+ * </p>
+ * <p>
+ * A server may reject a ticket the client still holds, e.g. after its key is rotated or the user
+ * is deleted. The client forgets the ticket, closes the connection and throws an
+ * {@link AuthenticationException}; it can't retry on the closed connection, so the caller should
+ * connect once more, which sends the password.
+ * </p>
+ * <p>
+ * Server:
+ * </p>
+ * <pre>
+ * TicketAuthority authority = new TicketAuthority(sharedKey);
+ * server.setSupportMethods(new TicketMethod(authenticator, authority),
+ *     new UsernamePasswordMethod(authenticator));
+ * </pre>
+ * <p>
+ * Client, the method should be put before {@link UsernamePasswordMethod}, and the same instance
+ * should be used for all connections because it keeps the tickets:
+ * </p>
+ * <pre>
+ * List&lt;SocksMethod&gt; methods = new ArrayList&lt;&gt;();
+ * methods.add(ticketMethod);
+ * methods.add(new UsernamePasswordMethod());
+ * socks5.setAcceptableMethods(methods);
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:11 AM
+ * @see TicketAuthority
+ */
+public class TicketMethod extends AbstractSocksMethod {
+
+    private static final Logger logger = Logger.getLogger("TicketMethod");
+
+    /**
+     * A ticket is renewed this long before it expires, to tolerate clock drift and slow
+     * handshakes.
+     */
+    private static final long RENEW_MARGIN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private UsernamePasswordAuthenticator authenticator;
+
+    private TicketAuthority ticketAuthority;
+
+    private volatile boolean checkUsers = false;
+
+    /**
+     * Tickets of client side, keyed by proxy address and username.
+     */
+    private final ConcurrentMap<String, ClientTicket> tickets = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an instance for client side.
+     */
+    public TicketMethod() {
+    }
+
+    /**
+     * Constructs an instance for server side.
+     *
+     * @param authenticator   Authenticator of username and password.
+     * @param ticketAuthority Authority which issues and verifies tickets.
+     */
+    public TicketMethod(UsernamePasswordAuthenticator authenticator, TicketAuthority
+            ticketAuthority) {
+        this.authenticator = checkNotNull(authenticator, "Argument [authenticator] may not be null");
+        this.ticketAuthority = checkNotNull(ticketAuthority, "Argument [ticketAuthority] may not "
+                + "be null");
+    }
+
+    @Override
+    public final int getByte() {
+        return 0x80;
+    }
+
+    @Override
+    public void doMethod(SocksProxy socksProxy) throws SocksException, IOException {
+        checkNotNull(socksProxy, "Argument [socksProxy] may not be null");
+        Credentials credentials = socksProxy.getCredentials();
+        if (!(credentials instanceof UsernamePasswordCredentials)) {
+            throw new SocksException("Need Username/Password authentication");
+        }
+        String username = credentials.getUserPrincipal().getName();
+        String key = socksProxy.getInetAddress() + ":" + socksProxy.getPort() + "/" + username;
+        ClientTicket clientTicket = tickets.get(key);
+        boolean useTicket = clientTicket != null && clientTicket.expiresAt - System.nanoTime() >
+                RENEW_MARGIN_NANOS;
+        TicketMessage request = useTicket ? new TicketMessage(clientTicket.ticket) : new
+                TicketMessage(username, credentials.getPassword());
+
+        OutputStream outputStream = socksProxy.getOutputStream();
+        InputStream inputStream = socksProxy.getInputStream();
+        outputStream.write(request.getBytes());
+        outputStream.flush();
+        TicketResponseMessage response = new TicketResponseMessage();
+        response.read(inputStream);
+
+        if (!response.isSuccess()) {
+            // The server closes the connection, the caller retries with the password.
+            tickets.remove(key);
+            socksProxy.getProxySocket().close();
+            throw new AuthenticationException(useTicket ? "Ticket rejected" : "Username or "
+                    + "password error");
+        }
+        if (response.getTicket() != null) {
+            tickets.put(key, new ClientTicket(response.getTicket(), System.nanoTime() + TimeUnit
+                    .SECONDS.toNanos(response.getLifetimeSeconds())));
+        }
+    }
+
+    @Override
+    public void doMethod(Session session) throws SocksException, IOException {
+        checkNotNull(session, "Argument [session] may not be null");
+        checkNotNull(authenticator, "Please set an authenticator");
+        checkNotNull(ticketAuthority, "Please set a ticket authority");
+        TicketMessage request = new TicketMessage();
+        session.read(request);
+        if (request.getType() == TicketMessage.TYPE_TICKET) {
+            String username = ticketAuthority.verify(request.getTicket());
+            if (username == null) {
+                session.write(new TicketResponseMessage(false));
+                throw new AuthenticationException("Invalid or expired ticket, client from " +
+                        session.getClientAddress());
+            }
+            User user = checkUsers ? authenticator.getUserManager().find(username) : new User
+                    (username, null);
+            if (user == null) {
+                session.write(new TicketResponseMessage(false));
+                throw new AuthenticationException("Ticket of unknown user " + username + ", "
+                        + "client from " + session.getClientAddress());
+            }
+            session.setAttribute(UsernamePasswordAuthenticator.USER_KEY, user);
+            session.write(new TicketResponseMessage(true));
+            return;
+        }
+        try {
+            authenticator.doAuthenticate(request.getUsernamePasswordCredentials(), session);
+        } catch (AuthenticationException e) {
+            session.write(new TicketResponseMessage(false));
+            throw e;
+        }
+        byte[] ticket = ticketAuthority.issue(request.getUsername());
+        session.write(new TicketResponseMessage(ticket, (int) ticketAuthority.getLifetime(TimeUnit
+                .SECONDS)));
+        logger.debug("SESSION[{}] Issued ticket", session.getId());
+    }
+
+    @Override
+    public String getMethodName() {
+        return "Ticket authentication";
+    }
+
+    /**
+     * Forgets all tickets of client side.
+     */
+    public void clearTickets() {
+        tickets.clear();
+    }
+
+    public UsernamePasswordAuthenticator getAuthenticator() {
+        return authenticator;
+    }
+
+    public void setAuthenticator(UsernamePasswordAuthenticator authenticator) {
+        this.authenticator = authenticator;
+    }
+
+    public boolean isCheckUsers() {
+        return checkUsers;
+    }
+
+    /**
+     * Sets whether the user of a ticket is looked up in the user manager, so tickets of deleted
+     * users are rejected before they expire. It's <code>false</code> by default.
+     *
+     * @param checkUsers <code>true</code> to look up the user of each ticket.
+     */
+    public void setCheckUsers(boolean checkUsers) {
+        this.checkUsers = checkUsers;
+    }
+
+    public TicketAuthority getTicketAuthority() {
+        return ticketAuthority;
+    }
+
+    public void setTicketAuthority(TicketAuthority ticketAuthority) {
+        this.ticketAuthority = ticketAuthority;
+    }
+
+    private static final class ClientTicket {
+
+        final byte[] ticket;
+
+        final long expiresAt;
+
+        ClientTicket(byte[] ticket, long expiresAt) {
+            this.ticket = ticket;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -16,8 +16,6 @@ package sockslib.common.methods;
 
 import static androidx.core.util.Preconditions.checkNotNull;
 
-import android.util.Log;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -32,8 +30,8 @@ import sockslib.server.Session;
 import sockslib.server.UsernamePasswordAuthenticator;
 import sockslib.server.msg.UsernamePasswordMessage;
 import sockslib.server.msg.UsernamePasswordResponseMessage;
-import sockslib.utils.LogMessageBuilder;
 import sockslib.utils.LogMessageBuilder.MsgType;
+import sockslib.utils.Logger;
 
 
 /**
@@ -49,7 +47,7 @@ import sockslib.utils.LogMessageBuilder.MsgType;
  */
 public class UsernamePasswordMethod extends AbstractSocksMethod {
 
-    private static final String TAG = "UsernamePasswordMethod";
+    private static final Logger logger = Logger.getLogger("UsernamePasswordMethod");
 
     /**
      * USERNAME/PASSWORD authenticator.
@@ -123,14 +121,13 @@ public class UsernamePasswordMethod extends AbstractSocksMethod {
                 PASSWORD_LENGTH);
         outputStream.write(bufferSent);
         outputStream.flush();
-        // logger send bytes
-        Log.d(TAG, LogMessageBuilder.build(bufferSent, MsgType.SEND));
+        // The request contains the password, don't dump it.
+        logger.debug("Sent USERNAME/PASSWORD request");
 
         byte[] authenticationResult = new byte[2];
         //noinspection ResultOfMethodCallIgnored
         inputStream.read(authenticationResult);
-        // logger
-        Log.d(TAG, LogMessageBuilder.build(authenticationResult, MsgType.RECEIVE));
+        logger.debugBytes(MsgType.RECEIVE, authenticationResult, authenticationResult.length);
 
         if (authenticationResult[1] != Socks5.AUTHENTICATION_SUCCEEDED) {
             // Close connection if authentication is failed.
@@ -147,8 +144,9 @@ public class UsernamePasswordMethod extends AbstractSocksMethod {
         checkNotNull(authenticator, "Please set an authenticator");
         UsernamePasswordMessage usernamePasswordMessage = new UsernamePasswordMessage();
         session.read(usernamePasswordMessage);
-        Log.d(TAG, String.format("SESSION[%d] Receive credentials: %s", session.getId(),
-                usernamePasswordMessage.getUsernamePasswordCredentials()));
+        if (logger.isDebugEnabled()) {
+            logger.debug("SESSION[{}] Received USERNAME/PASSWORD request", session.getId());
+        }
         try {
             authenticator.doAuthenticate(usernamePasswordMessage.getUsernamePasswordCredentials(),
                     session);
@@ -11,6 +11,7 @@ import sockslib.server.msg.CommandMessage;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The class <code>BasicSessionManager</code> implements {@link SessionManager}
@@ -22,7 +23,7 @@ import java.util.Map;
 public class BasicSessionManager implements SessionManager {
 
     private static int nextSessionId = 0;
-    private Map<Long, Session> managedSessions = new HashMap<>();
+    private Map<Long, Session> managedSessions = new ConcurrentHashMap<>();
     private Map<String, SessionCreateListener> sessionCreateListenerMap = new HashMap<>();
     private Map<String, SessionCloseListener> sessionCloseListenerMap = new HashMap<>();
     private Map<String, CommandListener> commandListenerMap = new HashMap<>();
@@ -16,8 +16,6 @@ package sockslib.server;
 
 import static androidx.core.util.Preconditions.checkNotNull;
 
-import android.util.Log;
-
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
@@ -26,12 +24,17 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import sockslib.client.SocksProxy;
 import sockslib.common.methods.SocksMethod;
 import sockslib.common.net.MonitorSocketWrapper;
 import sockslib.common.net.NetworkMonitor;
+import sockslib.server.acl.ClientAccessControl;
+import sockslib.server.jfr.SocksEvents;
+import sockslib.server.listener.DatagramListener;
 import sockslib.server.listener.PipeInitializer;
+import sockslib.utils.Logger;
 
 /**
  * The class <code>BasicSocksProxyServer</code> is a implementation of {@link SocksProxyServer}
@@ -54,7 +57,7 @@ import sockslib.server.listener.PipeInitializer;
  */
 public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
 
-    private static final String TAG = "BasicSocksProxyServer";
+    private static final Logger logger = Logger.getLogger("BasicSocksProxyServer");
 
     /**
      * Number of threads in thread pool.
@@ -128,6 +131,32 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
 
     private PipeInitializer pipeInitializer;
 
+    private DatagramListener datagramListener;
+
+    /**
+     * Client access control, checked before a session is created. <code>null</code> means all
+     * clients are allowed.
+     */
+    private ClientAccessControl clientAccessControl;
+
+    /**
+     * Deadlines of sessions, <code>null</code> means a socket timeout of {@link #timeout} is set on
+     * client sockets instead.
+     */
+    private SessionTimeouts sessionTimeouts;
+
+    /**
+     * Admission control of handshakes, <code>null</code> means all connections are admitted.
+     */
+    private HandshakeAdmission handshakeAdmission;
+
+    /**
+     * Limits of concurrent sessions, <code>null</code> means sessions are not limited.
+     */
+    private ConnectionLimiter connectionLimiter;
+
+    private final ServerMetrics metrics = new ServerMetrics(this);
+
     /**
      * Constructs a {@link BasicSocksProxyServer} by a {@link SocksHandler} class. The bind port is
      * 1080.
@@ -180,27 +209,99 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
 
     @Override
     public void run() {
-        Log.i(TAG, "Start proxy server at port:" + bindPort);
+        logger.info("Start proxy server at port:{}", bindPort);
         while (!stop) {
+            ConnectionLimiter.Lease lease = null;
+            HandshakeAdmission.Ticket ticket = null;
+            Session session = null;
             try {
                 Socket socket = serverSocket.accept();
+                long acceptNanos = System.nanoTime();
+                metrics.onAccept();
+                if (clientAccessControl != null
+                        && !clientAccessControl.isAllowed(socket.getInetAddress())) {
+                    logger.debug("Reject client {}", socket.getRemoteSocketAddress());
+                    metrics.onRefuse();
+                    socket.close();
+                    continue;
+                }
+                if (connectionLimiter != null) {
+                    lease = connectionLimiter.acquire(socket);
+                    if (lease == null) {
+                        logger.debug("Too many sessions of {}", socket.getRemoteSocketAddress());
+                        metrics.onRefuse();
+                        socket.close();
+                        continue;
+                    }
+                }
+                if (handshakeAdmission != null) {
+                    ticket = handshakeAdmission.admit(socket, executorService);
+                    if (ticket == null) {
+                        logger.debug("Refuse handshake of {}", socket.getRemoteSocketAddress());
+                        metrics.onRefuse();
+                        if (lease != null) {
+                            lease.release();
+                        }
+                        socket.close();
+                        continue;
+                    }
+                }
                 socket = processSocketBeforeUse(socket);
-                socket.setSoTimeout(timeout);
-                Session session = sessionManager.newSession(socket);
+                if (sessionTimeouts == null) {
+                    socket.setSoTimeout(timeout);
+                }
+                session = sessionManager.newSession(socket);
+                new SessionTimeline(acceptNanos).attach(session);
+                SocksEvents.accept(session);
+                if (lease != null) {
+                    lease.attach(session);
+                }
+                if (sessionTimeouts != null) {
+                    sessionTimeouts.start(session);
+                }
                 SocksHandler socksHandler = createSocksHandler();
                 /* initialize socks handler */
                 socksHandler.setSession(session);
                 initializeSocksHandler(socksHandler);
+                if (ticket != null) {
+                    ticket.attach(session);
+                }
 
                 executorService.execute(socksHandler);
 
+            } catch (RejectedExecutionException e) {
+                // The executor is saturated or shut down, refuse the connection and keep
+                // accepting.
+                if (ticket != null) {
+                    ticket.release();
+                }
+                if (lease != null) {
+                    lease.release();
+                }
+                if (session != null) {
+                    SessionTimeouts.cancel(session);
+                    SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason.REJECTED);
+                    session.close();
+                }
+                if (stop) {
+                    return;
+                }
+                metrics.onRefuse();
+                logger.warn("Executor rejected session {}: {}", session == null ? null : session
+                        .getId(), e.getMessage());
             } catch (IOException e) {
+                if (ticket != null) {
+                    ticket.release();
+                }
+                if (lease != null) {
+                    lease.release();
+                }
                 // Catches the exception that cause by shutdown method.
                 if (e.getMessage().equals("Socket closed") && stop) {
-                    Log.d(TAG, "Server shutdown");
+                    logger.debug("Server shutdown");
                     return;
                 }
-                Log.d(TAG, e.getMessage(), e);
+                logger.debug("Failed to accept: {}", e);
             }
         }
     }
@@ -377,6 +478,53 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
         this.sessionManager = sessionManager;
     }
 
+    public ClientAccessControl getClientAccessControl() {
+        return clientAccessControl;
+    }
+
+    public void setClientAccessControl(ClientAccessControl clientAccessControl) {
+        this.clientAccessControl = clientAccessControl;
+    }
+
+    public SessionTimeouts getSessionTimeouts() {
+        return sessionTimeouts;
+    }
+
+    public void setSessionTimeouts(SessionTimeouts sessionTimeouts) {
+        this.sessionTimeouts = sessionTimeouts;
+    }
+
+    public HandshakeAdmission getHandshakeAdmission() {
+        return handshakeAdmission;
+    }
+
+    public void setHandshakeAdmission(HandshakeAdmission handshakeAdmission) {
+        this.handshakeAdmission = handshakeAdmission;
+    }
+
+    public ConnectionLimiter getConnectionLimiter() {
+        return connectionLimiter;
+    }
+
+    /**
+     * Sets limits of concurrent sessions. The limiter should also be added as a command listener
+     * of the session manager, or users are not limited.
+     *
+     * @param connectionLimiter Connection limiter.
+     */
+    public void setConnectionLimiter(ConnectionLimiter connectionLimiter) {
+        this.connectionLimiter = connectionLimiter;
+    }
+
+    /**
+     * Returns metrics of the server.
+     *
+     * @return {@link ServerMetrics}
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public PipeInitializer getPipeInitializer() {
         return pipeInitializer;
@@ -386,4 +534,17 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
     public void setPipeInitializer(PipeInitializer pipeInitializer) {
         this.pipeInitializer = pipeInitializer;
     }
+
+    public DatagramListener getDatagramListener() {
+        return datagramListener;
+    }
+
+    /**
+     * Sets listener of datagrams relayed by UDP associations.
+     *
+     * @param datagramListener {@link DatagramListener}, or <code>null</code>.
+     */
+    public void setDatagramListener(DatagramListener datagramListener) {
+        this.datagramListener = datagramListener;
+    }
 }
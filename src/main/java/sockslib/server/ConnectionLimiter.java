@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sockslib.server.listener.CloseSessionException;
+import sockslib.server.listener.CommandListener;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+import sockslib.utils.ConcurrentCounterMap;
+
+/**
+ * The class <code>ConnectionLimiter</code> limits the number of concurrent sessions of a client
+ * address and of a user.
+ * <p>
+ * The limit of an address is checked when a connection is accepted, the limit of a user is checked
+ * when the command of an authenticated session arrives; a session over the limit is refused.
+ * A session holds a {@link Lease} which gives its slots back when the session is closed.
+ * </p>
+ * <pre>
+ * ConnectionLimiter limiter = new ConnectionLimiter(32, 8);
+ * limiter.setUserLimit("admin", ConnectionLimiter.UNLIMITED);
+ * ((BasicSocksProxyServer) server).setConnectionLimiter(limiter);
+ * server.getSessionManager().onCommand("limiter", limiter);
+ * </pre>
+ * <p>
+ * Counts are kept in {@link ConcurrentCounterMap}s, so checking and releasing cost O(1) and
+ * sessions of different addresses or users don't contend.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:32 AM
+ */
+public class ConnectionLimiter implements CommandListener {
+
+    /**
+     * Key of the session attribute which holds the lease of a session.
+     */
+    public static final String SESSION_LEASE_KEY = "CONNECTION_LEASE";
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final ConcurrentCounterMap<InetAddress> addressConnections = new
+            ConcurrentCounterMap<>();
+
+    private final ConcurrentCounterMap<String> userConnections = new ConcurrentCounterMap<>();
+
+    private final ConcurrentMap<String, Integer> userLimits = new ConcurrentHashMap<>();
+
+    private volatile int maxConnectionsPerAddress;
+
+    private volatile int maxConnectionsPerUser;
+
+    private final AtomicLong addressRejectedCount = new AtomicLong();
+
+    private final AtomicLong userRejectedCount = new AtomicLong();
+
+    public ConnectionLimiter() {
+        this(UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param maxConnectionsPerAddress Maximum number of sessions of a client address.
+     * @param maxConnectionsPerUser    Default maximum number of sessions of a user.
+     */
+    public ConnectionLimiter(int maxConnectionsPerAddress, int maxConnectionsPerUser) {
+        setMaxConnectionsPerAddress(maxConnectionsPerAddress);
+        setMaxConnectionsPerUser(maxConnectionsPerUser);
+    }
+
+    /**
+     * Takes a slot of the client address of an accepted connection.
+     *
+     * @param socket Accepted socket.
+     * @return Lease of the connection, or <code>null</code> if the address has too many sessions.
+     */
+    @Nullable
+    public Lease acquire(Socket socket) {
+        InetAddress address = socket.getInetAddress();
+        if (address != null && !addressConnections.tryIncrement(address,
+                maxConnectionsPerAddress)) {
+            addressRejectedCount.incrementAndGet();
+            return null;
+        }
+        return new Lease(address);
+    }
+
+    @Override
+    public void onCommand(Session session, CommandMessage message) throws CloseSessionException {
+        Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+        if (!(user instanceof User)) {
+            return;
+        }
+        Object lease = session.getAttribute(SESSION_LEASE_KEY);
+        if (!(lease instanceof Lease)) {
+            // The session wasn't accepted through this limiter, nothing would release a slot.
+            return;
+        }
+        String username = ((User) user).getUsername();
+        if (!((Lease) lease).acquireUser(username)) {
+            userRejectedCount.incrementAndGet();
+            throw new CloseSessionException("User " + username + " has too many sessions");
+        }
+    }
+
+    /**
+     * Releases the lease of a session. It's called when the session is closed.
+     *
+     * @param session Session.
+     */
+    public static void release(Session session) {
+        Object lease = session.getAttribute(SESSION_LEASE_KEY);
+        if (lease instanceof Lease) {
+            ((Lease) lease).release();
+        }
+    }
+
+    public int getMaxConnectionsPerAddress() {
+        return maxConnectionsPerAddress;
+    }
+
+    public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+        checkArgument(maxConnectionsPerAddress > 0, "Max connections must be positive");
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    }
+
+    public int getMaxConnectionsPerUser() {
+        return maxConnectionsPerUser;
+    }
+
+    public void setMaxConnectionsPerUser(int maxConnectionsPerUser) {
+        checkArgument(maxConnectionsPerUser > 0, "Max connections must be positive");
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+    }
+
+    /**
+     * Returns maximum number of sessions of a user.
+     *
+     * @param username Username.
+     * @return Limit of the user, or the default limit if the user has no limit of its own.
+     */
+    public int getUserLimit(String username) {
+        Integer limit = userLimits.get(username);
+        return limit == null ? maxConnectionsPerUser : limit;
+    }
+
+    /**
+     * Sets maximum number of sessions of a user, it overrides the default limit.
+     *
+     * @param username Username.
+     * @param limit    Maximum number of sessions.
+     */
+    public void setUserLimit(String username, int limit) {
+        checkNotNull(username, "Argument [username] may not be null");
+        checkArgument(limit > 0, "Max connections must be positive");
+        userLimits.put(username, limit);
+    }
+
+    public void removeUserLimit(String username) {
+        userLimits.remove(username);
+    }
+
+    public int getConnections(InetAddress address) {
+        return addressConnections.get(address);
+    }
+
+    public int getConnections(String username) {
+        return userConnections.get(username);
+    }
+
+    public long getAddressRejectedCount() {
+        return addressRejectedCount.get();
+    }
+
+    public long getUserRejectedCount() {
+        return userRejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionLimiter{addresses=" + addressConnections.size() + ", users="
+                + userConnections.size() + ", addressRejected=" + addressRejectedCount.get() + ", "
+                + "userRejected=" + userRejectedCount.get() + '}';
+    }
+
+    /**
+     * The class <code>Lease</code> holds the slots of a session, they are given back once when
+     * it's released.
+     */
+    public final class Lease {
+
+        private final InetAddress address;
+
+        private String username;
+
+        private boolean released;
+
+        private Lease(InetAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Binds the lease to the session of the connection.
+         *
+         * @param session Session.
+         */
+        public void attach(Session session) {
+            session.setAttribute(SESSION_LEASE_KEY, this);
+        }
+
+        synchronized boolean acquireUser(String name) {
+            if (released || username != null) {
+                // A session has one user, and a closed session needs no slot.
+                return true;
+            }
+            if (!userConnections.tryIncrement(name, getUserLimit(name))) {
+                return false;
+            }
+            username = name;
+            return true;
+        }
+
+        /**
+         * Gives back the slots, only the first call takes effect.
+         */
+        public synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (address != null) {
+                addressConnections.decrement(address);
+            }
+            if (username != null) {
+                userConnections.decrement(username);
+            }
+        }
+    }
+}
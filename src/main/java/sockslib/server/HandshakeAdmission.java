@@ -0,0 +1,363 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sockslib.utils.ConcurrentCounterMap;
+import sockslib.utils.Logger;
+import sockslib.utils.TimingWheel;
+
+/**
+ * The class <code>HandshakeAdmission</code> protects the handler threads of a server from clients
+ * that connect and then handshake slowly or not at all.
+ * <p>
+ * A connection is refused right after it's accepted when the queue of the executor is deep, when
+ * there are too many handshakes in progress, or when its address has too many handshakes in
+ * progress. An admitted session is closed if the client takes longer than a timeout to send a
+ * message of the handshake. A handshake ends when the command of the session is accepted.
+ * </p>
+ * <pre>
+ * HandshakeAdmission admission = HandshakeAdmission.newBuilder()
+ *     .setMaxHandshakes(200)
+ *     .setMaxHandshakesPerAddress(10)
+ *     .setMessageTimeout(5, TimeUnit.SECONDS)
+ *     .build();
+ * ((BasicSocksProxyServer) server).setHandshakeAdmission(admission);
+ * </pre>
+ * <p>
+ * The message timeout only runs while the server waits for the client, from the start of a read
+ * of a handshake message until the message is read. Time in the queue of the executor, in the
+ * authenticator and in DNS lookups doesn't count against the client. A whole handshake is a few
+ * dozen bytes, so a client on a working link sends each message within one round trip. The total
+ * time of a handshake is limited by {@link SessionTimeouts#setHandshakeTimeout(long, TimeUnit)}.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:30 AM
+ */
+public class HandshakeAdmission {
+
+    private static final Logger logger = Logger.getLogger("HandshakeAdmission");
+
+    /**
+     * Key of the session attribute which holds the admission ticket of a session.
+     */
+    public static final String SESSION_TICKET_KEY = "ADMISSION_TICKET";
+
+    private final TimingWheel timingWheel;
+
+    private final int maxHandshakes;
+
+    private final int maxHandshakesPerAddress;
+
+    private final int maxQueueDepth;
+
+    private final long messageTimeoutMillis;
+
+    private final AtomicInteger handshakes = new AtomicInteger();
+
+    private final ConcurrentCounterMap<InetAddress> addressHandshakes = new
+            ConcurrentCounterMap<>();
+
+    private final AtomicLong admittedCount = new AtomicLong();
+
+    private final AtomicLong shedCount = new AtomicLong();
+
+    private final AtomicLong globalRejectedCount = new AtomicLong();
+
+    private final AtomicLong addressRejectedCount = new AtomicLong();
+
+    private final AtomicLong slowClientCount = new AtomicLong();
+
+    private HandshakeAdmission(Builder builder) {
+        timingWheel = builder.timingWheel == null ? new TimingWheel() : builder.timingWheel;
+        maxHandshakes = builder.maxHandshakes;
+        maxHandshakesPerAddress = builder.maxHandshakesPerAddress;
+        maxQueueDepth = builder.maxQueueDepth;
+        messageTimeoutMillis = builder.messageTimeoutMillis;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Decides whether an accepted connection may start a handshake.
+     *
+     * @param socket   Accepted socket.
+     * @param executor Executor which runs handlers, its queue is checked if it's a
+     *                 {@link ThreadPoolExecutor}.
+     * @return Ticket of the handshake, or <code>null</code> if the connection is refused.
+     */
+    @Nullable
+    public Ticket admit(Socket socket, @Nullable Executor executor) {
+        if (executor instanceof ThreadPoolExecutor && ((ThreadPoolExecutor) executor).getQueue()
+                .size() >= maxQueueDepth) {
+            shedCount.incrementAndGet();
+            return null;
+        }
+        if (handshakes.incrementAndGet() > maxHandshakes) {
+            handshakes.decrementAndGet();
+            globalRejectedCount.incrementAndGet();
+            return null;
+        }
+        InetAddress address = socket.getInetAddress();
+        if (address != null && !addressHandshakes.tryIncrement(address, maxHandshakesPerAddress)) {
+            handshakes.decrementAndGet();
+            addressRejectedCount.incrementAndGet();
+            return null;
+        }
+        admittedCount.incrementAndGet();
+        return new Ticket(address);
+    }
+
+    /**
+     * Starts the message timeout of a session, it's called before a handshake message is read
+     * from the client.
+     *
+     * @param session Session.
+     */
+    public static void awaitMessage(Session session) {
+        Object ticket = session.getAttribute(SESSION_TICKET_KEY);
+        if (ticket instanceof Ticket) {
+            ((Ticket) ticket).awaitMessage(session);
+        }
+    }
+
+    /**
+     * Stops the message timeout of a session, it's called when a handshake message is read or the
+     * read fails. The server works on the message without the clock running.
+     *
+     * @param session Session.
+     */
+    public static void messageRead(Session session) {
+        Object ticket = session.getAttribute(SESSION_TICKET_KEY);
+        if (ticket instanceof Ticket) {
+            ((Ticket) ticket).cancelTimeout();
+        }
+    }
+
+    /**
+     * Ends the handshake of a session, it's called when the command of the session is accepted
+     * and when the session is closed.
+     *
+     * @param session Session.
+     */
+    public static void finish(Session session) {
+        Object ticket = session.getAttribute(SESSION_TICKET_KEY);
+        if (ticket instanceof Ticket) {
+            ((Ticket) ticket).release();
+        }
+    }
+
+    /**
+     * Returns number of handshakes in progress.
+     *
+     * @return Number of handshakes.
+     */
+    public int getHandshakes() {
+        return handshakes.get();
+    }
+
+    public int getHandshakes(InetAddress address) {
+        return addressHandshakes.get(address);
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    /**
+     * Returns number of connections refused because the executor queue was deep.
+     *
+     * @return Number of shed connections.
+     */
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    public long getGlobalRejectedCount() {
+        return globalRejectedCount.get();
+    }
+
+    public long getAddressRejectedCount() {
+        return addressRejectedCount.get();
+    }
+
+    public long getSlowClientCount() {
+        return slowClientCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HandshakeAdmission{handshakes=" + handshakes.get() + ", admitted=" + admittedCount
+                .get() + ", shed=" + shedCount.get() + ", globalRejected=" + globalRejectedCount
+                .get() + ", addressRejected=" + addressRejectedCount.get() + ", slowClients="
+                + slowClientCount.get() + '}';
+    }
+
+    /**
+     * The class <code>Ticket</code> represents an admitted handshake, it holds a handshake slot
+     * until it's released.
+     */
+    public final class Ticket {
+
+        private final InetAddress address;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private volatile TimingWheel.Timeout messageTimeout;
+
+        private Ticket(InetAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Binds the ticket to the session of the connection.
+         *
+         * @param session Session.
+         */
+        public void attach(Session session) {
+            session.setAttribute(SESSION_TICKET_KEY, this);
+        }
+
+        private void awaitMessage(final Session session) {
+            if (messageTimeoutMillis <= 0 || released.get()) {
+                return;
+            }
+            cancelTimeout();
+            messageTimeout = timingWheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (released.get()) {
+                        return;
+                    }
+                    slowClientCount.incrementAndGet();
+                    SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason
+                            .SLOW_CLIENT);
+                    logger.info("{} handshakes too slowly, close it", session);
+                    session.close();
+                    release();
+                }
+            }, messageTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void cancelTimeout() {
+            TimingWheel.Timeout timeout = messageTimeout;
+            if (timeout != null) {
+                messageTimeout = null;
+                timeout.cancel();
+            }
+        }
+
+        /**
+         * Releases the handshake slot, only the first call takes effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                handshakes.decrementAndGet();
+                if (address != null) {
+                    addressHandshakes.decrement(address);
+                }
+                cancelTimeout();
+            }
+        }
+    }
+
+    /**
+     * The class <code>Builder</code> is a tool to build {@link HandshakeAdmission}.
+     */
+    public static class Builder {
+
+        private TimingWheel timingWheel;
+
+        private int maxHandshakes = 256;
+
+        private int maxHandshakesPerAddress = 16;
+
+        private int maxQueueDepth = 100;
+
+        private long messageTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the wheel which runs the message timeouts, e.g. the one of {@link SessionTimeouts}.
+         *
+         * @param timingWheel Timing wheel.
+         * @return This builder.
+         */
+        public Builder setTimingWheel(TimingWheel timingWheel) {
+            this.timingWheel = checkNotNull(timingWheel, "Argument [timingWheel] may not be null");
+            return this;
+        }
+
+        public Builder setMaxHandshakes(int maxHandshakes) {
+            checkArgument(maxHandshakes > 0, "Max handshakes must be positive");
+            this.maxHandshakes = maxHandshakes;
+            return this;
+        }
+
+        public Builder setMaxHandshakesPerAddress(int maxHandshakesPerAddress) {
+            checkArgument(maxHandshakesPerAddress > 0, "Max handshakes must be positive");
+            this.maxHandshakesPerAddress = maxHandshakesPerAddress;
+            return this;
+        }
+
+        /**
+         * Sets the executor queue depth at which new connections are refused.
+         *
+         * @param maxQueueDepth Queue depth.
+         * @return This builder.
+         */
+        public Builder setMaxQueueDepth(int maxQueueDepth) {
+            checkArgument(maxQueueDepth > 0, "Max queue depth must be positive");
+            this.maxQueueDepth = maxQueueDepth;
+            return this;
+        }
+
+        /**
+         * Sets how long the server waits for each message of a handshake, 5 seconds by default.
+         *
+         * @param timeout Timeout, or <code>0</code> to disable the check.
+         * @param unit    Unit of timeout.
+         * @return This builder.
+         */
+        public Builder setMessageTimeout(long timeout, TimeUnit unit) {
+            checkArgument(timeout >= 0, "Message timeout can't be negative");
+            this.messageTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public HandshakeAdmission build() {
+            return new HandshakeAdmission(this);
+        }
+    }
+}
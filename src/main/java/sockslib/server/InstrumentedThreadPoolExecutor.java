@@ -0,0 +1,307 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sockslib.server.metrics.MetricsCollector;
+import sockslib.server.metrics.PrometheusWriter;
+import sockslib.utils.LatencyHistogram;
+import sockslib.utils.Logger;
+
+/**
+ * The class <code>InstrumentedThreadPoolExecutor</code> is a {@link ThreadPoolExecutor} which
+ * records how long tasks wait in its queue and how long they run, how many run at the same time,
+ * and how many are rejected. It's the executor of servers built by {@link SocksProxyServerFactory}.
+ * <pre>
+ * InstrumentedThreadPoolExecutor executor =
+ *     InstrumentedThreadPoolExecutor.newFixedThreadPool(100);
+ * executor.setQueueWaitSlo(500, TimeUnit.MILLISECONDS);
+ * SocksProxyServer server = new BasicSocksProxyServer(Socks5Handler.class, 1080, executor);
+ * </pre>
+ * <p>
+ * A task which waited longer than the queue wait SLO is counted, and a warning is logged at most
+ * once every 10 seconds. Metrics are read from atomic counters without the lock of the pool; they
+ * are collected with {@link ServerMetrics} of the server which uses the executor, the queue depth
+ * is collected there too.
+ * </p>
+ * <p>
+ * Tasks are wrapped to record their times, so {@link #remove(Runnable)} doesn't find them and
+ * {@link #shutdownNow()} returns the wrappers.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:59 AM
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor implements
+        MetricsCollector {
+
+    private static final Logger logger = Logger.getLogger("InstrumentedExecutor");
+
+    /**
+     * A value of queue wait SLO which means no SLO.
+     */
+    public static final long NO_SLO = 0;
+
+    private static final long WARN_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final LatencyHistogram queueWaits = new LatencyHistogram();
+
+    private final LatencyHistogram runTimes = new LatencyHistogram();
+
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    private final AtomicInteger peakRunningCount = new AtomicInteger();
+
+    private final AtomicLong finishedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong sloBreachCount = new AtomicLong();
+
+    private final AtomicLong lastWarning = new AtomicLong(System.nanoTime() - WARN_INTERVAL);
+
+    private volatile long queueWaitSlo = NO_SLO;
+
+    public InstrumentedThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long
+            keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue, ThreadFactory
+            threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory,
+                countRejections(handler));
+    }
+
+    /**
+     * Creates an executor like {@link Executors#newFixedThreadPool(int)}.
+     *
+     * @param threads Number of threads.
+     * @return Executor.
+     */
+    public static InstrumentedThreadPoolExecutor newFixedThreadPool(int threads) {
+        return new InstrumentedThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new
+                LinkedBlockingQueue<Runnable>(), Executors.defaultThreadFactory(), new
+                AbortPolicy());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        checkNotNull(command, "Argument [command] may not be null");
+        super.execute(new TimedTask(command, System.nanoTime()));
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        super.setRejectedExecutionHandler(countRejections(handler));
+    }
+
+    /**
+     * Sets the queue wait SLO.
+     *
+     * @param slo  Maximum time a task should wait in the queue, or {@link #NO_SLO}.
+     * @param unit Time unit.
+     */
+    public void setQueueWaitSlo(long slo, TimeUnit unit) {
+        checkArgument(slo >= 0, "SLO can't be negative");
+        queueWaitSlo = unit.toNanos(slo);
+    }
+
+    public long getQueueWaitSlo(TimeUnit unit) {
+        return unit.convert(queueWaitSlo, TimeUnit.NANOSECONDS);
+    }
+
+    public LatencyHistogram getQueueWaits() {
+        return queueWaits;
+    }
+
+    public LatencyHistogram getRunTimes() {
+        return runTimes;
+    }
+
+    /**
+     * Returns number of running tasks, without the lock of the pool.
+     *
+     * @return Number of busy threads.
+     */
+    public int getRunningCount() {
+        return runningCount.get();
+    }
+
+    /**
+     * Returns the largest number of tasks that have run at the same time.
+     *
+     * @return Peak number of busy threads.
+     */
+    public int getPeakRunningCount() {
+        return peakRunningCount.get();
+    }
+
+    public long getFinishedCount() {
+        return finishedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getSloBreachCount() {
+        return sloBreachCount.get();
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.header("sockslib_executor_active_threads", PrometheusWriter.GAUGE,
+                "Threads running a session.")
+                .sample("sockslib_executor_active_threads", runningCount.get());
+        writer.header("sockslib_executor_peak_active_threads", PrometheusWriter.GAUGE,
+                "Largest number of threads running sessions at the same time.")
+                .sample("sockslib_executor_peak_active_threads", peakRunningCount.get());
+        writer.header("sockslib_executor_completed_tasks_total", PrometheusWriter.COUNTER,
+                "Sessions whose handler finished.")
+                .sample("sockslib_executor_completed_tasks_total", finishedCount.get());
+        writer.header("sockslib_executor_rejected_tasks_total", PrometheusWriter.COUNTER,
+                "Sessions rejected by the executor.")
+                .sample("sockslib_executor_rejected_tasks_total", rejectedCount.get());
+        writer.header("sockslib_executor_queue_wait_slo_breaches_total", PrometheusWriter
+                .COUNTER, "Sessions which waited in the queue longer than the SLO.")
+                .sample("sockslib_executor_queue_wait_slo_breaches_total", sloBreachCount.get());
+        writeSummary(writer, "sockslib_executor_queue_wait_seconds", "Time sessions waited for a "
+                + "thread.", queueWaits.snapshot());
+        writeSummary(writer, "sockslib_executor_task_seconds", "Time handlers ran.", runTimes
+                .snapshot());
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedThreadPoolExecutor{queue=" + getQueue().size() + ", running="
+                + runningCount.get() + ", peakRunning=" + peakRunningCount.get() + ", finished="
+                + finishedCount.get() + ", rejected=" + rejectedCount.get() + ", sloBreaches="
+                + sloBreachCount.get() + '}';
+    }
+
+    private void onStart(long enqueueNanos, long startNanos) {
+        long wait = startNanos - enqueueNanos;
+        queueWaits.record(wait);
+        int running = runningCount.incrementAndGet();
+        int peak;
+        while (running > (peak = peakRunningCount.get())) {
+            if (peakRunningCount.compareAndSet(peak, running)) {
+                break;
+            }
+        }
+        long slo = queueWaitSlo;
+        if (slo == NO_SLO || wait <= slo) {
+            return;
+        }
+        long breaches = sloBreachCount.incrementAndGet();
+        long last = lastWarning.get();
+        if (startNanos - last >= WARN_INTERVAL && lastWarning.compareAndSet(last, startNanos)) {
+            logger.warn("A task waited {} ms in the queue, over the SLO of {} ms; queue depth {}, "
+                    + "{} breaches in total", TimeUnit.NANOSECONDS.toMillis(wait), TimeUnit
+                    .NANOSECONDS.toMillis(slo), getQueue().size(), breaches);
+        }
+    }
+
+    private void onFinish(long startNanos) {
+        runningCount.decrementAndGet();
+        runTimes.recordSince(startNanos);
+        finishedCount.incrementAndGet();
+    }
+
+    private static RejectedExecutionHandler countRejections(RejectedExecutionHandler handler) {
+        checkNotNull(handler, "Argument [handler] may not be null");
+        return handler instanceof CountingHandler ? handler : new CountingHandler(handler);
+    }
+
+    private static void writeSummary(PrometheusWriter writer, String name, String help,
+                                     LatencyHistogram.Snapshot snapshot) {
+        writer.header(name, PrometheusWriter.SUMMARY, help);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            writer.sample(name, "quantile", QUANTILE_LABELS[i], snapshot.getValueAtPercentile
+                    (QUANTILES[i] * 100) / NANOS_PER_SECOND);
+        }
+        writer.sample(name + "_sum", snapshot.getSum() / NANOS_PER_SECOND);
+        writer.sample(name + "_count", snapshot.getCount());
+    }
+
+    /**
+     * A task with the time it was queued.
+     */
+    private final class TimedTask implements Runnable {
+
+        private final Runnable task;
+
+        private final long enqueueNanos;
+
+        TimedTask(Runnable task, long enqueueNanos) {
+            this.task = task;
+            this.enqueueNanos = enqueueNanos;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            onStart(enqueueNanos, start);
+            try {
+                task.run();
+            } finally {
+                onFinish(start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    /**
+     * Counts rejected tasks before handing them to the handler.
+     */
+    private static final class CountingHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler handler;
+
+        CountingHandler(RejectedExecutionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor instanceof InstrumentedThreadPoolExecutor) {
+                ((InstrumentedThreadPoolExecutor) executor).rejectedCount.incrementAndGet();
+            }
+            Runnable original = task instanceof InstrumentedThreadPoolExecutor.TimedTask ? (
+                    (InstrumentedThreadPoolExecutor.TimedTask) task).task : task;
+            handler.rejectedExecution(original, executor);
+        }
+    }
+}
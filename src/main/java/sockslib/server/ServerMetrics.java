@@ -0,0 +1,397 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import sockslib.common.net.NetworkMonitor;
+import sockslib.server.metrics.MetricsCollector;
+import sockslib.server.metrics.PrometheusWriter;
+import sockslib.server.msg.ServerReply;
+import sockslib.utils.LatencyHistogram;
+
+/**
+ * The class <code>ServerMetrics</code> counts accepted connections, sessions by state, command
+ * replies, DNS lookups and UDP associations of a {@link BasicSocksProxyServer}, and records the
+ * latencies of handshake phases. It exports them with the transferred bytes of its
+ * {@link NetworkMonitor} and the depth of its executor queue, with the metrics of the executor if
+ * it's an {@link InstrumentedThreadPoolExecutor}.
+ * <pre>
+ * MetricsEndpoint endpoint = new MetricsEndpoint(9180);
+ * endpoint.addCollector(server.getMetrics());
+ * endpoint.start();
+ * </pre>
+ * <p>
+ * Handlers update atomic counters, and a scrape only reads them; it never locks anything relay
+ * threads use. The queue depth is read without a lock from a {@link ThreadPoolExecutor} with a
+ * linked queue, which the server uses by default.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:35 AM
+ */
+public class ServerMetrics implements MetricsCollector {
+
+    /**
+     * The enumeration <code>State</code> represents what a session is doing.
+     */
+    public enum State {
+
+        /**
+         * Selecting a method, authenticating or reading the command.
+         */
+        HANDSHAKE,
+
+        /**
+         * Connecting to the destination, or waiting for the connection of a BIND command.
+         */
+        CONNECT,
+
+        /**
+         * Relaying a TCP connection.
+         */
+        RELAY,
+
+        /**
+         * Holding a UDP association.
+         */
+        UDP;
+
+        private final String label = name().toLowerCase(Locale.US);
+    }
+
+    /**
+     * The enumeration <code>Phase</code> represents a timed step of a session.
+     */
+    public enum Phase {
+
+        /**
+         * Reading the method selection message.
+         */
+        GREETING,
+
+        /**
+         * Selecting a method and writing the selection.
+         */
+        METHOD,
+
+        /**
+         * Running the selected method, e.g. checking the username and the password.
+         */
+        AUTHENTICATION,
+
+        /**
+         * Reading the command.
+         */
+        COMMAND,
+
+        /**
+         * Looking up the domain name of the destination.
+         */
+        DNS,
+
+        /**
+         * Connecting to the destination.
+         */
+        CONNECT,
+
+        /**
+         * Writing the reply to a CONNECT command.
+         */
+        REPLY;
+
+        private final String label = name().toLowerCase(Locale.US);
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final State[] STATES = State.values();
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final ServerReply[] REPLIES = ServerReply.values();
+
+    private static final String[] REPLY_LABELS = new String[REPLIES.length];
+
+    static {
+        for (int i = 0; i < REPLIES.length; i++) {
+            REPLY_LABELS[i] = REPLIES[i].name().toLowerCase(Locale.US);
+        }
+    }
+
+    private final BasicSocksProxyServer server;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    private final AtomicLong refusedCount = new AtomicLong();
+
+    private final AtomicLong handshakeErrorCount = new AtomicLong();
+
+    private final AtomicLong udpAssociationCount = new AtomicLong();
+
+    private final AtomicLong dnsResolvedCount = new AtomicLong();
+
+    private final AtomicLong dnsFailureCount = new AtomicLong();
+
+    private final AtomicLong dnsLookupNanos = new AtomicLong();
+
+    private final AtomicLongArray replyCounts = new AtomicLongArray(REPLIES.length);
+
+    private final AtomicIntegerArray sessions = new AtomicIntegerArray(STATES.length);
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[PHASES.length];
+
+    public ServerMetrics(BasicSocksProxyServer server) {
+        this.server = checkNotNull(server, "Argument [server] may not be null");
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public void onAccept() {
+        acceptedCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a connection which is closed right after it's accepted, e.g. by access control.
+     */
+    public void onRefuse() {
+        refusedCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a session which fails before a reply to its command is sent, e.g. a protocol error,
+     * a failed authentication or a handshake timeout.
+     */
+    public void onHandshakeError() {
+        handshakeErrorCount.incrementAndGet();
+    }
+
+    public void onReply(ServerReply reply) {
+        replyCounts.incrementAndGet(reply.ordinal());
+    }
+
+    public void onUdpAssociate() {
+        udpAssociationCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a DNS lookup of a destination.
+     *
+     * @param resolved <code>true</code> if the lookup succeeded.
+     * @param nanos    Time of the lookup in nanoseconds.
+     */
+    public void onDnsLookup(boolean resolved, long nanos) {
+        if (resolved) {
+            dnsResolvedCount.incrementAndGet();
+        } else {
+            dnsFailureCount.incrementAndGet();
+        }
+        dnsLookupNanos.addAndGet(nanos);
+        latencies[Phase.DNS.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the time of a phase which started at the given time.
+     *
+     * @param phase      Phase.
+     * @param startNanos Start time from {@link System#nanoTime()}.
+     * @return End time of the phase, which is the start time of the next one.
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        latencies[phase.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies[phase.ordinal()];
+    }
+
+    /**
+     * Moves a session from one state to another.
+     *
+     * @param from Current state, or <code>null</code> for a new session.
+     * @param to   Next state, or <code>null</code> for a finished session.
+     * @return Next state.
+     */
+    @Nullable
+    public State transition(@Nullable State from, @Nullable State to) {
+        if (from == to) {
+            return to;
+        }
+        if (from != null) {
+            sessions.decrementAndGet(from.ordinal());
+        }
+        if (to != null) {
+            sessions.incrementAndGet(to.ordinal());
+        }
+        return to;
+    }
+
+    public int getSessions(State state) {
+        return sessions.get(state.ordinal());
+    }
+
+    public long getReplyCount(ServerReply reply) {
+        return replyCounts.get(reply.ordinal());
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    public long getRefusedCount() {
+        return refusedCount.get();
+    }
+
+    public long getHandshakeErrorCount() {
+        return handshakeErrorCount.get();
+    }
+
+    public long getUdpAssociationCount() {
+        return udpAssociationCount.get();
+    }
+
+    public long getDnsResolvedCount() {
+        return dnsResolvedCount.get();
+    }
+
+    public long getDnsFailureCount() {
+        return dnsFailureCount.get();
+    }
+
+    /**
+     * Returns number of tasks waiting in the executor queue of the server.
+     *
+     * @return Queue depth, or <code>-1</code> if the executor isn't a {@link ThreadPoolExecutor}.
+     */
+    public int getExecutorQueueDepth() {
+        ExecutorService executor = server.getExecutorService();
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        return -1;
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.header("sockslib_accepted_connections_total", PrometheusWriter.COUNTER,
+                "Accepted client connections.")
+                .sample("sockslib_accepted_connections_total", acceptedCount.get());
+        writer.header("sockslib_refused_connections_total", PrometheusWriter.COUNTER,
+                "Connections closed right after they were accepted.")
+                .sample("sockslib_refused_connections_total", refusedCount.get());
+
+        writer.header("sockslib_sessions", PrometheusWriter.GAUGE, "Sessions by state.");
+        for (State state : STATES) {
+            writer.sample("sockslib_sessions", "state", state.label, sessions.get(state
+                    .ordinal()));
+        }
+        writer.header("sockslib_managed_sessions", PrometheusWriter.GAUGE,
+                "Sessions managed by the server, including queued ones.")
+                .sample("sockslib_managed_sessions", server.getSessionManager().getManagedSessions()
+                        .size());
+
+        writer.header("sockslib_command_replies_total", PrometheusWriter.COUNTER,
+                "Replies to commands by reply code.");
+        for (int i = 0; i < REPLIES.length; i++) {
+            writer.sample("sockslib_command_replies_total", "reply", REPLY_LABELS[i], replyCounts
+                    .get(i));
+        }
+        writer.header("sockslib_handshake_errors_total", PrometheusWriter.COUNTER,
+                "Sessions that failed before their command was answered.")
+                .sample("sockslib_handshake_errors_total", handshakeErrorCount.get());
+
+        NetworkMonitor monitor = server.getNetworkMonitor();
+        writer.header("sockslib_transferred_bytes_total", PrometheusWriter.COUNTER,
+                "Bytes received from and sent to clients.")
+                .sample("sockslib_transferred_bytes_total", "direction", "in", "protocol", "tcp",
+                        monitor.getReceiveTCP())
+                .sample("sockslib_transferred_bytes_total", "direction", "out", "protocol", "tcp",
+                        monitor.getSendTCP())
+                .sample("sockslib_transferred_bytes_total", "direction", "in", "protocol", "udp",
+                        monitor.getReceiveUDP())
+                .sample("sockslib_transferred_bytes_total", "direction", "out", "protocol", "udp",
+                        monitor.getSendUDP());
+
+        int queueDepth = getExecutorQueueDepth();
+        if (queueDepth >= 0) {
+            writer.header("sockslib_executor_queue_depth", PrometheusWriter.GAUGE,
+                    "Sessions waiting for a handler thread.")
+                    .sample("sockslib_executor_queue_depth", queueDepth);
+        }
+        ExecutorService executor = server.getExecutorService();
+        if (executor instanceof InstrumentedThreadPoolExecutor) {
+            ((InstrumentedThreadPoolExecutor) executor).collect(writer);
+        }
+        // Each relayed connection has a buffer in each direction.
+        writer.header("sockslib_relay_buffer_bytes", PrometheusWriter.GAUGE,
+                "Bytes of relay buffers in use.")
+                .sample("sockslib_relay_buffer_bytes", 2L * server.getBufferSize() * sessions.get
+                        (State.RELAY.ordinal()));
+
+        writer.header("sockslib_dns_lookups_total", PrometheusWriter.COUNTER,
+                "DNS lookups of destinations by result.")
+                .sample("sockslib_dns_lookups_total", "result", "resolved", dnsResolvedCount
+                        .get())
+                .sample("sockslib_dns_lookups_total", "result", "failed", dnsFailureCount.get());
+        writer.header("sockslib_dns_lookup_seconds_total", PrometheusWriter.COUNTER,
+                "Time spent in DNS lookups of destinations.")
+                .sample("sockslib_dns_lookup_seconds_total", dnsLookupNanos.get()
+                        / NANOS_PER_SECOND);
+
+        writer.header("sockslib_phase_seconds", PrometheusWriter.SUMMARY,
+                "Time of session phases.");
+        for (Phase phase : PHASES) {
+            LatencyHistogram.Snapshot snapshot = latencies[phase.ordinal()].snapshot();
+            for (int i = 0; i < QUANTILES.length; i++) {
+                writer.sample("sockslib_phase_seconds", "phase", phase.label, "quantile",
+                        QUANTILE_LABELS[i], snapshot.getValueAtPercentile(QUANTILES[i] * 100)
+                                / NANOS_PER_SECOND);
+            }
+            writer.sample("sockslib_phase_seconds_sum", "phase", phase.label, snapshot.getSum()
+                    / NANOS_PER_SECOND);
+            writer.sample("sockslib_phase_seconds_count", "phase", phase.label, snapshot
+                    .getCount());
+        }
+
+        writer.header("sockslib_udp_associations_total", PrometheusWriter.COUNTER,
+                "UDP associations.")
+                .sample("sockslib_udp_associations_total", udpAssociationCount.get());
+    }
+
+    @Override
+    public String toString() {
+        return "ServerMetrics{accepted=" + acceptedCount.get() + ", refused=" + refusedCount.get()
+                + ", handshakeErrors=" + handshakeErrorCount.get() + ", relaying=" + sessions.get
+                (State.RELAY.ordinal()) + ", udpAssociations=" + udpAssociationCount.get() + '}';
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import sockslib.server.io.Pipe;
+import sockslib.server.io.PipeListener;
+import sockslib.server.io.SocketPipe;
+import sockslib.server.msg.CommandMessage;
+import sockslib.server.msg.ServerReply;
+
+/**
+ * The class <code>SessionTimeline</code> records when a session reached each step, from the accept
+ * of its connection to its close, what it requested and why it was closed.
+ * <p>
+ * Times come from {@link System#nanoTime()} and are kept in a fixed array, so marking a step
+ * allocates nothing. Each step is marked once; a step that wasn't reached stays 0. The timeline is
+ * attached to every session by {@link BasicSocksProxyServer}, and {@link SessionTracer} logs the
+ * timelines of sampled or slow sessions.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:39 AM
+ */
+public final class SessionTimeline {
+
+    /**
+     * Key of the session attribute which holds the timeline of a session.
+     */
+    public static final String SESSION_TIMELINE_KEY = "TIMELINE";
+
+    /**
+     * The enumeration <code>Mark</code> represents a step of a session.
+     */
+    public enum Mark {
+
+        /**
+         * The connection is accepted.
+         */
+        ACCEPT,
+
+        /**
+         * The method selection message is read.
+         */
+        GREETING,
+
+        /**
+         * The selected method, e.g. authentication, is done.
+         */
+        AUTH,
+
+        /**
+         * The command is read.
+         */
+        COMMAND,
+
+        /**
+         * The destination is resolved.
+         */
+        RESOLVE,
+
+        /**
+         * The destination is connected, the inbound connection of BIND is accepted, or the UDP
+         * relay is started.
+         */
+        CONNECT,
+
+        /**
+         * The first byte is relayed from the client.
+         */
+        FIRST_UPLOAD,
+
+        /**
+         * The first byte is relayed to the client.
+         */
+        FIRST_DOWNLOAD,
+
+        /**
+         * The session is closed.
+         */
+        CLOSE;
+
+        private final String label = name().toLowerCase(Locale.US);
+    }
+
+    /**
+     * The enumeration <code>CloseReason</code> represents why a session was closed.
+     */
+    public enum CloseReason {
+
+        /**
+         * The command was done, e.g. the relay ended.
+         */
+        COMPLETED,
+
+        /**
+         * The command was answered with a failure reply.
+         */
+        REJECTED,
+
+        /**
+         * The handshake failed, e.g. a protocol error or a failed authentication.
+         */
+        HANDSHAKE_ERROR,
+
+        HANDSHAKE_TIMEOUT,
+
+        /**
+         * The client sent its handshake too slowly.
+         */
+        SLOW_CLIENT,
+
+        IDLE_TIMEOUT,
+
+        LIFETIME_EXCEEDED,
+
+        /**
+         * The session was killed by an administrator.
+         */
+        KILLED,
+
+        /**
+         * An error occurred after the handshake.
+         */
+        ERROR
+    }
+
+    private static final Mark[] MARKS = Mark.values();
+
+    /**
+     * Marks are set by the handler, the pipes and the timing wheel, and read by other threads.
+     */
+    private final AtomicLongArray marks = new AtomicLongArray(MARKS.length);
+
+    private volatile CloseReason closeReason;
+
+    private volatile ServerReply reply;
+
+    private volatile CommandMessage command;
+
+    /**
+     * Creates a timeline.
+     *
+     * @param acceptNanos Time when the connection was accepted.
+     */
+    public SessionTimeline(long acceptNanos) {
+        marks.set(Mark.ACCEPT.ordinal(), acceptNanos);
+    }
+
+    public void attach(Session session) {
+        session.setAttribute(SESSION_TIMELINE_KEY, this);
+    }
+
+    /**
+     * Returns the timeline of a session.
+     *
+     * @param session Session.
+     * @return Timeline, or <code>null</code> if the session has none.
+     */
+    @Nullable
+    public static SessionTimeline get(Session session) {
+        Object timeline = session.getAttribute(SESSION_TIMELINE_KEY);
+        return timeline instanceof SessionTimeline ? (SessionTimeline) timeline : null;
+    }
+
+    /**
+     * Marks a step of a session at the given time, if it has a timeline and the step isn't marked.
+     *
+     * @param session Session.
+     * @param mark    Step.
+     * @param nanos   Time from {@link System#nanoTime()}.
+     */
+    public static void mark(Session session, Mark mark, long nanos) {
+        SessionTimeline timeline = get(session);
+        if (timeline != null) {
+            timeline.mark(mark, nanos);
+        }
+    }
+
+    public static void mark(Session session, Mark mark) {
+        mark(session, mark, System.nanoTime());
+    }
+
+    /**
+     * Sets why a session is closed, only the first reason is kept.
+     *
+     * @param session Session.
+     * @param reason  Close reason.
+     */
+    public static void setCloseReason(Session session, CloseReason reason) {
+        SessionTimeline timeline = get(session);
+        if (timeline != null) {
+            timeline.setCloseReason(reason);
+        }
+    }
+
+    public static void setReply(Session session, ServerReply reply) {
+        SessionTimeline timeline = get(session);
+        if (timeline != null) {
+            timeline.reply = reply;
+        }
+    }
+
+    public static void setCommand(Session session, CommandMessage command) {
+        SessionTimeline timeline = get(session);
+        if (timeline != null) {
+            timeline.command = command;
+        }
+    }
+
+    /**
+     * Marks the first byte of each direction of the relay of a session.
+     *
+     * @param session Session.
+     * @param pipe    Relay pipe of the session.
+     */
+    public static void watchFirstBytes(Session session, Pipe pipe) {
+        SessionTimeline timeline = get(session);
+        if (timeline == null || !(pipe instanceof SocketPipe)) {
+            return;
+        }
+        SocketPipe socketPipe = (SocketPipe) pipe;
+        socketPipe.getOutputPipe().addPipeListener(timeline.new FirstByteListener(Mark
+                .FIRST_UPLOAD));
+        socketPipe.getInputPipe().addPipeListener(timeline.new FirstByteListener(Mark
+                .FIRST_DOWNLOAD));
+    }
+
+    public void mark(Mark mark, long nanos) {
+        marks.compareAndSet(mark.ordinal(), 0, nanos);
+    }
+
+    public synchronized void setCloseReason(CloseReason reason) {
+        if (closeReason == null) {
+            closeReason = reason;
+        }
+    }
+
+    /**
+     * Returns time of a step.
+     *
+     * @param mark Step.
+     * @return Time from {@link System#nanoTime()}, or <code>0</code> if it isn't reached.
+     */
+    public long getTime(Mark mark) {
+        return marks.get(mark.ordinal());
+    }
+
+    /**
+     * Returns time from the accept to a step.
+     *
+     * @param mark Step.
+     * @return Elapsed nanoseconds, or <code>-1</code> if the step isn't reached.
+     */
+    public long elapsed(Mark mark) {
+        long time = marks.get(mark.ordinal());
+        return time == 0 ? -1 : time - marks.get(Mark.ACCEPT.ordinal());
+    }
+
+    /**
+     * Returns the time to connect, or the lifetime of a session that never connected.
+     *
+     * @return Nanoseconds, or <code>-1</code> if the session isn't connected or closed yet.
+     */
+    public long getLatency() {
+        long connect = elapsed(Mark.CONNECT);
+        return connect >= 0 ? connect : elapsed(Mark.CLOSE);
+    }
+
+    @Nullable
+    public CloseReason getCloseReason() {
+        return closeReason;
+    }
+
+    @Nullable
+    public ServerReply getReply() {
+        return reply;
+    }
+
+    @Nullable
+    public CommandMessage getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the timeline as text, times are microseconds since the accept.
+     *
+     * @return Text of the timeline.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("SessionTimeline{");
+        for (int i = 1; i < MARKS.length; i++) {
+            long elapsed = elapsed(MARKS[i]);
+            if (elapsed >= 0) {
+                builder.append(MARKS[i].label).append('=').append(TimeUnit.NANOSECONDS.toMicros
+                        (elapsed)).append("us, ");
+            }
+        }
+        return builder.append("reply=").append(reply).append(", reason=").append(closeReason)
+                .append('}').toString();
+    }
+
+    private final class FirstByteListener implements PipeListener {
+
+        private final Mark mark;
+
+        FirstByteListener(Mark mark) {
+            this.mark = mark;
+        }
+
+        @Override
+        public void onStart(Pipe pipe) {
+        }
+
+        @Override
+        public void onStop(Pipe pipe) {
+        }
+
+        @Override
+        public void onTransfer(Pipe pipe, byte[] buffer, int bufferLength) {
+            // Only the first transfer sets the mark, later ones just read it.
+            if (marks.get(mark.ordinal()) == 0) {
+                marks.compareAndSet(mark.ordinal(), 0, System.nanoTime());
+            }
+        }
+
+        @Override
+        public void onError(Pipe pipe, Exception exception) {
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.net.DatagramPacket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sockslib.server.io.Pipe;
+import sockslib.server.io.PipeListener;
+import sockslib.server.listener.DatagramListener;
+import sockslib.utils.Logger;
+import sockslib.utils.TimingWheel;
+
+/**
+ * The class <code>SessionTimeouts</code> closes sessions whose handshake takes too long, whose
+ * relay is idle for too long, or which live too long, with deadlines on a {@link TimingWheel}.
+ * <p>
+ * Unlike a socket timeout, the handshake deadline limits the whole handshake rather than each
+ * read, so a client can't hold a session by sending a byte now and then. The idle deadline is
+ * moved by every transfer of the relay, which only writes a volatile field. A UDP association is
+ * idle when no datagram is relayed and its control connection receives nothing.
+ * </p>
+ * <pre>
+ * SessionTimeouts timeouts = new SessionTimeouts();
+ * timeouts.setHandshakeTimeout(10, TimeUnit.SECONDS);
+ * timeouts.setIdleTimeout(5, TimeUnit.MINUTES);
+ * ((BasicSocksProxyServer) server).setSessionTimeouts(timeouts);
+ * </pre>
+ * <p>
+ * A server with session timeouts doesn't set socket timeouts on client sockets.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:27 AM
+ */
+public class SessionTimeouts {
+
+    private static final Logger logger = Logger.getLogger("SessionTimeouts");
+
+    /**
+     * Key of the session attribute which holds the deadlines of a session.
+     */
+    public static final String SESSION_DEADLINES_KEY = "DEADLINES";
+
+    public static final long NO_TIMEOUT = 0;
+
+    private final TimingWheel timingWheel;
+
+    private volatile long handshakeMillis = TimeUnit.SECONDS.toMillis(10);
+
+    private volatile int connectMillis = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private volatile long idleMillis = TimeUnit.MINUTES.toMillis(5);
+
+    private volatile long maxLifetimeMillis = NO_TIMEOUT;
+
+    private final AtomicLong handshakeTimeoutCount = new AtomicLong();
+
+    private final AtomicLong idleTimeoutCount = new AtomicLong();
+
+    private final AtomicLong lifetimeTimeoutCount = new AtomicLong();
+
+    public SessionTimeouts() {
+        this(new TimingWheel());
+    }
+
+    public SessionTimeouts(TimingWheel timingWheel) {
+        this.timingWheel = checkNotNull(timingWheel, "Argument [timingWheel] may not be null");
+    }
+
+    /**
+     * Starts the handshake and lifetime deadlines of a new session.
+     *
+     * @param session New session.
+     */
+    public void start(final Session session) {
+        Deadlines deadlines = new Deadlines(this);
+        session.setAttribute(SESSION_DEADLINES_KEY, deadlines);
+        if (handshakeMillis != NO_TIMEOUT) {
+            deadlines.handshake = timingWheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    handshakeTimeoutCount.incrementAndGet();
+                    SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason
+                            .HANDSHAKE_TIMEOUT);
+                    logger.info("{} handshake timed out", session);
+                    session.close();
+                }
+            }, handshakeMillis, TimeUnit.MILLISECONDS);
+        }
+        if (maxLifetimeMillis != NO_TIMEOUT) {
+            deadlines.lifetime = timingWheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    lifetimeTimeoutCount.incrementAndGet();
+                    SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason
+                            .LIFETIME_EXCEEDED);
+                    logger.info("{} reached max lifetime", session);
+                    session.close();
+                }
+            }, maxLifetimeMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels the handshake deadline of a session, it's called when the command of the session is
+     * accepted.
+     *
+     * @param session Session.
+     */
+    public static void endHandshake(Session session) {
+        Deadlines deadlines = getDeadlines(session);
+        if (deadlines != null && deadlines.handshake != null) {
+            deadlines.handshake.cancel();
+        }
+    }
+
+    /**
+     * Starts the idle deadline of a session, which is moved by every transfer of the pipe.
+     *
+     * @param session Session.
+     * @param pipe    Relay pipe of the session.
+     */
+    public static void watchIdle(final Session session, final Pipe pipe) {
+        final Deadlines deadlines = startIdle(session, new Runnable() {
+            @Override
+            public void run() {
+                pipe.close();
+            }
+        });
+        if (deadlines == null) {
+            return;
+        }
+        pipe.addPipeListener(new PipeListener() {
+            @Override
+            public void onStart(Pipe pipe) {
+            }
+
+            @Override
+            public void onStop(Pipe pipe) {
+            }
+
+            @Override
+            public void onTransfer(Pipe pipe, byte[] buffer, int bufferLength) {
+                deadlines.touch();
+            }
+
+            @Override
+            public void onError(Pipe pipe, Exception exception) {
+            }
+        });
+    }
+
+    /**
+     * Starts the idle deadline of a UDP association, which is moved by every datagram the relay
+     * server relays and by {@link #touch(Session)} for data on the control connection. It must be
+     * called before the relay server starts.
+     *
+     * @param session Session of the UDP ASSOCIATE command.
+     * @param relay   UDP relay server of the session.
+     */
+    public static void watchIdle(final Session session, final UDPRelayServer relay) {
+        final Deadlines deadlines = startIdle(session, new Runnable() {
+            @Override
+            public void run() {
+                relay.stop();
+            }
+        });
+        if (deadlines == null) {
+            return;
+        }
+        relay.addDatagramListener(session, new DatagramListener() {
+            @Override
+            public void onDatagram(Session session, DatagramPacket packet, boolean fromClient) {
+                deadlines.touch();
+            }
+        });
+    }
+
+    /**
+     * Moves the idle deadline of a session, for activity its relay doesn't see.
+     *
+     * @param session Session.
+     */
+    public static void touch(Session session) {
+        Deadlines deadlines = getDeadlines(session);
+        if (deadlines != null) {
+            deadlines.touch();
+        }
+    }
+
+    /**
+     * Schedules the idle deadline of a session.
+     *
+     * @param session Session.
+     * @param relay   Task which closes the relay of the session.
+     * @return Deadlines of the session, or <code>null</code> if there is no idle timeout.
+     */
+    private static Deadlines startIdle(final Session session, final Runnable relay) {
+        Deadlines deadlines = getDeadlines(session);
+        if (deadlines == null) {
+            return null;
+        }
+        final SessionTimeouts timeouts = deadlines.timeouts;
+        long idleMillis = timeouts.idleMillis;
+        if (idleMillis == NO_TIMEOUT) {
+            return null;
+        }
+        deadlines.idleMillis = idleMillis;
+        deadlines.idle = timeouts.timingWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                timeouts.idleTimeoutCount.incrementAndGet();
+                SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason
+                        .IDLE_TIMEOUT);
+                logger.info("{} idle timed out", session);
+                relay.run();
+                session.close();
+            }
+        }, idleMillis, TimeUnit.MILLISECONDS);
+        return deadlines;
+    }
+
+    /**
+     * Returns connect timeout for the session.
+     *
+     * @param session Session.
+     * @return Timeout in milliseconds, or <code>0</code> if there's no timeout.
+     */
+    public static int getConnectTimeout(Session session) {
+        Deadlines deadlines = getDeadlines(session);
+        return deadlines == null ? 0 : deadlines.timeouts.connectMillis;
+    }
+
+    /**
+     * Cancels all deadlines of a closed session.
+     *
+     * @param session Session.
+     */
+    public static void cancel(Session session) {
+        Deadlines deadlines = getDeadlines(session);
+        if (deadlines != null) {
+            deadlines.cancel();
+        }
+    }
+
+    public long getHandshakeTimeout(TimeUnit unit) {
+        return unit.convert(handshakeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets time from accept to the command being accepted.
+     *
+     * @param timeout Timeout, or {@link #NO_TIMEOUT}.
+     * @param unit    Unit of timeout.
+     */
+    public void setHandshakeTimeout(long timeout, TimeUnit unit) {
+        checkArgument(timeout >= 0, "Timeout may not be negative");
+        handshakeMillis = unit.toMillis(timeout);
+    }
+
+    public long getConnectTimeout(TimeUnit unit) {
+        return unit.convert(connectMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets timeout of connecting to the remote host of a CONNECT command.
+     *
+     * @param timeout Timeout, or {@link #NO_TIMEOUT}.
+     * @param unit    Unit of timeout.
+     */
+    public void setConnectTimeout(long timeout, TimeUnit unit) {
+        checkArgument(timeout >= 0 && unit.toMillis(timeout) <= Integer.MAX_VALUE, "Invalid "
+                + "timeout");
+        connectMillis = (int) unit.toMillis(timeout);
+    }
+
+    public long getIdleTimeout(TimeUnit unit) {
+        return unit.convert(idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets time a relay may transfer nothing in both directions.
+     *
+     * @param timeout Timeout, or {@link #NO_TIMEOUT}.
+     * @param unit    Unit of timeout.
+     */
+    public void setIdleTimeout(long timeout, TimeUnit unit) {
+        checkArgument(timeout >= 0, "Timeout may not be negative");
+        idleMillis = unit.toMillis(timeout);
+    }
+
+    public long getMaxLifetime(TimeUnit unit) {
+        return unit.convert(maxLifetimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets maximum time a session may live.
+     *
+     * @param maxLifetime Max lifetime, or {@link #NO_TIMEOUT}.
+     * @param unit        Unit of max lifetime.
+     */
+    public void setMaxLifetime(long maxLifetime, TimeUnit unit) {
+        checkArgument(maxLifetime >= 0, "Max lifetime may not be negative");
+        maxLifetimeMillis = unit.toMillis(maxLifetime);
+    }
+
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    public long getHandshakeTimeoutCount() {
+        return handshakeTimeoutCount.get();
+    }
+
+    public long getIdleTimeoutCount() {
+        return idleTimeoutCount.get();
+    }
+
+    public long getLifetimeTimeoutCount() {
+        return lifetimeTimeoutCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionTimeouts{handshakeTimeouts=" + handshakeTimeoutCount.get() + ", "
+                + "idleTimeouts=" + idleTimeoutCount.get() + ", lifetimeTimeouts="
+                + lifetimeTimeoutCount.get() + ", " + timingWheel + '}';
+    }
+
+    private static Deadlines getDeadlines(Session session) {
+        Object deadlines = session.getAttribute(SESSION_DEADLINES_KEY);
+        return deadlines instanceof Deadlines ? (Deadlines) deadlines : null;
+    }
+
+    private static final class Deadlines {
+
+        final SessionTimeouts timeouts;
+
+        volatile TimingWheel.Timeout handshake;
+
+        volatile TimingWheel.Timeout idle;
+
+        volatile TimingWheel.Timeout lifetime;
+
+        volatile long idleMillis;
+
+        Deadlines(SessionTimeouts timeouts) {
+            this.timeouts = timeouts;
+        }
+
+        void touch() {
+            TimingWheel.Timeout timeout = idle;
+            if (timeout != null) {
+                timeout.reset(idleMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void cancel() {
+            for (TimingWheel.Timeout timeout : new TimingWheel.Timeout[]{handshake, idle,
+                    lifetime}) {
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sockslib.server.listener.SessionCloseListener;
+
+/**
+ * The class <code>SessionTracer</code> emits the {@link SessionTimeline} of a closed session if
+ * the session is sampled, or if it's slower than a threshold.
+ * <pre>
+ * SessionTracer tracer = new SessionTracer();
+ * tracer.setSampleRate(0.01);
+ * tracer.setThreshold(2, TimeUnit.SECONDS);
+ * server.getSessionManager().onSessionClose("tracer", tracer);
+ * </pre>
+ * <p>
+ * The latency of a session is its time to connect, or its lifetime if it never connected. Traces
+ * are logged by default, a {@link Sink} can send them elsewhere.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:39 AM
+ */
+public class SessionTracer implements SessionCloseListener {
+
+    private static final String TAG = "SessionTracer";
+
+    public static final long NO_THRESHOLD = Long.MAX_VALUE;
+
+    /**
+     * The interface <code>Sink</code> receives traces.
+     */
+    public interface Sink {
+
+        /**
+         * Receives the timeline of a closed session, it's called by the handler thread of the
+         * session.
+         *
+         * @param session  Closed session.
+         * @param timeline Timeline of the session.
+         * @param slow     <code>true</code> if the session is over the threshold.
+         */
+        void onTrace(Session session, SessionTimeline timeline, boolean slow);
+    }
+
+    /**
+     * Random numbers of each thread, ThreadLocalRandom needs API 21.
+     */
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private final Sink sink;
+
+    private volatile double sampleRate;
+
+    private volatile long thresholdNanos = NO_THRESHOLD;
+
+    private final AtomicLong sampledCount = new AtomicLong();
+
+    private final AtomicLong slowCount = new AtomicLong();
+
+    /**
+     * Creates a tracer which logs traces.
+     */
+    public SessionTracer() {
+        this(new Sink() {
+            @Override
+            public void onTrace(Session session, SessionTimeline timeline, boolean slow) {
+                Log.i(TAG, (slow ? "Slow " : "Sampled ") + session + " " + timeline);
+            }
+        });
+    }
+
+    public SessionTracer(Sink sink) {
+        this.sink = checkNotNull(sink, "Argument [sink] may not be null");
+    }
+
+    @Override
+    public void onClose(Session session) {
+        SessionTimeline timeline = SessionTimeline.get(session);
+        if (timeline == null) {
+            return;
+        }
+        long latency = timeline.getLatency();
+        boolean slow = latency >= thresholdNanos;
+        double rate = sampleRate;
+        if (slow) {
+            slowCount.incrementAndGet();
+        } else if (rate > 0 && RANDOM.get().nextDouble() < rate) {
+            sampledCount.incrementAndGet();
+        } else {
+            return;
+        }
+        sink.onTrace(session, timeline, slow);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets fraction of sessions to trace.
+     *
+     * @param sampleRate Fraction from 0 to 1.
+     */
+    public void setSampleRate(double sampleRate) {
+        checkArgument(sampleRate >= 0 && sampleRate <= 1, "Sample rate must be between 0 and 1");
+        this.sampleRate = sampleRate;
+    }
+
+    public long getThreshold(TimeUnit unit) {
+        return thresholdNanos == NO_THRESHOLD ? NO_THRESHOLD : unit.convert(thresholdNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets latency over which a session is always traced.
+     *
+     * @param threshold Threshold, or {@link #NO_THRESHOLD}.
+     * @param unit      Unit of threshold.
+     */
+    public void setThreshold(long threshold, TimeUnit unit) {
+        checkArgument(threshold > 0, "Threshold must be positive");
+        this.thresholdNanos = threshold == NO_THRESHOLD ? NO_THRESHOLD : unit.toNanos(threshold);
+    }
+
+    public long getSampledCount() {
+        return sampledCount.get();
+    }
+
+    public long getSlowCount() {
+        return slowCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionTracer{sampled=" + sampledCount.get() + ", slow=" + slowCount.get() + '}';
+    }
+}
@@ -14,13 +14,14 @@
 
 package sockslib.server;
 
-import android.util.Log;
+import androidx.annotation.Nullable;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 import sockslib.client.SocksProxy;
 import sockslib.client.SocksSocket;
@@ -29,11 +30,16 @@ import sockslib.common.SocksException;
 import sockslib.common.methods.SocksMethod;
 import sockslib.server.io.Pipe;
 import sockslib.server.io.SocketPipe;
+import sockslib.server.jfr.SocksEvents;
+import sockslib.server.listener.CloseSessionException;
+import sockslib.server.listener.DatagramFilter;
+import sockslib.server.listener.DatagramListener;
 import sockslib.server.msg.CommandMessage;
 import sockslib.server.msg.CommandResponseMessage;
 import sockslib.server.msg.MethodSelectionMessage;
 import sockslib.server.msg.MethodSelectionResponseMessage;
 import sockslib.server.msg.ServerReply;
+import sockslib.utils.Logger;
 
 /**
  * The class <code>Socks5Handler</code> represents a handler that can handle SOCKS5 protocol.
@@ -44,7 +50,7 @@ import sockslib.server.msg.ServerReply;
  */
 public class Socks5Handler implements SocksHandler {
 
-    private static final String TAG = "Socks5Handler";
+    private static final Logger logger = Logger.getLogger("Socks5Handler");
 
     /**
      * Protocol version.
@@ -71,29 +77,57 @@ public class Socks5Handler implements SocksHandler {
 
     private SessionManager sessionManager;
 
+    /**
+     * Metrics of the server, or <code>null</code> if the server isn't a
+     * {@link BasicSocksProxyServer}.
+     */
+    private ServerMetrics metrics;
+
+    /**
+     * State of the session in {@link #metrics}.
+     */
+    private ServerMetrics.State state;
+
     @Override
     public void handle(Session session) throws Exception {
-        sessionManager = getSocksProxyServer().getSessionManager();
+        SocksProxyServer server = getSocksProxyServer();
+        sessionManager = server.getSessionManager();
+        if (server instanceof BasicSocksProxyServer) {
+            metrics = ((BasicSocksProxyServer) server).getMetrics();
+        }
+        transition(ServerMetrics.State.HANDSHAKE);
         sessionManager.sessionOnCreate(session);
 
+        long phaseStart = System.nanoTime();
         MethodSelectionMessage msg = new MethodSelectionMessage();
         session.read(msg);
+        phaseStart = record(ServerMetrics.Phase.GREETING, phaseStart);
+        SessionTimeline.mark(session, SessionTimeline.Mark.GREETING, phaseStart);
 
         if (msg.getVersion() != VERSION) {
             throw new ProtocolErrorException();
         }
         SocksMethod selectedMethod = methodSelector.select(msg);
 
-        Log.d(TAG, String.format("SESSION[%d] Response client:%s", session.getId(),
-                selectedMethod.getMethodName()));
+        if (logger.isDebugEnabled()) {
+            logger.debug("SESSION[{}] Response client:{}", session.getId(), selectedMethod
+                    .getMethodName());
+        }
         // send select method.
         session.write(new MethodSelectionResponseMessage(VERSION, selectedMethod));
+        phaseStart = record(ServerMetrics.Phase.METHOD, phaseStart);
 
         // do method.
         selectedMethod.doMethod(session);
+        phaseStart = record(ServerMetrics.Phase.AUTHENTICATION, phaseStart);
+        SessionTimeline.mark(session, SessionTimeline.Mark.AUTH, phaseStart);
+        SocksEvents.authenticated(session, selectedMethod.getMethodName());
 
         CommandMessage commandMessage = new CommandMessage();
         session.read(commandMessage); // Read command request.
+        SessionTimeline.setCommand(session, commandMessage);
+        SessionTimeline.mark(session, SessionTimeline.Mark.COMMAND, record(ServerMetrics
+                .Phase.COMMAND, phaseStart));
 
         //    logger.info("SESSION[{}] request:{}  {}:{}", session.getId(), commandMessage
         //    .getCommand(),
@@ -106,12 +140,47 @@ public class Socks5Handler implements SocksHandler {
         if (commandMessage.hasSocksException()) {
             ServerReply serverReply = commandMessage.getSocksException().getServerReply();
             session.write(new CommandResponseMessage(serverReply));
-            Log.i(TAG, String.format("SESSION[%d] will close, because %s", session.getId(), serverReply));
+            onReply(session, serverReply);
+            logger.info("SESSION[{}] will close, because {}", session.getId(), serverReply);
+            return;
+        }
+
+        SocksEvents.command(session, commandMessage);
+        try {
+            sessionManager.sessionOnCommand(session, commandMessage);
+        } catch (CloseSessionException e) {
+            // A command listener rejects the request, e.g. it's denied by an access control list.
+            session.write(new CommandResponseMessage(ServerReply.CONNECTION_NOT_ALLOWED_BY_RULESET));
+            onReply(session, ServerReply.CONNECTION_NOT_ALLOWED_BY_RULESET);
+            logger.info("SESSION[{}] will close, because {}", session.getId(), e.getMessage());
+            return;
+        }
+
+        // Domain name is resolved after command listeners have checked the request.
+        boolean resolved = commandMessage.isResolved();
+        if (!resolved) {
+            long lookupStart = System.nanoTime();
+            resolved = commandMessage.resolve();
+            long lookupEnd = System.nanoTime();
+            if (metrics != null) {
+                metrics.onDnsLookup(resolved, lookupEnd - lookupStart);
+            }
+            SocksEvents.dnsLookup(session, commandMessage.getHost(), resolved, lookupEnd
+                    - lookupStart);
+            SessionTimeline.mark(session, SessionTimeline.Mark.RESOLVE, lookupEnd);
+        }
+        if (!resolved) {
+            ServerReply serverReply = commandMessage.getSocksException().getServerReply();
+            session.write(new CommandResponseMessage(serverReply));
+            onReply(session, serverReply);
+            logger.info("SESSION[{}] will close, because {}", session.getId(), serverReply);
             return;
         }
 
+        SessionTimeouts.endHandshake(session);
+        HandshakeAdmission.finish(session);
+
         // DO COMMAND
-        sessionManager.sessionOnCommand(session, commandMessage);
         switch (commandMessage.getCommand()) {
             case BIND:
                 doBind(session, commandMessage);
@@ -139,11 +208,15 @@ public class Socks5Handler implements SocksHandler {
         // set default bind address.
         byte[] defaultAddress = {0, 0, 0, 0};
         bindAddress = InetAddress.getByAddress(defaultAddress);
+        transition(ServerMetrics.State.CONNECT);
+        long phaseStart = System.nanoTime();
         // DO connect
         try {
             // Connect directly.
             if (proxy == null) {
-                socket = new Socket(remoteServerAddress, remoteServerPort);
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(remoteServerAddress, remoteServerPort),
+                        SessionTimeouts.getConnectTimeout(session));
             } else {
                 socket = new SocksSocket(proxy, remoteServerAddress, remoteServerPort);
             }
@@ -163,20 +236,28 @@ public class Socks5Handler implements SocksHandler {
                     reply = ServerReply.NETWORK_UNREACHABLE;
                     break;
                 case "Connection timed out":
+                case "connect timed out":
                     reply = ServerReply.TTL_EXPIRED;
                     break;
                 default:
                     reply = ServerReply.GENERAL_SOCKS_SERVER_FAILURE;
                     break;
             }
-            Log.i(TAG, String.format("SESSION[%d] connect %s [%s] exception:%s",
-                    session.getId(), new InetSocketAddress(remoteServerAddress, remoteServerPort),
-                    reply, e.getMessage()));
+            if (logger.isInfoEnabled()) {
+                logger.info("SESSION[{}] connect {} [{}] exception:{}", session.getId(), new
+                        InetSocketAddress(remoteServerAddress, remoteServerPort), reply, e
+                        .getMessage());
+            }
         }
 
+        phaseStart = record(ServerMetrics.Phase.CONNECT, phaseStart);
+        SessionTimeline.mark(session, SessionTimeline.Mark.CONNECT, phaseStart);
+
         CommandResponseMessage responseMessage =
                 new CommandResponseMessage(VERSION, reply, bindAddress, bindPort);
         session.write(responseMessage);
+        record(ServerMetrics.Phase.REPLY, phaseStart);
+        onReply(session, reply);
         if (reply != ServerReply.SUCCEEDED) { // 如果返回失败信息，则退出该方法。
             session.close();
             return;
@@ -184,23 +265,17 @@ public class Socks5Handler implements SocksHandler {
 
         Pipe pipe = new SocketPipe(session.getSocket(), socket);
         pipe.setName("SESSION[" + session.getId() + "]");
+        pipe.setAttribute(SocketPipe.ATTR_SESSION, session);
         pipe.setBufferSize(bufferSize);
         if (getSocksProxyServer().getPipeInitializer() != null) {
             pipe = getSocksProxyServer().getPipeInitializer().initialize(pipe);
         }
+        SessionTimeouts.watchIdle(session, pipe);
+        SessionTimeline.watchFirstBytes(session, pipe);
+        transition(ServerMetrics.State.RELAY);
         pipe.start(); // This method will build tow thread to run tow internal pipes.
 
-        // wait for pipe exit.
-        while (pipe.isRunning()) {
-            try {
-                Thread.sleep(idleTime);
-            } catch (InterruptedException e) {
-                pipe.stop();
-                session.close();
-                Log.i(TAG, "SESSION[" + session.getId() + "] closed");
-            }
-        }
-
+        waitForPipe(session, pipe);
     }
 
     @Override
@@ -210,29 +285,31 @@ public class Socks5Handler implements SocksHandler {
         ServerSocket serverSocket = new ServerSocket(commandMessage.getPort());
         int bindPort = serverSocket.getLocalPort();
         Socket socket;
-        Log.i(TAG, String.format("Create TCP server bind at %s for session[%d]", serverSocket
-                .getLocalSocketAddress(), session.getId()));
+        logger.info("Create TCP server bind at {} for session[{}]", serverSocket
+                .getLocalSocketAddress(), session.getId());
         session.write(new CommandResponseMessage(VERSION, ServerReply.SUCCEEDED, serverSocket
                 .getInetAddress(), bindPort));
+        onReply(session, ServerReply.SUCCEEDED);
+        transition(ServerMetrics.State.CONNECT);
 
         socket = serverSocket.accept();
+        SessionTimeline.mark(session, SessionTimeline.Mark.CONNECT);
         session.write(new CommandResponseMessage(VERSION, ServerReply.SUCCEEDED, socket
                 .getLocalAddress(), socket.getLocalPort()));
 
         Pipe pipe = new SocketPipe(session.getSocket(), socket);
+        pipe.setName("SESSION[" + session.getId() + "]");
+        pipe.setAttribute(SocketPipe.ATTR_SESSION, session);
         pipe.setBufferSize(bufferSize);
+        if (getSocksProxyServer().getPipeInitializer() != null) {
+            pipe = getSocksProxyServer().getPipeInitializer().initialize(pipe);
+        }
+        SessionTimeouts.watchIdle(session, pipe);
+        SessionTimeline.watchFirstBytes(session, pipe);
+        transition(ServerMetrics.State.RELAY);
         pipe.start();
 
-        // wait for pipe exit.
-        while (pipe.isRunning()) {
-            try {
-                Thread.sleep(idleTime);
-            } catch (InterruptedException e) {
-                pipe.stop();
-                session.close();
-                Log.i(TAG, "Session[" + session.getId() + "] closed");
-            }
-        }
+        waitForPipe(session, pipe);
         serverSocket.close();
         // throw new NotImplementException("Not implement BIND command");
     }
@@ -243,25 +320,103 @@ public class Socks5Handler implements SocksHandler {
         UDPRelayServer udpRelayServer =
                 new UDPRelayServer(((InetSocketAddress) session.getClientAddress()).getAddress(),
                         commandMessage.getPort());
+        if (getSocksProxyServer() instanceof BasicSocksProxyServer) {
+            BasicSocksProxyServer server = (BasicSocksProxyServer) getSocksProxyServer();
+            udpRelayServer.setNetworkMonitor(server.getNetworkMonitor());
+            if (server.getDatagramListener() != null) {
+                udpRelayServer.addDatagramListener(session, server.getDatagramListener());
+            }
+        }
+        Object listener = session.getAttribute(DatagramListener.SESSION_LISTENER_KEY);
+        if (listener instanceof DatagramListener) {
+            udpRelayServer.addDatagramListener(session, (DatagramListener) listener);
+        }
+        Object filter = session.getAttribute(DatagramFilter.SESSION_FILTER_KEY);
+        if (filter instanceof DatagramFilter) {
+            udpRelayServer.setDatagramFilter(session, (DatagramFilter) filter);
+        }
+        SessionTimeouts.watchIdle(session, udpRelayServer);
         InetSocketAddress socketAddress = (InetSocketAddress) udpRelayServer.start();
-        Log.i(TAG, String.format("Create UDP relay server at[%s] for %s", socketAddress, commandMessage
-                .getSocketAddress()));
+        long associateStart = System.nanoTime();
+        SessionTimeline.mark(session, SessionTimeline.Mark.CONNECT, associateStart);
+        SocksEvents.udpAssociate(session, socketAddress.getPort());
+        logger.info("Create UDP relay server at[{}] for {}", socketAddress, commandMessage
+                .getSocketAddress());
         session.write(new CommandResponseMessage(VERSION, ServerReply.SUCCEEDED, InetAddress
                 .getLocalHost(), socketAddress.getPort()));
-        while (udpRelayServer.isRunning()) {
-            try {
-                Thread.sleep(idleTime);
-            } catch (InterruptedException e) {
-                session.close();
-                Log.i(TAG, "Session[" + session.getId() + "] closed");
-            }
-            if (session.isClose()) {
-                udpRelayServer.stop();
-                Log.d(TAG, "UDP relay server for session[" + session.getId() + "] is closed");
+        onReply(session, ServerReply.SUCCEEDED);
+        if (metrics != null) {
+            metrics.onUdpAssociate();
+        }
+        transition(ServerMetrics.State.UDP);
+        // The association ends when the TCP connection of the session closes, block on it
+        // instead of polling.
+        try {
+            while (udpRelayServer.isRunning()) {
+                try {
+                    if (session.getInputStream().read() < 0) {
+                        break;
+                    }
+                    SessionTimeouts.touch(session);
+                } catch (SocketTimeoutException e) {
+                    // Socket timeout of the server, keep waiting.
+                }
             }
+        } catch (IOException e) {
+            logger.debug("Session[{}] {}", session.getId(), e.getMessage());
+        } finally {
+            udpRelayServer.stop();
+            SocksEvents.udpAssociationEnd(session, System.nanoTime() - associateStart);
+            logger.debug("UDP relay server for session[{}] is closed", session.getId());
+        }
+    }
+
+    /**
+     * Records the time of a phase in {@link #metrics}, if there are metrics.
+     *
+     * @return End time of the phase.
+     */
+    private long record(ServerMetrics.Phase phase, long startNanos) {
+        return metrics == null ? System.nanoTime() : metrics.record(phase, startNanos);
+    }
 
+    /**
+     * Moves the session to a state in {@link #metrics}, if there are metrics.
+     */
+    private void transition(@Nullable ServerMetrics.State to) {
+        state = metrics == null ? to : metrics.transition(state, to);
+    }
+
+    /**
+     * Counts a reply to the command of the session, a failure reply closes the session.
+     */
+    private void onReply(Session session, ServerReply reply) {
+        if (metrics != null) {
+            metrics.onReply(reply);
         }
+        SessionTimeline.setReply(session, reply);
+        if (reply != ServerReply.SUCCEEDED) {
+            SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason.REJECTED);
+        }
+    }
 
+    /**
+     * Waits until the relay of the session finishes.
+     */
+    private void waitForPipe(Session session, Pipe pipe) {
+        try {
+            if (pipe instanceof SocketPipe) {
+                ((SocketPipe) pipe).awaitStop();
+            } else {
+                while (pipe.isRunning()) {
+                    Thread.sleep(idleTime);
+                }
+            }
+        } catch (InterruptedException e) {
+            pipe.stop();
+            session.close();
+            logger.info("SESSION[{}] closed", session.getId());
+        }
     }
 
     @Override
@@ -275,10 +430,24 @@ public class Socks5Handler implements SocksHandler {
         try {
             handle(session);
         } catch (Exception e) {
+            if (state == ServerMetrics.State.HANDSHAKE) {
+                if (metrics != null) {
+                    metrics.onHandshakeError();
+                }
+                SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason
+                        .HANDSHAKE_ERROR);
+            } else {
+                SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason.ERROR);
+            }
             sessionManager.sessionOnException(session, e);
             //      logger.error("SESSION[{}]: {}", session.getId(), e.getMessage());
         } finally {
+            SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason.COMPLETED);
             session.close();
+            SocksEvents.closed(session);
+            SessionTimeouts.cancel(session);
+            HandshakeAdmission.finish(session);
+            transition(null);
             sessionManager.sessionOnClose(session);
             //      logger.info("SESSION[{}] closed, {}", session.getId(), session.getNetworkMonitor().toString
             //          ());
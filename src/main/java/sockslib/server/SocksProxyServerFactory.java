@@ -14,6 +14,8 @@
 
 package sockslib.server;
 
+import java.util.concurrent.TimeUnit;
+
 import sockslib.common.methods.NoAuthenticationRequiredMethod;
 import sockslib.common.methods.UsernamePasswordMethod;
 import sockslib.server.manager.User;
@@ -39,6 +41,16 @@ public class SocksProxyServerFactory {
 
     private static final int DEFAULT_PORT = 1080;
 
+    /**
+     * Default time limit of a handshake.
+     */
+    private static final int HANDSHAKE_TIMEOUT = 10000;
+
+    /**
+     * Default time a session should wait for a handler thread.
+     */
+    private static final int QUEUE_WAIT_SLO = 1000;
+
     /**
      * Creates a no authentication SOCKS5 server. The server will listen at port 1080.
      *
@@ -55,9 +67,11 @@ public class SocksProxyServerFactory {
      * @return The instance of {@link SocksProxyServer} that supports SOCKS5 protocol.
      */
     public static SocksProxyServer newNoAuthenticationServer(int port) {
-        SocksProxyServer proxyServer = new BasicSocksProxyServer(Socks5Handler.class, port);
+        BasicSocksProxyServer proxyServer = new BasicSocksProxyServer(Socks5Handler.class, port,
+                newExecutor());
         proxyServer.setBufferSize(BUFFER_SIZE);
         proxyServer.setTimeout(TIMEOUT);
+        protectHandshakes(proxyServer);
         proxyServer.setSupportMethods(new NoAuthenticationRequiredMethod());
         return proxyServer;
     }
@@ -74,9 +88,11 @@ public class SocksProxyServerFactory {
 
     public static SocksProxyServer newUsernamePasswordAuthenticationServer(int port,
             User... users) {
-        SocksProxyServer proxyServer = new BasicSocksProxyServer(Socks5Handler.class, port);
+        BasicSocksProxyServer proxyServer = new BasicSocksProxyServer(Socks5Handler.class, port,
+                newExecutor());
         proxyServer.setBufferSize(BUFFER_SIZE);
         proxyServer.setTimeout(TIMEOUT);
+        protectHandshakes(proxyServer);
         UsernamePasswordAuthenticator authenticator = new UsernamePasswordAuthenticator();
         for (User user : users) {
             authenticator.addUser(user.getUsername(), user.getPassword());
@@ -85,4 +101,27 @@ public class SocksProxyServerFactory {
         return proxyServer;
     }
 
+    /**
+     * Creates a thread pool which reports its queue waits, and warns when they exceed the SLO.
+     */
+    private static InstrumentedThreadPoolExecutor newExecutor() {
+        InstrumentedThreadPoolExecutor executor = InstrumentedThreadPoolExecutor
+                .newFixedThreadPool(BasicSocksProxyServer.THREAD_NUMBER);
+        executor.setQueueWaitSlo(QUEUE_WAIT_SLO, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    /**
+     * Limits handshakes, so that slow clients can't hold handler threads for the whole timeout.
+     */
+    private static void protectHandshakes(BasicSocksProxyServer proxyServer) {
+        SessionTimeouts timeouts = new SessionTimeouts();
+        timeouts.setHandshakeTimeout(HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+        timeouts.setConnectTimeout(HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+        timeouts.setIdleTimeout(TIMEOUT, TimeUnit.MILLISECONDS);
+        proxyServer.setSessionTimeouts(timeouts);
+        proxyServer.setHandshakeAdmission(HandshakeAdmission.newBuilder().setTimingWheel(timeouts
+                .getTimingWheel()).setMaxHandshakes(BasicSocksProxyServer.THREAD_NUMBER * 2)
+                .build());
+    }
 }
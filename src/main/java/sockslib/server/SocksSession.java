@@ -19,8 +19,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketAddress;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import sockslib.common.Credentials;
 import sockslib.common.SocksException;
@@ -82,7 +82,7 @@ public class SocksSession implements Session {
         }
         clientAddress = socket.getRemoteSocketAddress();
 
-        attributes = new HashMap<>();
+        attributes = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -107,7 +107,12 @@ public class SocksSession implements Session {
 
     @Override
     public int read(ReadableMessage message) throws SocksException, IOException {
-        message.read(inputStream);
+        HandshakeAdmission.awaitMessage(this);
+        try {
+            message.read(inputStream);
+        } finally {
+            HandshakeAdmission.messageRead(this);
+        }
         return message.getLength();
     }
 
@@ -131,6 +136,8 @@ public class SocksSession implements Session {
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
+            SessionTimeline.mark(this, SessionTimeline.Mark.CLOSE);
+            ConnectionLimiter.release(this);
             sessions.remove(id);
         }
     }
@@ -163,6 +170,10 @@ public class SocksSession implements Session {
 
     @Override
     public void setAttribute(Object key, Object value) {
+        if (value == null) {
+            attributes.remove(key);
+            return;
+        }
         attributes.put(key, value);
     }
 
@@ -14,8 +14,6 @@
 
 package sockslib.server;
 
-import android.util.Log;
-
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -23,10 +21,17 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
+import sockslib.common.AddressType;
 import sockslib.common.Socks5DatagramPacketHandler;
 import sockslib.common.net.MonitorDatagramSocketWrapper;
 import sockslib.common.net.NetworkMonitor;
+import sockslib.server.listener.DatagramFilter;
+import sockslib.server.listener.DatagramListener;
+import sockslib.utils.Logger;
 
 /**
  * The class <code>UDPRelayServer</code> represents a UDP relay server.
@@ -43,7 +48,7 @@ import sockslib.common.net.NetworkMonitor;
  */
 public class UDPRelayServer implements Runnable {
 
-    private static final String TAG = "UDPRelayServer";
+    private static final Logger logger = Logger.getLogger("UDPRelayServer");
 
     /**
      * SOCKS5 datagram packet handle.
@@ -82,6 +87,12 @@ public class UDPRelayServer implements Runnable {
 
     private NetworkMonitor networkMonitor;
 
+    private Session session;
+
+    private final List<DatagramListener> datagramListeners = new ArrayList<>();
+
+    private DatagramFilter datagramFilter;
+
     /**
      * Constructs a {@link UDPRelayServer} instance.
      */
@@ -147,9 +158,37 @@ public class UDPRelayServer implements Runnable {
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 server.receive(packet);
                 if (isFromClient(packet)) {
+                    // Domain names are checked before decapsulating, which resolves them.
+                    String host = datagramFilter == null ? null : getHost(packet);
+                    if (host != null && !datagramFilter.accept(session, host, null, getPort
+                            (packet), true)) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Drop datagram to {}:{}", host, getPort(packet));
+                        }
+                        continue;
+                    }
                     datagramPacketHandler.decapsulate(packet);
+                    if (host == null && datagramFilter != null && !datagramFilter.accept(session,
+                            null, packet.getAddress(), packet.getPort(), true)) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Drop datagram to {}:{}", packet.getAddress(), packet
+                                    .getPort());
+                        }
+                        continue;
+                    }
+                    for (DatagramListener datagramListener : datagramListeners) {
+                        datagramListener.onDatagram(session, packet, true);
+                    }
                     server.send(packet);
                 } else {
+                    if (datagramFilter != null && !datagramFilter.accept(session, null, packet
+                            .getAddress(), packet.getPort(), false)) {
+                        logger.debug("Drop datagram from {}", packet.getSocketAddress());
+                        continue;
+                    }
+                    for (DatagramListener datagramListener : datagramListeners) {
+                        datagramListener.onDatagram(session, packet, false);
+                    }
                     packet =
                             datagramPacketHandler.encapsulate(packet,
                                     new InetSocketAddress(clientAddress,
@@ -159,13 +198,46 @@ public class UDPRelayServer implements Runnable {
             }
         } catch (IOException e) {
             if (e.getMessage().equalsIgnoreCase("Socket closed") && !running) {
-                Log.d(TAG, "UDP relay server stopped");
+                logger.debug("UDP relay server stopped");
             } else {
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * Returns the domain name of destination of a datagram from client, before it's
+     * decapsulated.
+     *
+     * @param packet Datagram packet with SOCKS header.
+     * @return Domain name, or <code>null</code> if the destination is an IP address.
+     */
+    private static String getHost(DatagramPacket packet) {
+        byte[] data = packet.getData();
+        int offset = packet.getOffset();
+        if (packet.getLength() < 5 || data[offset + 3] != AddressType.DOMAIN_NAME) {
+            return null;
+        }
+        int length = data[offset + 4] & 0xFF;
+        if (packet.getLength() < 7 + length) {
+            return null;
+        }
+        return new String(data, offset + 5, length, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Returns the destination port of a datagram from client whose destination is a domain name,
+     * before it's decapsulated.
+     *
+     * @param packet Datagram packet with SOCKS header.
+     * @return Port.
+     */
+    private static int getPort(DatagramPacket packet) {
+        byte[] data = packet.getData();
+        int index = packet.getOffset() + 5 + (data[packet.getOffset() + 4] & 0xFF);
+        return (data[index] & 0xFF) << 8 | data[index + 1] & 0xFF;
+    }
+
     /**
      * Returns <code>true</code> if the the datagram packet from client.
      *
@@ -289,6 +361,36 @@ public class UDPRelayServer implements Runnable {
         this.networkMonitor = networkMonitor;
     }
 
+    public List<DatagramListener> getDatagramListeners() {
+        return datagramListeners;
+    }
+
+    /**
+     * Adds a listener of relayed datagrams, it must be added before the server starts.
+     *
+     * @param session          Session which associated this server.
+     * @param datagramListener {@link DatagramListener}.
+     */
+    public void addDatagramListener(Session session, DatagramListener datagramListener) {
+        this.session = session;
+        datagramListeners.add(datagramListener);
+    }
+
+    public DatagramFilter getDatagramFilter() {
+        return datagramFilter;
+    }
+
+    /**
+     * Sets filter of relayed datagrams, it must be set before the server starts.
+     *
+     * @param session        Session which associated this server.
+     * @param datagramFilter {@link DatagramFilter}, or <code>null</code> to relay all datagrams.
+     */
+    public void setDatagramFilter(Session session, DatagramFilter datagramFilter) {
+        this.session = session;
+        this.datagramFilter = datagramFilter;
+    }
+
     public Thread getServerThread() {
         return thread;
     }
@@ -14,10 +14,15 @@
 
 package sockslib.server;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
 import sockslib.common.AuthenticationException;
 import sockslib.common.Credentials;
 import sockslib.common.UsernamePasswordCredentials;
 import sockslib.common.methods.UsernamePasswordMethod;
+import sockslib.server.auth.AuthenticationThrottle;
 import sockslib.server.manager.MemoryBasedUserManager;
 import sockslib.server.manager.User;
 import sockslib.server.manager.UserManager;
@@ -38,6 +43,11 @@ public class UsernamePasswordAuthenticator implements Authenticator {
      */
     private UserManager userManager = new MemoryBasedUserManager();
 
+    /**
+     * Throttle of failed authentications, <code>null</code> means no throttling.
+     */
+    private AuthenticationThrottle throttle;
+
     public UsernamePasswordAuthenticator() {
     }
 
@@ -51,10 +61,26 @@ public class UsernamePasswordAuthenticator implements Authenticator {
         if (credentials instanceof UsernamePasswordCredentials) {
             String username = credentials.getUserPrincipal().getName();
             String password = credentials.getPassword();
+            AuthenticationThrottle throttle = this.throttle;
+            if (throttle == null) {
+                User user = userManager.check(username, password);
+                if (user == null) {
+                    authenticationFailed(session);
+                }
+                authenticationSuccess(session, user);
+                return;
+            }
+            InetAddress address = getClientInetAddress(session);
+            if (!throttle.isAllowed(address, username)) {
+                throw new AuthenticationException("Too many failed authentications, client from "
+                        + session.getClientAddress());
+            }
             User user = userManager.check(username, password);
             if (user == null) {
+                throttle.onFailure(address, username);
                 authenticationFailed(session);
             }
+            throttle.onSuccess(username);
             authenticationSuccess(session, user);
 
         } else {
@@ -83,6 +109,12 @@ public class UsernamePasswordAuthenticator implements Authenticator {
                 "Authentication failed, client from " + session.getClientAddress());
     }
 
+    private static InetAddress getClientInetAddress(Session session) {
+        SocketAddress address = session.getClientAddress();
+        return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getAddress() :
+                null;
+    }
+
     public UserManager getUserManager() {
         return userManager;
     }
@@ -99,4 +131,18 @@ public class UsernamePasswordAuthenticator implements Authenticator {
         userManager.delete(username);
     }
 
+    public AuthenticationThrottle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Sets throttle of failed authentications, locked out clients and usernames are rejected
+     * before their credentials are checked.
+     *
+     * @param throttle Throttle, or <code>null</code> to disable throttling.
+     */
+    public void setThrottle(AuthenticationThrottle throttle) {
+        this.throttle = throttle;
+    }
+
 }
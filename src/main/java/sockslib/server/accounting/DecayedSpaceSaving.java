@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class <code>DecayedSpaceSaving</code> estimates the heaviest keys of a stream with a fixed
+ * number of counters, by the Space-Saving algorithm: a key without a counter takes over the smallest
+ * counter, and inherits its count as error. Any key heavier than <code>total / capacity</code> has
+ * a counter, and a count overestimates the real weight by at most its error.
+ * <p>
+ * Weights decay exponentially with a half-life. They are scaled up by the time of their updates
+ * instead of decaying old counts, which keeps the order of counters; counts are scaled down only
+ * before the scale overflows. Counters are kept in a min-heap, so an update takes
+ * <code>O(log capacity)</code>. It's not thread-safe.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:57 AM
+ */
+final class DecayedSpaceSaving {
+
+    /**
+     * Counts are renormalized when the scale of new weights would exceed 2 to this power.
+     */
+    private static final double MAX_EXPONENT = 64;
+
+    private final Counter[] heap;
+
+    private final Map<String, Counter> counters;
+
+    /**
+     * Half-life in nanoseconds, or 0 if weights don't decay.
+     */
+    private final double halfLife;
+
+    private int size;
+
+    private long landmark;
+
+    private double total;
+
+    /**
+     * Creates a sketch.
+     *
+     * @param capacity Number of counters.
+     * @param halfLife Half-life in nanoseconds, or 0 if weights don't decay.
+     * @param now      Time from {@link System#nanoTime()}.
+     */
+    DecayedSpaceSaving(int capacity, long halfLife, long now) {
+        heap = new Counter[capacity];
+        counters = new HashMap<>(capacity * 2);
+        this.halfLife = halfLife;
+        landmark = now;
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param key    Key.
+     * @param weight Weight.
+     * @param now    Time from {@link System#nanoTime()}.
+     */
+    void add(String key, long weight, long now) {
+        double scaled = weight * scale(now);
+        total += scaled;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += scaled;
+        } else if (size < heap.length) {
+            counter = new Counter(key, size);
+            counter.count = scaled;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.index);
+            return;
+        } else {
+            counter = heap[0];
+            counters.remove(counter.key);
+            counter.key = key;
+            counter.error = counter.count;
+            counter.count += scaled;
+            counters.put(key, counter);
+        }
+        siftDown(counter.index);
+    }
+
+    /**
+     * Adds decayed counters to a list.
+     *
+     * @param now    Time from {@link System#nanoTime()}.
+     * @param result List to add to.
+     */
+    void snapshot(long now, List<HeavyHitter> result) {
+        double decay = 1 / scale(now);
+        for (int i = 0; i < size; i++) {
+            Counter counter = heap[i];
+            result.add(new HeavyHitter(counter.key, Math.round(counter.count * decay), Math.round
+                    (counter.error * decay)));
+        }
+    }
+
+    /**
+     * Returns the decayed weight of all keys.
+     *
+     * @param now Time from {@link System#nanoTime()}.
+     * @return Total weight.
+     */
+    double getTotal(long now) {
+        return total / scale(now);
+    }
+
+    private double scale(long now) {
+        if (halfLife == 0) {
+            return 1;
+        }
+        double exponent = (now - landmark) / halfLife;
+        if (exponent > MAX_EXPONENT) {
+            double decay = Math.pow(2, -exponent);
+            for (int i = 0; i < size; i++) {
+                heap[i].count *= decay;
+                heap[i].error *= decay;
+            }
+            total *= decay;
+            landmark = now;
+            return 1;
+        }
+        return Math.pow(2, exponent);
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            move(heap[parent], index);
+            index = parent;
+        }
+        move(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            move(heap[child], index);
+            index = child;
+        }
+        move(counter, index);
+    }
+
+    private void move(Counter counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final class Counter {
+
+        String key;
+
+        double count;
+
+        double error;
+
+        int index;
+
+        Counter(String key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+    }
+}
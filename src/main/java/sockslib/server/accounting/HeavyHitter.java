@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+/**
+ * The class <code>HeavyHitter</code> is an estimated count of a destination or a client, as
+ * reported by {@link HeavyHitters}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:57 AM
+ */
+public final class HeavyHitter {
+
+    private final String key;
+
+    private final long count;
+
+    private final long error;
+
+    HeavyHitter(String key, long count, long error) {
+        this.key = key;
+        this.count = count;
+        this.error = error;
+    }
+
+    /**
+     * Returns the destination host or client address.
+     *
+     * @return Key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the estimated count, which may overestimate by up to {@link #getError()}.
+     *
+     * @return Connections or bytes.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    /**
+     * Returns the count which is guaranteed.
+     *
+     * @return Count minus error.
+     */
+    public long getMinCount() {
+        return count - error;
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitter{key=" + key + ", count=" + count + ", error=" + error + '}';
+    }
+}
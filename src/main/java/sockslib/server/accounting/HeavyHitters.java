@@ -0,0 +1,373 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import sockslib.common.SocksCommand;
+import sockslib.common.net.NetworkMonitor;
+import sockslib.server.Session;
+import sockslib.server.SessionTimeline;
+import sockslib.server.listener.CommandListener;
+import sockslib.server.listener.SessionCloseListener;
+import sockslib.server.msg.CommandMessage;
+
+/**
+ * The class <code>HeavyHitters</code> finds the destinations and clients which account for most
+ * connections and bytes, with a fixed amount of memory.
+ * <pre>
+ * HeavyHitters heavyHitters = HeavyHitters.newBuilder().setCapacity(512).build();
+ * server.getSessionManager().onCommand("heavy-hitters", heavyHitters)
+ *     .onSessionClose("heavy-hitters", heavyHitters);
+ * List&lt;HeavyHitter&gt; top = heavyHitters.getTop(HeavyHitters.Dimension.DESTINATION,
+ *     HeavyHitters.Measure.BYTES, HeavyHitters.Window.HOUR, 10);
+ * </pre>
+ * <p>
+ * Each dimension and measure is counted by Space-Saving sketches of a fixed number of counters,
+ * one for each window, so counts are estimates with a known error. A connection is counted when
+ * its command is read, and its bytes when it's closed, so a long session adds its bytes at once.
+ * Destinations are requested hosts, or addresses if no host was requested; UDP associations are
+ * counted for clients only.
+ * </p>
+ * <p>
+ * Sketches are striped by key, each stripe with its own lock, so updates of different keys rarely
+ * contend. A stripe has a share of the capacity, so the capacity should be several times the
+ * number of keys to query.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:57 AM
+ */
+public class HeavyHitters implements CommandListener, SessionCloseListener {
+
+    private static final int MAX_STRIPES = 16;
+
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    /**
+     * The enumeration <code>Dimension</code> represents what is counted.
+     */
+    public enum Dimension {
+        DESTINATION, CLIENT
+    }
+
+    /**
+     * The enumeration <code>Measure</code> represents how it's counted.
+     */
+    public enum Measure {
+        CONNECTIONS, BYTES
+    }
+
+    /**
+     * The enumeration <code>Window</code> represents how fast counts decay.
+     */
+    public enum Window {
+
+        /**
+         * Counts decay by half every minute.
+         */
+        MINUTE(TimeUnit.MINUTES.toNanos(1)),
+
+        /**
+         * Counts decay by half every hour.
+         */
+        HOUR(TimeUnit.HOURS.toNanos(1)),
+
+        /**
+         * Counts decay by half every day.
+         */
+        DAY(TimeUnit.DAYS.toNanos(1)),
+
+        /**
+         * Counts never decay.
+         */
+        TOTAL(0);
+
+        private final long halfLife;
+
+        Window(long halfLife) {
+            this.halfLife = halfLife;
+        }
+
+        /**
+         * Returns the half-life.
+         *
+         * @param unit Time unit.
+         * @return Half-life, or <code>0</code> if counts never decay.
+         */
+        public long getHalfLife(TimeUnit unit) {
+            return unit.convert(halfLife, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final Comparator<HeavyHitter> BY_COUNT = new Comparator<HeavyHitter>() {
+        @Override
+        public int compare(HeavyHitter a, HeavyHitter b) {
+            return a.getCount() < b.getCount() ? 1 : (a.getCount() == b.getCount() ? 0 : -1);
+        }
+    };
+
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+
+    private static final Measure[] MEASURES = Measure.values();
+
+    private final Window[] windows;
+
+    /**
+     * Stripes of each dimension and measure, indexed by <code>dimension * MEASURES.length +
+     * measure</code>.
+     */
+    private final Stripe[][] tables;
+
+    private final int capacity;
+
+    private HeavyHitters(Builder builder) {
+        windows = builder.windows.toArray(new Window[builder.windows.size()]);
+        capacity = builder.capacity;
+        int stripeCount = stripeCount();
+        int stripeCapacity = Math.max(MIN_STRIPE_CAPACITY, capacity / stripeCount);
+        long now = System.nanoTime();
+        tables = new Stripe[DIMENSIONS.length * MEASURES.length][stripeCount];
+        for (Stripe[] stripes : tables) {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new Stripe(windows, stripeCapacity, now);
+            }
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public void onCommand(Session session, CommandMessage message) {
+        long now = System.nanoTime();
+        String client = getClient(session);
+        if (client != null) {
+            add(Dimension.CLIENT, Measure.CONNECTIONS, client, 1, now);
+        }
+        String destination = getDestination(message);
+        if (destination != null) {
+            add(Dimension.DESTINATION, Measure.CONNECTIONS, destination, 1, now);
+        }
+    }
+
+    @Override
+    public void onClose(Session session) {
+        NetworkMonitor monitor = session.getNetworkMonitor();
+        long bytes = monitor == null ? 0 : monitor.getTotal();
+        if (bytes <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        String client = getClient(session);
+        if (client != null) {
+            add(Dimension.CLIENT, Measure.BYTES, client, bytes, now);
+        }
+        SessionTimeline timeline = SessionTimeline.get(session);
+        String destination = timeline == null ? null : getDestination(timeline.getCommand());
+        if (destination != null) {
+            add(Dimension.DESTINATION, Measure.BYTES, destination, bytes, now);
+        }
+    }
+
+    /**
+     * Adds weight to a key, for counting other than the session hooks.
+     *
+     * @param dimension Dimension of the key.
+     * @param measure   Measure of the weight.
+     * @param key       Destination or client.
+     * @param weight    Connections or bytes.
+     */
+    public void add(Dimension dimension, Measure measure, String key, long weight) {
+        checkNotNull(key, "Argument [key] may not be null");
+        checkArgument(weight >= 0, "Weight can't be negative");
+        add(dimension, measure, key, weight, System.nanoTime());
+    }
+
+    /**
+     * Returns the heaviest keys.
+     *
+     * @param dimension Dimension.
+     * @param measure   Measure.
+     * @param window    Window, which has to be counted.
+     * @param n         Maximum number of keys.
+     * @return Heavy hitters in descending order of counts.
+     */
+    public List<HeavyHitter> getTop(Dimension dimension, Measure measure, Window window, int n) {
+        checkArgument(n > 0, "N must be positive");
+        int index = indexOf(window);
+        long now = System.nanoTime();
+        List<HeavyHitter> result = new ArrayList<>();
+        for (Stripe stripe : tables[tableIndex(dimension, measure)]) {
+            synchronized (stripe) {
+                stripe.sketches[index].snapshot(now, result);
+            }
+        }
+        Collections.sort(result, BY_COUNT);
+        return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+    }
+
+    /**
+     * Returns the decayed total of all keys, e.g. to compute shares of heavy hitters.
+     *
+     * @param dimension Dimension.
+     * @param measure   Measure.
+     * @param window    Window, which has to be counted.
+     * @return Total connections or bytes.
+     */
+    public long getTotal(Dimension dimension, Measure measure, Window window) {
+        int index = indexOf(window);
+        long now = System.nanoTime();
+        double total = 0;
+        for (Stripe stripe : tables[tableIndex(dimension, measure)]) {
+            synchronized (stripe) {
+                total += stripe.sketches[index].getTotal(now);
+            }
+        }
+        return Math.round(total);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void add(Dimension dimension, Measure measure, String key, long weight, long now) {
+        Stripe[] stripes = tables[tableIndex(dimension, measure)];
+        int hash = key.hashCode() * 0x9e3779b9;
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        synchronized (stripe) {
+            for (DecayedSpaceSaving sketch : stripe.sketches) {
+                sketch.add(key, weight, now);
+            }
+        }
+    }
+
+    private int indexOf(Window window) {
+        checkNotNull(window, "Argument [window] may not be null");
+        for (int i = 0; i < windows.length; i++) {
+            if (windows[i] == window) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Window " + window + " isn't counted");
+    }
+
+    private static int tableIndex(Dimension dimension, Measure measure) {
+        return dimension.ordinal() * MEASURES.length + measure.ordinal();
+    }
+
+    @Nullable
+    private static String getClient(Session session) {
+        SocketAddress address = session.getClientAddress();
+        if (!(address instanceof InetSocketAddress)) {
+            return null;
+        }
+        InetAddress inetAddress = ((InetSocketAddress) address).getAddress();
+        return inetAddress == null ? null : inetAddress.getHostAddress();
+    }
+
+    @Nullable
+    private static String getDestination(@Nullable CommandMessage message) {
+        if (message == null || message.getCommand() == SocksCommand.UDP_ASSOCIATE) {
+            return null;
+        }
+        if (message.getHost() != null) {
+            return message.getHost();
+        }
+        InetAddress address = message.getInetAddress();
+        return address == null ? null : address.getHostAddress();
+    }
+
+    private static int stripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = 1;
+        while (count < processors && count < MAX_STRIPES) {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    /**
+     * Sketches of a share of keys, one for each window.
+     */
+    private static final class Stripe {
+
+        final DecayedSpaceSaving[] sketches;
+
+        Stripe(Window[] windows, int capacity, long now) {
+            sketches = new DecayedSpaceSaving[windows.length];
+            for (int i = 0; i < windows.length; i++) {
+                sketches[i] = new DecayedSpaceSaving(capacity, windows[i].halfLife, now);
+            }
+        }
+    }
+
+    /**
+     * The class <code>Builder</code> is a tool to build {@link HeavyHitters}.
+     */
+    public static class Builder {
+
+        private int capacity = 512;
+
+        private Set<Window> windows = EnumSet.allOf(Window.class);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets number of counters of each dimension, measure and window.
+         *
+         * @param capacity Number of counters.
+         * @return This builder.
+         */
+        public Builder setCapacity(int capacity) {
+            checkArgument(capacity > 0, "Capacity must be positive");
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets windows to count, each window takes its own counters.
+         *
+         * @param first Window.
+         * @param rest  More windows.
+         * @return This builder.
+         */
+        public Builder setWindows(Window first, Window... rest) {
+            windows = EnumSet.of(first, rest);
+            return this;
+        }
+
+        public HeavyHitters build() {
+            return new HeavyHitters(this);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+import static androidx.core.util.Preconditions.checkArgument;
+
+/**
+ * The class <code>Quota</code> limits traffic and concurrent sessions of a user. It's immutable.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:14 AM
+ */
+public final class Quota {
+
+    /**
+     * Value of a limit that means no limit.
+     */
+    public static final long UNLIMITED = -1;
+
+    /**
+     * A quota without any limit.
+     */
+    public static final Quota NONE = new Quota(UNLIMITED, UNLIMITED, (int) UNLIMITED);
+
+    private final long dailyBytes;
+
+    private final long monthlyBytes;
+
+    private final int maxSessions;
+
+    /**
+     * Constructs a quota.
+     *
+     * @param dailyBytes   Maximum bytes per day, or {@link #UNLIMITED}.
+     * @param monthlyBytes Maximum bytes per month, or {@link #UNLIMITED}.
+     * @param maxSessions  Maximum number of concurrent sessions, or {@link #UNLIMITED}.
+     */
+    public Quota(long dailyBytes, long monthlyBytes, int maxSessions) {
+        checkArgument(dailyBytes >= 0 || dailyBytes == UNLIMITED, "Invalid daily bytes");
+        checkArgument(monthlyBytes >= 0 || monthlyBytes == UNLIMITED, "Invalid monthly bytes");
+        checkArgument(maxSessions >= 0 || maxSessions == UNLIMITED, "Invalid max sessions");
+        this.dailyBytes = dailyBytes;
+        this.monthlyBytes = monthlyBytes;
+        this.maxSessions = maxSessions;
+    }
+
+    public long getDailyBytes() {
+        return dailyBytes;
+    }
+
+    public long getMonthlyBytes() {
+        return monthlyBytes;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    boolean isExceeded(long dayBytes, long monthBytes) {
+        return (dailyBytes != UNLIMITED && dayBytes >= dailyBytes) || (monthlyBytes != UNLIMITED
+                && monthBytes >= monthlyBytes);
+    }
+
+    @Override
+    public String toString() {
+        return "Quota{dailyBytes=" + dailyBytes + ", monthlyBytes=" + monthlyBytes + ", "
+                + "maxSessions=" + maxSessions + '}';
+    }
+}
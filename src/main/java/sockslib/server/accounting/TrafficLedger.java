@@ -0,0 +1,524 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The class <code>TrafficLedger</code> is an append-only, memory-mapped file which keeps the usage
+ * of {@link UserAccounting} across restarts.
+ * <p>
+ * The ledger doesn't touch the relay path. A checkpoint reads the usages of the accounting and
+ * appends one record per user whose usage has changed since the last checkpoint, then forces the
+ * file once for all records of the checkpoint. At startup, {@link #rebuild(UserAccounting)} sums
+ * the records and restores the usages.
+ * </p>
+ * <pre>
+ * TrafficLedger ledger = new TrafficLedger(new File("traffic.ledger"));
+ * ledger.rebuild(accounting);
+ * ledger.startCheckpointing(accounting, 10, TimeUnit.SECONDS);
+ * ...
+ * ledger.close();
+ * </pre>
+ * <p>
+ * Record format, integers are big-endian:
+ * </p>
+ * <pre>
+ * +--------+------+--------+----------+----------+------+----------+-------+
+ * | LENGTH | TIME | UPLOAD | DOWNLOAD | SESSIONS | ULEN |  UNAME   | CRC32 |
+ * +--------+------+--------+----------+----------+------+----------+-------+
+ * |   4    |  8   |   8    |    8     |    8     |  1   | 1 to 255 |   4   |
+ * +--------+------+--------+----------+----------+------+----------+-------+
+ * </pre>
+ * <p>
+ * LENGTH is the length of the fields from TIME to UNAME, and CRC32 is their checksum. A record
+ * which was torn by a crash fails the checksum and ends the ledger, it's overwritten by the next
+ * record. The usage between the last checkpoint and a crash is lost.
+ * </p>
+ * <p>
+ * Bytes of a record are counted in the day and the month of its TIME, which is the time of the
+ * checkpoint. {@link #compact(File, File, long, TimeUnit)} merges records of a user in the same
+ * interval, so the ledger doesn't grow forever.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:17 AM
+ */
+public class TrafficLedger implements Closeable {
+
+    private static final String TAG = "TrafficLedger";
+
+    static final int MAGIC = 0x534c544c; // "SLTL"
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+
+    private static final int FIXED_BODY_SIZE = 33;
+
+    private static final int MAX_RECORD_SIZE = 4 + FIXED_BODY_SIZE + 255 + 4;
+
+    private static final int REGION_SIZE = 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    /**
+     * Region of the file where records are appended, a new region is mapped when it's full.
+     */
+    private MappedByteBuffer region;
+
+    private long position;
+
+    private final byte[] recordBuffer = new byte[MAX_RECORD_SIZE];
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Usage of users that has been written, a checkpoint only writes the difference.
+     */
+    private final Map<String, long[]> checkpointed = new HashMap<>();
+
+    private long recordCount;
+
+    private long checkpointCount;
+
+    private boolean closed;
+
+    private Thread checkpointer;
+
+    private UserAccounting checkpointedAccounting;
+
+    /**
+     * Opens a ledger, it's created if it doesn't exist.
+     *
+     * @param file Ledger file.
+     * @throws IOException If the file can't be opened or is not a ledger.
+     */
+    public TrafficLedger(File file) throws IOException {
+        this.file = checkNotNull(file, "Argument [file] may not be null");
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(0);
+                header.flip();
+                channel.write(header, 0);
+                channel.force(true);
+                position = HEADER_SIZE;
+            } else {
+                position = scan(file, null);
+            }
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Restores usages in the ledger to an accounting. It should be called before the accounting
+     * counts any session, and before the first checkpoint.
+     *
+     * @param accounting Accounting.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void rebuild(UserAccounting accounting) throws IOException {
+        checkNotNull(accounting, "Argument [accounting] may not be null");
+        Calendar calendar = Calendar.getInstance(accounting.getTimeZone());
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        final long dayStart = calendar.getTimeInMillis();
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        final long monthStart = calendar.getTimeInMillis();
+        // upload, download, sessions, day bytes, month bytes
+        final Map<String, long[]> totals = new HashMap<>();
+        replay(new Visitor() {
+            @Override
+            public void visit(long timestamp, String username, long uploadBytes, long
+                    downloadBytes, long sessions) {
+                long[] total = totals.get(username);
+                if (total == null) {
+                    total = new long[5];
+                    totals.put(username, total);
+                }
+                total[0] += uploadBytes;
+                total[1] += downloadBytes;
+                total[2] += sessions;
+                if (timestamp >= dayStart) {
+                    total[3] += uploadBytes + downloadBytes;
+                }
+                if (timestamp >= monthStart) {
+                    total[4] += uploadBytes + downloadBytes;
+                }
+            }
+        });
+        synchronized (this) {
+            for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+                long[] total = entry.getValue();
+                accounting.restore(entry.getKey(), Math.max(0, total[0]), Math.max(0, total[1]),
+                        Math.max(0, total[2]), Math.max(0, total[3]), Math.max(0, total[4]));
+                checkpointed.put(entry.getKey(), new long[]{total[0], total[1], total[2]});
+            }
+        }
+        Log.i(TAG, "Restored usages of " + totals.size() + " users from " + file);
+    }
+
+    /**
+     * Visits all records in the ledger, in the order they were written.
+     *
+     * @param visitor Visitor.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void replay(Visitor visitor) throws IOException {
+        checkNotNull(visitor, "Argument [visitor] may not be null");
+        scan(file, visitor);
+    }
+
+    /**
+     * Appends the usages that changed since the last checkpoint and forces them to the disk
+     * together.
+     *
+     * @param accounting Accounting.
+     * @return Number of records written.
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized int checkpoint(UserAccounting accounting) throws IOException {
+        checkNotNull(accounting, "Argument [accounting] may not be null");
+        if (closed) {
+            throw new IOException("Ledger is closed");
+        }
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (UserUsage usage : accounting.getUsages()) {
+            long[] last = checkpointed.get(usage.getUsername());
+            if (last == null) {
+                last = new long[3];
+                checkpointed.put(usage.getUsername(), last);
+            }
+            // A difference is negative after the usage is reset.
+            long upload = usage.getUploadBytes() - last[0];
+            long download = usage.getDownloadBytes() - last[1];
+            long sessions = usage.getSessions() - last[2];
+            if (upload == 0 && download == 0 && sessions == 0) {
+                continue;
+            }
+            append(now, usage.getUsername(), upload, download, sessions);
+            last[0] = usage.getUploadBytes();
+            last[1] = usage.getDownloadBytes();
+            last[2] = usage.getSessions();
+            count++;
+        }
+        if (count > 0) {
+            region.force();
+        }
+        checkpointCount++;
+        return count;
+    }
+
+    /**
+     * Starts a daemon thread which checkpoints an accounting periodically. {@link #close()} makes
+     * a last checkpoint.
+     *
+     * @param accounting Accounting.
+     * @param interval   Checkpoint interval.
+     * @param unit       Unit of interval.
+     */
+    public synchronized void startCheckpointing(final UserAccounting accounting, long interval,
+                                                TimeUnit unit) {
+        checkNotNull(accounting, "Argument [accounting] may not be null");
+        checkArgument(interval > 0, "Interval must be positive");
+        if (checkpointer != null) {
+            return;
+        }
+        final long intervalMillis = unit.toMillis(interval);
+        checkpointedAccounting = accounting;
+        checkpointer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(intervalMillis);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    try {
+                        checkpoint(accounting);
+                    } catch (IOException | RuntimeException e) {
+                        Log.w(TAG, "Failed to checkpoint to " + file, e);
+                    }
+                }
+            }
+        }, TAG + "-checkpointer");
+        checkpointer.setDaemon(true);
+        checkpointer.start();
+    }
+
+    /**
+     * Stops checkpointing.
+     */
+    public synchronized void stopCheckpointing() {
+        if (checkpointer != null) {
+            checkpointer.interrupt();
+            checkpointer = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (checkpointer != null) {
+                stopCheckpointing();
+                checkpoint(checkpointedAccounting);
+            }
+        } finally {
+            closed = true;
+            region = null;
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns size of the records in the ledger, including the header.
+     *
+     * @return Size in bytes.
+     */
+    public synchronized long size() {
+        return position;
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized long getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficLedger{file=" + file + ", size=" + size() + ", records=" + getRecordCount()
+                + ", checkpoints=" + getCheckpointCount() + '}';
+    }
+
+    /**
+     * Merges records of the same user in the same interval into one record. The time of a merged
+     * record is the start of its interval. Use an interval of one hour or less, so that days of
+     * the accounting's time zone are not merged together.
+     * <p>
+     * The source may be a ledger in use, records appended during the compaction are not copied.
+     * </p>
+     *
+     * @param source   Source ledger.
+     * @param target   Target ledger, it must not exist.
+     * @param interval Interval of merged records.
+     * @param unit     Unit of interval.
+     * @return Number of records written.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static long compact(File source, File target, long interval, TimeUnit unit) throws
+            IOException {
+        checkNotNull(source, "Argument [source] may not be null");
+        checkNotNull(target, "Argument [target] may not be null");
+        checkArgument(interval > 0, "Interval must be positive");
+        checkArgument(!target.exists(), "Target ledger already exists");
+        final long intervalMillis = unit.toMillis(interval);
+        final TreeMap<Long, Map<String, long[]>> buckets = new TreeMap<>();
+        scan(source, new Visitor() {
+            @Override
+            public void visit(long timestamp, String username, long uploadBytes, long
+                    downloadBytes, long sessions) {
+                Long start = timestamp - Math.abs(timestamp % intervalMillis);
+                Map<String, long[]> bucket = buckets.get(start);
+                if (bucket == null) {
+                    bucket = new HashMap<>();
+                    buckets.put(start, bucket);
+                }
+                long[] total = bucket.get(username);
+                if (total == null) {
+                    total = new long[3];
+                    bucket.put(username, total);
+                }
+                total[0] += uploadBytes;
+                total[1] += downloadBytes;
+                total[2] += sessions;
+            }
+        });
+        TrafficLedger ledger = new TrafficLedger(target);
+        try {
+            synchronized (ledger) {
+                for (Map.Entry<Long, Map<String, long[]>> bucket : buckets.entrySet()) {
+                    for (Map.Entry<String, long[]> entry : bucket.getValue().entrySet()) {
+                        long[] total = entry.getValue();
+                        ledger.append(bucket.getKey(), entry.getKey(), total[0], total[1],
+                                total[2]);
+                    }
+                }
+                if (ledger.region != null) {
+                    ledger.region.force();
+                }
+                return ledger.recordCount;
+            }
+        } finally {
+            ledger.close();
+        }
+    }
+
+    /**
+     * Appends a record. It must be called with the lock held.
+     */
+    private void append(long timestamp, String username, long uploadBytes, long downloadBytes,
+                        long sessions) throws IOException {
+        byte[] name = username.getBytes(UTF_8);
+        if (name.length == 0 || name.length > 255) {
+            Log.w(TAG, "Skip user with invalid username length: " + name.length);
+            return;
+        }
+        int bodyLength = FIXED_BODY_SIZE + name.length;
+        ByteBuffer record = ByteBuffer.wrap(recordBuffer);
+        record.putInt(bodyLength);
+        record.putLong(timestamp);
+        record.putLong(uploadBytes);
+        record.putLong(downloadBytes);
+        record.putLong(sessions);
+        record.put((byte) name.length);
+        record.put(name);
+        crc.reset();
+        crc.update(recordBuffer, 4, bodyLength);
+        record.putInt((int) crc.getValue());
+        int recordLength = record.position();
+        if (region == null || region.remaining() < recordLength) {
+            if (region != null) {
+                // Part of the checkpoint is in the old region.
+                region.force();
+            }
+            region = channel.map(FileChannel.MapMode.READ_WRITE, position, REGION_SIZE);
+        }
+        region.put(recordBuffer, 0, recordLength);
+        position += recordLength;
+        recordCount++;
+    }
+
+    /**
+     * Reads records of a ledger.
+     *
+     * @return End of the last valid record.
+     */
+    private static long scan(File file, Visitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream
+                (file), 64 * 1024));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a traffic ledger: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported traffic ledger version:" + version);
+            }
+            in.readLong();
+            long end = HEADER_SIZE;
+            byte[] body = new byte[MAX_RECORD_SIZE];
+            CRC32 checksum = new CRC32();
+            while (true) {
+                int bodyLength;
+                try {
+                    bodyLength = in.readInt();
+                    if (bodyLength <= FIXED_BODY_SIZE || bodyLength > FIXED_BODY_SIZE + 255) {
+                        // Zeros after the last record, or garbage of a torn record.
+                        return end;
+                    }
+                    in.readFully(body, 0, bodyLength + 4);
+                } catch (EOFException e) {
+                    return end;
+                }
+                checksum.reset();
+                checksum.update(body, 0, bodyLength);
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                if (buffer.getInt(bodyLength) != (int) checksum.getValue()) {
+                    return end;
+                }
+                if (visitor != null) {
+                    long timestamp = buffer.getLong();
+                    long uploadBytes = buffer.getLong();
+                    long downloadBytes = buffer.getLong();
+                    long sessions = buffer.getLong();
+                    int nameLength = buffer.get() & 0xff;
+                    visitor.visit(timestamp, new String(body, FIXED_BODY_SIZE, nameLength, UTF_8),
+                            uploadBytes, downloadBytes, sessions);
+                }
+                end += 4 + bodyLength + 4;
+            }
+        } catch (EOFException e) {
+            throw new IOException("Not a traffic ledger: " + file);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The interface <code>Visitor</code> visits records of a ledger.
+     */
+    public interface Visitor {
+
+        /**
+         * Visits a record.
+         *
+         * @param timestamp     Time of the checkpoint, in milliseconds since epoch.
+         * @param username      Username.
+         * @param uploadBytes   Uploaded bytes since the previous record of the user.
+         * @param downloadBytes Downloaded bytes since the previous record of the user.
+         * @param sessions      Sessions since the previous record of the user.
+         */
+        void visit(long timestamp, String username, long uploadBytes, long downloadBytes, long
+                sessions);
+    }
+}
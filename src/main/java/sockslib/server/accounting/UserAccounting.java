@@ -0,0 +1,599 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.net.DatagramPacket;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sockslib.common.SocksCommand;
+import sockslib.server.Session;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.io.Pipe;
+import sockslib.server.io.PipeListener;
+import sockslib.server.io.SocketPipe;
+import sockslib.server.listener.CloseSessionException;
+import sockslib.server.listener.CommandListener;
+import sockslib.server.listener.DatagramListener;
+import sockslib.server.listener.PipeInitializer;
+import sockslib.server.listener.SessionCloseListener;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+import sockslib.utils.StripedCounter;
+
+/**
+ * The class <code>UserAccounting</code> counts traffic of authenticated users and enforces their
+ * {@link Quota}.
+ * <p>
+ * A session is refused when its user has used up the daily or monthly quota, or already has the
+ * maximum number of concurrent sessions. A running session is cut when the quota is used up.
+ * Sessions without an authenticated user are not counted. Datagrams of a UDP association are
+ * counted as the traffic of its session, and the association is closed when the quota is used up.
+ * </p>
+ * <pre>
+ * UserAccounting accounting = new UserAccounting();
+ * accounting.setQuota("alice", new Quota(1L &lt;&lt; 30, 20L &lt;&lt; 30, 4));
+ * server.getSessionManager().onCommand("accounting", accounting)
+ *     .onSessionClose("accounting", accounting);
+ * server.setPipeInitializer(accounting);
+ * </pre>
+ * <p>
+ * Relay threads count bytes in their session and add them to the user's striped counters every
+ * {@link #setFlushBytes(int) flush bytes}, where the quota is checked too. So a user may exceed
+ * the quota by up to the flush bytes per session and direction, and usages don't include bytes
+ * that haven't been flushed yet.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:14 AM
+ */
+public class UserAccounting implements CommandListener, SessionCloseListener, PipeInitializer,
+        DatagramListener {
+
+    private static final String TAG = "UserAccounting";
+
+    /**
+     * Key of the session attribute which holds the accounting state of a session.
+     */
+    public static final String SESSION_ACCOUNT_KEY = "ACCOUNTING";
+
+    private static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+
+    /**
+     * The enumeration <code>Window</code> represents a time window of usage.
+     */
+    public enum Window {
+        TOTAL, DAY, MONTH
+    }
+
+    private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Quota> quotas = new ConcurrentHashMap<>();
+
+    private volatile Quota defaultQuota = Quota.NONE;
+
+    private final TimeZone timeZone;
+
+    private volatile PeriodKeys periodKeys = new PeriodKeys(0, 0, 0, 0);
+
+    private int flushBytes = DEFAULT_FLUSH_BYTES;
+
+    private final AtomicLong refusedSessions = new AtomicLong();
+
+    private final AtomicLong cutSessions = new AtomicLong();
+
+    public UserAccounting() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Constructs an instance.
+     *
+     * @param timeZone Time zone which decides when a day and a month start.
+     */
+    public UserAccounting(TimeZone timeZone) {
+        this.timeZone = checkNotNull(timeZone, "Argument [timeZone] may not be null");
+    }
+
+    @Override
+    public void onCommand(Session session, CommandMessage message) throws CloseSessionException {
+        String username = getUsername(session);
+        if (username == null) {
+            return;
+        }
+        Account account = getOrCreateAccount(username);
+        Quota quota = getQuota(username);
+        PeriodKeys keys = getPeriodKeys();
+        if (quota.isExceeded(account.getDayBytes(keys), account.getMonthBytes(keys))) {
+            refusedSessions.incrementAndGet();
+            throw new CloseSessionException("Traffic quota of user " + username + " is used up");
+        }
+        if (!account.tryAcquireSession(quota.getMaxSessions())) {
+            refusedSessions.incrementAndGet();
+            throw new CloseSessionException("Too many sessions of user " + username);
+        }
+        account.counters.get().sessions.increment();
+        session.setAttribute(SESSION_ACCOUNT_KEY, new SessionAccount(account));
+        if (message.getCommand() == SocksCommand.UDP_ASSOCIATE) {
+            session.setAttribute(DatagramListener.SESSION_LISTENER_KEY, this);
+        }
+    }
+
+    @Override
+    public void onClose(Session session) {
+        Object sessionAccount = session.getAttribute(SESSION_ACCOUNT_KEY);
+        if (sessionAccount instanceof SessionAccount) {
+            ((SessionAccount) sessionAccount).flush(getPeriodKeys());
+            ((SessionAccount) sessionAccount).release();
+        }
+    }
+
+    @Override
+    public Pipe initialize(Pipe pipe) {
+        Object session = pipe.getAttribute(SocketPipe.ATTR_SESSION);
+        if (session instanceof Session) {
+            Object sessionAccount = ((Session) session).getAttribute(SESSION_ACCOUNT_KEY);
+            if (sessionAccount instanceof SessionAccount) {
+                pipe.addPipeListener(new AccountingPipeListener((SessionAccount) sessionAccount,
+                        pipe));
+            }
+        }
+        return pipe;
+    }
+
+    @Override
+    public void onDatagram(Session session, DatagramPacket packet, boolean fromClient) {
+        Object sessionAccount = session.getAttribute(SESSION_ACCOUNT_KEY);
+        if (sessionAccount instanceof SessionAccount && count((SessionAccount) sessionAccount,
+                fromClient, packet.getLength())) {
+            Log.i(TAG, "Traffic quota of user " + ((SessionAccount) sessionAccount).account
+                    .username + " is used up, close UDP association of session " + session
+                    .getId());
+            session.close();
+        }
+    }
+
+    /**
+     * Returns usage of a user.
+     *
+     * @param username Username.
+     * @return Usage, or <code>null</code> if the user has no session since the accounting started.
+     */
+    @Nullable
+    public UserUsage getUsage(String username) {
+        Account account = accounts.get(username);
+        return account == null ? null : account.toUsage(getPeriodKeys());
+    }
+
+    /**
+     * Returns usages of all users.
+     *
+     * @return Usages.
+     */
+    public List<UserUsage> getUsages() {
+        PeriodKeys keys = getPeriodKeys();
+        List<UserUsage> usages = new ArrayList<>(accounts.size());
+        for (Account account : accounts.values()) {
+            usages.add(account.toUsage(keys));
+        }
+        return usages;
+    }
+
+    /**
+     * Returns the users that have used the most bytes, in descending order.
+     *
+     * @param n      Maximum number of users.
+     * @param window Time window.
+     * @return Usages of top users.
+     */
+    public List<UserUsage> getTopUsers(int n, final Window window) {
+        checkArgument(n > 0, "N must be positive");
+        checkNotNull(window, "Argument [window] may not be null");
+        Comparator<UserUsage> comparator = new Comparator<UserUsage>() {
+            @Override
+            public int compare(UserUsage a, UserUsage b) {
+                long x = bytesOf(a, window);
+                long y = bytesOf(b, window);
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        };
+        // A min-heap of n elements, the smallest one is replaced by a larger one.
+        PriorityQueue<UserUsage> heap = new PriorityQueue<>(n, comparator);
+        PeriodKeys keys = getPeriodKeys();
+        for (Account account : accounts.values()) {
+            UserUsage usage = account.toUsage(keys);
+            if (heap.size() < n) {
+                heap.add(usage);
+            } else if (comparator.compare(usage, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(usage);
+            }
+        }
+        List<UserUsage> result = new ArrayList<>(heap);
+        Collections.sort(result, Collections.reverseOrder(comparator));
+        return result;
+    }
+
+    private static long bytesOf(UserUsage usage, Window window) {
+        switch (window) {
+            case DAY:
+                return usage.getDayBytes();
+            case MONTH:
+                return usage.getMonthBytes();
+            default:
+                return usage.getTotalBytes();
+        }
+    }
+
+    /**
+     * Forgets usage of a user. Active sessions of the user are still counted.
+     *
+     * @param username Username.
+     */
+    public void reset(String username) {
+        Account account = accounts.get(username);
+        if (account != null) {
+            account.reset();
+        }
+    }
+
+    /**
+     * Adds usage restored from persistent storage, such as a {@link TrafficLedger}.
+     *
+     * @param username      Username.
+     * @param uploadBytes   Uploaded bytes.
+     * @param downloadBytes Downloaded bytes.
+     * @param sessions      Number of sessions.
+     * @param dayBytes      Bytes of today.
+     * @param monthBytes    Bytes of this month.
+     */
+    public void restore(String username, long uploadBytes, long downloadBytes, long sessions,
+                        long dayBytes, long monthBytes) {
+        checkNotNull(username, "Argument [username] may not be null");
+        Account account = getOrCreateAccount(username);
+        PeriodKeys keys = getPeriodKeys();
+        Counters counters = account.counters.get();
+        counters.upload.add(uploadBytes);
+        counters.download.add(downloadBytes);
+        counters.sessions.add(sessions);
+        Account.period(account.day, keys.day).bytes.add(dayBytes);
+        Account.period(account.month, keys.month).bytes.add(monthBytes);
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    public Quota getQuota(String username) {
+        Quota quota = quotas.get(username);
+        return quota == null ? defaultQuota : quota;
+    }
+
+    public void setQuota(String username, Quota quota) {
+        quotas.put(checkNotNull(username, "Argument [username] may not be null"), checkNotNull
+                (quota, "Argument [quota] may not be null"));
+    }
+
+    public void removeQuota(String username) {
+        quotas.remove(username);
+    }
+
+    public Quota getDefaultQuota() {
+        return defaultQuota;
+    }
+
+    public void setDefaultQuota(Quota defaultQuota) {
+        this.defaultQuota = checkNotNull(defaultQuota, "Argument [defaultQuota] may not be null");
+    }
+
+    public int getFlushBytes() {
+        return flushBytes;
+    }
+
+    public void setFlushBytes(int flushBytes) {
+        checkArgument(flushBytes > 0, "Flush bytes must be positive");
+        this.flushBytes = flushBytes;
+    }
+
+    /**
+     * Returns number of sessions refused because of quota.
+     *
+     * @return Number of refused sessions.
+     */
+    public long getRefusedSessions() {
+        return refusedSessions.get();
+    }
+
+    /**
+     * Returns number of sessions cut because of quota.
+     *
+     * @return Number of cut sessions.
+     */
+    public long getCutSessions() {
+        return cutSessions.get();
+    }
+
+    /**
+     * Counts bytes of a session, they are flushed to its account every flush bytes.
+     *
+     * @return <code>true</code> if the session has to be cut because the quota is used up.
+     */
+    private boolean count(SessionAccount sessionAccount, boolean upload, int length) {
+        if (sessionAccount.add(upload, length) < flushBytes) {
+            return false;
+        }
+        PeriodKeys keys = getPeriodKeys();
+        sessionAccount.flush(keys);
+        Account account = sessionAccount.account;
+        if (!getQuota(account.username).isExceeded(account.getDayBytes(keys), account
+                .getMonthBytes(keys)) || !sessionAccount.cut.compareAndSet(false, true)) {
+            return false;
+        }
+        cutSessions.incrementAndGet();
+        return true;
+    }
+
+    @Nullable
+    private static String getUsername(Session session) {
+        Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+        return user instanceof User ? ((User) user).getUsername() : null;
+    }
+
+    private Account getOrCreateAccount(String username) {
+        Account account = accounts.get(username);
+        if (account == null) {
+            Account created = new Account(username);
+            account = accounts.putIfAbsent(username, created);
+            if (account == null) {
+                account = created;
+            }
+        }
+        return account;
+    }
+
+    /**
+     * Returns keys of current day and month. Calendar is only used when a day passes.
+     */
+    private PeriodKeys getPeriodKeys() {
+        long now = System.currentTimeMillis();
+        PeriodKeys keys = periodKeys;
+        if (now < keys.validFrom || now >= keys.validUntil) {
+            Calendar calendar = Calendar.getInstance(timeZone);
+            calendar.setTimeInMillis(now);
+            int year = calendar.get(Calendar.YEAR);
+            int month = year * 12 + calendar.get(Calendar.MONTH);
+            int day = year * 400 + calendar.get(Calendar.DAY_OF_YEAR);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            long validFrom = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            keys = new PeriodKeys(day, month, validFrom, calendar.getTimeInMillis());
+            periodKeys = keys;
+        }
+        return keys;
+    }
+
+    private static final class PeriodKeys {
+
+        final int day;
+
+        final int month;
+
+        final long validFrom;
+
+        final long validUntil;
+
+        PeriodKeys(int day, int month, long validFrom, long validUntil) {
+            this.day = day;
+            this.month = month;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+        }
+    }
+
+    /**
+     * Bytes of a day or a month. A new instance replaces the old one when the period changes.
+     */
+    private static final class PeriodCounter {
+
+        final int key;
+
+        final StripedCounter bytes = new StripedCounter();
+
+        PeriodCounter(int key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Account {
+
+        final String username;
+
+        final AtomicReference<Counters> counters = new AtomicReference<>(new Counters());
+
+        final AtomicReference<PeriodCounter> day = new AtomicReference<>(new PeriodCounter(0));
+
+        final AtomicReference<PeriodCounter> month = new AtomicReference<>(new PeriodCounter(0));
+
+        final AtomicInteger sessions = new AtomicInteger();
+
+        Account(String username) {
+            this.username = username;
+        }
+
+        void add(long upload, long download, PeriodKeys keys) {
+            Counters current = counters.get();
+            current.upload.add(upload);
+            current.download.add(download);
+            period(day, keys.day).bytes.add(upload + download);
+            period(month, keys.month).bytes.add(upload + download);
+        }
+
+        long getDayBytes(PeriodKeys keys) {
+            PeriodCounter counter = day.get();
+            return counter.key == keys.day ? counter.bytes.sum() : 0;
+        }
+
+        long getMonthBytes(PeriodKeys keys) {
+            PeriodCounter counter = month.get();
+            return counter.key == keys.month ? counter.bytes.sum() : 0;
+        }
+
+        boolean tryAcquireSession(int maxSessions) {
+            while (true) {
+                int current = sessions.get();
+                if (maxSessions != Quota.UNLIMITED && current >= maxSessions) {
+                    return false;
+                }
+                if (sessions.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void releaseSession() {
+            sessions.decrementAndGet();
+        }
+
+        void reset() {
+            counters.set(new Counters());
+            day.set(new PeriodCounter(0));
+            month.set(new PeriodCounter(0));
+        }
+
+        UserUsage toUsage(PeriodKeys keys) {
+            Counters current = counters.get();
+            return new UserUsage(username, current.upload.sum(), current.download.sum(),
+                    getDayBytes(keys), getMonthBytes(keys), current.sessions.sum(), sessions.get());
+        }
+
+        private static PeriodCounter period(AtomicReference<PeriodCounter> reference, int key) {
+            while (true) {
+                PeriodCounter counter = reference.get();
+                if (counter.key == key) {
+                    return counter;
+                }
+                PeriodCounter next = new PeriodCounter(key);
+                if (reference.compareAndSet(counter, next)) {
+                    return next;
+                }
+            }
+        }
+    }
+
+    private static final class Counters {
+
+        final StripedCounter upload = new StripedCounter();
+
+        final StripedCounter download = new StripedCounter();
+
+        final StripedCounter sessions = new StripedCounter();
+    }
+
+    /**
+     * Accounting state of a session. Each direction is counted by its own relay thread, the
+     * counts are moved to the account when they are flushed.
+     */
+    private static final class SessionAccount {
+
+        final Account account;
+
+        final AtomicLong pendingUpload = new AtomicLong();
+
+        final AtomicLong pendingDownload = new AtomicLong();
+
+        final AtomicBoolean released = new AtomicBoolean();
+
+        final AtomicBoolean cut = new AtomicBoolean();
+
+        SessionAccount(Account account) {
+            this.account = account;
+        }
+
+        long add(boolean upload, int length) {
+            return (upload ? pendingUpload : pendingDownload).addAndGet(length);
+        }
+
+        void flush(PeriodKeys keys) {
+            long upload = pendingUpload.getAndSet(0);
+            long download = pendingDownload.getAndSet(0);
+            if (upload > 0 || download > 0) {
+                account.add(upload, download, keys);
+            }
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                account.releaseSession();
+            }
+        }
+    }
+
+    private final class AccountingPipeListener implements PipeListener {
+
+        private final SessionAccount sessionAccount;
+
+        private final Pipe parent;
+
+        AccountingPipeListener(SessionAccount sessionAccount, Pipe parent) {
+            this.sessionAccount = sessionAccount;
+            this.parent = parent;
+        }
+
+        @Override
+        public void onStart(Pipe pipe) {
+        }
+
+        @Override
+        public void onStop(Pipe pipe) {
+            sessionAccount.flush(getPeriodKeys());
+        }
+
+        @Override
+        public void onTransfer(Pipe pipe, byte[] buffer, int bufferLength) {
+            boolean upload = SocketPipe.OUTPUT_PIPE_NAME.equals(pipe.getName());
+            if (count(sessionAccount, upload, bufferLength)) {
+                Log.i(TAG, "Traffic quota of user " + sessionAccount.account.username + " is used "
+                        + "up, close " + parent.getName());
+                parent.close();
+            }
+        }
+
+        @Override
+        public void onError(Pipe pipe, Exception exception) {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+/**
+ * The class <code>UserUsage</code> is a snapshot of the traffic of a user.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:14 AM
+ */
+public final class UserUsage {
+
+    private final String username;
+
+    private final long uploadBytes;
+
+    private final long downloadBytes;
+
+    private final long dayBytes;
+
+    private final long monthBytes;
+
+    private final long sessions;
+
+    private final int activeSessions;
+
+    UserUsage(String username, long uploadBytes, long downloadBytes, long dayBytes, long
+            monthBytes, long sessions, int activeSessions) {
+        this.username = username;
+        this.uploadBytes = uploadBytes;
+        this.downloadBytes = downloadBytes;
+        this.dayBytes = dayBytes;
+        this.monthBytes = monthBytes;
+        this.sessions = sessions;
+        this.activeSessions = activeSessions;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Returns bytes sent from the client to remote hosts since the accounting started.
+     *
+     * @return Uploaded bytes.
+     */
+    public long getUploadBytes() {
+        return uploadBytes;
+    }
+
+    /**
+     * Returns bytes sent from remote hosts to the client since the accounting started.
+     *
+     * @return Downloaded bytes.
+     */
+    public long getDownloadBytes() {
+        return downloadBytes;
+    }
+
+    public long getTotalBytes() {
+        return uploadBytes + downloadBytes;
+    }
+
+    /**
+     * Returns bytes of today, in both directions.
+     *
+     * @return Bytes of today.
+     */
+    public long getDayBytes() {
+        return dayBytes;
+    }
+
+    /**
+     * Returns bytes of this month, in both directions.
+     *
+     * @return Bytes of this month.
+     */
+    public long getMonthBytes() {
+        return monthBytes;
+    }
+
+    /**
+     * Returns number of sessions since the accounting started.
+     *
+     * @return Number of sessions.
+     */
+    public long getSessions() {
+        return sessions;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions;
+    }
+
+    @Override
+    public String toString() {
+        return "UserUsage{username='" + username + "', upload=" + uploadBytes + ", download="
+                + downloadBytes + ", day=" + dayBytes + ", month=" + monthBytes + ", "
+                + "sessions=" + sessions + ", activeSessions=" + activeSessions + '}';
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The class <code>ClientAccessControl</code> decides whether a client is allowed to connect to the
+ * SOCKS server. It's checked by {@link sockslib.server.BasicSocksProxyServer} right after a
+ * connection is accepted, before any session is created.
+ * <p>
+ * The {@link IPAccessRules} can be replaced at runtime by {@link #setRules(IPAccessRules)}. The
+ * swap is atomic, every check sees either the old rule set or the new one.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 18, 2026 11:59 PM
+ */
+public class ClientAccessControl {
+
+    private final AtomicReference<IPAccessRules> rules;
+
+    private final AtomicLong allowed = new AtomicLong();
+
+    private final AtomicLong denied = new AtomicLong();
+
+    public ClientAccessControl() {
+        this(IPAccessRules.allowAll());
+    }
+
+    public ClientAccessControl(IPAccessRules rules) {
+        this.rules = new AtomicReference<>(checkNotNull(rules, "Argument [rules] may not be null"));
+    }
+
+    /**
+     * Returns <code>true</code> if the client is allowed.
+     *
+     * @param clientAddress Client's socket address.
+     * @return <code>true</code> if the client is allowed.
+     */
+    public boolean isAllowed(SocketAddress clientAddress) {
+        InetAddress address = null;
+        if (clientAddress instanceof InetSocketAddress) {
+            address = ((InetSocketAddress) clientAddress).getAddress();
+        }
+        return isAllowed(address);
+    }
+
+    /**
+     * Returns <code>true</code> if the client is allowed.
+     *
+     * @param clientAddress Client's IP address.
+     * @return <code>true</code> if the client is allowed.
+     */
+    public boolean isAllowed(InetAddress clientAddress) {
+        boolean allow = rules.get().isAllowed(clientAddress);
+        (allow ? allowed : denied).incrementAndGet();
+        return allow;
+    }
+
+    /**
+     * Replaces current rules atomically.
+     *
+     * @param rules New rules.
+     * @return Old rules.
+     */
+    public IPAccessRules setRules(IPAccessRules rules) {
+        return this.rules.getAndSet(checkNotNull(rules, "Argument [rules] may not be null"));
+    }
+
+    public IPAccessRules getRules() {
+        return rules.get();
+    }
+
+    /**
+     * Returns number of clients allowed.
+     *
+     * @return Number of clients allowed.
+     */
+    public long getAllowedCount() {
+        return allowed.get();
+    }
+
+    /**
+     * Returns number of clients denied.
+     *
+     * @return Number of clients denied.
+     */
+    public long getDeniedCount() {
+        return denied.get();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sockslib.common.AddressType;
+import sockslib.common.SocksCommand;
+import sockslib.server.Session;
+import sockslib.server.listener.CloseSessionException;
+import sockslib.server.listener.CommandListener;
+import sockslib.server.listener.DatagramFilter;
+import sockslib.server.msg.CommandMessage;
+
+/**
+ * The class <code>DestinationAccessControl</code> is a {@link CommandListener} that allows or
+ * denies the destination of a SOCKS command by {@link DestinationRules}.
+ * <p>
+ * Command listeners are called before the destination's domain name is resolved, so domain rules
+ * never cause a DNS lookup. A CIDR rule can only match a domain name destination after it's
+ * resolved; if {@link #setResolveDomainNames(boolean)} is <code>true</code> (default) and a CIDR
+ * rule may take precedence over the matched domain rule, the domain name will be resolved here.
+ * </p>
+ * <pre>
+ * DestinationAccessControl accessControl = new DestinationAccessControl(rules);
+ * server.getSessionManager().onCommand("acl", accessControl);
+ * </pre>
+ * <p>
+ * If a destination is denied, the client receives {@link sockslib.server.msg.ServerReply#CONNECTION_NOT_ALLOWED_BY_RULESET}.
+ * Rules can be replaced at runtime by {@link #setRules(DestinationRules)}.
+ * </p>
+ * <p>
+ * The destination of a UDP ASSOCIATE command is the client's own endpoint, so it isn't checked.
+ * Instead, this class is installed as the {@link DatagramFilter} of the association, and the
+ * destination of each datagram the client sends is checked with the command
+ * {@link SocksCommand#UDP_ASSOCIATE} before its domain name is resolved; denied datagrams are
+ * dropped.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:02 AM
+ */
+public class DestinationAccessControl implements CommandListener, DatagramFilter {
+
+    private final AtomicReference<DestinationRules> rules;
+
+    private boolean resolveDomainNames = true;
+
+    public DestinationAccessControl(DestinationRules rules) {
+        this.rules = new AtomicReference<>(checkNotNull(rules, "Argument [rules] may not be null"));
+    }
+
+    @Override
+    public void onCommand(Session session, CommandMessage message) throws CloseSessionException {
+        if (message.getCommand() == SocksCommand.UDP_ASSOCIATE) {
+            session.setAttribute(SESSION_FILTER_KEY, this);
+            return;
+        }
+        DestinationRules current = rules.get();
+        String domain = null;
+        InetAddress address = null;
+        if (message.getAddressType() == AddressType.DOMAIN_NAME) {
+            domain = message.getHost();
+        } else {
+            address = message.getInetAddress();
+        }
+        int rule = current.match(message.getCommand(), domain, address, message.getPort());
+        if (address == null && resolveDomainNames && current.needsAddress(rule) && message
+                .resolve()) {
+            rule = current.match(message.getCommand(), domain, message.getInetAddress(), message
+                    .getPort());
+        }
+        if (!current.apply(rule)) {
+            throw new CloseSessionException("Destination denied by rule " + (rule ==
+                    DestinationRules.NO_MATCH ? "<default>" : current.getName(rule)));
+        }
+    }
+
+    @Override
+    public boolean accept(Session session, String host, InetAddress address, int port, boolean
+            fromClient) {
+        // Domain rules can't match the source of a reply, replies of allowed destinations would
+        // be dropped by a default deny. Only datagrams the client sends are checked.
+        if (!fromClient) {
+            return true;
+        }
+        DestinationRules current = rules.get();
+        int rule = current.match(SocksCommand.UDP_ASSOCIATE, host, address, port);
+        if (address == null && host != null && resolveDomainNames && current.needsAddress(rule)) {
+            try {
+                rule = current.match(SocksCommand.UDP_ASSOCIATE, host, InetAddress.getByName
+                        (host), port);
+            } catch (UnknownHostException e) {
+                // Domain rules decide, as for a command whose domain name can't be resolved.
+            }
+        }
+        return current.apply(rule);
+    }
+
+    /**
+     * Replaces current rules atomically. Hit counters start from zero with the new rules.
+     *
+     * @param rules New rules.
+     * @return Old rules.
+     */
+    public DestinationRules setRules(DestinationRules rules) {
+        return this.rules.getAndSet(checkNotNull(rules, "Argument [rules] may not be null"));
+    }
+
+    public DestinationRules getRules() {
+        return rules.get();
+    }
+
+    public boolean isResolveDomainNames() {
+        return resolveDomainNames;
+    }
+
+    public void setResolveDomainNames(boolean resolveDomainNames) {
+        this.resolveDomainNames = resolveDomainNames;
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import sockslib.common.CIDR;
+import sockslib.common.CIDRTrie;
+import sockslib.common.SocksCommand;
+
+/**
+ * The class <code>DestinationRules</code> is an immutable, compiled list of rules that allow or
+ * deny SOCKS command destinations by domain suffix, CIDR block, port and command.
+ * <p>
+ * Rules are evaluated in the order they were added and the first matched rule wins. Domain
+ * suffixes are kept in a {@link DomainSuffixTrie}, CIDR blocks in a {@link CIDRTrie} and ports in a
+ * {@link BitSet} per rule. Every trie node holds the sorted indexes of all rules that match it,
+ * including the rules of its parent nodes, so an evaluation costs one walk of each trie.
+ * </p>
+ * <pre>
+ * DestinationRules rules = DestinationRules.newBuilder()
+ *     .deny("internal").cidr("10.0.0.0/8").cidr("fc00::/7").add()
+ *     .allow("web").domain("example.com").port(80).port(443).add()
+ *     .deny("smtp").portRange(25, 25).add()
+ *     .setDefaultAllow(true)
+ *     .build();
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:02 AM
+ * @see DestinationAccessControl
+ */
+public final class DestinationRules {
+
+    /**
+     * Index returned by {@link #match(SocksCommand, String, InetAddress, int)} if no rule matches.
+     */
+    public static final int NO_MATCH = -1;
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final String[] names;
+
+    private final boolean[] allows;
+
+    /**
+     * Allowed ports of each rule, <code>null</code> means all ports.
+     */
+    private final BitSet[] ports;
+
+    /**
+     * Bit mask of allowed commands of each rule.
+     */
+    private final int[] commands;
+
+    private final DomainSuffixTrie<int[]> domains;
+
+    private final CIDRTrie<int[]> addresses;
+
+    /**
+     * Rules that have neither domain nor CIDR condition.
+     */
+    private final int[] anyDestination;
+
+    /**
+     * Smallest index of the rules which have CIDR conditions.
+     */
+    private final int firstAddressRule;
+
+    private final boolean defaultAllow;
+
+    private final AtomicLongArray hits;
+
+    private final AtomicLong defaultHits = new AtomicLong();
+
+    private DestinationRules(Builder builder) {
+        int size = builder.rules.size();
+        names = new String[size];
+        allows = new boolean[size];
+        ports = new BitSet[size];
+        commands = new int[size];
+        hits = new AtomicLongArray(size);
+        defaultAllow = builder.defaultAllow;
+
+        DomainSuffixTrie<List<Integer>> domainRules = new DomainSuffixTrie<>();
+        CIDRTrie<CIDRRules> addressRules = new CIDRTrie<>();
+        Map<CIDR, CIDRRules> cidrRules = new HashMap<>();
+        List<Integer> anyRules = new ArrayList<>();
+        int firstAddress = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            RuleBuilder rule = builder.rules.get(i);
+            names[i] = rule.name;
+            allows[i] = rule.allow;
+            ports[i] = rule.ports;
+            commands[i] = rule.commands;
+            for (String domain : rule.domains) {
+                List<Integer> list = domainRules.get(domain);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    domainRules.put(domain, list);
+                }
+                list.add(i);
+            }
+            for (CIDR cidr : rule.cidrs) {
+                CIDRRules entry = cidrRules.get(cidr);
+                if (entry == null) {
+                    entry = new CIDRRules(cidr);
+                    cidrRules.put(cidr, entry);
+                    addressRules.put(cidr, entry);
+                }
+                entry.rules.add(i);
+                firstAddress = Math.min(firstAddress, i);
+            }
+            if (rule.domains.isEmpty() && rule.cidrs.isEmpty()) {
+                anyRules.add(i);
+            }
+        }
+        firstAddressRule = firstAddress;
+        anyDestination = toArray(anyRules);
+
+        // Merge rules of parent suffixes into child suffixes.
+        domains = new DomainSuffixTrie<>();
+        List<List<Integer>> matched = new ArrayList<>();
+        for (String suffix : domainRules.suffixes()) {
+            matched.clear();
+            domainRules.allMatches(suffix, matched);
+            TreeSet<Integer> merged = new TreeSet<>();
+            for (List<Integer> list : matched) {
+                merged.addAll(list);
+            }
+            domains.put(suffix, toArray(merged));
+        }
+
+        // Merge rules of enclosing blocks into nested blocks.
+        addresses = new CIDRTrie<>();
+        List<CIDRRules> enclosing = new ArrayList<>();
+        for (CIDRRules entry : addressRules.values()) {
+            enclosing.clear();
+            addressRules.allMatches(entry.cidr.getAddress(), enclosing);
+            TreeSet<Integer> merged = new TreeSet<>();
+            for (CIDRRules e : enclosing) {
+                if (e.cidr.getPrefixLength() <= entry.cidr.getPrefixLength()) {
+                    merged.addAll(e.rules);
+                }
+            }
+            addresses.put(entry.cidr, toArray(merged));
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static int[] toArray(Iterable<Integer> values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        if (list.isEmpty()) {
+            return NO_RULES;
+        }
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Returns index of the first rule that matches the destination.
+     *
+     * @param command Command, may be <code>null</code> to match any command.
+     * @param domain  Domain name of destination, or <code>null</code>.
+     * @param address IP address of destination, or <code>null</code> if it's not resolved.
+     * @param port    Port of destination.
+     * @return Index of the matched rule, or {@link #NO_MATCH}.
+     */
+    public int match(SocksCommand command, String domain, InetAddress address, int port) {
+        int commandBit = command == null ? -1 : 1 << command.ordinal();
+        int best = first(anyDestination, Integer.MAX_VALUE, commandBit, port);
+        if (domain != null) {
+            int[] candidates = domains.longestMatch(domain);
+            if (candidates != null) {
+                best = first(candidates, best, commandBit, port);
+            }
+        }
+        if (address != null && firstAddressRule < best) {
+            int[] candidates = addresses.longestMatch(address);
+            if (candidates != null) {
+                best = first(candidates, best, commandBit, port);
+            }
+        }
+        return best == Integer.MAX_VALUE ? NO_MATCH : best;
+    }
+
+    private int first(int[] candidates, int best, int commandBit, int port) {
+        for (int rule : candidates) {
+            if (rule >= best) {
+                break;
+            }
+            if ((commands[rule] & commandBit) != 0 && (ports[rule] == null || (port >= 0 && ports[rule]
+                    .get(port)))) {
+                return rule;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns <code>true</code> if the result of {@link #match(SocksCommand, String, InetAddress,
+     * int)} might change once the destination's domain name is resolved.
+     *
+     * @param matchedRule Rule matched without an IP address.
+     * @return <code>true</code> if there is a CIDR rule before the matched rule.
+     */
+    public boolean needsAddress(int matchedRule) {
+        return firstAddressRule != Integer.MAX_VALUE && (matchedRule == NO_MATCH || firstAddressRule
+                < matchedRule);
+    }
+
+    /**
+     * Returns the action of a matched rule and counts a hit.
+     *
+     * @param matchedRule Index of rule returned by {@link #match(SocksCommand, String, InetAddress,
+     *                    int)}.
+     * @return <code>true</code> if the destination is allowed.
+     */
+    public boolean apply(int matchedRule) {
+        if (matchedRule == NO_MATCH) {
+            defaultHits.incrementAndGet();
+            return defaultAllow;
+        }
+        hits.incrementAndGet(matchedRule);
+        return allows[matchedRule];
+    }
+
+    /**
+     * Evaluates a destination and counts a hit.
+     *
+     * @param command Command.
+     * @param domain  Domain name of destination, or <code>null</code>.
+     * @param address IP address of destination, or <code>null</code>.
+     * @param port    Port of destination.
+     * @return <code>true</code> if the destination is allowed.
+     */
+    public boolean isAllowed(SocksCommand command, String domain, InetAddress address, int port) {
+        return apply(match(command, domain, address, port));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int rule) {
+        return names[rule];
+    }
+
+    public boolean isAllow(int rule) {
+        return allows[rule];
+    }
+
+    public boolean isDefaultAllow() {
+        return defaultAllow;
+    }
+
+    /**
+     * Returns how many times a rule has been applied.
+     *
+     * @param rule Index of rule.
+     * @return Hits of the rule.
+     */
+    public long getHits(int rule) {
+        return hits.get(rule);
+    }
+
+    /**
+     * Returns how many times the default action has been applied.
+     *
+     * @return Hits of the default action.
+     */
+    public long getDefaultHits() {
+        return defaultHits.get();
+    }
+
+    /**
+     * Returns hits of all rules by name. If two rules have the same name, their hits are summed.
+     *
+     * @return Hits of all rules.
+     */
+    public Map<String, Long> getHitsByName() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            Long old = result.get(names[i]);
+            result.put(names[i], (old == null ? 0 : old) + hits.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "DestinationRules{rules=" + names.length + ", defaultAllow=" + defaultAllow + '}';
+    }
+
+    private static final class CIDRRules {
+
+        final CIDR cidr;
+
+        final List<Integer> rules = new ArrayList<>();
+
+        CIDRRules(CIDR cidr) {
+            this.cidr = cidr;
+        }
+    }
+
+    /**
+     * The class <code>Builder</code> is a builder of {@link DestinationRules}.
+     */
+    public static final class Builder {
+
+        private final List<RuleBuilder> rules = new ArrayList<>();
+
+        private boolean defaultAllow = true;
+
+        private boolean built = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Starts an allow rule. Call {@link RuleBuilder#add()} to finish it.
+         *
+         * @param name Name of the rule, used in hit counters.
+         * @return Rule builder.
+         */
+        public RuleBuilder allow(String name) {
+            return new RuleBuilder(this, name, true);
+        }
+
+        /**
+         * Starts a deny rule. Call {@link RuleBuilder#add()} to finish it.
+         *
+         * @param name Name of the rule, used in hit counters.
+         * @return Rule builder.
+         */
+        public RuleBuilder deny(String name) {
+            return new RuleBuilder(this, name, false);
+        }
+
+        /**
+         * Sets the action for destinations that match no rule. It's <code>true</code> by default.
+         *
+         * @param defaultAllow <code>true</code> to allow unmatched destinations.
+         * @return This builder.
+         */
+        public Builder setDefaultAllow(boolean defaultAllow) {
+            this.defaultAllow = defaultAllow;
+            return this;
+        }
+
+        public DestinationRules build() {
+            checkArgument(!built, "Builder has been built");
+            built = true;
+            return new DestinationRules(this);
+        }
+    }
+
+    /**
+     * The class <code>RuleBuilder</code> builds one rule. A rule without domain and CIDR matches all
+     * destinations, a rule without port matches all ports and a rule without command matches all
+     * commands.
+     */
+    public static final class RuleBuilder {
+
+        private final Builder parent;
+
+        private final String name;
+
+        private final boolean allow;
+
+        private final List<String> domains = new ArrayList<>();
+
+        private final List<CIDR> cidrs = new ArrayList<>();
+
+        private BitSet ports;
+
+        private int commands = 0;
+
+        private RuleBuilder(Builder parent, String name, boolean allow) {
+            this.parent = parent;
+            this.name = checkNotNull(name, "Argument [name] may not be null");
+            this.allow = allow;
+        }
+
+        /**
+         * Matches a domain and all of its sub domains.
+         *
+         * @param suffix Domain suffix, such as "example.com".
+         * @return This rule builder.
+         */
+        public RuleBuilder domain(String suffix) {
+            domains.add(checkNotNull(suffix, "Argument [suffix] may not be null"));
+            return this;
+        }
+
+        public RuleBuilder cidr(String cidr) {
+            return cidr(CIDR.parse(cidr));
+        }
+
+        public RuleBuilder cidr(CIDR cidr) {
+            cidrs.add(checkNotNull(cidr, "Argument [cidr] may not be null"));
+            return this;
+        }
+
+        public RuleBuilder port(int port) {
+            return portRange(port, port);
+        }
+
+        public RuleBuilder portRange(int from, int to) {
+            checkArgument(from >= 0 && to <= 0xffff && from <= to, "Invalid port range");
+            if (ports == null) {
+                ports = new BitSet(0x10000);
+            }
+            ports.set(from, to + 1);
+            return this;
+        }
+
+        public RuleBuilder command(SocksCommand command) {
+            commands |= 1 << checkNotNull(command, "Argument [command] may not be null").ordinal();
+            return this;
+        }
+
+        /**
+         * Adds this rule to the rule set.
+         *
+         * @return The builder of rule set.
+         */
+        public Builder add() {
+            if (commands == 0) {
+                commands = -1;
+            }
+            parent.rules.add(this);
+            return parent;
+        }
+    }
+}
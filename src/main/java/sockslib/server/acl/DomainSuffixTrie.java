@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The class <code>DomainSuffixTrie</code> maps domain suffixes to values. Domain names are stored
+ * label by label in reversed order, so <code>www.example.com</code> is stored as
+ * <code>com -&gt; example -&gt; www</code>.
+ * <p>
+ * A suffix matches itself and all of its sub domains, <code>example.com</code> matches
+ * <code>example.com</code> and <code>www.example.com</code>, but not
+ * <code>badexample.com</code>. Matching is case insensitive and doesn't allocate any object.
+ * </p>
+ * <p>
+ * This class is not thread-safe for writing. A trie should be fully built and then published.
+ * </p>
+ *
+ * @param <V> Type of value.
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:02 AM
+ */
+public class DomainSuffixTrie<V> {
+
+    private static final String[] NO_LABELS = new String[0];
+
+    private final Node<V> root = new Node<>();
+
+    private int size = 0;
+
+    /**
+     * Associates a value with a domain suffix. A leading <code>*.</code> or <code>.</code> is
+     * ignored.
+     *
+     * @param suffix Domain suffix, such as "example.com".
+     * @param value  Value, may not be <code>null</code>.
+     * @return The previous value of the suffix, or <code>null</code>.
+     */
+    public V put(String suffix, V value) {
+        checkNotNull(value, "Argument [value] may not be null");
+        String[] labels = split(suffix);
+        Node<V> node = root;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            node = node.getOrCreate(labels[i]);
+        }
+        V old = node.value;
+        if (old == null) {
+            size++;
+        }
+        node.value = value;
+        return old;
+    }
+
+    /**
+     * Returns the value of a suffix.
+     *
+     * @param suffix Domain suffix.
+     * @return Value of the suffix, or <code>null</code> if the suffix isn't in the trie.
+     */
+    public V get(String suffix) {
+        String[] labels = split(suffix);
+        Node<V> node = root;
+        for (int i = labels.length - 1; i >= 0 && node != null; i--) {
+            node = node.find(labels[i], 0, labels[i].length());
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Returns value of the longest suffix that matches the domain name.
+     *
+     * @param domain Domain name.
+     * @return Value of the longest matched suffix, or <code>null</code> if nothing matches.
+     */
+    public V longestMatch(String domain) {
+        if (domain == null) {
+            return null;
+        }
+        int end = domain.length();
+        if (end > 0 && domain.charAt(end - 1) == '.') {
+            end--;
+        }
+        Node<V> node = root;
+        V best = root.value;
+        while (end > 0) {
+            int start = domain.lastIndexOf('.', end - 1) + 1;
+            node = node.find(domain, start, end);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                best = node.value;
+            }
+            end = start - 1;
+        }
+        return best;
+    }
+
+    /**
+     * Returns values of all suffixes that match the domain name, from the shortest suffix to the
+     * longest one.
+     *
+     * @param domain Domain name.
+     * @param result List which matched values will be added to.
+     */
+    public void allMatches(String domain, List<V> result) {
+        String[] labels = split(domain);
+        Node<V> node = root;
+        if (node.value != null) {
+            result.add(node.value);
+        }
+        for (int i = labels.length - 1; i >= 0 && node != null; i--) {
+            node = node.find(labels[i], 0, labels[i].length());
+            if (node != null && node.value != null) {
+                result.add(node.value);
+            }
+        }
+    }
+
+    /**
+     * Returns number of suffixes in the trie.
+     *
+     * @return Number of suffixes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns all suffixes in the trie.
+     *
+     * @return All suffixes.
+     */
+    public List<String> suffixes() {
+        List<String> suffixes = new ArrayList<>(size);
+        collect(root, "", suffixes);
+        return suffixes;
+    }
+
+    private void collect(Node<V> node, String suffix, List<String> suffixes) {
+        if (node.value != null) {
+            suffixes.add(suffix);
+        }
+        for (int i = 0; i < node.count; i++) {
+            collect(node.children[i], suffix.isEmpty() ? node.labels[i] :
+                    node.labels[i] + "." + suffix, suffixes);
+        }
+    }
+
+    private static String[] split(String domain) {
+        checkNotNull(domain, "Argument [domain] may not be null");
+        String value = domain.trim().toLowerCase(Locale.ENGLISH);
+        if (value.startsWith("*.")) {
+            value = value.substring(2);
+        } else if (value.startsWith(".")) {
+            value = value.substring(1);
+        }
+        if (value.endsWith(".")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        if (value.isEmpty()) {
+            return NO_LABELS;
+        }
+        String[] labels = value.split("\\.");
+        for (String label : labels) {
+            checkArgument(!label.isEmpty(), "Invalid domain:" + domain);
+        }
+        return labels;
+    }
+
+    /**
+     * Compares a lower case label with a region of domain name, ignoring case of the domain name.
+     */
+    private static int compare(String label, String domain, int start, int end) {
+        int length = Math.min(label.length(), end - start);
+        for (int i = 0; i < length; i++) {
+            char c = domain.charAt(start + i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            int diff = label.charAt(i) - c;
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return label.length() - (end - start);
+    }
+
+    private static final class Node<V> {
+
+        String[] labels = NO_LABELS;
+
+        @SuppressWarnings("unchecked")
+        Node<V>[] children = (Node<V>[]) new Node<?>[0];
+
+        int count = 0;
+
+        V value;
+
+        Node<V> find(String domain, int start, int end) {
+            int index = indexOf(domain, start, end);
+            return index >= 0 ? children[index] : null;
+        }
+
+        int indexOf(String domain, int start, int end) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(labels[mid], domain, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        Node<V> getOrCreate(String label) {
+            int index = indexOf(label, 0, label.length());
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (count == labels.length) {
+                int capacity = Math.max(2, count * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, index, labels, index + 1, count - index);
+            System.arraycopy(children, index, children, index + 1, count - index);
+            Node<V> child = new Node<>();
+            labels[index] = label;
+            children[index] = child;
+            count++;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+
+import sockslib.common.CIDR;
+import sockslib.common.CIDRTrie;
+
+/**
+ * The class <code>IPAccessRules</code> is an immutable, compiled set of CIDR allow/deny rules for
+ * IPv4 and IPv6 addresses.
+ * <p>
+ * The most specific rule that contains an address decides whether the address is allowed. If an
+ * address block is both allowed and denied, deny wins. If no rule matches, the default action is
+ * used.
+ * </p>
+ * <pre>
+ * IPAccessRules rules = IPAccessRules.newBuilder()
+ *     .allow("10.0.0.0/8")
+ *     .deny("10.1.0.0/16")
+ *     .allow("2001:db8::/32")
+ *     .setDefaultAllow(false)
+ *     .build();
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 18, 2026 11:59 PM
+ * @see ClientAccessControl
+ */
+public final class IPAccessRules {
+
+    private final CIDRTrie<Boolean> trie;
+
+    private final boolean defaultAllow;
+
+    private IPAccessRules(CIDRTrie<Boolean> trie, boolean defaultAllow) {
+        this.trie = trie;
+        this.defaultAllow = defaultAllow;
+    }
+
+    /**
+     * Returns a rule set that allows all addresses.
+     *
+     * @return A rule set that allows all addresses.
+     */
+    public static IPAccessRules allowAll() {
+        return newBuilder().build();
+    }
+
+    /**
+     * Returns a new {@link Builder}.
+     *
+     * @return A new {@link Builder}.
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns <code>true</code> if the address is allowed.
+     *
+     * @param address IP address.
+     * @return <code>true</code> if the address is allowed.
+     */
+    public boolean isAllowed(InetAddress address) {
+        if (address == null) {
+            return defaultAllow;
+        }
+        return isAllowed(address.getAddress());
+    }
+
+    /**
+     * Returns <code>true</code> if the address is allowed.
+     *
+     * @param address 4 or 16 bytes of address.
+     * @return <code>true</code> if the address is allowed.
+     */
+    public boolean isAllowed(byte[] address) {
+        Boolean allow = trie.longestMatch(address);
+        return allow == null ? defaultAllow : allow;
+    }
+
+    /**
+     * Returns number of rules.
+     *
+     * @return Number of rules.
+     */
+    public int size() {
+        return trie.size();
+    }
+
+    public boolean isDefaultAllow() {
+        return defaultAllow;
+    }
+
+    @Override
+    public String toString() {
+        return "IPAccessRules{rules=" + trie.size() + ", defaultAllow=" + defaultAllow + '}';
+    }
+
+    /**
+     * The class <code>Builder</code> is a builder of {@link IPAccessRules}.
+     */
+    public static final class Builder {
+
+        private CIDRTrie<Boolean> trie = new CIDRTrie<>();
+
+        private boolean defaultAllow = true;
+
+        private Builder() {
+        }
+
+        public Builder allow(String cidr) {
+            return allow(CIDR.parse(cidr));
+        }
+
+        public Builder allow(CIDR cidr) {
+            Boolean old = trie.put(cidr, Boolean.TRUE);
+            if (Boolean.FALSE.equals(old)) {
+                // Deny wins if a block is listed twice.
+                trie.put(cidr, Boolean.FALSE);
+            }
+            return this;
+        }
+
+        public Builder deny(String cidr) {
+            return deny(CIDR.parse(cidr));
+        }
+
+        public Builder deny(CIDR cidr) {
+            trie.put(cidr, Boolean.FALSE);
+            return this;
+        }
+
+        /**
+         * Sets the action for addresses that match no rule. It's <code>true</code> by default.
+         *
+         * @param defaultAllow <code>true</code> to allow unmatched addresses.
+         * @return This builder.
+         */
+        public Builder setDefaultAllow(boolean defaultAllow) {
+            this.defaultAllow = defaultAllow;
+            return this;
+        }
+
+        /**
+         * Reads rules from a reader. Each line is <code>allow &lt;cidr&gt;</code>,
+         * <code>deny &lt;cidr&gt;</code> or <code>default allow|deny</code>. Empty lines and lines
+         * starting with <code>#</code> are ignored.
+         *
+         * @param reader Reader of rules.
+         * @return This builder.
+         * @throws IOException If an I/O error occurred.
+         */
+        public Builder load(Reader reader) throws IOException {
+            checkNotNull(reader, "Argument [reader] may not be null");
+            BufferedReader bufferedReader = new BufferedReader(reader);
+            String line;
+            int lineNumber = 0;
+            while ((line = bufferedReader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid rule at line " + lineNumber + ":"
+                            + line);
+                }
+                if ("allow".equalsIgnoreCase(parts[0])) {
+                    allow(parts[1]);
+                } else if ("deny".equalsIgnoreCase(parts[0])) {
+                    deny(parts[1]);
+                } else if ("default".equalsIgnoreCase(parts[0])) {
+                    setDefaultAllow("allow".equalsIgnoreCase(parts[1]));
+                } else {
+                    throw new IllegalArgumentException("Invalid rule at line " + lineNumber + ":"
+                            + line);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Builds an {@link IPAccessRules}. This builder can't be used any more after building.
+         *
+         * @return Instance of {@link IPAccessRules}.
+         */
+        public IPAccessRules build() {
+            checkNotNull(trie, "Builder has been built");
+            IPAccessRules rules = new IPAccessRules(trie, defaultAllow);
+            trie = null;
+            return rules;
+        }
+    }
+}
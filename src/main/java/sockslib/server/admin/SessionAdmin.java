@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.admin;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import sockslib.server.Session;
+import sockslib.server.SessionManager;
+import sockslib.server.SessionTimeline;
+import sockslib.utils.AddressUtil;
+import sockslib.utils.Logger;
+
+/**
+ * The class <code>SessionAdmin</code> serves a line protocol to list and kill live sessions, on
+ * the loopback address by default.
+ * <pre>
+ * String token = SessionAdmin.newToken();
+ * SessionAdmin admin = new SessionAdmin(server.getSessionManager(), 9181, token);
+ * admin.start();
+ * </pre>
+ * <p>
+ * On Android every app can connect to the loopback address, so a connection must authenticate
+ * with a shared token first; the token is compared in constant time, and a connection sending a
+ * wrong token is closed. Connect with e.g. <code>nc 127.0.0.1 9181</code> and send commands, each
+ * response ends with a line starting with <code>OK</code> or <code>ERR</code>:
+ * </p>
+ * <pre>
+ * auth &lt;token&gt;         # must be the first command
+ * list [query]         # id client user target age(s) up down rate(B/s) state
+ * count [query]
+ * kill &lt;id&gt; | kill query
+ * help
+ * quit
+ * </pre>
+ * <p>
+ * Queries are parsed by {@link SessionQuery#parse(String)}. Sessions are read from the managed
+ * sessions of the {@link SessionManager} without locking, so listing many sessions costs only the
+ * admin thread. Connections are served one by one by a single daemon thread.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:55 AM
+ */
+public class SessionAdmin implements Runnable {
+
+    private static final Logger logger = Logger.getLogger("SessionAdmin");
+
+    private static final String HEADER = "# id client user target age(s) up down rate(B/s) "
+            + "state\n";
+
+    private static final String HELP = "list [query]\ncount [query]\nkill <id> | kill query\n"
+            + "help\nquit\nquery: id= user= client=<cidr> target=<domain suffix> state= minAge=<s>"
+            + " minBytes= sort=[-]id|age|bytes|rate|user limit=\n";
+
+    private static final int IDLE_TIMEOUT = 60000;
+
+    private static final int MIN_TOKEN_LENGTH = 16;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final SessionManager sessionManager;
+
+    private final SocketAddress bindAddress;
+
+    /**
+     * SHA-256 of the token, digests have the same length so comparing them leaks nothing.
+     */
+    private final byte[] tokenDigest;
+
+    /**
+     * Time and bytes of each session at the previous listing, guarded by this.
+     */
+    private Map<Long, long[]> samples = new HashMap<>();
+
+    private volatile ServerSocket serverSocket;
+
+    private Thread thread;
+
+    /**
+     * Creates an admin on the loopback address.
+     *
+     * @param sessionManager Session manager of the server.
+     * @param port           Port.
+     * @param token          Token clients authenticate with, at least 16 characters.
+     */
+    public SessionAdmin(SessionManager sessionManager, int port, String token) {
+        this(sessionManager, new InetSocketAddress(AddressUtil.loopbackAddress(), port), token);
+    }
+
+    /**
+     * Creates an admin.
+     *
+     * @param sessionManager Session manager of the server.
+     * @param bindAddress    Address to bind.
+     * @param token          Token clients authenticate with, at least 16 characters.
+     */
+    public SessionAdmin(SessionManager sessionManager, SocketAddress bindAddress, String token) {
+        this.sessionManager = checkNotNull(sessionManager, "Argument [sessionManager] may not be "
+                + "null");
+        this.bindAddress = checkNotNull(bindAddress, "Argument [bindAddress] may not be null");
+        checkNotNull(token, "Argument [token] may not be null");
+        checkArgument(token.length() >= MIN_TOKEN_LENGTH, "Token must have at least 16 "
+                + "characters");
+        tokenDigest = digest(token);
+    }
+
+    /**
+     * Generates a random token.
+     *
+     * @return 32 hex digits.
+     */
+    public static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder builder = new StringBuilder(32);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b &
+                    0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(bindAddress);
+        serverSocket = socket;
+        thread = new Thread(this, "SessionAdmin");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close: {}", e.getMessage());
+        }
+        thread = null;
+    }
+
+    public SocketAddress getLocalAddress() {
+        ServerSocket socket = serverSocket;
+        return socket == null ? null : socket.getLocalSocketAddress();
+    }
+
+    /**
+     * Lists live sessions, throughput is computed since the previous listing.
+     *
+     * @param query Filters, order and limit.
+     * @return Snapshots of matched sessions.
+     */
+    public synchronized List<SessionInfo> list(SessionQuery query) {
+        long now = System.nanoTime();
+        Map<Long, Session> sessions = sessionManager.getManagedSessions();
+        Map<Long, long[]> nextSamples = new HashMap<>(sessions.size() * 2);
+        List<SessionInfo> result = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            SessionInfo info = SessionInfo.of(session, now);
+            long bytes = info.getTotalBytes();
+            long[] sample = samples.get(info.getId());
+            long elapsed = sample == null ? info.getAge(TimeUnit.NANOSECONDS) : now - sample[0];
+            long delta = sample == null ? bytes : bytes - sample[1];
+            info.setBytesPerSecond(elapsed <= 0 ? 0 : (long) (delta * 1e9 / elapsed));
+            nextSamples.put(info.getId(), new long[]{now, bytes});
+            if (query.matches(info)) {
+                result.add(info);
+            }
+        }
+        // Closed sessions are dropped from the samples.
+        samples = nextSamples;
+        Collections.sort(result, query.getOrder());
+        if (result.size() > query.getLimit()) {
+            result = new ArrayList<>(result.subList(0, query.getLimit()));
+        }
+        return result;
+    }
+
+    /**
+     * Counts live sessions, throughput isn't computed.
+     *
+     * @param query Filters.
+     * @return Number of matched sessions.
+     */
+    public int count(SessionQuery query) {
+        long now = System.nanoTime();
+        int count = 0;
+        for (Session session : sessionManager.getManagedSessions().values()) {
+            if (query.matches(SessionInfo.of(session, now))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Closes a session.
+     *
+     * @param id Id of the session.
+     * @return <code>true</code> if the session was live.
+     */
+    public boolean kill(long id) {
+        Session session = sessionManager.getSession(id);
+        if (session == null) {
+            return false;
+        }
+        kill(session);
+        return true;
+    }
+
+    /**
+     * Closes sessions.
+     *
+     * @param query Filters, at least one has to be set. Order and limit are ignored.
+     * @return Number of closed sessions.
+     */
+    public int kill(SessionQuery query) {
+        if (!query.hasFilters()) {
+            throw new IllegalArgumentException("Killing needs an id or a filter");
+        }
+        long now = System.nanoTime();
+        int count = 0;
+        for (Session session : sessionManager.getManagedSessions().values()) {
+            if (query.matches(SessionInfo.of(session, now))) {
+                kill(session);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void run() {
+        ServerSocket server = serverSocket;
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    logger.warn("Failed to accept", e);
+                }
+                continue;
+            }
+            try {
+                serve(socket);
+            } catch (SocketTimeoutException e) {
+                logger.debug("Closed idle connection {}", socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                logger.debug("Failed to serve {}: {}", socket.getRemoteSocketAddress(), e);
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Nothing to do.
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        socket.setSoTimeout(IDLE_TIMEOUT);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                "UTF-8"));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                "UTF-8"), 64 * 1024);
+        boolean authenticated = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int index = line.indexOf(' ');
+            String command = index < 0 ? line : line.substring(0, index);
+            String arguments = index < 0 ? "" : line.substring(index + 1).trim();
+            if (!authenticated) {
+                if (!command.equals("auth") || !MessageDigest.isEqual(tokenDigest, digest
+                        (arguments))) {
+                    logger.warn("Rejected connection {}, it didn't authenticate", socket
+                            .getRemoteSocketAddress());
+                    writer.write("ERR authentication required\n");
+                    writer.flush();
+                    return;
+                }
+                authenticated = true;
+                writer.write("OK\n");
+                writer.flush();
+                continue;
+            }
+            try {
+                if (!execute(command, arguments, writer)) {
+                    writer.flush();
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                writer.write("ERR " + e.getMessage() + "\n");
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Executes a command and writes its response.
+     *
+     * @return <code>false</code> if the connection should be closed.
+     */
+    private boolean execute(String command, String arguments, Writer writer) throws IOException {
+        switch (command) {
+            case "list":
+                List<SessionInfo> sessions = list(SessionQuery.parse(arguments));
+                writer.write(HEADER);
+                StringBuilder builder = new StringBuilder(128);
+                for (SessionInfo info : sessions) {
+                    builder.setLength(0);
+                    writer.append(info.appendTo(builder).append('\n'));
+                }
+                writer.write("OK " + sessions.size() + " sessions\n");
+                return true;
+            case "count":
+                writer.write("OK " + count(SessionQuery.parse(arguments)) + "\n");
+                return true;
+            case "kill":
+                int killed;
+                if (!arguments.isEmpty() && arguments.indexOf('=') < 0) {
+                    try {
+                        killed = kill(Long.parseLong(arguments)) ? 1 : 0;
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid id: " + arguments);
+                    }
+                } else {
+                    killed = kill(SessionQuery.parse(arguments));
+                }
+                writer.write("OK " + killed + " killed\n");
+                return true;
+            case "help":
+                writer.write(HELP);
+                writer.write("OK\n");
+                return true;
+            case "quit":
+                writer.write("OK bye\n");
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    private static byte[] digest(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256.
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void kill(Session session) {
+        SessionTimeline.setCloseReason(session, SessionTimeline.CloseReason.KILLED);
+        logger.info("{} killed by admin", session);
+        session.close();
+    }
+}
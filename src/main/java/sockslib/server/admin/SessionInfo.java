@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.admin;
+
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import sockslib.common.net.NetworkMonitor;
+import sockslib.server.Session;
+import sockslib.server.SessionTimeline;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+
+/**
+ * The class <code>SessionInfo</code> is a snapshot of a live session, as listed by
+ * {@link SessionAdmin}.
+ * <p>
+ * Bytes are counted on the client connection, so they include the handshake. Upload is what the
+ * client sent, download is what it received.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:55 AM
+ */
+public final class SessionInfo {
+
+    /**
+     * The enumeration <code>State</code> represents the phase of a session.
+     */
+    public enum State {
+
+        /**
+         * The command hasn't been read yet.
+         */
+        HANDSHAKE,
+
+        /**
+         * The command is read, the destination isn't connected yet.
+         */
+        CONNECTING,
+
+        /**
+         * Data is being relayed.
+         */
+        RELAYING,
+
+        /**
+         * The session is being closed.
+         */
+        CLOSING;
+
+        private final String label = name().toLowerCase(Locale.US);
+
+        /**
+         * Returns the state of a label.
+         *
+         * @param label Label such as "relaying", case is ignored.
+         * @return State, or <code>null</code> if there is no such state.
+         */
+        @Nullable
+        public static State of(String label) {
+            for (State state : values()) {
+                if (state.label.equalsIgnoreCase(label)) {
+                    return state;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final Session session;
+
+    private final long id;
+
+    private final SocketAddress client;
+
+    private final String username;
+
+    private final String target;
+
+    private final long ageNanos;
+
+    private final long uploadBytes;
+
+    private final long downloadBytes;
+
+    private final State state;
+
+    private long bytesPerSecond;
+
+    private SessionInfo(Session session, long now) {
+        this.session = session;
+        id = session.getId();
+        client = session.getClientAddress();
+        Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+        username = user instanceof User ? ((User) user).getUsername() : null;
+        SessionTimeline timeline = SessionTimeline.get(session);
+        CommandMessage command = timeline == null ? null : timeline.getCommand();
+        if (command == null) {
+            target = null;
+        } else if (command.getHost() != null) {
+            target = command.getHost() + ":" + command.getPort();
+        } else {
+            InetAddress address = command.getInetAddress();
+            target = (address == null ? "?" : address.getHostAddress()) + ":" + command.getPort();
+        }
+        ageNanos = timeline == null ? 0 : now - timeline.getTime(SessionTimeline.Mark.ACCEPT);
+        NetworkMonitor monitor = session.getNetworkMonitor();
+        uploadBytes = monitor == null ? 0 : monitor.getReceiveTCP() + monitor.getReceiveUDP();
+        downloadBytes = monitor == null ? 0 : monitor.getSendTCP() + monitor.getSendUDP();
+        if (timeline == null) {
+            state = State.HANDSHAKE;
+        } else if (timeline.getTime(SessionTimeline.Mark.CLOSE) != 0) {
+            state = State.CLOSING;
+        } else if (timeline.getTime(SessionTimeline.Mark.CONNECT) != 0) {
+            state = State.RELAYING;
+        } else if (timeline.getTime(SessionTimeline.Mark.COMMAND) != 0) {
+            state = State.CONNECTING;
+        } else {
+            state = State.HANDSHAKE;
+        }
+    }
+
+    /**
+     * Takes a snapshot of a session.
+     *
+     * @param session Session.
+     * @param now     Time from {@link System#nanoTime()}.
+     * @return Snapshot.
+     */
+    public static SessionInfo of(Session session, long now) {
+        return new SessionInfo(session, now);
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Nullable
+    public SocketAddress getClient() {
+        return client;
+    }
+
+    @Nullable
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Returns the requested destination.
+     *
+     * @return Destination as <code>host:port</code>, or <code>null</code> before the command.
+     */
+    @Nullable
+    public String getTarget() {
+        return target;
+    }
+
+    public long getAge(TimeUnit unit) {
+        return unit.convert(ageNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getUploadBytes() {
+        return uploadBytes;
+    }
+
+    public long getDownloadBytes() {
+        return downloadBytes;
+    }
+
+    public long getTotalBytes() {
+        return uploadBytes + downloadBytes;
+    }
+
+    /**
+     * Returns bytes per second in both directions since the previous listing, or since the accept
+     * for a session that wasn't listed before.
+     *
+     * @return Throughput.
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Appends the snapshot as a line of {@link SessionAdmin} output, without the line break.
+     *
+     * @param builder Builder to append to.
+     * @return The builder.
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        builder.append(id).append(' ');
+        if (client instanceof InetSocketAddress) {
+            InetSocketAddress address = (InetSocketAddress) client;
+            builder.append(address.getAddress() == null ? address.getHostName() : address
+                    .getAddress().getHostAddress()).append(':').append(address.getPort());
+        } else {
+            builder.append(client);
+        }
+        return builder.append(' ').append(username == null ? "-" : username).append(' ')
+                .append(target == null ? "-" : target).append(' ')
+                .append(TimeUnit.NANOSECONDS.toSeconds(ageNanos)).append(' ')
+                .append(uploadBytes).append(' ').append(downloadBytes).append(' ')
+                .append(bytesPerSecond).append(' ').append(state);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder("SessionInfo{")).append('}').toString();
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.admin;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.net.InetSocketAddress;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import sockslib.common.CIDR;
+
+/**
+ * The class <code>SessionQuery</code> filters, sorts and limits sessions listed by
+ * {@link SessionAdmin}. A session matches if it matches every filter that has been set.
+ * <pre>
+ * SessionQuery query = SessionQuery.parse("user=alice client=10.0.0.0/8 sort=-rate limit=20");
+ * </pre>
+ * <p>
+ * Keys of {@link #parse(String)} are <code>id</code>, <code>user</code>, <code>client</code> (a
+ * CIDR block), <code>target</code> (a host or a domain suffix), <code>state</code>,
+ * <code>minAge</code> (seconds), <code>minBytes</code>, <code>sort</code> and <code>limit</code>.
+ * Sort keys are <code>id</code>, <code>age</code>, <code>bytes</code>, <code>rate</code> and
+ * <code>user</code>, a leading <code>-</code> sorts in descending order.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:55 AM
+ */
+public final class SessionQuery {
+
+    /**
+     * A query which matches all sessions, sorted by id.
+     */
+    public static final SessionQuery ALL = newBuilder().build();
+
+    /**
+     * The enumeration <code>SortKey</code> represents what sessions are sorted by.
+     */
+    public enum SortKey {
+        ID, AGE, BYTES, RATE, USER
+    }
+
+    private final long id;
+
+    private final String user;
+
+    private final CIDR client;
+
+    private final String target;
+
+    private final SessionInfo.State state;
+
+    private final long minAgeNanos;
+
+    private final long minBytes;
+
+    private final Comparator<SessionInfo> order;
+
+    private final int limit;
+
+    private SessionQuery(Builder builder) {
+        id = builder.id;
+        user = builder.user;
+        client = builder.client;
+        target = builder.target;
+        state = builder.state;
+        minAgeNanos = builder.minAgeNanos;
+        minBytes = builder.minBytes;
+        order = newOrder(builder.sortKey, builder.descending);
+        limit = builder.limit;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses a query from space separated <code>key=value</code> tokens.
+     *
+     * @param text Query, may be empty.
+     * @return Query.
+     * @throws IllegalArgumentException If a token is invalid.
+     */
+    public static SessionQuery parse(String text) {
+        Builder builder = newBuilder();
+        for (String token : text.trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int index = token.indexOf('=');
+            checkArgument(index > 0 && index < token.length() - 1, "Invalid token: " + token);
+            String key = token.substring(0, index);
+            String value = token.substring(index + 1);
+            switch (key) {
+                case "id":
+                    builder.setId(parseLong(key, value));
+                    break;
+                case "user":
+                    builder.setUser(value);
+                    break;
+                case "client":
+                    builder.setClient(CIDR.parse(value));
+                    break;
+                case "target":
+                    builder.setTarget(value);
+                    break;
+                case "state":
+                    SessionInfo.State state = SessionInfo.State.of(value);
+                    checkArgument(state != null, "Unknown state: " + value);
+                    builder.setState(state);
+                    break;
+                case "minAge":
+                    builder.setMinAge(parseLong(key, value), TimeUnit.SECONDS);
+                    break;
+                case "minBytes":
+                    builder.setMinBytes(parseLong(key, value));
+                    break;
+                case "sort":
+                    boolean descending = value.startsWith("-");
+                    String name = descending ? value.substring(1) : value;
+                    SortKey sortKey;
+                    try {
+                        sortKey = SortKey.valueOf(name.toUpperCase(Locale.US));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown sort key: " + name);
+                    }
+                    builder.setSort(sortKey, descending);
+                    break;
+                case "limit":
+                    builder.setLimit((int) Math.min(Integer.MAX_VALUE, parseLong(key, value)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown key: " + key);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns <code>true</code> if a session matches the filters.
+     *
+     * @param info Snapshot of the session.
+     * @return <code>true</code> if it matches.
+     */
+    public boolean matches(SessionInfo info) {
+        if (id != 0 && info.getId() != id) {
+            return false;
+        }
+        if (user != null && !user.equals(info.getUsername())) {
+            return false;
+        }
+        if (client != null && !(info.getClient() instanceof InetSocketAddress && client.contains((
+                (InetSocketAddress) info.getClient()).getAddress()))) {
+            return false;
+        }
+        if (target != null && !matchesTarget(info.getTarget())) {
+            return false;
+        }
+        if (state != null && info.getState() != state) {
+            return false;
+        }
+        return info.getAge(TimeUnit.NANOSECONDS) >= minAgeNanos && info.getTotalBytes() >=
+                minBytes;
+    }
+
+    /**
+     * Returns <code>true</code> if any filter is set, so not every session matches.
+     *
+     * @return <code>true</code> if it has filters.
+     */
+    public boolean hasFilters() {
+        return id != 0 || user != null || client != null || target != null || state != null
+                || minAgeNanos > 0 || minBytes > 0;
+    }
+
+    public Comparator<SessionInfo> getOrder() {
+        return order;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private boolean matchesTarget(String hostAndPort) {
+        if (hostAndPort == null) {
+            return false;
+        }
+        String host = hostAndPort.substring(0, hostAndPort.lastIndexOf(':'));
+        return host.equalsIgnoreCase(target) || (host.length() > target.length() && host
+                .regionMatches(true, host.length() - target.length(), target, 0, target.length())
+                && host.charAt(host.length() - target.length() - 1) == '.');
+    }
+
+    private static long parseLong(String key, String value) {
+        try {
+            long number = Long.parseLong(value);
+            checkArgument(number >= 0, "Negative " + key);
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    private static Comparator<SessionInfo> newOrder(final SortKey key, final boolean descending) {
+        return new Comparator<SessionInfo>() {
+            @Override
+            public int compare(SessionInfo a, SessionInfo b) {
+                int result;
+                switch (key) {
+                    case AGE:
+                        result = compareLong(a.getAge(TimeUnit.NANOSECONDS), b.getAge(TimeUnit
+                                .NANOSECONDS));
+                        break;
+                    case BYTES:
+                        result = compareLong(a.getTotalBytes(), b.getTotalBytes());
+                        break;
+                    case RATE:
+                        result = compareLong(a.getBytesPerSecond(), b.getBytesPerSecond());
+                        break;
+                    case USER:
+                        String userA = a.getUsername() == null ? "" : a.getUsername();
+                        String userB = b.getUsername() == null ? "" : b.getUsername();
+                        result = userA.compareTo(userB);
+                        break;
+                    default:
+                        result = 0;
+                }
+                if (result == 0) {
+                    result = compareLong(a.getId(), b.getId());
+                }
+                return descending ? -result : result;
+            }
+        };
+    }
+
+    private static int compareLong(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * The class <code>Builder</code> is a tool to build {@link SessionQuery}.
+     */
+    public static class Builder {
+
+        private long id;
+
+        private String user;
+
+        private CIDR client;
+
+        private String target;
+
+        private SessionInfo.State state;
+
+        private long minAgeNanos;
+
+        private long minBytes;
+
+        private SortKey sortKey = SortKey.ID;
+
+        private boolean descending;
+
+        private int limit = Integer.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        public Builder setId(long id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder setUser(String user) {
+            this.user = checkNotNull(user, "Argument [user] may not be null");
+            return this;
+        }
+
+        public Builder setClient(CIDR client) {
+            this.client = checkNotNull(client, "Argument [client] may not be null");
+            return this;
+        }
+
+        /**
+         * Sets a target filter.
+         *
+         * @param target Host, or domain suffix such as "example.com".
+         * @return This builder.
+         */
+        public Builder setTarget(String target) {
+            this.target = checkNotNull(target, "Argument [target] may not be null");
+            return this;
+        }
+
+        public Builder setState(SessionInfo.State state) {
+            this.state = checkNotNull(state, "Argument [state] may not be null");
+            return this;
+        }
+
+        public Builder setMinAge(long minAge, TimeUnit unit) {
+            this.minAgeNanos = unit.toNanos(minAge);
+            return this;
+        }
+
+        public Builder setMinBytes(long minBytes) {
+            this.minBytes = minBytes;
+            return this;
+        }
+
+        public Builder setSort(SortKey sortKey, boolean descending) {
+            this.sortKey = checkNotNull(sortKey, "Argument [sortKey] may not be null");
+            this.descending = descending;
+            return this;
+        }
+
+        /**
+         * Sets maximum number of sessions to list.
+         *
+         * @param limit Number of sessions.
+         * @return This builder.
+         */
+        public Builder setLimit(int limit) {
+            checkArgument(limit > 0, "Limit must be positive");
+            this.limit = limit;
+            return this;
+        }
+
+        public SessionQuery build() {
+            return new SessionQuery(this);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.auth;
+
+import static androidx.core.util.Preconditions.checkArgument;
+
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>AuthenticationThrottle</code> locks out client addresses and usernames that fail
+ * to authenticate too many times, so that they are rejected before their credentials are checked.
+ * <p>
+ * Failures are counted in a sliding window, approximated by the counts of the current and the
+ * previous window. When the failures of an address or a username reach the limit, it's locked out
+ * for a while; the lockout doubles every time it's locked out again, up to a maximum. A successful
+ * authentication clears the failures of its username only; failures of an address decay with the
+ * window, so one valid account doesn't reset an address that tries many usernames.
+ * </p>
+ * <p>
+ * Failure records are kept in striped LRU tables with a fixed capacity, so memory stays bounded
+ * when an attack comes from many addresses. The least recently failed records are evicted first.
+ * </p>
+ * <pre>
+ * AuthenticationThrottle throttle = AuthenticationThrottle.newBuilder()
+ *     .setMaxFailuresPerAddress(20)
+ *     .setMaxFailuresPerUser(5)
+ *     .setWindow(1, TimeUnit.MINUTES)
+ *     .build();
+ * authenticator.setThrottle(throttle);
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:09 AM
+ */
+public class AuthenticationThrottle {
+
+    private static final int STRIPE_COUNT = 16;
+
+    private final FailureTable addressTable;
+
+    private final FailureTable userTable;
+
+    private final long windowNanos;
+
+    private final long baseLockoutNanos;
+
+    private final long maxLockoutNanos;
+
+    private final AtomicLong failureCount = new AtomicLong();
+
+    private final AtomicLong lockoutCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private AuthenticationThrottle(Builder builder) {
+        windowNanos = builder.windowNanos;
+        baseLockoutNanos = builder.baseLockoutNanos;
+        maxLockoutNanos = builder.maxLockoutNanos;
+        addressTable = new FailureTable(builder.maxFailuresPerAddress, builder.capacity);
+        userTable = new FailureTable(builder.maxFailuresPerUser, builder.capacity);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns <code>true</code> if an authentication attempt is allowed. A rejected attempt is
+     * counted in {@link #getRejectedCount()}.
+     *
+     * @param address  Client address, may be <code>null</code>.
+     * @param username Username, may be <code>null</code>.
+     * @return <code>true</code> if the address and the username are not locked out.
+     */
+    public boolean isAllowed(@Nullable InetAddress address, @Nullable String username) {
+        long now = System.nanoTime();
+        if ((address != null && addressTable.isLocked(address, now)) || (username != null &&
+                userTable.isLocked(username, now))) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records a failed authentication.
+     *
+     * @param address  Client address, may be <code>null</code>.
+     * @param username Username, may be <code>null</code>.
+     */
+    public void onFailure(@Nullable InetAddress address, @Nullable String username) {
+        failureCount.incrementAndGet();
+        long now = System.nanoTime();
+        if (address != null) {
+            addressTable.onFailure(address, now);
+        }
+        if (username != null) {
+            userTable.onFailure(username, now);
+        }
+    }
+
+    /**
+     * Records a successful authentication, it clears the failures of the username.
+     *
+     * @param username Username, may be <code>null</code>.
+     */
+    public void onSuccess(@Nullable String username) {
+        if (username != null) {
+            userTable.clear(username);
+        }
+    }
+
+    /**
+     * Returns number of tracked addresses and usernames.
+     *
+     * @return Number of failure records.
+     */
+    public int size() {
+        return addressTable.size() + userTable.size();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getLockoutCount() {
+        return lockoutCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticationThrottle{records=" + size() + ", failures=" + failureCount.get() + ", "
+                + "lockouts=" + lockoutCount.get() + ", rejected=" + rejectedCount.get() + ", "
+                + "evictions=" + evictionCount.get() + '}';
+    }
+
+    private static final class Record {
+
+        long windowStart;
+
+        int currentFailures;
+
+        int previousFailures;
+
+        /**
+         * Number of lockouts in a row, decides the length of the next lockout.
+         */
+        int lockouts;
+
+        long lockedUntil;
+
+        boolean locked;
+    }
+
+    private final class FailureTable {
+
+        private final int maxFailures;
+
+        private final Stripe[] stripes;
+
+        FailureTable(int maxFailures, int capacity) {
+            this.maxFailures = maxFailures;
+            int stripeCount = Math.min(STRIPE_COUNT, capacity);
+            stripes = new Stripe[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe(capacity / stripeCount + (i < capacity % stripeCount ? 1 :
+                        0));
+            }
+        }
+
+        boolean isLocked(Object key, long now) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                Record record = stripe.records.get(key);
+                return record != null && record.locked && now - record.lockedUntil < 0;
+            }
+        }
+
+        void onFailure(Object key, long now) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                Record record = stripe.records.get(key);
+                if (record == null) {
+                    record = new Record();
+                    record.windowStart = now;
+                    stripe.records.put(key, record);
+                }
+                if (record.locked) {
+                    if (now - record.lockedUntil < 0) {
+                        return;
+                    }
+                    record.locked = false;
+                    if (now - record.lockedUntil > maxLockoutNanos) {
+                        // Behaved well for long enough, forget earlier lockouts.
+                        record.lockouts = 0;
+                    }
+                }
+                long elapsed = now - record.windowStart;
+                if (elapsed >= windowNanos) {
+                    long windows = elapsed / windowNanos;
+                    record.previousFailures = windows == 1 ? record.currentFailures : 0;
+                    record.currentFailures = 0;
+                    record.windowStart += windows * windowNanos;
+                    elapsed -= windows * windowNanos;
+                }
+                record.currentFailures++;
+                // Weight the previous window by how much of it still overlaps the sliding window.
+                double failures = record.currentFailures + record.previousFailures * (double)
+                        (windowNanos - elapsed) / windowNanos;
+                if (failures >= maxFailures) {
+                    long lockout = baseLockoutNanos;
+                    for (int i = 0; i < record.lockouts && lockout < maxLockoutNanos; i++) {
+                        lockout <<= 1;
+                    }
+                    lockout = Math.min(lockout, maxLockoutNanos);
+                    record.lockouts++;
+                    record.locked = true;
+                    record.lockedUntil = now + lockout;
+                    record.currentFailures = 0;
+                    record.previousFailures = 0;
+                    lockoutCount.incrementAndGet();
+                }
+            }
+        }
+
+        void clear(Object key) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                stripe.records.remove(key);
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.records.size();
+                }
+            }
+            return size;
+        }
+
+        private Stripe stripeFor(Object key) {
+            int hash = key.hashCode();
+            hash ^= hash >>> 16;
+            return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+        }
+    }
+
+    private final class Stripe {
+
+        final Map<Object, Record> records;
+
+        Stripe(final int maxSize) {
+            records = new LinkedHashMap<Object, Record>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Record> eldest) {
+                    if (size() > maxSize) {
+                        evictionCount.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    /**
+     * The class <code>Builder</code> is a tool to build {@link AuthenticationThrottle}.
+     */
+    public static class Builder {
+
+        private int maxFailuresPerAddress = 20;
+
+        private int maxFailuresPerUser = 10;
+
+        private long windowNanos = TimeUnit.MINUTES.toNanos(1);
+
+        private long baseLockoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+        private long maxLockoutNanos = TimeUnit.HOURS.toNanos(1);
+
+        private int capacity = 100000;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets number of failures in a window that locks out a client address.
+         *
+         * @param maxFailuresPerAddress Number of failures.
+         * @return This builder.
+         */
+        public Builder setMaxFailuresPerAddress(int maxFailuresPerAddress) {
+            checkArgument(maxFailuresPerAddress > 0, "Max failures must be positive");
+            this.maxFailuresPerAddress = maxFailuresPerAddress;
+            return this;
+        }
+
+        /**
+         * Sets number of failures in a window that locks out a username.
+         *
+         * @param maxFailuresPerUser Number of failures.
+         * @return This builder.
+         */
+        public Builder setMaxFailuresPerUser(int maxFailuresPerUser) {
+            checkArgument(maxFailuresPerUser > 0, "Max failures must be positive");
+            this.maxFailuresPerUser = maxFailuresPerUser;
+            return this;
+        }
+
+        public Builder setWindow(long window, TimeUnit unit) {
+            checkArgument(window > 0, "Window must be positive");
+            this.windowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        /**
+         * Sets length of the first lockout and the maximum length of lockouts.
+         *
+         * @param base Length of the first lockout, it doubles on every lockout in a row.
+         * @param max  Maximum length of a lockout.
+         * @param unit Unit of lengths.
+         * @return This builder.
+         */
+        public Builder setLockout(long base, long max, TimeUnit unit) {
+            checkArgument(base > 0 && max >= base, "Invalid lockout");
+            this.baseLockoutNanos = unit.toNanos(base);
+            this.maxLockoutNanos = unit.toNanos(max);
+            return this;
+        }
+
+        /**
+         * Sets maximum number of tracked addresses, and of tracked usernames.
+         *
+         * @param capacity Maximum number of records of each table.
+         * @return This builder.
+         */
+        public Builder setCapacity(int capacity) {
+            checkArgument(capacity > 0, "Capacity must be positive");
+            this.capacity = capacity;
+            return this;
+        }
+
+        public AuthenticationThrottle build() {
+            return new AuthenticationThrottle(this);
+        }
+    }
+}
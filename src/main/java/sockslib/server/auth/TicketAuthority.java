@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.auth;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The class <code>TicketAuthority</code> issues and verifies authentication tickets used by
+ * {@link sockslib.common.methods.TicketMethod}.
+ * <p>
+ * A ticket is signed by HMAC-SHA256 and carries the username and the expiration time, so it can
+ * be verified without looking up the user. Servers that share a key accept each other's tickets.
+ * Each key has an id in the ticket, old keys can be kept for verification while a new key is used
+ * to issue tickets.
+ * </p>
+ * <p>
+ * Ticket format:
+ * </p>
+ * <pre>
+ * +-----+--------+---------+------+----------+-----+
+ * | VER | KEY ID | EXPIRES | ULEN |  UNAME   | MAC |
+ * +-----+--------+---------+------+----------+-----+
+ * |  1  |   1    |    8    |  1   | 1 to 255 | 32  |
+ * +-----+--------+---------+------+----------+-----+
+ * </pre>
+ * <p>
+ * EXPIRES is milliseconds since epoch, so clocks of servers that share a key should be in sync.
+ * A single ticket can't be revoked before it expires, a deleted user or a changed password doesn't
+ * invalidate it, so the lifetime should be short; it's 10 minutes by default. Removing a key
+ * revokes all tickets it signed: to revoke tickets, add a new key, issue with it and remove the
+ * old one.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:11 AM
+ */
+public class TicketAuthority {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int VERSION = 0x01;
+
+    private static final int HEADER_SIZE = 11;
+
+    private static final int MAC_SIZE = 32;
+
+    private static final int MIN_KEY_LENGTH = 16;
+
+    /**
+     * Verification keys by id, replaced as a whole when a key is added or removed.
+     */
+    private volatile SigningKey[] keys = new SigningKey[256];
+
+    private volatile int issuingKeyId;
+
+    private volatile long lifetimeMillis = TimeUnit.MINUTES.toMillis(10);
+
+    private final AtomicLong issuedCount = new AtomicLong();
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * Creates an authority which issues tickets with key 0.
+     *
+     * @param key Secret key, at least 16 bytes.
+     */
+    public TicketAuthority(byte[] key) {
+        this(0, key);
+    }
+
+    /**
+     * Creates an authority which issues tickets with the given key.
+     *
+     * @param keyId Id of key, between 0 and 255.
+     * @param key   Secret key, at least 16 bytes.
+     */
+    public TicketAuthority(int keyId, byte[] key) {
+        addKey(keyId, key);
+        issuingKeyId = keyId;
+    }
+
+    /**
+     * Adds or replaces a key. Tickets signed by any added key are accepted.
+     *
+     * @param keyId Id of key, between 0 and 255.
+     * @param key   Secret key, at least 16 bytes.
+     */
+    public synchronized void addKey(int keyId, byte[] key) {
+        checkArgument(keyId >= 0 && keyId <= 255, "Key id must be between 0 and 255");
+        checkNotNull(key, "Argument [key] may not be null");
+        checkArgument(key.length >= MIN_KEY_LENGTH, "Key must have at least 16 bytes");
+        SigningKey[] newKeys = keys.clone();
+        newKeys[keyId] = new SigningKey(key);
+        keys = newKeys;
+    }
+
+    /**
+     * Removes a key, tickets signed by it are no longer accepted.
+     *
+     * @param keyId Id of key.
+     */
+    public synchronized void removeKey(int keyId) {
+        checkArgument(keyId != issuingKeyId, "Can't remove the issuing key");
+        SigningKey[] newKeys = keys.clone();
+        newKeys[keyId] = null;
+        keys = newKeys;
+    }
+
+    /**
+     * Sets the key that signs new tickets, it must have been added.
+     *
+     * @param keyId Id of key.
+     */
+    public synchronized void setIssuingKeyId(int keyId) {
+        checkArgument(keyId >= 0 && keyId <= 255 && keys[keyId] != null, "Unknown key id");
+        issuingKeyId = keyId;
+    }
+
+    /**
+     * Issues a ticket for a user.
+     *
+     * @param username Username, 1 to 255 bytes in UTF-8.
+     * @return Ticket.
+     */
+    public byte[] issue(String username) {
+        checkNotNull(username, "Argument [username] may not be null");
+        byte[] name = username.getBytes(UTF_8);
+        checkArgument(name.length > 0 && name.length <= 255, "Invalid username length");
+        int keyId = issuingKeyId;
+        long expires = System.currentTimeMillis() + lifetimeMillis;
+        byte[] ticket = new byte[HEADER_SIZE + name.length + MAC_SIZE];
+        ticket[0] = VERSION;
+        ticket[1] = (byte) keyId;
+        for (int i = 0; i < 8; i++) {
+            ticket[2 + i] = (byte) (expires >>> (56 - i * 8));
+        }
+        ticket[10] = (byte) name.length;
+        System.arraycopy(name, 0, ticket, HEADER_SIZE, name.length);
+        keys[keyId].sign(ticket, HEADER_SIZE + name.length);
+        issuedCount.incrementAndGet();
+        return ticket;
+    }
+
+    /**
+     * Verifies a ticket.
+     *
+     * @param ticket Ticket.
+     * @return Username in the ticket, or <code>null</code> if the ticket is invalid or has
+     * expired.
+     */
+    @Nullable
+    public String verify(byte[] ticket) {
+        if (ticket == null || ticket.length < HEADER_SIZE + 1 + MAC_SIZE || ticket[0] !=
+                VERSION) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        int nameLength = ticket[10] & 0xff;
+        SigningKey key = keys[ticket[1] & 0xff];
+        if (ticket.length != HEADER_SIZE + nameLength + MAC_SIZE || key == null || !key.verify
+                (ticket, HEADER_SIZE + nameLength)) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        long expires = 0;
+        for (int i = 0; i < 8; i++) {
+            expires = (expires << 8) | (ticket[2 + i] & 0xff);
+        }
+        if (System.currentTimeMillis() >= expires) {
+            expiredCount.incrementAndGet();
+            return null;
+        }
+        acceptedCount.incrementAndGet();
+        return new String(ticket, HEADER_SIZE, nameLength, UTF_8);
+    }
+
+    public long getLifetime(TimeUnit unit) {
+        return unit.convert(lifetimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void setLifetime(long lifetime, TimeUnit unit) {
+        checkArgument(lifetime > 0, "Lifetime must be positive");
+        this.lifetimeMillis = unit.toMillis(lifetime);
+    }
+
+    public long getIssuedCount() {
+        return issuedCount.get();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    private static final class SigningKey {
+
+        private final SecretKeySpec secretKey;
+
+        /**
+         * {@link Mac} isn't thread-safe and initializing one is slow, so each thread keeps its own.
+         */
+        private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+            @Override
+            protected Mac initialValue() {
+                try {
+                    Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                    mac.init(secretKey);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+                }
+            }
+        };
+
+        SigningKey(byte[] key) {
+            secretKey = new SecretKeySpec(key.clone(), MAC_ALGORITHM);
+        }
+
+        void sign(byte[] ticket, int length) {
+            Mac mac = macs.get();
+            mac.update(ticket, 0, length);
+            try {
+                mac.doFinal(ticket, length);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        boolean verify(byte[] ticket, int length) {
+            Mac mac = macs.get();
+            mac.update(ticket, 0, length);
+            byte[] expected = mac.doFinal();
+            byte[] actual = new byte[MAC_SIZE];
+            System.arraycopy(ticket, length, actual, 0, MAC_SIZE);
+            return MessageDigest.isEqual(expected, actual);
+        }
+    }
+}
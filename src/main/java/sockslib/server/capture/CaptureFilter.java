@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.capture;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import sockslib.common.CIDR;
+import sockslib.common.CIDRTrie;
+import sockslib.server.acl.DomainSuffixTrie;
+
+/**
+ * The class <code>CaptureFilter</code> selects sessions to capture by username, client address and
+ * target. A session is selected if it matches every kind of condition that has been added, and any
+ * condition of that kind; a kind without conditions matches everything.
+ * <pre>
+ * CaptureFilter filter = CaptureFilter.newBuilder()
+ *     .addUser("alice")
+ *     .addClient("10.0.0.0/8")
+ *     .addTarget("example.com")
+ *     .addTarget("192.168.1.0/24")
+ *     .build();
+ * </pre>
+ * <p>
+ * A target is a CIDR block or a domain suffix. Domain suffixes only match requests by domain name,
+ * and datagrams of UDP associations are matched by their addresses only.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:52 AM
+ */
+public final class CaptureFilter {
+
+    /**
+     * A filter which selects no session.
+     */
+    public static final CaptureFilter NONE = new CaptureFilter(new Builder(), false);
+
+    /**
+     * A filter which selects all sessions.
+     */
+    public static final CaptureFilter ALL = new CaptureFilter(new Builder(), true);
+
+    private final boolean enabled;
+
+    private final Set<String> users;
+
+    private final CIDRTrie<Boolean> clients;
+
+    private final CIDRTrie<Boolean> targetAddresses;
+
+    private final DomainSuffixTrie<Boolean> targetDomains;
+
+    private CaptureFilter(Builder builder, boolean enabled) {
+        this.enabled = enabled;
+        users = Collections.unmodifiableSet(new HashSet<>(builder.users));
+        clients = builder.clients;
+        targetAddresses = builder.targetAddresses;
+        targetDomains = builder.targetDomains;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns <code>true</code> if a session matches the user and client conditions.
+     *
+     * @param username Username of the session, or <code>null</code> if it's anonymous.
+     * @param client   Client address.
+     * @return <code>true</code> if it matches.
+     */
+    public boolean matchesSession(@Nullable String username, @Nullable InetAddress client) {
+        if (!enabled) {
+            return false;
+        }
+        if (!users.isEmpty() && (username == null || !users.contains(username))) {
+            return false;
+        }
+        return clients.size() == 0 || (client != null && clients.longestMatch(client) != null);
+    }
+
+    /**
+     * Returns <code>true</code> if a target matches the target conditions.
+     *
+     * @param host    Requested domain name, or <code>null</code>.
+     * @param address Address of the target, or <code>null</code> if it's unknown.
+     * @return <code>true</code> if it matches.
+     */
+    public boolean matchesTarget(@Nullable String host, @Nullable InetAddress address) {
+        if (!hasTargets()) {
+            return enabled;
+        }
+        return (host != null && targetDomains.longestMatch(host) != null) || (address != null
+                && targetAddresses.longestMatch(address) != null);
+    }
+
+    public boolean hasTargets() {
+        return targetAddresses.size() > 0 || targetDomains.size() > 0;
+    }
+
+    public Set<String> getUsers() {
+        return users;
+    }
+
+    /**
+     * The class <code>Builder</code> is a tool to build {@link CaptureFilter}.
+     */
+    public static class Builder {
+
+        private final Set<String> users = new HashSet<>();
+
+        private final CIDRTrie<Boolean> clients = new CIDRTrie<>();
+
+        private final CIDRTrie<Boolean> targetAddresses = new CIDRTrie<>();
+
+        private final DomainSuffixTrie<Boolean> targetDomains = new DomainSuffixTrie<>();
+
+        private boolean built;
+
+        private Builder() {
+        }
+
+        public Builder addUser(String username) {
+            checkArgument(!built, "Filter is already built");
+            users.add(checkNotNull(username, "Argument [username] may not be null"));
+            return this;
+        }
+
+        /**
+         * Adds a CIDR block of clients.
+         *
+         * @param cidr CIDR block, such as "10.0.0.0/8".
+         * @return This builder.
+         */
+        public Builder addClient(String cidr) {
+            checkArgument(!built, "Filter is already built");
+            clients.put(CIDR.parse(cidr), Boolean.TRUE);
+            return this;
+        }
+
+        /**
+         * Adds a target.
+         *
+         * @param target CIDR block such as "192.168.1.0/24", or domain suffix such as
+         *               "example.com".
+         * @return This builder.
+         */
+        public Builder addTarget(String target) {
+            checkArgument(!built, "Filter is already built");
+            checkNotNull(target, "Argument [target] may not be null");
+            checkArgument(!target.isEmpty(), "Target can't be empty");
+            if (target.indexOf(':') >= 0 || target.indexOf('/') >= 0 || Character.isDigit(target
+                    .charAt(target.length() - 1))) {
+                targetAddresses.put(CIDR.parse(target), Boolean.TRUE);
+            } else {
+                targetDomains.put(target, Boolean.TRUE);
+            }
+            return this;
+        }
+
+        /**
+         * Builds a filter, the builder can't be used afterwards.
+         *
+         * @return {@link CaptureFilter}.
+         */
+        public CaptureFilter build() {
+            built = true;
+            return new CaptureFilter(this, true);
+        }
+    }
+}
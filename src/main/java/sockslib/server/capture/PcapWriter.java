@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The class <code>PcapWriter</code> writes a pcap file of raw IP packets, whose IPv4 or IPv6 and
+ * TCP or UDP headers are synthesized from the relayed data. The file can be opened by Wireshark or
+ * tcpdump.
+ * <p>
+ * Records are collected in a large buffer and written to the file when it's full or flushed.
+ * Checksums of TCP and UDP are left 0, which readers treat as unchecked. It's not thread-safe.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:52 AM
+ */
+final class PcapWriter implements Closeable {
+
+    static final int TCP_FIN = 0x01;
+
+    static final int TCP_SYN = 0x02;
+
+    static final int TCP_PSH = 0x08;
+
+    static final int TCP_ACK = 0x10;
+
+    /**
+     * Maximum payload of a packet, which keeps IPv4 total length in 16 bits.
+     */
+    static final int MAX_PAYLOAD = 65535 - 20 - 20;
+
+    private static final int MAGIC = 0xa1b2c3d4;
+
+    private static final int LINKTYPE_RAW = 101;
+
+    private static final int PROTOCOL_TCP = 6;
+
+    private static final int PROTOCOL_UDP = 17;
+
+    private static final int TTL = 64;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final int snapLength;
+
+    private int ipId;
+
+    private long size;
+
+    /**
+     * Creates a pcap file and writes its header.
+     *
+     * @param file       File to create.
+     * @param snapLength Maximum bytes of each packet to keep, including headers, at least 64.
+     * @param bufferSize Size of write buffer, at least 128 KB.
+     * @throws IOException If the file can't be created.
+     */
+    PcapWriter(File file, int snapLength, int bufferSize) throws IOException {
+        this.snapLength = snapLength;
+        buffer = ByteBuffer.allocate(Math.max(bufferSize, 128 * 1024));
+        channel = new FileOutputStream(file).getChannel();
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) 2);
+        buffer.putShort((short) 4);
+        buffer.putInt(0); // GMT offset
+        buffer.putInt(0); // Accuracy of timestamps
+        buffer.putInt(snapLength);
+        buffer.putInt(LINKTYPE_RAW);
+    }
+
+    /**
+     * Writes a TCP segment.
+     *
+     * @param micros      Timestamp in microseconds since epoch.
+     * @param source      Source address, 4 or 16 bytes, the same length as destination.
+     * @param sourcePort  Source port.
+     * @param destination Destination address.
+     * @param destPort    Destination port.
+     * @param seq         Sequence number.
+     * @param ack         Acknowledgment number.
+     * @param flags       TCP flags.
+     * @param data        Payload, may be <code>null</code> if length is 0.
+     * @param offset      Offset of payload.
+     * @param length      Length of payload, at most {@link #MAX_PAYLOAD}.
+     * @throws IOException If the file can't be written.
+     */
+    void writeTcp(long micros, byte[] source, int sourcePort, byte[] destination, int destPort,
+                  long seq, long ack, int flags, byte[] data, int offset, int length) throws
+            IOException {
+        int headerLength = ipHeaderLength(source) + 20;
+        int captured = writeRecordHeader(micros, headerLength, length);
+        writeIpHeader(source, destination, PROTOCOL_TCP, 20 + length);
+        buffer.putShort((short) sourcePort);
+        buffer.putShort((short) destPort);
+        buffer.putInt((int) seq);
+        buffer.putInt((int) ack);
+        buffer.put((byte) (5 << 4)); // Data offset
+        buffer.put((byte) flags);
+        buffer.putShort((short) 0xffff); // Window
+        buffer.putShort((short) 0); // Checksum
+        buffer.putShort((short) 0); // Urgent pointer
+        if (captured > 0) {
+            buffer.put(data, offset, captured);
+        }
+    }
+
+    /**
+     * Writes a UDP datagram.
+     *
+     * @param micros      Timestamp in microseconds since epoch.
+     * @param source      Source address, 4 or 16 bytes, the same length as destination.
+     * @param sourcePort  Source port.
+     * @param destination Destination address.
+     * @param destPort    Destination port.
+     * @param data        Payload.
+     * @param offset      Offset of payload.
+     * @param length      Length of payload, at most {@link #MAX_PAYLOAD}.
+     * @throws IOException If the file can't be written.
+     */
+    void writeUdp(long micros, byte[] source, int sourcePort, byte[] destination, int destPort,
+                  byte[] data, int offset, int length) throws IOException {
+        int headerLength = ipHeaderLength(source) + 8;
+        int captured = writeRecordHeader(micros, headerLength, length);
+        writeIpHeader(source, destination, PROTOCOL_UDP, 8 + length);
+        buffer.putShort((short) sourcePort);
+        buffer.putShort((short) destPort);
+        buffer.putShort((short) (8 + length));
+        buffer.putShort((short) 0); // Checksum
+        if (captured > 0) {
+            buffer.put(data, offset, captured);
+        }
+    }
+
+    /**
+     * Returns number of bytes written, including buffered bytes.
+     *
+     * @return Size of the file.
+     */
+    long size() {
+        return size + buffer.position();
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the pcap record header and makes room for the record.
+     *
+     * @return Number of payload bytes to keep.
+     */
+    private int writeRecordHeader(long micros, int headerLength, int length) throws IOException {
+        int captured = Math.max(0, Math.min(length, snapLength - headerLength));
+        if (buffer.remaining() < 16 + headerLength + captured) {
+            flush();
+        }
+        buffer.putInt((int) (micros / 1000000));
+        buffer.putInt((int) (micros % 1000000));
+        buffer.putInt(headerLength + captured);
+        buffer.putInt(headerLength + length);
+        return captured;
+    }
+
+    private void writeIpHeader(byte[] source, byte[] destination, int protocol, int
+            payloadLength) {
+        if (source.length == 4) {
+            int start = buffer.position();
+            buffer.put((byte) 0x45);
+            buffer.put((byte) 0);
+            buffer.putShort((short) (20 + payloadLength));
+            buffer.putShort((short) ipId++);
+            buffer.putShort((short) 0x4000); // Don't fragment
+            buffer.put((byte) TTL);
+            buffer.put((byte) protocol);
+            buffer.putShort((short) 0);
+            buffer.put(source);
+            buffer.put(destination);
+            buffer.putShort(start + 10, checksum(buffer.array(), start, 20));
+        } else {
+            buffer.putInt(0x60000000);
+            buffer.putShort((short) payloadLength);
+            buffer.put((byte) protocol);
+            buffer.put((byte) TTL);
+            buffer.put(source);
+            buffer.put(destination);
+        }
+    }
+
+    private static int ipHeaderLength(byte[] address) {
+        return address.length == 4 ? 20 : 40;
+    }
+
+    private static short checksum(byte[] bytes, int offset, int length) {
+        int sum = 0;
+        for (int i = offset; i < offset + length; i += 2) {
+            sum += ((bytes[i] & 0xff) << 8) | (bytes[i + 1] & 0xff);
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xffff) + (sum >>> 16);
+        }
+        return (short) ~sum;
+    }
+}
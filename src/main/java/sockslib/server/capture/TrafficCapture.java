@@ -0,0 +1,832 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.capture;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sockslib.server.BasicSocksProxyServer;
+import sockslib.server.Session;
+import sockslib.server.SessionTimeline;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.io.Pipe;
+import sockslib.server.io.PipeListener;
+import sockslib.server.io.SocketPipe;
+import sockslib.server.listener.DatagramListener;
+import sockslib.server.listener.PipeInitializer;
+import sockslib.server.listener.PipeInitializerChain;
+import sockslib.server.listener.SessionCloseListener;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+import sockslib.utils.Logger;
+
+/**
+ * The class <code>TrafficCapture</code> writes the relayed data of selected sessions to pcap files,
+ * one file per session, with synthesized IP and TCP or UDP headers. TCP relays get a synthesized
+ * handshake and close, and sequence numbers follow the relayed bytes.
+ * <pre>
+ * TrafficCapture capture = TrafficCapture.newBuilder()
+ *     .setDirectory(new File("captures"))
+ *     .build();
+ * capture.install(server);
+ * capture.start();
+ * capture.setFilter(CaptureFilter.newBuilder().addUser("alice").build());
+ * </pre>
+ * <p>
+ * Sessions that are not selected when their relay starts are not touched at all. Relay threads of
+ * selected sessions copy the data into a bounded queue, a single writer thread writes it through
+ * large buffers and flushes once the queue is drained. If the queue is full, data is dropped and
+ * counted instead of blocking the relay; the missing bytes show up as a gap of sequence numbers.
+ * The number of sessions captured at the same time is limited as well.
+ * </p>
+ * <p>
+ * Files are named <code>sockslib-&lt;time&gt;-&lt;session id&gt;.pcap</code> and are closed when
+ * their sessions close.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:52 AM
+ */
+public class TrafficCapture implements PipeInitializer, DatagramListener, SessionCloseListener,
+        Closeable {
+
+    private static final Logger logger = Logger.getLogger("TrafficCapture");
+
+    /**
+     * Key of the session attribute which holds the capture of a session.
+     */
+    public static final String SESSION_CAPTURE_KEY = "CAPTURE";
+
+    /**
+     * Marks a UDP session which is not selected, so the filter isn't checked for every datagram.
+     */
+    private static final Object NOT_SELECTED = new Object();
+
+    private static final int EVENT_UPLOAD = 0;
+
+    private static final int EVENT_DOWNLOAD = 1;
+
+    private static final int EVENT_CLOSE = 2;
+
+    private static final long POLL_MILLIS = 500;
+
+    private final File directory;
+
+    private final int maxSessions;
+
+    private final int snapLength;
+
+    private final int bufferSize;
+
+    private final long maxFileSize;
+
+    private final long maxQueuedBytes;
+
+    private final BlockingQueue<Event> queue;
+
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private final AtomicLong sessionCount = new AtomicLong();
+
+    private final AtomicLong packetCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong droppedBytes = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * Wall clock at {@link #baseNanos}, timestamps are derived from {@link System#nanoTime()}.
+     */
+    private final long baseMicros = System.currentTimeMillis() * 1000;
+
+    private final long baseNanos = System.nanoTime();
+
+    /**
+     * Captures with open files, used by the writer thread only.
+     */
+    private final List<SessionCapture> openCaptures = new ArrayList<>();
+
+    /**
+     * Captures whose close events didn't fit in the queue.
+     */
+    private final Queue<SessionCapture> lateCloses = new ConcurrentLinkedQueue<>();
+
+    private final SimpleDateFormat nameFormat = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US);
+
+    private volatile CaptureFilter filter = CaptureFilter.NONE;
+
+    private volatile boolean closed;
+
+    private Thread writer;
+
+    private TrafficCapture(Builder builder) {
+        directory = builder.directory;
+        maxSessions = builder.maxSessions;
+        snapLength = builder.snapLength;
+        bufferSize = builder.bufferSize;
+        maxFileSize = builder.maxFileSize;
+        maxQueuedBytes = builder.maxQueuedBytes;
+        queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Installs this capture as pipe initializer, datagram listener and session close listener of a
+     * server. An existing pipe initializer is kept in a {@link PipeInitializerChain}. Datagrams are
+     * only captured on a {@link BasicSocksProxyServer}.
+     *
+     * @param server Server to capture.
+     */
+    public void install(SocksProxyServer server) {
+        PipeInitializer current = server.getPipeInitializer();
+        if (current == null) {
+            server.setPipeInitializer(this);
+        } else if (current instanceof PipeInitializerChain) {
+            ((PipeInitializerChain) current).add(this);
+        } else if (current != this) {
+            server.setPipeInitializer(new PipeInitializerChain().add(current).add(this));
+        }
+        if (server instanceof BasicSocksProxyServer) {
+            ((BasicSocksProxyServer) server).setDatagramListener(this);
+        }
+        server.getSessionManager().onSessionClose("capture", this);
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public synchronized void start() {
+        checkArgument(!closed, "Capture is closed");
+        if (writer != null) {
+            return;
+        }
+        checkArgument(directory.isDirectory() || directory.mkdirs(), "Can't create directory "
+                + directory);
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "sockslib-capture");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes the queued data, stops the writer thread and closes all files.
+     */
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            closed = true;
+            current = writer;
+        }
+        if (current != null) {
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public Pipe initialize(Pipe pipe) {
+        if (closed || !(pipe instanceof SocketPipe)) {
+            return pipe;
+        }
+        Object attribute = pipe.getAttribute(SocketPipe.ATTR_SESSION);
+        SocketPipe socketPipe = (SocketPipe) pipe;
+        Object remote = socketPipe.getOutputPipe().getAttribute(SocketPipe
+                .ATTR_DESTINATION_SOCKET);
+        if (!(attribute instanceof Session) || !(remote instanceof Socket)) {
+            return pipe;
+        }
+        Session session = (Session) attribute;
+        SocketAddress client = session.getClientAddress();
+        SocketAddress target = ((Socket) remote).getRemoteSocketAddress();
+        if (!(client instanceof InetSocketAddress) || !(target instanceof InetSocketAddress)) {
+            return pipe;
+        }
+        InetSocketAddress clientAddress = (InetSocketAddress) client;
+        InetSocketAddress targetAddress = (InetSocketAddress) target;
+        CaptureFilter current = filter;
+        SessionTimeline timeline = SessionTimeline.get(session);
+        CommandMessage command = timeline == null ? null : timeline.getCommand();
+        if (!current.matchesSession(getUsername(session), clientAddress.getAddress()) ||
+                !current.matchesTarget(command == null ? null : command.getHost(), targetAddress
+                        .getAddress())) {
+            return pipe;
+        }
+        SessionCapture capture = newCapture(session, clientAddress, true);
+        if (capture != null) {
+            capture.remoteAddress = targetAddress.getAddress().getAddress();
+            capture.remotePort = targetAddress.getPort();
+            socketPipe.getOutputPipe().addPipeListener(new TcpListener(capture, true));
+            socketPipe.getInputPipe().addPipeListener(new TcpListener(capture, false));
+        }
+        return pipe;
+    }
+
+    @Override
+    public void onDatagram(Session session, DatagramPacket packet, boolean fromClient) {
+        Object attribute = session.getAttribute(SESSION_CAPTURE_KEY);
+        if (attribute == NOT_SELECTED) {
+            return;
+        }
+        CaptureFilter current = filter;
+        if (attribute == null) {
+            SocketAddress client = session.getClientAddress();
+            if (closed || !(client instanceof InetSocketAddress) || !current.matchesSession
+                    (getUsername(session), ((InetSocketAddress) client).getAddress())) {
+                session.setAttribute(SESSION_CAPTURE_KEY, NOT_SELECTED);
+                return;
+            }
+            SessionTimeline timeline = SessionTimeline.get(session);
+            CommandMessage command = timeline == null ? null : timeline.getCommand();
+            // The client sends datagrams from the port in UDP ASSOCIATE request.
+            attribute = newCapture(session, new InetSocketAddress(((InetSocketAddress) client)
+                    .getAddress(), command == null ? 0 : command.getPort()), false);
+            if (attribute == null) {
+                session.setAttribute(SESSION_CAPTURE_KEY, NOT_SELECTED);
+                return;
+            }
+        }
+        if (!(attribute instanceof SessionCapture) || (current.hasTargets() && !current
+                .matchesTarget(null, packet.getAddress()))) {
+            return;
+        }
+        Event event = new Event((SessionCapture) attribute, fromClient ? EVENT_UPLOAD :
+                EVENT_DOWNLOAD, now());
+        event.data = Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset()
+                + packet.getLength());
+        event.length = packet.getLength();
+        event.remoteAddress = packet.getAddress().getAddress();
+        event.remotePort = packet.getPort();
+        enqueue(event);
+    }
+
+    @Override
+    public void onClose(Session session) {
+        Object attribute = session.getAttribute(SESSION_CAPTURE_KEY);
+        if (attribute instanceof SessionCapture) {
+            ((SessionCapture) attribute).requestClose();
+        }
+    }
+
+    public CaptureFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets which sessions to capture, it applies to relays started afterwards.
+     *
+     * @param filter {@link CaptureFilter}, {@link CaptureFilter#NONE} stops capturing.
+     */
+    public void setFilter(CaptureFilter filter) {
+        this.filter = checkNotNull(filter, "Argument [filter] may not be null");
+    }
+
+    /**
+     * Returns number of sessions being captured.
+     *
+     * @return Number of sessions.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public long getSessionCount() {
+        return sessionCount.get();
+    }
+
+    public long getPacketCount() {
+        return packetCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficCapture{active=" + activeCount.get() + ", sessions=" + sessionCount.get()
+                + ", packets=" + packetCount.get() + ", dropped=" + droppedCount.get() + ", "
+                + "droppedBytes=" + droppedBytes.get() + ", errors=" + errorCount.get() + '}';
+    }
+
+    @Nullable
+    private SessionCapture newCapture(Session session, InetSocketAddress client, boolean tcp) {
+        int active;
+        do {
+            active = activeCount.get();
+            if (active >= maxSessions) {
+                return null;
+            }
+        } while (!activeCount.compareAndSet(active, active + 1));
+        sessionCount.incrementAndGet();
+        SessionCapture capture = new SessionCapture(session.getId(), tcp);
+        capture.clientAddress = client.getAddress().getAddress();
+        capture.clientPort = client.getPort();
+        session.setAttribute(SESSION_CAPTURE_KEY, capture);
+        return capture;
+    }
+
+    private long now() {
+        return baseMicros + (System.nanoTime() - baseNanos) / 1000;
+    }
+
+    private boolean enqueue(Event event) {
+        if (queuedBytes.addAndGet(event.length) > maxQueuedBytes || !queue.offer(event)) {
+            queuedBytes.addAndGet(-event.length);
+            droppedCount.incrementAndGet();
+            droppedBytes.addAndGet(event.length);
+            return false;
+        }
+        return true;
+    }
+
+    private void drainLoop() {
+        while (true) {
+            Event event = queue.poll();
+            if (event == null) {
+                // The queue is drained, write the batch.
+                flushAll();
+                if (closed) {
+                    break;
+                }
+                try {
+                    event = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (event == null) {
+                    continue;
+                }
+            }
+            queuedBytes.addAndGet(-event.length);
+            handle(event);
+        }
+        for (SessionCapture capture : new ArrayList<>(openCaptures)) {
+            finish(capture);
+        }
+    }
+
+    private void handle(Event event) {
+        SessionCapture capture = event.capture;
+        if (capture.finished) {
+            return;
+        }
+        if (event.type == EVENT_CLOSE) {
+            finish(capture);
+            return;
+        }
+        if (!open(capture, event.micros)) {
+            return;
+        }
+        try {
+            if (capture.writer.size() >= maxFileSize) {
+                droppedCount.incrementAndGet();
+                droppedBytes.addAndGet(event.length);
+                return;
+            }
+            boolean upload = event.type == EVENT_UPLOAD;
+            if (!capture.tcp) {
+                byte[] remote = event.remoteAddress;
+                byte[] client = capture.clientAddress;
+                if (remote.length != client.length) {
+                    remote = toIPv6(remote);
+                    client = toIPv6(client);
+                }
+                int length = Math.min(event.length, PcapWriter.MAX_PAYLOAD);
+                if (upload) {
+                    capture.writer.writeUdp(event.micros, client, capture.clientPort, remote,
+                            event.remotePort, event.data, 0, length);
+                } else {
+                    capture.writer.writeUdp(event.micros, remote, event.remotePort, client,
+                            capture.clientPort, event.data, 0, length);
+                }
+                packetCount.incrementAndGet();
+                return;
+            }
+            for (int offset = 0; offset < event.length; offset += PcapWriter.MAX_PAYLOAD) {
+                int length = Math.min(event.length - offset, PcapWriter.MAX_PAYLOAD);
+                writeSegment(capture, event.micros, upload, event.offset + offset, PcapWriter
+                        .TCP_PSH | PcapWriter.TCP_ACK, event.data, offset, length);
+            }
+            if (upload) {
+                capture.uploadEnd = Math.max(capture.uploadEnd, event.offset + event.length);
+            } else {
+                capture.downloadEnd = Math.max(capture.downloadEnd, event.offset + event.length);
+            }
+        } catch (IOException e) {
+            onError(capture, e);
+        }
+    }
+
+    /**
+     * Opens the file of a capture if it isn't open, a TCP capture starts with a handshake.
+     */
+    private boolean open(SessionCapture capture, long micros) {
+        if (capture.writer != null) {
+            return true;
+        }
+        File file = new File(directory, "sockslib-" + nameFormat.format(new Date(micros / 1000))
+                + "-" + capture.sessionId + ".pcap");
+        try {
+            capture.writer = new PcapWriter(file, snapLength, bufferSize);
+            openCaptures.add(capture);
+            if (capture.tcp) {
+                if (capture.remoteAddress.length != capture.clientAddress.length) {
+                    capture.remoteAddress = toIPv6(capture.remoteAddress);
+                    capture.clientAddress = toIPv6(capture.clientAddress);
+                }
+                writeSegment(capture, micros, true, -1, PcapWriter.TCP_SYN, null, 0, 0);
+                writeSegment(capture, micros, false, -1, PcapWriter.TCP_SYN | PcapWriter
+                        .TCP_ACK, null, 0, 0);
+                writeSegment(capture, micros, true, 0, PcapWriter.TCP_ACK, null, 0, 0);
+            }
+            return true;
+        } catch (IOException e) {
+            onError(capture, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a TCP segment, offsets are relative to the first byte of each direction.
+     */
+    private void writeSegment(SessionCapture capture, long micros, boolean upload, long offset,
+                              int flags, byte[] data, int dataOffset, int length) throws
+            IOException {
+        // The SYN takes sequence number 0, so data starts at 1.
+        long seq = offset + 1;
+        long ack = (flags & PcapWriter.TCP_ACK) == 0 ? 0 : (upload ? capture.downloadEnd :
+                capture.uploadEnd) + 1;
+        if (upload) {
+            capture.writer.writeTcp(micros, capture.clientAddress, capture.clientPort, capture
+                    .remoteAddress, capture.remotePort, seq, ack, flags, data, dataOffset, length);
+        } else {
+            capture.writer.writeTcp(micros, capture.remoteAddress, capture.remotePort, capture
+                    .clientAddress, capture.clientPort, seq, ack, flags, data, dataOffset, length);
+        }
+        packetCount.incrementAndGet();
+    }
+
+    private void finish(SessionCapture capture) {
+        if (capture.finished) {
+            return;
+        }
+        capture.finished = true;
+        activeCount.decrementAndGet();
+        if (capture.writer == null && !capture.tcp) {
+            // A UDP association without datagrams, no file.
+            return;
+        }
+        long micros = now();
+        if (!open(capture, micros)) {
+            return;
+        }
+        try {
+            if (capture.tcp) {
+                writeSegment(capture, micros, true, capture.uploadEnd, PcapWriter.TCP_FIN |
+                        PcapWriter.TCP_ACK, null, 0, 0);
+                capture.uploadEnd++;
+                writeSegment(capture, micros, false, capture.downloadEnd, PcapWriter.TCP_FIN |
+                        PcapWriter.TCP_ACK, null, 0, 0);
+                capture.downloadEnd++;
+                writeSegment(capture, micros, true, capture.uploadEnd, PcapWriter.TCP_ACK, null,
+                        0, 0);
+            }
+            capture.writer.close();
+        } catch (IOException e) {
+            onError(capture, e);
+        }
+        openCaptures.remove(capture);
+    }
+
+    private void flushAll() {
+        SessionCapture late;
+        while ((late = lateCloses.poll()) != null) {
+            // Its close didn't fit in the queue, but all of its data has been written now.
+            finish(late);
+        }
+        for (int i = openCaptures.size() - 1; i >= 0; i--) {
+            SessionCapture capture = openCaptures.get(i);
+            try {
+                capture.writer.flush();
+            } catch (IOException e) {
+                onError(capture, e);
+            }
+        }
+    }
+
+    private void onError(SessionCapture capture, IOException e) {
+        // Log the first error only, the directory may stay unwritable for a long time.
+        if (errorCount.getAndIncrement() == 0) {
+            logger.warn("Failed to write capture of session " + capture.sessionId, e);
+        }
+        if (!capture.finished) {
+            capture.finished = true;
+            activeCount.decrementAndGet();
+        }
+        openCaptures.remove(capture);
+        if (capture.writer != null) {
+            try {
+                capture.writer.close();
+            } catch (IOException ignored) {
+                // Already failed.
+            }
+        }
+    }
+
+    @Nullable
+    private static String getUsername(Session session) {
+        Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+        return user instanceof User ? ((User) user).getUsername() : null;
+    }
+
+    private static byte[] toIPv6(byte[] address) {
+        if (address.length == 16) {
+            return address;
+        }
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xff;
+        mapped[11] = (byte) 0xff;
+        System.arraycopy(address, 0, mapped, 12, 4);
+        return mapped;
+    }
+
+    /**
+     * Data of a captured session, endpoints and sequence state are used by the writer thread only.
+     */
+    private final class SessionCapture {
+
+        final long sessionId;
+
+        final boolean tcp;
+
+        final AtomicBoolean closing = new AtomicBoolean();
+
+        /**
+         * Bytes relayed in each direction, each is updated by the relay thread of its direction.
+         */
+        long uploadOffset;
+
+        long downloadOffset;
+
+        byte[] clientAddress;
+
+        int clientPort;
+
+        byte[] remoteAddress;
+
+        int remotePort;
+
+        PcapWriter writer;
+
+        long uploadEnd;
+
+        long downloadEnd;
+
+        boolean finished;
+
+        SessionCapture(long sessionId, boolean tcp) {
+            this.sessionId = sessionId;
+            this.tcp = tcp;
+        }
+
+        void requestClose() {
+            if (closing.compareAndSet(false, true) && !enqueue(new Event(this, EVENT_CLOSE,
+                    now()))) {
+                lateCloses.add(this);
+            }
+        }
+    }
+
+    private static final class Event {
+
+        final SessionCapture capture;
+
+        final int type;
+
+        final long micros;
+
+        byte[] data;
+
+        int length;
+
+        /**
+         * Offset of data in its direction of a TCP relay.
+         */
+        long offset;
+
+        byte[] remoteAddress;
+
+        int remotePort;
+
+        Event(SessionCapture capture, int type, long micros) {
+            this.capture = capture;
+            this.type = type;
+            this.micros = micros;
+        }
+    }
+
+    private final class TcpListener implements PipeListener {
+
+        private final SessionCapture capture;
+
+        private final boolean upload;
+
+        TcpListener(SessionCapture capture, boolean upload) {
+            this.capture = capture;
+            this.upload = upload;
+        }
+
+        @Override
+        public void onStart(Pipe pipe) {
+        }
+
+        @Override
+        public void onStop(Pipe pipe) {
+            capture.requestClose();
+        }
+
+        @Override
+        public void onTransfer(Pipe pipe, byte[] buffer, int bufferLength) {
+            if (capture.closing.get()) {
+                return;
+            }
+            Event event = new Event(capture, upload ? EVENT_UPLOAD : EVENT_DOWNLOAD, now());
+            event.data = Arrays.copyOf(buffer, bufferLength);
+            event.length = bufferLength;
+            if (upload) {
+                event.offset = capture.uploadOffset;
+                capture.uploadOffset += bufferLength;
+            } else {
+                event.offset = capture.downloadOffset;
+                capture.downloadOffset += bufferLength;
+            }
+            // A dropped event still advances the offset, so the gap is visible.
+            enqueue(event);
+        }
+
+        @Override
+        public void onError(Pipe pipe, Exception exception) {
+        }
+    }
+
+    /**
+     * The class <code>Builder</code> is a tool to build {@link TrafficCapture}.
+     */
+    public static class Builder {
+
+        private File directory;
+
+        private int maxSessions = 16;
+
+        private int snapLength = 65535;
+
+        private int bufferSize = 256 * 1024;
+
+        private long maxFileSize = 256L * 1024 * 1024;
+
+        private int queueCapacity = 4096;
+
+        private long maxQueuedBytes = 32L * 1024 * 1024;
+
+        private Builder() {
+        }
+
+        public Builder setDirectory(File directory) {
+            this.directory = checkNotNull(directory, "Argument [directory] may not be null");
+            return this;
+        }
+
+        /**
+         * Sets maximum number of sessions captured at the same time.
+         *
+         * @param maxSessions Number of sessions.
+         * @return This builder.
+         */
+        public Builder setMaxSessions(int maxSessions) {
+            checkArgument(maxSessions > 0, "Max sessions must be positive");
+            this.maxSessions = maxSessions;
+            return this;
+        }
+
+        /**
+         * Sets maximum bytes of each packet to keep, including synthesized headers.
+         *
+         * @param snapLength Bytes of each packet, at least 64.
+         * @return This builder.
+         */
+        public Builder setSnapLength(int snapLength) {
+            checkArgument(snapLength >= 64, "Snap length must be at least 64");
+            this.snapLength = snapLength;
+            return this;
+        }
+
+        /**
+         * Sets size of the write buffer of each file.
+         *
+         * @param bufferSize Size in bytes.
+         * @return This builder.
+         */
+        public Builder setBufferSize(int bufferSize) {
+            checkArgument(bufferSize > 0, "Buffer size must be positive");
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets size of a file over which data of its session is dropped.
+         *
+         * @param maxFileSize Size in bytes.
+         * @return This builder.
+         */
+        public Builder setMaxFileSize(long maxFileSize) {
+            checkArgument(maxFileSize > 0, "Max file size must be positive");
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * Sets limits of the queue between relay threads and the writer thread.
+         *
+         * @param capacity       Maximum number of queued transfers.
+         * @param maxQueuedBytes Maximum bytes of queued transfers.
+         * @return This builder.
+         */
+        public Builder setQueueLimits(int capacity, long maxQueuedBytes) {
+            checkArgument(capacity > 0 && maxQueuedBytes > 0, "Queue limits must be positive");
+            this.queueCapacity = capacity;
+            this.maxQueuedBytes = maxQueuedBytes;
+            return this;
+        }
+
+        public TrafficCapture build() {
+            checkNotNull(directory, "Please set a directory");
+            return new TrafficCapture(this);
+        }
+    }
+}
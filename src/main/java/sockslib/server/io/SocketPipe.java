@@ -42,6 +42,7 @@ public class SocketPipe implements Pipe {
     public static final String ATTR_SOURCE_SOCKET = "SOURCE_SOCKET";
     public static final String ATTR_DESTINATION_SOCKET = "DESTINATION_SOCKET";
     public static final String ATTR_PARENT_PIPE = "PARENT_PIPE";
+    public static final String ATTR_SESSION = "SESSION";
 
     /**
      * Pipe one.
@@ -117,6 +118,22 @@ public class SocketPipe implements Pipe {
         return running;
     }
 
+    /**
+     * Waits until both internal pipes have finished.
+     *
+     * @throws InterruptedException If the current thread is interrupted.
+     */
+    public void awaitStop() throws InterruptedException {
+        for (Pipe pipe : new Pipe[]{pipe1, pipe2}) {
+            if (pipe instanceof StreamPipe) {
+                Thread thread = ((StreamPipe) pipe).getRunningThread();
+                if (thread != null) {
+                    thread.join();
+                }
+            }
+        }
+    }
+
     @Override
     public boolean close() {
         pipe2.removePipeListener(listener);
@@ -163,6 +180,26 @@ public class SocketPipe implements Pipe {
 
     }
 
+    /**
+     * Returns the pipe which transfers data from socket one to socket two, named
+     * {@link #OUTPUT_PIPE_NAME}.
+     *
+     * @return Output pipe.
+     */
+    public Pipe getOutputPipe() {
+        return pipe1;
+    }
+
+    /**
+     * Returns the pipe which transfers data from socket two to socket one, named
+     * {@link #INPUT_PIPE_NAME}.
+     *
+     * @return Input pipe.
+     */
+    public Pipe getInputPipe() {
+        return pipe2;
+    }
+
     @Override
     public String getName() {
         return name;
@@ -26,6 +26,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import sockslib.server.jfr.SocksEvents;
+
 /**
  * The class <code>StreamPipe</code> represents a pipe the can transfer data source a input
  * stream destination
@@ -42,6 +44,11 @@ public class StreamPipe implements Runnable, Pipe {
      */
     private static final int BUFFER_SIZE = 1024 * 1024 * 5;
 
+    /**
+     * Maximum bytes read at once by a limited pipe, so that it's paced smoothly.
+     */
+    private static final int LIMITED_READ_SIZE = 16 * 1024;
+
     private Map<String, Object> attributes = new HashMap<>();
 
     /**
@@ -49,6 +56,11 @@ public class StreamPipe implements Runnable, Pipe {
      */
     private List<PipeListener> pipeListeners;
 
+    /**
+     * Limiters
+     */
+    private List<TransferLimiter> transferLimiters;
+
     /**
      * Input stream.
      */
@@ -103,6 +115,7 @@ public class StreamPipe implements Runnable, Pipe {
         this.source = checkNotNull(source, "Argument [source] may not be null");
         this.destination = checkNotNull(destination, "Argument [destination] may not be null");
         pipeListeners = new ArrayList<>();
+        transferLimiters = new ArrayList<>();
         this.name = name;
     }
 
@@ -159,10 +172,21 @@ public class StreamPipe implements Runnable, Pipe {
 
         int length = -1;
         try {
-            length = source.read(buffer);
+            if (transferLimiters.isEmpty()) {
+                length = source.read(buffer);
+            } else {
+                length = source.read(buffer, 0, Math.min(buffer.length, LIMITED_READ_SIZE));
+            }
             if (length > 0) { // transfer the buffer destination output stream.
+                for (int i = 0; i < transferLimiters.size(); i++) {
+                    transferLimiters.get(i).acquire(this, length);
+                }
+                long writeStart = SocksEvents.isPipeStallEnabled() ? System.nanoTime() : 0;
                 destination.write(buffer, 0, length);
                 destination.flush();
+                if (writeStart != 0) {
+                    SocksEvents.pipeWrite(this, length, System.nanoTime() - writeStart);
+                }
                 for (int i = 0; i < pipeListeners.size(); i++) {
                     pipeListeners.get(i).onTransfer(this, buffer, length);
                 }
@@ -173,6 +197,9 @@ public class StreamPipe implements Runnable, Pipe {
                 pipeListeners.get(i).onError(this, e);
             }
             stop();
+        } catch (InterruptedException e) {
+            // Interrupted by stop().
+            length = -1;
         }
 
         return length;
@@ -217,6 +244,24 @@ public class StreamPipe implements Runnable, Pipe {
         pipeListeners.remove(pipeListener);
     }
 
+    /**
+     * Adds a {@link TransferLimiter}. It should be added before the pipe starts.
+     *
+     * @param transferLimiter Instance of {@link TransferLimiter}.
+     */
+    public void addTransferLimiter(TransferLimiter transferLimiter) {
+        transferLimiters.add(checkNotNull(transferLimiter, "Argument [transferLimiter] may not "
+                + "be null"));
+    }
+
+    public void removeTransferLimiter(TransferLimiter transferLimiter) {
+        transferLimiters.remove(transferLimiter);
+    }
+
+    public List<TransferLimiter> getTransferLimiters() {
+        return transferLimiters;
+    }
+
     /**
      * Returns all {@link PipeListener}.
      *
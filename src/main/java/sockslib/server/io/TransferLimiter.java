@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.io;
+
+/**
+ * The interface <code>TransferLimiter</code> paces a {@link StreamPipe}. It's called by the
+ * relay thread after data is read and before it's written, and may block the thread to slow the
+ * pipe down.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:19 AM
+ */
+public interface TransferLimiter {
+
+    /**
+     * Waits until the data can be written.
+     *
+     * @param pipe   The {@link Pipe} which transfers the data.
+     * @param length Length of data.
+     * @throws InterruptedException If the thread is interrupted, usually because the pipe stopped.
+     */
+    void acquire(Pipe pipe, int length) throws InterruptedException;
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.jfr;
+
+import android.util.Log;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The class <code>EventType</code> is a JDK Flight Recorder event type defined at runtime by
+ * <code>jdk.jfr.EventFactory</code>, which is only accessed by reflection, so this library doesn't
+ * depend on JFR and runs where it's absent, e.g. on Android.
+ * <p>
+ * Whether an event type is enabled in a recording is checked by a daemon thread every second, so
+ * {@link #isEnabled()} is just a volatile read.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:41 AM
+ */
+final class EventType {
+
+    private static final String TAG = "EventType";
+
+    private static final long REFRESH_MILLIS = 1000;
+
+    private static final boolean AVAILABLE;
+
+    private static Constructor<?> annotationElement;
+
+    private static Constructor<?> valueDescriptor;
+
+    private static Method createFactory;
+
+    private static Method newEvent;
+
+    private static Method set;
+
+    private static Method commit;
+
+    private static Method isEventEnabled;
+
+    private static Class<? extends Annotation> nameAnnotation;
+
+    private static Class<? extends Annotation> labelAnnotation;
+
+    private static Class<? extends Annotation> descriptionAnnotation;
+
+    private static Class<? extends Annotation> categoryAnnotation;
+
+    private static Class<? extends Annotation> stackTraceAnnotation;
+
+    private static Class<? extends Annotation> timespanAnnotation;
+
+    private static final List<EventType> TYPES = new ArrayList<>();
+
+    static {
+        boolean available;
+        try {
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+            valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class,
+                    List.class);
+            createFactory = factoryClass.getMethod("create", List.class, List.class);
+            newEvent = factoryClass.getMethod("newEvent");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+            isEventEnabled = eventClass.getMethod("isEnabled");
+            nameAnnotation = annotation("jdk.jfr.Name");
+            labelAnnotation = annotation("jdk.jfr.Label");
+            descriptionAnnotation = annotation("jdk.jfr.Description");
+            categoryAnnotation = annotation("jdk.jfr.Category");
+            stackTraceAnnotation = annotation("jdk.jfr.StackTrace");
+            timespanAnnotation = annotation("jdk.jfr.Timespan");
+            available = true;
+        } catch (Throwable e) {
+            // No JFR on this runtime.
+            available = false;
+        }
+        AVAILABLE = available;
+        if (AVAILABLE) {
+            Thread refresher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        try {
+                            Thread.sleep(REFRESH_MILLIS);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        refreshAll();
+                    }
+                }
+            }, "sockslib-jfr");
+            refresher.setDaemon(true);
+            refresher.start();
+        }
+    }
+
+    private final String name;
+
+    private Object factory;
+
+    private volatile boolean enabled;
+
+    /**
+     * Defines an event type.
+     *
+     * @param name        Name, e.g. <code>sockslib.SessionAccept</code>.
+     * @param label       Label.
+     * @param description Description.
+     * @param fields      Fields made by {@link #field(Class, String, String)}.
+     */
+    EventType(String name, String label, String description, Object... fields) {
+        this.name = name;
+        if (!AVAILABLE) {
+            return;
+        }
+        try {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotationElement.newInstance(nameAnnotation, name));
+            annotations.add(annotationElement.newInstance(labelAnnotation, label));
+            annotations.add(annotationElement.newInstance(descriptionAnnotation, description));
+            annotations.add(annotationElement.newInstance(categoryAnnotation, new String[]{
+                    "sockslib"}));
+            annotations.add(annotationElement.newInstance(stackTraceAnnotation, false));
+            List<Object> fieldList = new ArrayList<>();
+            Collections.addAll(fieldList, fields);
+            factory = createFactory.invoke(null, annotations, fieldList);
+            refresh();
+            synchronized (TYPES) {
+                TYPES.add(this);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to define event " + name, e);
+            factory = null;
+        }
+    }
+
+    /**
+     * Makes a field of an event type.
+     *
+     * @param type  Type of the field, a primitive type or <code>String</code>.
+     * @param name  Name of the field.
+     * @param label Label of the field.
+     * @return Field descriptor, or <code>null</code> if JFR isn't available.
+     */
+    static Object field(Class<?> type, String name, String label) {
+        return field(type, name, label, false);
+    }
+
+    /**
+     * Makes a field of nanoseconds.
+     */
+    static Object timespan(String name, String label) {
+        return field(long.class, name, label, true);
+    }
+
+    private static Object field(Class<?> type, String name, String label, boolean timespan) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        try {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotationElement.newInstance(labelAnnotation, label));
+            if (timespan) {
+                annotations.add(annotationElement.newInstance(timespanAnnotation, "NANOSECONDS"));
+            }
+            return valueDescriptor.newInstance(type, name, annotations);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to define field " + name, e);
+            return null;
+        }
+    }
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Returns <code>true</code> if a running recording records this event type.
+     *
+     * @return <code>true</code> if enabled.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Commits an event, it should only be called if {@link #isEnabled()} returns
+     * <code>true</code>.
+     *
+     * @param values Values of fields, in the order of definition.
+     */
+    void commit(Object... values) {
+        if (factory == null) {
+            return;
+        }
+        try {
+            Object event = newEvent.invoke(factory);
+            for (int i = 0; i < values.length; i++) {
+                set.invoke(event, i, values[i]);
+            }
+            commit.invoke(event);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to commit event " + name, e);
+        }
+    }
+
+    private void refresh() {
+        try {
+            enabled = factory != null && (Boolean) isEventEnabled.invoke(newEvent.invoke
+                    (factory));
+        } catch (Exception e) {
+            enabled = false;
+        }
+    }
+
+    private static void refreshAll() {
+        synchronized (TYPES) {
+            for (EventType type : TYPES) {
+                type.refresh();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotation(String className) throws
+            ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(className);
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.jfr;
+
+import static androidx.core.util.Preconditions.checkArgument;
+
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import sockslib.common.net.NetworkMonitor;
+import sockslib.server.Session;
+import sockslib.server.SessionTimeline;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.io.Pipe;
+import sockslib.server.io.SocketPipe;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+
+/**
+ * The class <code>SocksEvents</code> emits JDK Flight Recorder events of sessions, pipe stalls,
+ * DNS lookups and UDP associations. All events are in the <code>sockslib</code> category and have
+ * a <code>sessionId</code> field, which is the id of {@link Session}.
+ * <p>
+ * Events are defined at runtime by reflection. Where JFR isn't available, e.g. on Android, or when
+ * no recording enables an event, emitting it costs a volatile read.
+ * </p>
+ * <pre>
+ * java -XX:StartFlightRecording=filename=proxy.jfr ...
+ * jfr print --categories sockslib proxy.jfr
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:41 AM
+ */
+public final class SocksEvents {
+
+    private static final EventType SESSION_ACCEPT = new EventType("sockslib.SessionAccept",
+            "Session Accept", "A client connection is accepted.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.field(String.class, "client", "Client Address"));
+
+    private static final EventType SESSION_AUTHENTICATED = new EventType(
+            "sockslib.SessionAuthenticated", "Session Authenticated",
+            "The selected method of a session is done.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.field(String.class, "method", "Method"),
+            EventType.field(String.class, "username", "Username"));
+
+    private static final EventType SESSION_COMMAND = new EventType("sockslib.SessionCommand",
+            "Session Command", "The command of a session is read.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.field(String.class, "command", "Command"),
+            EventType.field(String.class, "destination", "Destination"));
+
+    private static final EventType SESSION_CLOSED = new EventType("sockslib.SessionClosed",
+            "Session Closed", "A session is closed.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.timespan("lifetime", "Lifetime"),
+            EventType.field(long.class, "bytesReceived", "Bytes Received"),
+            EventType.field(long.class, "bytesSent", "Bytes Sent"),
+            EventType.field(String.class, "reply", "Reply"),
+            EventType.field(String.class, "reason", "Close Reason"));
+
+    private static final EventType PIPE_STALL = new EventType("sockslib.PipeStall", "Pipe Stall",
+            "A relay write blocked longer than the stall threshold.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.field(String.class, "pipe", "Pipe"),
+            EventType.field(int.class, "bytes", "Bytes"),
+            EventType.timespan("blocked", "Blocked"));
+
+    private static final EventType DNS_LOOKUP = new EventType("sockslib.DnsLookup", "DNS Lookup",
+            "The domain name of a destination is looked up.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.field(String.class, "host", "Host"),
+            EventType.field(boolean.class, "resolved", "Resolved"),
+            EventType.timespan("lookup", "Lookup Time"));
+
+    private static final EventType UDP_ASSOCIATE = new EventType("sockslib.UdpAssociate",
+            "UDP Associate", "A UDP association starts.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.field(int.class, "relayPort", "Relay Port"));
+
+    private static final EventType UDP_ASSOCIATION_END = new EventType(
+            "sockslib.UdpAssociationEnd", "UDP Association End", "A UDP association ends.",
+            EventType.field(long.class, "sessionId", "Session Id"),
+            EventType.timespan("duration", "Duration"));
+
+    private static volatile long stallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private SocksEvents() {
+    }
+
+    /**
+     * Returns <code>true</code> if JFR is available on this runtime.
+     *
+     * @return <code>true</code> if available.
+     */
+    public static boolean isAvailable() {
+        return EventType.isAvailable();
+    }
+
+    public static void accept(Session session) {
+        if (SESSION_ACCEPT.isEnabled()) {
+            SocketAddress client = session.getClientAddress();
+            SESSION_ACCEPT.commit(session.getId(), String.valueOf(client));
+        }
+    }
+
+    public static void authenticated(Session session, String method) {
+        if (SESSION_AUTHENTICATED.isEnabled()) {
+            Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+            SESSION_AUTHENTICATED.commit(session.getId(), method, user instanceof User ? ((User)
+                    user).getUsername() : null);
+        }
+    }
+
+    public static void command(Session session, CommandMessage message) {
+        if (SESSION_COMMAND.isEnabled()) {
+            String host = message.getHost() != null ? message.getHost() : String.valueOf(message
+                    .getInetAddress());
+            SESSION_COMMAND.commit(session.getId(), String.valueOf(message.getCommand()), host
+                    + ":" + message.getPort());
+        }
+    }
+
+    /**
+     * Emits the close of a session, with its bytes and its {@link SessionTimeline}.
+     *
+     * @param session Closed session.
+     */
+    public static void closed(Session session) {
+        if (!SESSION_CLOSED.isEnabled()) {
+            return;
+        }
+        NetworkMonitor monitor = session.getNetworkMonitor();
+        SessionTimeline timeline = SessionTimeline.get(session);
+        long lifetime = timeline == null ? 0 : Math.max(0, timeline.elapsed(SessionTimeline.Mark
+                .CLOSE));
+        SESSION_CLOSED.commit(session.getId(), lifetime, monitor == null ? 0 : monitor
+                .getReceiveTCP(), monitor == null ? 0 : monitor.getSendTCP(), timeline == null ?
+                null : String.valueOf(timeline.getReply()), timeline == null ? null : String
+                .valueOf(timeline.getCloseReason()));
+    }
+
+    /**
+     * Returns <code>true</code> if relay writes should be timed for {@link #pipeWrite(Pipe, int,
+     * long)}.
+     *
+     * @return <code>true</code> if pipe stall events are enabled.
+     */
+    public static boolean isPipeStallEnabled() {
+        return PIPE_STALL.isEnabled();
+    }
+
+    /**
+     * Emits a pipe stall if a relay write took longer than the threshold.
+     *
+     * @param pipe   Pipe which wrote.
+     * @param length Number of bytes written.
+     * @param nanos  Time of the write.
+     */
+    public static void pipeWrite(Pipe pipe, int length, long nanos) {
+        if (nanos < stallThresholdNanos || !PIPE_STALL.isEnabled()) {
+            return;
+        }
+        PIPE_STALL.commit(getSessionId(pipe), pipe.getName(), length, nanos);
+    }
+
+    public static void dnsLookup(Session session, String host, boolean resolved, long nanos) {
+        if (DNS_LOOKUP.isEnabled()) {
+            DNS_LOOKUP.commit(session.getId(), host, resolved, nanos);
+        }
+    }
+
+    public static void udpAssociate(Session session, int relayPort) {
+        if (UDP_ASSOCIATE.isEnabled()) {
+            UDP_ASSOCIATE.commit(session.getId(), relayPort);
+        }
+    }
+
+    public static void udpAssociationEnd(Session session, long nanos) {
+        if (UDP_ASSOCIATION_END.isEnabled()) {
+            UDP_ASSOCIATION_END.commit(session.getId(), nanos);
+        }
+    }
+
+    public static long getStallThreshold(TimeUnit unit) {
+        return unit.convert(stallThresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets how long a relay write must block to be a stall.
+     *
+     * @param threshold Threshold.
+     * @param unit      Unit of threshold.
+     */
+    public static void setStallThreshold(long threshold, TimeUnit unit) {
+        checkArgument(threshold >= 0, "Threshold can't be negative");
+        stallThresholdNanos = unit.toNanos(threshold);
+    }
+
+    private static long getSessionId(Pipe pipe) {
+        Object session = pipe.getAttribute(SocketPipe.ATTR_SESSION);
+        if (session == null) {
+            Object parent = pipe.getAttribute(SocketPipe.ATTR_PARENT_PIPE);
+            if (parent instanceof Pipe) {
+                session = ((Pipe) parent).getAttribute(SocketPipe.ATTR_SESSION);
+            }
+        }
+        return session instanceof Session ? ((Session) session).getId() : -1;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.listener;
+
+import androidx.annotation.Nullable;
+
+import java.net.InetAddress;
+
+import sockslib.server.Session;
+
+/**
+ * The interface <code>DatagramFilter</code> decides which datagrams the UDP relay server of a
+ * session relays. The destination of a UDP ASSOCIATE command is the client's own endpoint, so
+ * remote hosts can only be checked datagram by datagram.
+ * <p>
+ * A command listener can install a filter for a UDP association by setting it as the session
+ * attribute {@link #SESSION_FILTER_KEY}.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:19 AM
+ */
+public interface DatagramFilter {
+
+    String SESSION_FILTER_KEY = "DATAGRAM_FILTER";
+
+    /**
+     * This method will be called by the thread of the UDP relay server for each datagram, before
+     * it's relayed. If the client sent the datagram to a domain name, it's called before the
+     * domain name is resolved and <code>address</code> is <code>null</code>, so a denied domain
+     * never causes a DNS lookup; a filter which needs the address must resolve it.
+     *
+     * @param session    Session which associated the UDP relay server.
+     * @param host       Domain name the client sent the datagram to, or <code>null</code>.
+     * @param address    Address of the remote host, or <code>null</code> if it's a domain name.
+     * @param port       Port of the remote host.
+     * @param fromClient <code>true</code> if the datagram is sent by the client.
+     * @return <code>true</code> to relay the datagram, <code>false</code> to drop it.
+     */
+    boolean accept(Session session, @Nullable String host, @Nullable InetAddress address, int
+            port, boolean fromClient);
+}
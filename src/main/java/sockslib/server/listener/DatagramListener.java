@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.listener;
+
+import java.net.DatagramPacket;
+
+import sockslib.server.Session;
+
+/**
+ * The interface <code>DatagramListener</code> receives datagrams relayed by the UDP relay server
+ * of a session, like {@link sockslib.server.io.PipeListener} does for TCP relays.
+ * <p>
+ * A listener of all sessions is set on the server. A command listener can also add a listener to
+ * one UDP association by setting it as the session attribute {@link #SESSION_LISTENER_KEY}.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:14 AM
+ */
+public interface DatagramListener {
+
+    String SESSION_LISTENER_KEY = "DATAGRAM_LISTENER";
+
+    /**
+     * This method will be called by the thread of the UDP relay server for each relayed datagram.
+     * The packet is reused after this method returns, copy its data if needed.
+     *
+     * @param session    Session which associated the UDP relay server.
+     * @param packet     Datagram without SOCKS header, its address is the remote host.
+     * @param fromClient <code>true</code> if the datagram is sent by the client.
+     */
+    void onDatagram(Session session, DatagramPacket packet, boolean fromClient);
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.listener;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import sockslib.server.io.Pipe;
+
+/**
+ * The class <code>PipeInitializerChain</code> is a {@link PipeInitializer} which calls several
+ * initializers in order, each one gets the pipe returned by the previous one.
+ * <pre>
+ * server.setPipeInitializer(new PipeInitializerChain().add(accounting).add(shaper));
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:19 AM
+ */
+public class PipeInitializerChain implements PipeInitializer {
+
+    private final List<PipeInitializer> initializers = new CopyOnWriteArrayList<>();
+
+    public PipeInitializerChain add(PipeInitializer initializer) {
+        initializers.add(checkNotNull(initializer, "Argument [initializer] may not be null"));
+        return this;
+    }
+
+    public PipeInitializerChain remove(PipeInitializer initializer) {
+        initializers.remove(initializer);
+        return this;
+    }
+
+    public List<PipeInitializer> getInitializers() {
+        return initializers;
+    }
+
+    @Override
+    public Pipe initialize(Pipe pipe) {
+        for (PipeInitializer initializer : initializers) {
+            pipe = initializer.initialize(pipe);
+        }
+        return pipe;
+    }
+}
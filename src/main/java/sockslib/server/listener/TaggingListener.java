@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.listener;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+import sockslib.common.CIDRTagDatabase;
+import sockslib.server.Session;
+import sockslib.server.io.Pipe;
+import sockslib.server.io.SocketPipe;
+import sockslib.server.msg.CommandMessage;
+
+/**
+ * The class <code>TaggingListener</code> classifies the client and the destination of a session by
+ * a {@link CIDRTagDatabase}, and saves the tags in session attributes
+ * {@link #CLIENT_TAG_KEY} and {@link #DESTINATION_TAG_KEY}.
+ * <p>
+ * A destination given as an IP address is tagged by the command. A destination given as a domain
+ * name is never resolved here, command listeners run before access control has checked it; it's
+ * tagged when the pipe of a CONNECT command is initialized, by the address the server connected
+ * to, if this class is also a {@link PipeInitializer} of the server.
+ * </p>
+ * <pre>
+ * CIDRTagDatabase database = CIDRTagDatabase.open(new File("country.db"));
+ * server.getSessionManager().onSessionCreate("tag", listener).onCommand("tag", listener);
+ * server.setPipeInitializer(listener);
+ * ...
+ * int tag = TaggingListener.getDestinationTag(session);
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:03 AM
+ */
+public class TaggingListener implements SessionCreateListener, CommandListener,
+        PipeInitializer {
+
+    public static final String CLIENT_TAG_KEY = "CLIENT_TAG";
+
+    public static final String DESTINATION_TAG_KEY = "DESTINATION_TAG";
+
+    private volatile CIDRTagDatabase database;
+
+    public TaggingListener(CIDRTagDatabase database) {
+        this.database = checkNotNull(database, "Argument [database] may not be null");
+    }
+
+    /**
+     * Returns tag of client saved in session.
+     *
+     * @param session Session.
+     * @return Tag of client, or {@link CIDRTagDatabase#NO_TAG}.
+     */
+    public static int getClientTag(Session session) {
+        Object tag = session.getAttribute(CLIENT_TAG_KEY);
+        return tag instanceof Integer ? (Integer) tag : CIDRTagDatabase.NO_TAG;
+    }
+
+    /**
+     * Returns tag of destination saved in session.
+     *
+     * @param session Session.
+     * @return Tag of destination, or {@link CIDRTagDatabase#NO_TAG}.
+     */
+    public static int getDestinationTag(Session session) {
+        Object tag = session.getAttribute(DESTINATION_TAG_KEY);
+        return tag instanceof Integer ? (Integer) tag : CIDRTagDatabase.NO_TAG;
+    }
+
+    @Override
+    public void onCreate(Session session) throws CloseSessionException {
+        SocketAddress address = session.getClientAddress();
+        if (address instanceof InetSocketAddress) {
+            session.setAttribute(CLIENT_TAG_KEY, database.lookup(((InetSocketAddress) address)
+                    .getAddress()));
+        }
+    }
+
+    @Override
+    public void onCommand(Session session, CommandMessage message) throws CloseSessionException {
+        if (message.isResolved()) {
+            session.setAttribute(DESTINATION_TAG_KEY, database.lookup(message.getInetAddress()));
+        }
+    }
+
+    @Override
+    public Pipe initialize(Pipe pipe) {
+        Object session = pipe.getAttribute(SocketPipe.ATTR_SESSION);
+        if (session instanceof Session && pipe instanceof SocketPipe && ((Session) session)
+                .getAttribute(DESTINATION_TAG_KEY) == null) {
+            Object socket = ((SocketPipe) pipe).getOutputPipe().getAttribute(SocketPipe
+                    .ATTR_DESTINATION_SOCKET);
+            if (socket instanceof Socket && ((Socket) socket).getInetAddress() != null) {
+                ((Session) session).setAttribute(DESTINATION_TAG_KEY, database.lookup(((Socket)
+                        socket).getInetAddress()));
+            }
+        }
+        return pipe;
+    }
+
+    public CIDRTagDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Replaces the database, e.g. after a new version of database file is built.
+     *
+     * @param database New database.
+     */
+    public void setDatabase(CIDRTagDatabase database) {
+        this.database = checkNotNull(database, "Argument [database] may not be null");
+    }
+}
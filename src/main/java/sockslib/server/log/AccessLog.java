@@ -0,0 +1,495 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.log;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import sockslib.common.SocksCommand;
+import sockslib.common.net.NetworkMonitor;
+import sockslib.server.Session;
+import sockslib.server.SessionTimeline;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.listener.SessionCloseListener;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+import sockslib.server.msg.ServerReply;
+import sockslib.utils.Logger;
+
+/**
+ * The class <code>AccessLog</code> writes one line per closed session to a file, without adding
+ * disk latency to the close of sessions.
+ * <p>
+ * A closed session is copied into a record of a preallocated ring buffer, which takes a few
+ * field writes and no lock. A single writer thread drains the ring, formats the records and
+ * writes them in batches through a buffer, the file is flushed once per batch. If the ring is
+ * full, the record is dropped and counted in {@link #getDroppedCount()}, so a slow disk never
+ * blocks a session. The file is rotated by size and by age, see {@link RollingFileWriter}.
+ * </p>
+ * <pre>
+ * AccessLog accessLog = AccessLog.newBuilder()
+ *     .setFile(new File("access.log"))
+ *     .setMaxFileSize(64 * 1024 * 1024)
+ *     .setRotationInterval(1, TimeUnit.DAYS)
+ *     .build();
+ * accessLog.start();
+ * server.getSessionManager().onSessionClose("access-log", accessLog);
+ * ...
+ * accessLog.close();
+ * </pre>
+ * <p>
+ * Each line has these fields separated by spaces, a missing field is <code>-</code> and durations
+ * are milliseconds since the accept:
+ * </p>
+ * <pre>
+ * TIME SESSION CLIENT USER COMMAND TARGET REPLY REASON RECEIVED SENT HANDSHAKE CONNECT LIFETIME
+ * 2026-10-20 07:20:00.123 12 /10.0.0.2:51234 alice CONNECT example.com:443 SUCCEEDED COMPLETED
+ * 517 20480 3 41 1530
+ * </pre>
+ * <p>
+ * RECEIVED and SENT are bytes received from and sent to the client, HANDSHAKE is the time to read
+ * the command and CONNECT is the time to connect the target.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:46 AM
+ */
+public class AccessLog implements SessionCloseListener, Closeable {
+
+    private static final Logger logger = Logger.getLogger("AccessLog");
+
+    public static final long NO_ROTATION = 0;
+
+    /**
+     * How long the writer thread sleeps when the ring is empty.
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Record[] records;
+
+    private final int mask;
+
+    private final RollingFileWriter fileWriter;
+
+    /**
+     * Next sequence to claim by sessions.
+     */
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    /**
+     * Next sequence to write by the writer thread, records before it can be reused.
+     */
+    private final AtomicLong writeSequence = new AtomicLong();
+
+    private final AtomicLong publishedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss",
+            Locale.US);
+
+    private long formattedSecond = -1;
+
+    private String formattedTime;
+
+    private volatile boolean closed;
+
+    private Thread writer;
+
+    private AccessLog(Builder builder) {
+        int capacity = Integer.highestOneBit(builder.capacity - 1) << 1;
+        records = new Record[capacity];
+        for (int i = 0; i < capacity; i++) {
+            records[i] = new Record();
+        }
+        mask = capacity - 1;
+        fileWriter = new RollingFileWriter(builder.file, builder.maxFileSize, builder
+                .rotationIntervalMillis, builder.maxBackups);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public synchronized void start() {
+        checkArgument(!closed, "Access log is closed");
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "sockslib-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes the remaining records, stops the writer thread and closes the file.
+     *
+     * @throws IOException If the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread current;
+        synchronized (this) {
+            closed = true;
+            current = writer;
+        }
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            fileWriter.close();
+        }
+    }
+
+    @Override
+    public void onClose(Session session) {
+        if (closed) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (sequence - writeSequence.get() >= records.length) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+        Record record = records[(int) sequence & mask];
+        record.fill(session);
+        record.published = sequence;
+        publishedCount.incrementAndGet();
+    }
+
+    private void drainLoop() {
+        long next = writeSequence.get();
+        boolean dirty = false;
+        while (true) {
+            Record record = records[(int) next & mask];
+            if (record.published == next) {
+                long now = System.currentTimeMillis();
+                try {
+                    fileWriter.write(format(record, now), now);
+                    writtenCount.incrementAndGet();
+                    dirty = true;
+                } catch (IOException e) {
+                    onError(e);
+                }
+                record.clear();
+                writeSequence.lazySet(++next);
+                continue;
+            }
+            // The ring is drained, write the batch.
+            if (dirty) {
+                try {
+                    fileWriter.flush();
+                } catch (IOException e) {
+                    onError(e);
+                }
+                dirty = false;
+            }
+            if (closed && claimSequence.get() == next) {
+                break;
+            }
+            LockSupport.parkNanos(this, IDLE_NANOS);
+        }
+        try {
+            fileWriter.close();
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private void onError(IOException e) {
+        // Log the first error only, the file may stay unwritable for a long time.
+        if (errorCount.getAndIncrement() == 0) {
+            logger.warn("Failed to write access log", e);
+        }
+        try {
+            fileWriter.close();
+        } catch (IOException ignored) {
+            // The file is reopened by the next write.
+        }
+    }
+
+    private CharSequence format(Record record, long now) {
+        StringBuilder builder = line;
+        builder.setLength(0);
+        long second = record.closeTime / 1000;
+        if (second != formattedSecond) {
+            formattedSecond = second;
+            formattedTime = timeFormat.format(new Date(second * 1000));
+        }
+        int millis = (int) (record.closeTime % 1000);
+        builder.append(formattedTime).append('.');
+        if (millis < 100) {
+            builder.append(millis < 10 ? "00" : "0");
+        }
+        builder.append(millis).append(' ').append(record.sessionId).append(' ');
+        appendField(builder, record.client).append(' ');
+        appendField(builder, record.username).append(' ');
+        appendField(builder, record.command).append(' ');
+        if (record.host != null) {
+            builder.append(record.host).append(':').append(record.port);
+        } else if (record.address != null) {
+            builder.append(record.address.getHostAddress()).append(':').append(record.port);
+        } else {
+            builder.append('-');
+        }
+        builder.append(' ');
+        appendField(builder, record.reply).append(' ');
+        appendField(builder, record.reason).append(' ');
+        builder.append(record.received).append(' ').append(record.sent).append(' ');
+        appendMillis(builder, record.handshakeNanos).append(' ');
+        appendMillis(builder, record.connectNanos).append(' ');
+        appendMillis(builder, record.lifetimeNanos).append('\n');
+        return builder;
+    }
+
+    private static StringBuilder appendField(StringBuilder builder, Object value) {
+        return value == null ? builder.append('-') : builder.append(value);
+    }
+
+    private static StringBuilder appendMillis(StringBuilder builder, long nanos) {
+        return nanos < 0 ? builder.append('-') : builder.append(TimeUnit.NANOSECONDS.toMillis
+                (nanos));
+    }
+
+    /**
+     * Returns number of records in the ring which are not written yet.
+     *
+     * @return Number of pending records.
+     */
+    public int getPendingCount() {
+        return (int) Math.max(0, claimSequence.get() - writeSequence.get());
+    }
+
+    public int getCapacity() {
+        return records.length;
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AccessLog{published=" + publishedCount.get() + ", dropped=" + droppedCount.get()
+                + ", written=" + writtenCount.get() + ", errors=" + errorCount.get() + ", "
+                + "pending=" + getPendingCount() + '}';
+    }
+
+    /**
+     * A slot of the ring. The fields are written by the session before {@link #published} and
+     * read by the writer thread after it.
+     */
+    private static final class Record {
+
+        volatile long published = -1;
+
+        long sessionId;
+
+        long closeTime;
+
+        SocketAddress client;
+
+        String username;
+
+        SocksCommand command;
+
+        String host;
+
+        InetAddress address;
+
+        int port;
+
+        ServerReply reply;
+
+        SessionTimeline.CloseReason reason;
+
+        long received;
+
+        long sent;
+
+        long handshakeNanos;
+
+        long connectNanos;
+
+        long lifetimeNanos;
+
+        void fill(Session session) {
+            sessionId = session.getId();
+            closeTime = System.currentTimeMillis();
+            client = session.getClientAddress();
+            Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+            username = user instanceof User ? ((User) user).getUsername() : null;
+            NetworkMonitor monitor = session.getNetworkMonitor();
+            received = monitor == null ? 0 : monitor.getReceiveTCP();
+            sent = monitor == null ? 0 : monitor.getSendTCP();
+            SessionTimeline timeline = SessionTimeline.get(session);
+            CommandMessage message = timeline == null ? null : timeline.getCommand();
+            if (message != null) {
+                command = message.getCommand();
+                host = message.getHost();
+                // Never look up a name here, a denied or failed command is logged by host.
+                address = message.isResolved() ? message.getInetAddress() : null;
+                port = message.getPort();
+            }
+            if (timeline != null) {
+                reply = timeline.getReply();
+                reason = timeline.getCloseReason();
+                handshakeNanos = timeline.elapsed(SessionTimeline.Mark.COMMAND);
+                connectNanos = timeline.elapsed(SessionTimeline.Mark.CONNECT);
+                lifetimeNanos = timeline.elapsed(SessionTimeline.Mark.CLOSE);
+            } else {
+                handshakeNanos = -1;
+                connectNanos = -1;
+                lifetimeNanos = -1;
+            }
+        }
+
+        void clear() {
+            client = null;
+            username = null;
+            command = null;
+            host = null;
+            address = null;
+            reply = null;
+            reason = null;
+        }
+    }
+
+    /**
+     * The class <code>Builder</code> is a tool to build {@link AccessLog}.
+     */
+    public static class Builder {
+
+        private File file;
+
+        private int capacity = 8192;
+
+        private long maxFileSize = 64 * 1024 * 1024;
+
+        private long rotationIntervalMillis = TimeUnit.DAYS.toMillis(1);
+
+        private int maxBackups = 7;
+
+        private Builder() {
+        }
+
+        public Builder setFile(File file) {
+            this.file = checkNotNull(file, "Argument [file] may not be null");
+            return this;
+        }
+
+        /**
+         * Sets number of records in the ring, it's rounded up to a power of 2.
+         *
+         * @param capacity Number of records.
+         * @return This builder.
+         */
+        public Builder setCapacity(int capacity) {
+            checkArgument(capacity > 1 && capacity <= 1 << 24, "Capacity must be between 2 and "
+                    + "16777216");
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets size in bytes at which the file is rotated.
+         *
+         * @param maxFileSize Size in bytes.
+         * @return This builder.
+         */
+        public Builder setMaxFileSize(long maxFileSize) {
+            checkArgument(maxFileSize > 0, "Max file size must be positive");
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * Sets age at which the file is rotated.
+         *
+         * @param interval Age, or {@link #NO_ROTATION}.
+         * @param unit     Unit of age.
+         * @return This builder.
+         */
+        public Builder setRotationInterval(long interval, TimeUnit unit) {
+            checkArgument(interval >= 0, "Rotation interval can't be negative");
+            this.rotationIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Sets number of rotated files to keep.
+         *
+         * @param maxBackups Number of files.
+         * @return This builder.
+         */
+        public Builder setMaxBackups(int maxBackups) {
+            checkArgument(maxBackups >= 0, "Max backups can't be negative");
+            this.maxBackups = maxBackups;
+            return this;
+        }
+
+        public AccessLog build() {
+            checkNotNull(file, "Please set a file");
+            return new AccessLog(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.log;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * The class <code>RollingFileWriter</code> appends text to a file and rotates it when it reaches a
+ * size or an age. A rotated file is renamed to <code>&lt;file&gt;.yyyyMMdd-HHmmss</code>, and the
+ * oldest rotated files are deleted when there are too many.
+ * <p>
+ * Text is buffered until {@link #flush()}. It's not thread-safe, it's used by the writer thread of
+ * {@link AccessLog} only.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:46 AM
+ */
+final class RollingFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final long maxFileSize;
+
+    private final long rotationIntervalMillis;
+
+    private final int maxBackups;
+
+    private final SimpleDateFormat suffixFormat = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale
+            .US);
+
+    private Writer writer;
+
+    private long size;
+
+    private long rotateAt;
+
+    private int rotationCount;
+
+    RollingFileWriter(File file, long maxFileSize, long rotationIntervalMillis, int maxBackups) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.rotationIntervalMillis = rotationIntervalMillis;
+        this.maxBackups = maxBackups;
+    }
+
+    /**
+     * Appends text, the file is opened or rotated first if needed.
+     *
+     * @param text Text to append.
+     * @param now  Current time in milliseconds.
+     * @throws IOException If the file can't be opened or written.
+     */
+    void write(CharSequence text, long now) throws IOException {
+        if (writer != null && (size >= maxFileSize || now >= rotateAt)) {
+            rotate(now);
+        }
+        if (writer == null) {
+            open(now);
+        }
+        writer.append(text);
+        // Approximate for non-ASCII text, it only decides when to rotate.
+        size += text.length();
+    }
+
+    void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    int getRotationCount() {
+        return rotationCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            Writer current = writer;
+            writer = null;
+            current.close();
+        }
+    }
+
+    private void open(long now) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Can't create directory " + parent);
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+                "UTF-8"), BUFFER_SIZE);
+        size = file.length();
+        rotateAt = rotationIntervalMillis == AccessLog.NO_ROTATION ? Long.MAX_VALUE : now
+                + rotationIntervalMillis;
+    }
+
+    private void rotate(long now) throws IOException {
+        close();
+        String base = file.getPath() + "." + suffixFormat.format(new Date(now));
+        File rotated = new File(base);
+        for (int i = 1; rotated.exists(); i++) {
+            rotated = new File(base + "-" + i);
+        }
+        if (!file.renameTo(rotated)) {
+            throw new IOException("Can't rename " + file + " to " + rotated);
+        }
+        rotationCount++;
+        deleteOldBackups();
+    }
+
+    private void deleteOldBackups() {
+        File parent = file.getAbsoluteFile().getParentFile();
+        final String prefix = file.getName() + ".";
+        File[] backups = parent == null ? null : parent.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix);
+            }
+        });
+        if (backups == null || backups.length <= maxBackups) {
+            return;
+        }
+        // Suffixes are timestamps, so names sort from the oldest.
+        Arrays.sort(backups);
+        for (int i = 0; i < backups.length - maxBackups; i++) {
+            backups[i].delete();
+        }
+    }
+}
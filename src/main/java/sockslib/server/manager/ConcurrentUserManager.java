@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The class <code>ConcurrentUserManager</code> is a thread-safe {@link UserManager} which stores
+ * hashed passwords.
+ * <p>
+ * Users are kept in an immutable snapshot. {@link #check(String, String)} reads the snapshot
+ * without locking, changes copy the snapshot and swap it atomically. Passwords are hashed by
+ * {@link PasswordHasher}, a password that is already hashed is stored as it is. Because verifying
+ * a hash is slow on purpose, recently verified credentials are kept in a {@link CredentialCache}.
+ * </p>
+ * <p>
+ * Users returned by this manager are copies, changing them doesn't affect the manager until
+ * {@link #update(User)} is called.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:05 AM
+ */
+public class ConcurrentUserManager implements UserManager {
+
+    private static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+    private final AtomicReference<Map<String, User>> users = new AtomicReference<>(Collections
+            .<String, User>emptyMap());
+
+    private final Object writeLock = new Object();
+
+    private final PasswordHasher passwordHasher;
+
+    private final CredentialCache credentialCache;
+
+    public ConcurrentUserManager() {
+        this(new PasswordHasher(), new CredentialCache(DEFAULT_CACHE_CAPACITY));
+    }
+
+    public ConcurrentUserManager(PasswordHasher passwordHasher, CredentialCache credentialCache) {
+        this.passwordHasher = checkNotNull(passwordHasher, "Argument [passwordHasher] may not be "
+                + "null");
+        this.credentialCache = checkNotNull(credentialCache, "Argument [credentialCache] may not "
+                + "be null");
+    }
+
+    @Override
+    public void create(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User can't be null");
+        }
+        if (TextUtils.isEmpty(user.getUsername())) {
+            throw new IllegalArgumentException("Username of the user can't be null or empty");
+        }
+        if (TextUtils.isEmpty(user.getPassword())) {
+            throw new IllegalArgumentException("Password of the user can't be null or empty");
+        }
+        put(user.getUsername(), user.getPassword());
+    }
+
+    @Override
+    public UserManager addUser(String username, String password) {
+        create(new User(username, password));
+        return this;
+    }
+
+    @Override
+    public User check(String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+        User user = users.get().get(username);
+        if (user == null) {
+            return null;
+        }
+        String storedPassword = user.getPassword();
+        if (credentialCache.verify(username, storedPassword, password)) {
+            return user.copy();
+        }
+        if (passwordHasher.matches(password, storedPassword)) {
+            credentialCache.put(username, storedPassword, password);
+            return user.copy();
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(String username) {
+        synchronized (writeLock) {
+            Map<String, User> current = users.get();
+            if (current.containsKey(username)) {
+                Map<String, User> next = new HashMap<>(current);
+                next.remove(username);
+                users.set(Collections.unmodifiableMap(next));
+            }
+        }
+        credentialCache.invalidate(username);
+    }
+
+    @Override
+    public List<User> findAll() {
+        Map<String, User> current = users.get();
+        List<User> result = new ArrayList<>(current.size());
+        for (User user : current.values()) {
+            result.add(user.copy());
+        }
+        return result;
+    }
+
+    @Override
+    public void update(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User can't null");
+        }
+        if (TextUtils.isEmpty(user.getUsername())) {
+            throw new IllegalArgumentException("Username of the user can't be null or empty");
+        }
+        String password = user.getPassword();
+        if (TextUtils.isEmpty(password)) {
+            // Keep the old password.
+            User old = users.get().get(user.getUsername());
+            password = old == null ? null : old.getPassword();
+            if (password == null) {
+                throw new IllegalArgumentException("Password of the user can't be null or empty");
+            }
+        }
+        put(user.getUsername(), password);
+    }
+
+    @Override
+    public User find(String username) {
+        if (TextUtils.isEmpty(username)) {
+            throw new IllegalArgumentException("Username can't be null or empty");
+        }
+        User user = users.get().get(username);
+        return user == null ? null : user.copy();
+    }
+
+    /**
+     * Returns number of users.
+     *
+     * @return Number of users.
+     */
+    public int size() {
+        return users.get().size();
+    }
+
+    private void put(String username, String password) {
+        // Hash outside of the lock, it's slow.
+        String storedPassword = PasswordHasher.isHashed(password) ? password : passwordHasher.hash
+                (password);
+        synchronized (writeLock) {
+            Map<String, User> next = new HashMap<>(users.get());
+            next.put(username, new User(username, storedPassword));
+            users.set(Collections.unmodifiableMap(next));
+        }
+        credentialCache.invalidate(username);
+    }
+
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
+
+    public CredentialCache getCredentialCache() {
+        return credentialCache;
+    }
+}
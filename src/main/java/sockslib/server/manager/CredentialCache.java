@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static androidx.core.util.Preconditions.checkArgument;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The class <code>CredentialCache</code> remembers recently verified credentials, so that a user
+ * who logs in again doesn't pay for the slow password hash.
+ * <p>
+ * The cache doesn't keep passwords. It keeps an HMAC of the password under a random key that only
+ * lives in this instance, together with the stored password hash it was verified against. An entry
+ * is only used while the stored hash is unchanged, so changing a password invalidates the entry
+ * even if {@link #invalidate(String)} isn't called.
+ * </p>
+ * <p>
+ * The cache is split into segments, each is a small LRU map guarded by its own lock.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:05 AM
+ */
+public class CredentialCache {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+
+    private final int capacity;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity Maximum number of cached credentials.
+     */
+    public CredentialCache(int capacity) {
+        checkArgument(capacity > 0, "Capacity must be positive");
+        this.capacity = capacity;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        int segmentCount = Math.min(SEGMENT_COUNT, capacity);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // Spread the remainder, so that the total capacity is exact.
+            int segmentCapacity = capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0);
+            segments[i] = new Segment(segmentCapacity, key);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the password was verified against the stored password before.
+     *
+     * @param username       Username.
+     * @param storedPassword Stored password hash of the user.
+     * @param password       Password to verify.
+     * @return <code>true</code> if the password is known to be right.
+     */
+    public boolean verify(String username, String storedPassword, String password) {
+        if (username == null || storedPassword == null || password == null) {
+            return false;
+        }
+        if (segmentFor(username).verify(username, storedPassword, password)) {
+            hitCount.incrementAndGet();
+            return true;
+        }
+        missCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Remembers a verified password.
+     *
+     * @param username       Username.
+     * @param storedPassword Stored password hash that the password was verified against.
+     * @param password       Verified password.
+     */
+    public void put(String username, String storedPassword, String password) {
+        if (username != null && storedPassword != null && password != null) {
+            segmentFor(username).put(username, storedPassword, password);
+        }
+    }
+
+    /**
+     * Removes the cached credential of a user.
+     *
+     * @param username Username.
+     */
+    public void invalidate(String username) {
+        if (username != null && segmentFor(username).remove(username)) {
+            invalidationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all cached credentials.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            invalidationCount.addAndGet(segment.clear());
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Returns hit rate of the cache, or <code>0</code> if it hasn't been used.
+     *
+     * @return Hit rate between <code>0</code> and <code>1</code>.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private Segment segmentFor(String username) {
+        int hash = username.hashCode();
+        hash ^= hash >>> 16;
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    @Override
+    public String toString() {
+        return "CredentialCache{size=" + size() + ", capacity=" + capacity + ", hits=" + hitCount
+                .get() + ", misses=" + missCount.get() + ", evictions=" + evictionCount.get()
+                + ", invalidations=" + invalidationCount.get() + '}';
+    }
+
+    private static final class CachedCredential {
+
+        final String storedPassword;
+
+        final byte[] digest;
+
+        CachedCredential(String storedPassword, byte[] digest) {
+            this.storedPassword = storedPassword;
+            this.digest = digest;
+        }
+    }
+
+    private final class Segment {
+
+        private final Map<String, CachedCredential> entries;
+
+        /**
+         * {@link Mac} isn't thread-safe, each segment uses its own under the segment lock.
+         */
+        private final Mac mac;
+
+        Segment(final int maxSize, byte[] key) {
+            entries = new LinkedHashMap<String, CachedCredential>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedCredential> eldest) {
+                    if (size() > maxSize) {
+                        evictionCount.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            try {
+                mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+            }
+        }
+
+        synchronized boolean verify(String username, String storedPassword, String password) {
+            CachedCredential entry = entries.get(username);
+            return entry != null && entry.storedPassword.equals(storedPassword) && MessageDigest
+                    .isEqual(entry.digest, digest(password));
+        }
+
+        synchronized void put(String username, String storedPassword, String password) {
+            entries.put(username, new CachedCredential(storedPassword, digest(password)));
+        }
+
+        synchronized boolean remove(String username) {
+            return entries.remove(username) != null;
+        }
+
+        synchronized int clear() {
+            int size = entries.size();
+            entries.clear();
+            return size;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private byte[] digest(String password) {
+            return mac.doFinal(password.getBytes(UTF_8));
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The class <code>FileBasedUserManager</code> is a {@link UserManager} which reads users from a
+ * text file and reloads it when the file changes.
+ * <p>
+ * Each line of the file is <code>username:password</code>, the password may be plaintext or a hash
+ * made by {@link PasswordHasher}. Empty lines and lines starting with <code>#</code> are ignored.
+ * If a username appears more than once, the last line wins.
+ * </p>
+ * <pre>
+ * FileBasedUserManager userManager = new FileBasedUserManager(new File("users.txt"));
+ * userManager.startWatching(5, TimeUnit.SECONDS);
+ * </pre>
+ * <p>
+ * The file is parsed into an immutable {@link UserIndex} which is swapped in atomically, so
+ * authentications never wait for a reload. Changes are detected by polling a CRC32 checksum of
+ * the file; the modification time isn't used, it may miss an edit within its granularity or be
+ * restored with an old file. After parsing, the index is saved to a binary cache file next to the
+ * user file; at the next startup the cache is loaded instead if the checksum of the user file
+ * matches, which is much faster for big files.
+ * </p>
+ * <p>
+ * {@link #create(User)}, {@link #update(User)} and {@link #delete(String)} rewrite the user file
+ * with hashed passwords, comments in the file are not kept.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:08 AM
+ */
+public class FileBasedUserManager implements UserManager {
+
+    private static final String TAG = "FileBasedUserManager";
+
+    private static final int CACHE_MAGIC = 0x534c5553; // "SLUS"
+
+    private static final int CACHE_VERSION = 2;
+
+    private static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+    private final File file;
+
+    private final File cacheFile;
+
+    private final PasswordHasher passwordHasher;
+
+    private final CredentialCache credentialCache;
+
+    private final Object writeLock = new Object();
+
+    private volatile UserIndex index = UserIndex.EMPTY;
+
+    private volatile long checksum;
+
+    private Thread watcher;
+
+    /**
+     * Creates a user manager and loads the file. The cache file is
+     * <code>&lt;file&gt;.cache</code>.
+     *
+     * @param file User file.
+     * @throws IOException If the file can't be read or has an invalid line.
+     */
+    public FileBasedUserManager(File file) throws IOException {
+        this(file, new File(file.getPath() + ".cache"), new PasswordHasher(), new CredentialCache
+                (DEFAULT_CACHE_CAPACITY));
+    }
+
+    /**
+     * Creates a user manager and loads the file.
+     *
+     * @param file            User file.
+     * @param cacheFile       Binary cache of the user file, or <code>null</code> to disable it.
+     * @param passwordHasher  Password hasher.
+     * @param credentialCache Cache of verified credentials.
+     * @throws IOException If the file can't be read or has an invalid line.
+     */
+    public FileBasedUserManager(File file, @Nullable File cacheFile, PasswordHasher
+            passwordHasher, CredentialCache credentialCache) throws IOException {
+        this.file = checkNotNull(file, "Argument [file] may not be null");
+        this.cacheFile = cacheFile;
+        this.passwordHasher = checkNotNull(passwordHasher, "Argument [passwordHasher] may not be "
+                + "null");
+        this.credentialCache = checkNotNull(credentialCache, "Argument [credentialCache] may not "
+                + "be null");
+        if (file.exists()) {
+            load(true);
+        }
+    }
+
+    /**
+     * Reloads the file if it has changed since the last load.
+     *
+     * @return <code>true</code> if the file was reloaded.
+     * @throws IOException If the file can't be read or has an invalid line, the current users are
+     *                     kept in this case.
+     */
+    public boolean reload() throws IOException {
+        synchronized (writeLock) {
+            if (checksum() == checksum) {
+                return false;
+            }
+            load(false);
+            return true;
+        }
+    }
+
+    /**
+     * Starts a daemon thread which checks the file periodically and reloads it when it changes.
+     *
+     * @param interval Check interval.
+     * @param unit     Unit of interval.
+     */
+    public synchronized void startWatching(long interval, TimeUnit unit) {
+        checkArgument(interval > 0, "Interval must be positive");
+        if (watcher != null) {
+            return;
+        }
+        final long intervalMillis = unit.toMillis(interval);
+        watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(intervalMillis);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    try {
+                        if (reload()) {
+                            Log.i(TAG, "Reloaded " + index.size() + " users from " + file);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        Log.w(TAG, "Failed to reload " + file + ", keep current users", e);
+                    }
+                }
+            }
+        }, TAG + "-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    @Override
+    public void create(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User can't be null");
+        }
+        if (TextUtils.isEmpty(user.getUsername())) {
+            throw new IllegalArgumentException("Username of the user can't be null or empty");
+        }
+        if (TextUtils.isEmpty(user.getPassword())) {
+            throw new IllegalArgumentException("Password of the user can't be null or empty");
+        }
+        checkArgument(user.getUsername().indexOf(':') < 0, "Username can't contain ':'");
+        String password = user.getPassword();
+        String storedPassword = PasswordHasher.isHashed(password) ? password : passwordHasher.hash
+                (password);
+        synchronized (writeLock) {
+            save(index.toBuilder().put(user.getUsername(), storedPassword).build());
+        }
+        credentialCache.invalidate(user.getUsername());
+    }
+
+    @Override
+    public UserManager addUser(String username, String password) {
+        create(new User(username, password));
+        return this;
+    }
+
+    @Override
+    public User check(String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+        String storedPassword = index.getPassword(username);
+        if (storedPassword == null) {
+            return null;
+        }
+        if (credentialCache.verify(username, storedPassword, password) || passwordHasher.matches
+                (password, storedPassword)) {
+            credentialCache.put(username, storedPassword, password);
+            return new User(username, storedPassword);
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(String username) {
+        synchronized (writeLock) {
+            if (index.getPassword(username) != null) {
+                save(index.toBuilder().remove(username).build());
+            }
+        }
+        credentialCache.invalidate(username);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return index.users();
+    }
+
+    @Override
+    public void update(User user) {
+        create(user);
+    }
+
+    @Override
+    public User find(String username) {
+        if (TextUtils.isEmpty(username)) {
+            throw new IllegalArgumentException("Username can't be null or empty");
+        }
+        String password = index.getPassword(username);
+        return password == null ? null : new User(username, password);
+    }
+
+    /**
+     * Returns number of users.
+     *
+     * @return Number of users.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    private void load(boolean useCache) throws IOException {
+        UserIndex loaded = null;
+        long fileChecksum = 0;
+        if (useCache && cacheFile != null && cacheFile.exists()) {
+            fileChecksum = checksum();
+            loaded = readCache(fileChecksum);
+        }
+        if (loaded == null) {
+            CRC32 crc = new CRC32();
+            loaded = parse(crc);
+            fileChecksum = crc.getValue();
+            writeCache(loaded, fileChecksum);
+        }
+        checksum = fileChecksum;
+        // Cached credentials are bound to the stored password, no need to invalidate them.
+        index = loaded;
+    }
+
+    /**
+     * Parses the file, its bytes are added to the checksum as they are read.
+     */
+    private UserIndex parse(CRC32 crc) throws IOException {
+        UserIndex.Builder builder = new UserIndex.Builder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new CheckedInputStream
+                (new FileInputStream(file), crc), "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int separator = line.indexOf(':');
+                if (separator <= 0 || separator == line.length() - 1) {
+                    throw new IOException("Invalid line " + lineNumber + " in " + file);
+                }
+                builder.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        } finally {
+            reader.close();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the user file and swaps the index. It must be called with the write lock held.
+     */
+    private void save(UserIndex newIndex) {
+        File temp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(new
+                    FileOutputStream(temp), crc), "UTF-8"));
+            try {
+                for (User user : newIndex.users()) {
+                    writer.write(user.getUsername());
+                    writer.write(':');
+                    writer.write(user.getPassword());
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Can't rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw new UserManagerException("Failed to save users to " + file, e);
+        }
+        checksum = crc.getValue();
+        index = newIndex;
+        writeCache(newIndex, checksum);
+    }
+
+    private long checksum() throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    @Nullable
+    private UserIndex readCache(long fileChecksum) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream
+                    (cacheFile), 64 * 1024));
+            try {
+                if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION || in.readLong()
+                        != fileChecksum) {
+                    return null;
+                }
+                return UserIndex.readFrom(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Ignore invalid cache file " + cacheFile, e);
+            return null;
+        }
+    }
+
+    private void writeCache(UserIndex cached, long fileChecksum) {
+        if (cacheFile == null) {
+            return;
+        }
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new
+                    FileOutputStream(temp), 64 * 1024));
+            try {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeLong(fileChecksum);
+                cached.writeTo(out);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(cacheFile)) {
+                throw new IOException("Can't rename " + temp + " to " + cacheFile);
+            }
+        } catch (IOException e) {
+            // The cache only speeds up startup.
+            temp.delete();
+            Log.w(TAG, "Failed to write cache file " + cacheFile, e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public CredentialCache getCredentialCache() {
+        return credentialCache;
+    }
+
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/**
+ * The class <code>JdbcUserManager</code> is a {@link UserManager} which stores users in a
+ * database table.
+ * <p>
+ * The data source should be a connection pool, such as Tomcat DBCP or HikariCP, since a connection
+ * is borrowed for each statement. Users are read through a {@link UserCache}, so most
+ * authentications don't touch the database, and verified credentials are kept in a
+ * {@link CredentialCache}. Passwords are hashed by {@link PasswordHasher}.
+ * </p>
+ * <pre>
+ * JdbcUserManager userManager = new JdbcUserManager(dataSource);
+ * userManager.createTable();
+ * userManager.preload();
+ * UsernamePasswordAuthenticator authenticator = new UsernamePasswordAuthenticator(userManager);
+ * </pre>
+ * <p>
+ * The table has two columns:
+ * <code>USERNAME VARCHAR(255) PRIMARY KEY</code> and <code>PASSWORD VARCHAR(255)</code>.
+ * Changes made to the table by others are visible after the cache entries expire.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:07 AM
+ */
+public class JdbcUserManager implements UserManager {
+
+    private static final String TAG = "JdbcUserManager";
+
+    public static final String DEFAULT_TABLE = "SOCKS_USER";
+
+    private static final int DEFAULT_CACHE_CAPACITY = 10000;
+
+    private static final long DEFAULT_CACHE_TTL_SECONDS = 60;
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    private final PasswordHasher passwordHasher;
+
+    private final UserCache userCache;
+
+    private final CredentialCache credentialCache;
+
+    private final String createTableSql;
+
+    private final String selectSql;
+
+    private final String selectAllSql;
+
+    private final String insertSql;
+
+    private final String updateSql;
+
+    private final String deleteSql;
+
+    private final UserCache.Loader loader = new UserCache.Loader() {
+        @Override
+        public User load(String username) {
+            return loadUser(username);
+        }
+    };
+
+    public JdbcUserManager(DataSource dataSource) {
+        this(dataSource, DEFAULT_TABLE);
+    }
+
+    public JdbcUserManager(DataSource dataSource, String table) {
+        this(dataSource, table, new PasswordHasher(), new UserCache(DEFAULT_CACHE_CAPACITY,
+                DEFAULT_CACHE_TTL_SECONDS, TimeUnit.SECONDS), new CredentialCache
+                (DEFAULT_CACHE_CAPACITY));
+    }
+
+    public JdbcUserManager(DataSource dataSource, String table, PasswordHasher passwordHasher,
+                           UserCache userCache, CredentialCache credentialCache) {
+        this.dataSource = checkNotNull(dataSource, "Argument [dataSource] may not be null");
+        this.passwordHasher = checkNotNull(passwordHasher, "Argument [passwordHasher] may not be "
+                + "null");
+        this.userCache = checkNotNull(userCache, "Argument [userCache] may not be null");
+        this.credentialCache = checkNotNull(credentialCache, "Argument [credentialCache] may not "
+                + "be null");
+        checkNotNull(table, "Argument [table] may not be null");
+        // The table name can't be a statement parameter, so it must be a plain identifier.
+        checkArgument(table.matches("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?"),
+                "Invalid table name");
+        createTableSql = "CREATE TABLE IF NOT EXISTS " + table + " (USERNAME VARCHAR(255) NOT "
+                + "NULL PRIMARY KEY, PASSWORD VARCHAR(255) NOT NULL)";
+        selectSql = "SELECT USERNAME, PASSWORD FROM " + table + " WHERE USERNAME = ?";
+        selectAllSql = "SELECT USERNAME, PASSWORD FROM " + table;
+        insertSql = "INSERT INTO " + table + " (USERNAME, PASSWORD) VALUES (?, ?)";
+        updateSql = "UPDATE " + table + " SET PASSWORD = ? WHERE USERNAME = ?";
+        deleteSql = "DELETE FROM " + table + " WHERE USERNAME = ?";
+    }
+
+    /**
+     * Creates the table if it doesn't exist.
+     */
+    public void createTable() {
+        Connection connection = getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute(createTableSql);
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new UserManagerException("Failed to create table", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    /**
+     * Loads users into the cache with a single query, so that the first authentications after
+     * startup don't hit the database one by one. Loading stops when the cache is full.
+     *
+     * @return Number of loaded users.
+     */
+    public int preload() {
+        int count = 0;
+        Connection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement(selectAllSql);
+            try {
+                statement.setFetchSize(FETCH_SIZE);
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    while (count < userCache.getCapacity() && resultSet.next()) {
+                        User user = readUser(resultSet);
+                        userCache.put(user.getUsername(), user);
+                        count++;
+                    }
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new UserManagerException("Failed to preload users", e);
+        } finally {
+            close(connection);
+        }
+        Log.i(TAG, "Preloaded " + count + " users");
+        return count;
+    }
+
+    @Override
+    public void create(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User can't be null");
+        }
+        if (TextUtils.isEmpty(user.getUsername())) {
+            throw new IllegalArgumentException("Username of the user can't be null or empty");
+        }
+        if (TextUtils.isEmpty(user.getPassword())) {
+            throw new IllegalArgumentException("Password of the user can't be null or empty");
+        }
+        executeUpdate(insertSql, user.getUsername(), hash(user.getPassword()));
+        invalidate(user.getUsername());
+    }
+
+    @Override
+    public UserManager addUser(String username, String password) {
+        create(new User(username, password));
+        return this;
+    }
+
+    @Override
+    public User check(String username, String password) {
+        if (TextUtils.isEmpty(username) || password == null) {
+            return null;
+        }
+        User user = userCache.get(username, loader);
+        if (user == null) {
+            return null;
+        }
+        String storedPassword = user.getPassword();
+        if (credentialCache.verify(username, storedPassword, password)) {
+            return user.copy();
+        }
+        if (passwordHasher.matches(password, storedPassword)) {
+            credentialCache.put(username, storedPassword, password);
+            return user.copy();
+        }
+        return null;
+    }
+
+    @Override
+    public void delete(String username) {
+        executeUpdate(deleteSql, username);
+        invalidate(username);
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>();
+        Connection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement(selectAllSql);
+            try {
+                statement.setFetchSize(FETCH_SIZE);
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    while (resultSet.next()) {
+                        users.add(readUser(resultSet));
+                    }
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new UserManagerException("Failed to find users", e);
+        } finally {
+            close(connection);
+        }
+        return users;
+    }
+
+    /**
+     * Updates password of a user, the user will be created if it doesn't exist.
+     *
+     * @param user Updated user
+     */
+    @Override
+    public void update(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User can't null");
+        }
+        if (TextUtils.isEmpty(user.getUsername())) {
+            throw new IllegalArgumentException("Username of the user can't be null or empty");
+        }
+        if (TextUtils.isEmpty(user.getPassword())) {
+            throw new IllegalArgumentException("Password of the user can't be null or empty");
+        }
+        String password = hash(user.getPassword());
+        if (executeUpdate(updateSql, password, user.getUsername()) == 0) {
+            executeUpdate(insertSql, user.getUsername(), password);
+        }
+        invalidate(user.getUsername());
+    }
+
+    @Override
+    public User find(String username) {
+        if (TextUtils.isEmpty(username)) {
+            throw new IllegalArgumentException("Username can't be null or empty");
+        }
+        User user = userCache.get(username, loader);
+        return user == null ? null : user.copy();
+    }
+
+    private User loadUser(String username) {
+        Connection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement(selectSql);
+            try {
+                statement.setString(1, username);
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    return resultSet.next() ? readUser(resultSet) : null;
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new UserManagerException("Failed to load user", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    private int executeUpdate(String sql, String... parameters) {
+        Connection connection = getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            try {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setString(i + 1, parameters[i]);
+                }
+                return statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new UserManagerException("Failed to update users", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    private static User readUser(ResultSet resultSet) throws SQLException {
+        return new User(resultSet.getString(1), resultSet.getString(2));
+    }
+
+    private String hash(String password) {
+        return PasswordHasher.isHashed(password) ? password : passwordHasher.hash(password);
+    }
+
+    private void invalidate(String username) {
+        userCache.invalidate(username);
+        credentialCache.invalidate(username);
+    }
+
+    private Connection getConnection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new UserManagerException("Failed to get connection", e);
+        }
+    }
+
+    private static void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to close connection", e);
+        }
+    }
+
+    public UserCache getUserCache() {
+        return userCache;
+    }
+
+    public CredentialCache getCredentialCache() {
+        return credentialCache;
+    }
+
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
+}
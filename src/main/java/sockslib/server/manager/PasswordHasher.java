@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * The class <code>PasswordHasher</code> hashes passwords with PBKDF2 so that a user store never
+ * keeps plaintext passwords.
+ * <p>
+ * A hashed password is encoded as <code>pbkdf2$&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;</code>
+ * where salt and hash are hex strings. The iterations are stored with every hash, so the cost can be
+ * raised later without breaking existing users.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:05 AM
+ */
+public class PasswordHasher {
+
+    /**
+     * Prefix of hashed passwords.
+     */
+    public static final String PREFIX = "pbkdf2$";
+
+    /**
+     * PBKDF2 with HMAC-SHA1 is available on all Java and Android versions.
+     */
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+
+    private static final int DEFAULT_ITERATIONS = 20000;
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final int HASH_BITS = 160;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final int iterations;
+
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public PasswordHasher(int iterations) {
+        checkArgument(iterations > 0, "Iterations must be positive");
+        this.iterations = iterations;
+    }
+
+    /**
+     * Returns <code>true</code> if the value is a hashed password.
+     *
+     * @param value A password or a hashed password.
+     * @return <code>true</code> if the value is a hashed password.
+     */
+    public static boolean isHashed(String value) {
+        return value != null && value.startsWith(PREFIX);
+    }
+
+    /**
+     * Hashes a password with a new random salt.
+     *
+     * @param password Plaintext password.
+     * @return Encoded hash.
+     */
+    public String hash(String password) {
+        checkNotNull(password, "Argument [password] may not be null");
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations, HASH_BITS);
+        return PREFIX + iterations + "$" + toHex(salt) + "$" + toHex(hash);
+    }
+
+    /**
+     * Returns <code>true</code> if the password matches the stored value. A stored value that
+     * isn't hashed is compared as a plaintext password, which keeps old user stores working.
+     *
+     * @param password Plaintext password.
+     * @param stored   Stored password, hashed or not.
+     * @return <code>true</code> if the password matches.
+     */
+    public boolean matches(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(UTF_8), stored.getBytes(UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = fromHex(parts[2]);
+            byte[] expected = fromHex(parts[3]);
+            byte[] actual = pbkdf2(password, salt, storedIterations, expected.length * 8);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int bits) {
+        try {
+            KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >>> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    static byte[] fromHex(String hex) {
+        checkArgument((hex.length() & 1) == 0, "Invalid hex string");
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            checkArgument(high >= 0 && low >= 0, "Invalid hex string");
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>UserCache</code> is a read-through LRU cache of users with a time to live. It's
+ * used by user managers whose storage is slow, such as {@link JdbcUserManager}.
+ * <p>
+ * Users that don't exist are cached too, so an unknown username doesn't hit the storage on every
+ * attempt. Entries expire after the time to live, which bounds how long a change made to the
+ * storage by others stays invisible.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:07 AM
+ */
+public class UserCache {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+
+    private final int capacity;
+
+    private final long ttlNanos;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong expirationCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity Maximum number of cached users.
+     * @param ttl      Time to live of an entry.
+     * @param unit     Unit of time to live.
+     */
+    public UserCache(int capacity, long ttl, TimeUnit unit) {
+        checkArgument(capacity > 0, "Capacity must be positive");
+        checkArgument(ttl > 0, "TTL must be positive");
+        this.capacity = capacity;
+        this.ttlNanos = checkNotNull(unit, "Argument [unit] may not be null").toNanos(ttl);
+        int segmentCount = Math.min(SEGMENT_COUNT, capacity);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacity / segmentCount + (i < capacity % segmentCount ? 1 :
+                    0));
+        }
+    }
+
+    /**
+     * Returns a cached user, or loads it if it isn't cached or has expired. The loader is called
+     * without holding any lock.
+     *
+     * @param username Username.
+     * @param loader   Loader which reads the user from storage.
+     * @return User, or <code>null</code> if the user doesn't exist.
+     */
+    public User get(String username, Loader loader) {
+        Segment segment = segmentFor(username);
+        long now = System.nanoTime();
+        CachedUser cached = segment.get(username, now);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return cached.user;
+        }
+        missCount.incrementAndGet();
+        long version = segment.getVersion();
+        User user = loader.load(username);
+        segment.putIfUnchanged(username, user, now + ttlNanos, version);
+        return user;
+    }
+
+    /**
+     * Puts a user, e.g. one that was loaded in a batch.
+     *
+     * @param username Username.
+     * @param user     User, or <code>null</code> if the user doesn't exist.
+     */
+    public void put(String username, User user) {
+        segmentFor(username).put(username, user, System.nanoTime() + ttlNanos);
+    }
+
+    public void invalidate(String username) {
+        segmentFor(username).remove(username);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTtl(TimeUnit unit) {
+        return unit.convert(ttlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private Segment segmentFor(String username) {
+        int hash = username.hashCode();
+        hash ^= hash >>> 16;
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    @Override
+    public String toString() {
+        return "UserCache{size=" + size() + ", capacity=" + capacity + ", hits=" + hitCount.get()
+                + ", misses=" + missCount.get() + ", expirations=" + expirationCount.get() + ", "
+                + "evictions=" + evictionCount.get() + '}';
+    }
+
+    /**
+     * The interface <code>Loader</code> reads a user from storage.
+     */
+    public interface Loader {
+
+        /**
+         * Loads a user.
+         *
+         * @param username Username.
+         * @return User, or <code>null</code> if the user doesn't exist.
+         */
+        User load(String username);
+    }
+
+    private static final class CachedUser {
+
+        final User user;
+
+        final long expiresAt;
+
+        CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment {
+
+        private final Map<String, CachedUser> entries;
+
+        /**
+         * Increased on every invalidation, a user loaded before an invalidation may be stale and
+         * is not cached.
+         */
+        private long version;
+
+        Segment(final int maxSize) {
+            entries = new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                    if (size() > maxSize) {
+                        evictionCount.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized CachedUser get(String username, long now) {
+            CachedUser cached = entries.get(username);
+            if (cached != null && now - cached.expiresAt >= 0) {
+                entries.remove(username);
+                expirationCount.incrementAndGet();
+                return null;
+            }
+            return cached;
+        }
+
+        synchronized void put(String username, User user, long expiresAt) {
+            entries.put(username, new CachedUser(user, expiresAt));
+        }
+
+        synchronized void putIfUnchanged(String username, User user, long expiresAt, long
+                expectedVersion) {
+            if (version == expectedVersion) {
+                entries.put(username, new CachedUser(user, expiresAt));
+            }
+        }
+
+        synchronized long getVersion() {
+            return version;
+        }
+
+        synchronized void remove(String username) {
+            version++;
+            entries.remove(username);
+        }
+
+        synchronized void clear() {
+            version++;
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
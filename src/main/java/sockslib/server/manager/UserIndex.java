@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>UserIndex</code> is an immutable open addressing hash table from username to
+ * password. It's much smaller than a map of {@link User} objects, which matters for user files with
+ * millions of lines.
+ * <p>
+ * The table can be written and read in slot order, so loading it doesn't hash any username.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:08 AM
+ */
+final class UserIndex {
+
+    static final UserIndex EMPTY = new Builder().build();
+
+    private final String[] usernames;
+
+    private final String[] passwords;
+
+    private final int size;
+
+    private UserIndex(String[] usernames, String[] passwords, int size) {
+        this.usernames = usernames;
+        this.passwords = passwords;
+        this.size = size;
+    }
+
+    /**
+     * Returns password of a user.
+     *
+     * @param username Username.
+     * @return Password, or <code>null</code> if the user doesn't exist.
+     */
+    String getPassword(String username) {
+        int mask = usernames.length - 1;
+        for (int i = slot(username, mask); ; i = (i + 1) & mask) {
+            String current = usernames[i];
+            if (current == null) {
+                return null;
+            }
+            if (current.equals(username)) {
+                return passwords[i];
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<User> users() {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < usernames.length; i++) {
+            if (usernames[i] != null) {
+                users.add(new User(usernames[i], passwords[i]));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Returns a builder that contains all users of this index.
+     *
+     * @return Builder.
+     */
+    Builder toBuilder() {
+        Builder builder = new Builder();
+        for (int i = 0; i < usernames.length; i++) {
+            if (usernames[i] != null) {
+                builder.put(usernames[i], passwords[i]);
+            }
+        }
+        return builder;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(usernames.length);
+        out.writeInt(size);
+        for (int i = 0; i < usernames.length; i++) {
+            if (usernames[i] == null) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                out.writeUTF(usernames[i]);
+                out.writeUTF(passwords[i]);
+            }
+        }
+    }
+
+    static UserIndex readFrom(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        int size = in.readInt();
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0 || size < 0 || size >= capacity) {
+            throw new IOException("Corrupted user index");
+        }
+        String[] usernames = new String[capacity];
+        String[] passwords = new String[capacity];
+        int count = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (in.readBoolean()) {
+                usernames[i] = in.readUTF();
+                passwords[i] = in.readUTF();
+                count++;
+            }
+        }
+        if (count != size) {
+            throw new IOException("Corrupted user index");
+        }
+        return new UserIndex(usernames, passwords, size);
+    }
+
+    private static int slot(String username, int mask) {
+        int hash = username.hashCode() * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * The class <code>Builder</code> collects users, a later user replaces an earlier one with the
+     * same username.
+     */
+    static final class Builder {
+
+        private final List<String> usernames = new ArrayList<>();
+
+        private final List<String> passwords = new ArrayList<>();
+
+        private boolean removed;
+
+        Builder put(String username, String password) {
+            usernames.add(username);
+            passwords.add(password);
+            return this;
+        }
+
+        Builder remove(String username) {
+            removed = true;
+            return put(username, null);
+        }
+
+        UserIndex build() {
+            int capacity = 2;
+            while (capacity < usernames.size() * 2) {
+                capacity <<= 1;
+            }
+            int mask = capacity - 1;
+            String[] usernameTable = new String[capacity];
+            String[] passwordTable = new String[capacity];
+            int size = 0;
+            for (int n = 0; n < usernames.size(); n++) {
+                String username = usernames.get(n);
+                int i = slot(username, mask);
+                while (usernameTable[i] != null && !usernameTable[i].equals(username)) {
+                    i = (i + 1) & mask;
+                }
+                if (usernameTable[i] == null) {
+                    size++;
+                }
+                usernameTable[i] = username;
+                passwordTable[i] = passwords.get(n);
+            }
+            if (size == usernames.size() && !removed) {
+                return new UserIndex(usernameTable, passwordTable, size);
+            }
+            // There were duplicates or removals, rebuild without them.
+            Builder builder = new Builder();
+            for (int i = 0; i < capacity; i++) {
+                if (usernameTable[i] != null && passwordTable[i] != null) {
+                    builder.put(usernameTable[i], passwordTable[i]);
+                }
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+/**
+ * The class <code>UserManagerException</code> represents an error of the storage behind a
+ * {@link UserManager}, such as a database or a file.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:07 AM
+ */
+public class UserManagerException extends RuntimeException {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    public UserManagerException(String message) {
+        super(message);
+    }
+
+    public UserManagerException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public UserManagerException(Throwable cause) {
+        super(cause);
+    }
+}
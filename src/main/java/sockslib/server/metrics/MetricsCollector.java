@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.metrics;
+
+/**
+ * The interface <code>MetricsCollector</code> writes metrics of a component when they are
+ * scraped.
+ * <p>
+ * A collector is called by the scraping thread, it should only read counters, and never take locks
+ * that relay threads may hold.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:35 AM
+ */
+public interface MetricsCollector {
+
+    /**
+     * Writes current metrics.
+     *
+     * @param writer Writer of Prometheus text format.
+     */
+    void collect(PrometheusWriter writer);
+}
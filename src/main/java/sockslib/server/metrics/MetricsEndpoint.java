@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.metrics;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import sockslib.utils.AddressUtil;
+
+/**
+ * The class <code>MetricsEndpoint</code> is a tiny HTTP server which serves metrics of its
+ * {@link MetricsCollector}s in the Prometheus text format at <code>/metrics</code>.
+ * <pre>
+ * MetricsEndpoint endpoint = new MetricsEndpoint(9180);
+ * endpoint.addCollector(server.getMetrics());
+ * endpoint.start();
+ * </pre>
+ * <p>
+ * It listens on the loopback address by default. Requests are served one by one by a single daemon
+ * thread, which reuses its buffers between scrapes. Non-ASCII characters are written as
+ * <code>?</code>.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:35 AM
+ */
+public class MetricsEndpoint implements Runnable {
+
+    private static final String TAG = "MetricsEndpoint";
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final int READ_TIMEOUT = 5000;
+
+    private final SocketAddress bindAddress;
+
+    private final List<MetricsCollector> collectors = new CopyOnWriteArrayList<>();
+
+    private final StringBuilder body = new StringBuilder(8192);
+
+    private final StringBuilder head = new StringBuilder(256);
+
+    private final PrometheusWriter writer = new PrometheusWriter(body);
+
+    private final byte[] request = new byte[4096];
+
+    private byte[] response = new byte[8192];
+
+    private volatile ServerSocket serverSocket;
+
+    private Thread thread;
+
+    private volatile long scrapeCount;
+
+    /**
+     * Creates an endpoint on the loopback address.
+     *
+     * @param port Port.
+     */
+    public MetricsEndpoint(int port) {
+        this(new InetSocketAddress(AddressUtil.loopbackAddress(), port));
+    }
+
+    public MetricsEndpoint(SocketAddress bindAddress) {
+        this.bindAddress = checkNotNull(bindAddress, "Argument [bindAddress] may not be null");
+    }
+
+    public MetricsEndpoint addCollector(MetricsCollector collector) {
+        collectors.add(checkNotNull(collector, "Argument [collector] may not be null"));
+        return this;
+    }
+
+    public void removeCollector(MetricsCollector collector) {
+        collectors.remove(collector);
+    }
+
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(bindAddress);
+        serverSocket = socket;
+        thread = new Thread(this, TAG);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            Log.d(TAG, e.getMessage(), e);
+        }
+        thread = null;
+    }
+
+    @Override
+    public void run() {
+        ServerSocket server = serverSocket;
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    Log.w(TAG, "Failed to accept", e);
+                }
+                continue;
+            }
+            try {
+                serve(socket);
+            } catch (IOException | RuntimeException e) {
+                Log.d(TAG, "Failed to serve " + socket.getRemoteSocketAddress(), e);
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Nothing to do.
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes metrics of all collectors.
+     *
+     * @return Metrics in the Prometheus text format, the builder is reused by the next scrape.
+     */
+    public synchronized StringBuilder scrape() {
+        body.setLength(0);
+        for (MetricsCollector collector : collectors) {
+            collector.collect(writer);
+        }
+        scrapeCount++;
+        return body;
+    }
+
+    public long getScrapeCount() {
+        return scrapeCount;
+    }
+
+    public SocketAddress getLocalAddress() {
+        ServerSocket socket = serverSocket;
+        return socket == null ? null : socket.getLocalSocketAddress();
+    }
+
+    private void serve(Socket socket) throws IOException {
+        socket.setSoTimeout(READ_TIMEOUT);
+        InputStream in = socket.getInputStream();
+        int length = 0;
+        while (!endsWithBlankLine(length)) {
+            if (length == request.length) {
+                writeResponse(socket.getOutputStream(), "431 Request Header Fields Too Large",
+                        null);
+                return;
+            }
+            int n = in.read(request, length, request.length - length);
+            if (n < 0) {
+                return;
+            }
+            length += n;
+        }
+        OutputStream out = socket.getOutputStream();
+        if (startsWith(length, "GET /metrics ") || startsWith(length, "GET /metrics?")) {
+            writeResponse(out, "200 OK", scrape());
+        } else if (startsWith(length, "GET ")) {
+            writeResponse(out, "404 Not Found", null);
+        } else {
+            writeResponse(out, "405 Method Not Allowed", null);
+        }
+    }
+
+    private synchronized void writeResponse(OutputStream out, String status, StringBuilder
+            content) throws IOException {
+        int contentLength = content == null ? 0 : content.length();
+        head.setLength(0);
+        head.append("HTTP/1.1 ").append(status).append("\r\nContent-Type: ").append(CONTENT_TYPE)
+                .append("\r\nContent-Length: ").append(contentLength)
+                .append("\r\nConnection: close\r\n\r\n");
+        int size = head.length() + contentLength;
+        if (response.length < size) {
+            response = new byte[Math.max(size, response.length * 2)];
+        }
+        int offset = encode(head, response, 0);
+        if (content != null) {
+            offset = encode(content, response, offset);
+        }
+        out.write(response, 0, offset);
+        out.flush();
+    }
+
+    private static int encode(CharSequence chars, byte[] bytes, int offset) {
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            bytes[offset++] = (byte) (c < 0x80 ? c : '?');
+        }
+        return offset;
+    }
+
+    private boolean endsWithBlankLine(int length) {
+        return length >= 4 && request[length - 4] == '\r' && request[length - 3] == '\n'
+                && request[length - 2] == '\r' && request[length - 1] == '\n';
+    }
+
+    private boolean startsWith(int length, String prefix) {
+        if (length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (request[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
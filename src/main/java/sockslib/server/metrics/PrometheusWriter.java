@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.metrics;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+/**
+ * The class <code>PrometheusWriter</code> writes metrics in the Prometheus text format into a
+ * {@link StringBuilder}.
+ * <pre>
+ * writer.header("sockslib_sessions", PrometheusWriter.GAUGE, "Sessions by state.")
+ *     .sample("sockslib_sessions", "state", "relay", 12);
+ * </pre>
+ * <p>
+ * Numbers are appended to the builder directly, so writing a sample allocates nothing once the
+ * builder has grown to the size of a scrape.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:35 AM
+ */
+public final class PrometheusWriter {
+
+    public static final String COUNTER = "counter";
+
+    public static final String GAUGE = "gauge";
+
+    public static final String SUMMARY = "summary";
+
+    private final StringBuilder builder;
+
+    public PrometheusWriter(StringBuilder builder) {
+        this.builder = checkNotNull(builder, "Argument [builder] may not be null");
+    }
+
+    /**
+     * Writes HELP and TYPE lines of a metric, they must come before its samples.
+     *
+     * @param name Metric name.
+     * @param type {@link #COUNTER}, {@link #GAUGE} or {@link #SUMMARY}.
+     * @param help Description.
+     * @return This writer.
+     */
+    public PrometheusWriter header(String name, String type, String help) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, long value) {
+        builder.append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value) {
+        builder.append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String label, String labelValue, long value) {
+        builder.append(name).append('{');
+        appendLabel(label, labelValue);
+        builder.append("} ").append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String label, String labelValue, double value) {
+        builder.append(name).append('{');
+        appendLabel(label, labelValue);
+        builder.append("} ").append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String label1, String labelValue1, String label2,
+                                   String labelValue2, double value) {
+        builder.append(name).append('{');
+        appendLabel(label1, labelValue1);
+        builder.append(',');
+        appendLabel(label2, labelValue2);
+        builder.append("} ").append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String label1, String labelValue1, String label2,
+                                   String labelValue2, long value) {
+        builder.append(name).append('{');
+        appendLabel(label1, labelValue1);
+        builder.append(',');
+        appendLabel(label2, labelValue2);
+        builder.append("} ").append(value).append('\n');
+        return this;
+    }
+
+    public StringBuilder getBuilder() {
+        return builder;
+    }
+
+    private void appendLabel(String label, String value) {
+        builder.append(label).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -199,14 +199,8 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
                 }
                 byte[] domainBytes = StreamUtil.read(inputStream, domainLength);
                 host = new String(domainBytes, Charset.forName("UTF-8"));
-                try {
-                    inetAddress = InetAddress.getByName(host);
-                } catch (UnknownHostException e) {
-                    if (socksException == null) {
-                        socksException = SocksException.serverReplyException(
-                                ServerReply.HOST_UNREACHABLE);
-                    }
-                }
+                // The domain name is resolved later by resolve(), so that command listeners can
+                // check the destination before any DNS lookup is done.
                 break;
             default:
                 // TODO Implement later.
@@ -241,6 +235,43 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
         return socksException != null;
     }
 
+    /**
+     * Resolves the domain name of destination if the address type is
+     * {@link AddressType#DOMAIN_NAME} and it hasn't been resolved. If the domain name can't be
+     * resolved, a {@link ServerReply#HOST_UNREACHABLE} exception will be set in the message.
+     *
+     * @return <code>true</code> if the destination has an IP address after resolving.
+     */
+    public boolean resolve() {
+        if (inetAddress == null && host != null) {
+            try {
+                inetAddress = InetAddress.getByName(host);
+            } catch (UnknownHostException e) {
+                if (socksException == null) {
+                    socksException = SocksException.serverReplyException(
+                            ServerReply.HOST_UNREACHABLE);
+                }
+            }
+        }
+        return inetAddress != null;
+    }
+
+    /**
+     * Returns <code>true</code> if the destination has an IP address. A domain name destination
+     * has no IP address until {@link #resolve()} is called.
+     *
+     * @return <code>true</code> if the destination has an IP address.
+     */
+    public boolean isResolved() {
+        return inetAddress != null;
+    }
+
+    /**
+     * Returns IP address of destination. A domain name destination has no IP address until
+     * {@link #resolve()} is called, this method never resolves it.
+     *
+     * @return IP address of destination, or <code>null</code> if it isn't resolved.
+     */
     public InetAddress getInetAddress() {
         return inetAddress;
     }
@@ -290,6 +321,9 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
     }
 
     public SocketAddress getSocketAddress() {
+        if (inetAddress == null && host != null) {
+            return InetSocketAddress.createUnresolved(host, port);
+        }
         return new InetSocketAddress(inetAddress, port);
     }
 
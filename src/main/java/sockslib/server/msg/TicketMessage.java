@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.msg;
+
+import static sockslib.utils.StreamUtil.checkEnd;
+import static sockslib.utils.StreamUtil.readString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import sockslib.common.SocksException;
+import sockslib.common.UsernamePasswordCredentials;
+import sockslib.utils.StreamUtil;
+
+/**
+ * The class <code>TicketMessage</code> represents a request message of
+ * {@link sockslib.common.methods.TicketMethod}. It carries either a username and a password, or a
+ * ticket issued before.
+ * <pre>
+ * +-----+------+------+----------+------+----------+
+ * | VER | TYPE | ULEN |  UNAME   | PLEN |  PASSWD  |   TYPE = 0x01
+ * +-----+------+------+----------+------+----------+
+ * |  1  |  1   |  1   | 1 to 255 |  1   | 1 to 255 |
+ * +-----+------+------+----------+------+----------+
+ *
+ * +-----+------+------+------------+
+ * | VER | TYPE | TLEN |   TICKET   |   TYPE = 0x02
+ * +-----+------+------+------------+
+ * |  1  |  1   |  2   | 1 to 65535 |
+ * +-----+------+------+------------+
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:11 AM
+ */
+public class TicketMessage implements ReadableMessage, WritableMessage {
+
+    public static final int TYPE_PASSWORD = 0x01;
+
+    public static final int TYPE_TICKET = 0x02;
+
+    private static final int VERSION = 0x01;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private int type;
+
+    private String username;
+
+    private String password;
+
+    private byte[] ticket;
+
+    public TicketMessage() {
+    }
+
+    /**
+     * Constructs a message with username and password.
+     *
+     * @param username Username.
+     * @param password Password.
+     */
+    public TicketMessage(String username, String password) {
+        this.type = TYPE_PASSWORD;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Constructs a message with a ticket.
+     *
+     * @param ticket Ticket.
+     */
+    public TicketMessage(byte[] ticket) {
+        this.type = TYPE_TICKET;
+        this.ticket = ticket;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        if (type == TYPE_TICKET) {
+            byte[] bytes = new byte[4 + ticket.length];
+            bytes[0] = VERSION;
+            bytes[1] = TYPE_TICKET;
+            bytes[2] = (byte) (ticket.length >>> 8);
+            bytes[3] = (byte) ticket.length;
+            System.arraycopy(ticket, 0, bytes, 4, ticket.length);
+            return bytes;
+        }
+        byte[] usernameBytes = username.getBytes(UTF_8);
+        byte[] passwordBytes = password.getBytes(UTF_8);
+        byte[] bytes = new byte[4 + usernameBytes.length + passwordBytes.length];
+        bytes[0] = VERSION;
+        bytes[1] = TYPE_PASSWORD;
+        bytes[2] = (byte) usernameBytes.length;
+        System.arraycopy(usernameBytes, 0, bytes, 3, usernameBytes.length);
+        bytes[3 + usernameBytes.length] = (byte) passwordBytes.length;
+        System.arraycopy(passwordBytes, 0, bytes, 4 + usernameBytes.length, passwordBytes.length);
+        return bytes;
+    }
+
+    @Override
+    public int getLength() {
+        return getBytes().length;
+    }
+
+    @Override
+    public void read(InputStream inputStream) throws SocksException, IOException {
+        int version = checkEnd(inputStream.read());
+        if (version != VERSION) {
+            throw new SocksException("Unsupported ticket authentication version: " + version);
+        }
+        type = checkEnd(inputStream.read());
+        if (type == TYPE_PASSWORD) {
+            username = readString(inputStream, checkEnd(inputStream.read()));
+            password = readString(inputStream, checkEnd(inputStream.read()));
+        } else if (type == TYPE_TICKET) {
+            int length = checkEnd(inputStream.read()) << 8 | checkEnd(inputStream.read());
+            ticket = StreamUtil.read(inputStream, length);
+        } else {
+            throw new SocksException("Unknown ticket authentication type: " + type);
+        }
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public byte[] getTicket() {
+        return ticket;
+    }
+
+    public UsernamePasswordCredentials getUsernamePasswordCredentials() {
+        return new UsernamePasswordCredentials(username, password);
+    }
+}
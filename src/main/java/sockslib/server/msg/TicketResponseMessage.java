@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.msg;
+
+import static sockslib.utils.StreamUtil.checkEnd;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import sockslib.common.SocksException;
+import sockslib.utils.StreamUtil;
+
+/**
+ * The class <code>TicketResponseMessage</code> represents a response message of
+ * {@link sockslib.common.methods.TicketMethod}. A successful response may carry a new ticket and
+ * its lifetime in seconds, TLEN is 0 if no ticket is issued.
+ * <pre>
+ * +-----+--------+------+------------+----------+
+ * | VER | STATUS | TLEN |   TICKET   | LIFETIME |
+ * +-----+--------+------+------------+----------+
+ * |  1  |   1    |  2   | 0 to 65535 |  0 or 4  |
+ * +-----+--------+------+------------+----------+
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:11 AM
+ */
+public class TicketResponseMessage implements ReadableMessage, WritableMessage {
+
+    private static final int VERSION = 0x01;
+
+    private boolean success;
+
+    private byte[] ticket;
+
+    private int lifetimeSeconds;
+
+    public TicketResponseMessage() {
+    }
+
+    public TicketResponseMessage(boolean success) {
+        this.success = success;
+    }
+
+    /**
+     * Constructs a successful response with a new ticket.
+     *
+     * @param ticket          Ticket.
+     * @param lifetimeSeconds Lifetime of ticket in seconds.
+     */
+    public TicketResponseMessage(byte[] ticket, int lifetimeSeconds) {
+        this.success = true;
+        this.ticket = ticket;
+        this.lifetimeSeconds = lifetimeSeconds;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        if (ticket == null) {
+            return new byte[]{VERSION, (byte) (success ? 0x00 : 0x01), 0, 0};
+        }
+        byte[] bytes = new byte[8 + ticket.length];
+        bytes[0] = VERSION;
+        bytes[1] = 0x00;
+        bytes[2] = (byte) (ticket.length >>> 8);
+        bytes[3] = (byte) ticket.length;
+        System.arraycopy(ticket, 0, bytes, 4, ticket.length);
+        for (int i = 0; i < 4; i++) {
+            bytes[4 + ticket.length + i] = (byte) (lifetimeSeconds >>> (24 - i * 8));
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getLength() {
+        return getBytes().length;
+    }
+
+    @Override
+    public void read(InputStream inputStream) throws SocksException, IOException {
+        int version = checkEnd(inputStream.read());
+        if (version != VERSION) {
+            throw new SocksException("Unsupported ticket authentication version: " + version);
+        }
+        success = checkEnd(inputStream.read()) == 0x00;
+        int length = checkEnd(inputStream.read()) << 8 | checkEnd(inputStream.read());
+        if (length > 0) {
+            ticket = StreamUtil.read(inputStream, length);
+            lifetimeSeconds = 0;
+            for (int i = 0; i < 4; i++) {
+                lifetimeSeconds = lifetimeSeconds << 8 | checkEnd(inputStream.read());
+            }
+        }
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public byte[] getTicket() {
+        return ticket;
+    }
+
+    public int getLifetimeSeconds() {
+        return lifetimeSeconds;
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.shaping;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import sockslib.server.Session;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.io.Pipe;
+import sockslib.server.io.SocketPipe;
+import sockslib.server.io.StreamPipe;
+import sockslib.server.io.TransferLimiter;
+import sockslib.server.listener.PipeInitializer;
+import sockslib.server.manager.User;
+
+/**
+ * The class <code>BandwidthShaper</code> limits the bandwidth of relayed sessions with
+ * {@link TokenBucket}s at three levels: globally, per user and per session. Upload and download
+ * are limited separately, data has to pass the buckets of all levels.
+ * <pre>
+ * BandwidthShaper shaper = new BandwidthShaper();
+ * shaper.setGlobalLimit(100L &lt;&lt; 20, 100L &lt;&lt; 20);
+ * shaper.setDefaultUserLimit(10L &lt;&lt; 20, 10L &lt;&lt; 20);
+ * shaper.setDefaultSessionLimit(TokenBucket.UNLIMITED, 5L &lt;&lt; 20);
+ * server.setPipeInitializer(shaper);
+ * </pre>
+ * <p>
+ * Limits are bytes per second and can be changed while sessions are running. The user level only
+ * applies to sessions authenticated with a username. A bucket allows a burst of
+ * {@link #setBurst(long, TimeUnit) burst time} at its rate, but at least 16 KB.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:19 AM
+ */
+public class BandwidthShaper implements PipeInitializer {
+
+    /**
+     * Key of the session attribute which holds the buckets of a session.
+     */
+    public static final String SESSION_BUCKETS_KEY = "SHAPING";
+
+    private static final long MIN_BURST_BYTES = 16 * 1024;
+
+    /**
+     * The enumeration <code>Direction</code> represents a direction of relay.
+     */
+    public enum Direction {
+        /**
+         * From client to remote host.
+         */
+        UPLOAD,
+        /**
+         * From remote host to client.
+         */
+        DOWNLOAD
+    }
+
+    private volatile long burstNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Buckets global = new Buckets(Rates.UNLIMITED, burstNanos);
+
+    private final ConcurrentMap<String, Buckets> userBuckets = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Rates> userLimits = new ConcurrentHashMap<>();
+
+    private volatile Rates defaultUserLimit = Rates.UNLIMITED;
+
+    private volatile Rates defaultSessionLimit = Rates.UNLIMITED;
+
+    @Override
+    public Pipe initialize(Pipe pipe) {
+        if (!(pipe instanceof SocketPipe)) {
+            return pipe;
+        }
+        SocketPipe socketPipe = (SocketPipe) pipe;
+        Buckets user = null;
+        Buckets session = new Buckets(defaultSessionLimit, burstNanos);
+        Object attribute = pipe.getAttribute(SocketPipe.ATTR_SESSION);
+        if (attribute instanceof Session) {
+            Session owner = (Session) attribute;
+            owner.setAttribute(SESSION_BUCKETS_KEY, session);
+            Object value = owner.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+            if (value instanceof User) {
+                user = getOrCreateUserBuckets(((User) value).getUsername());
+            }
+        }
+        addLimiter(socketPipe.getOutputPipe(), new HierarchicalLimiter(global.upload, user ==
+                null ? null : user.upload, session.upload));
+        addLimiter(socketPipe.getInputPipe(), new HierarchicalLimiter(global.download, user ==
+                null ? null : user.download, session.download));
+        return pipe;
+    }
+
+    /**
+     * Sets limits of all sessions together.
+     *
+     * @param uploadBytesPerSecond   Upload limit, or {@link TokenBucket#UNLIMITED}.
+     * @param downloadBytesPerSecond Download limit, or {@link TokenBucket#UNLIMITED}.
+     */
+    public void setGlobalLimit(long uploadBytesPerSecond, long downloadBytesPerSecond) {
+        global.setRates(new Rates(uploadBytesPerSecond, downloadBytesPerSecond), burstNanos);
+    }
+
+    /**
+     * Sets limits of a user, the user's running sessions are limited at once.
+     *
+     * @param username               Username.
+     * @param uploadBytesPerSecond   Upload limit, or {@link TokenBucket#UNLIMITED}.
+     * @param downloadBytesPerSecond Download limit, or {@link TokenBucket#UNLIMITED}.
+     */
+    public void setUserLimit(String username, long uploadBytesPerSecond, long
+            downloadBytesPerSecond) {
+        checkNotNull(username, "Argument [username] may not be null");
+        Rates rates = new Rates(uploadBytesPerSecond, downloadBytesPerSecond);
+        userLimits.put(username, rates);
+        Buckets buckets = userBuckets.get(username);
+        if (buckets != null) {
+            buckets.setRates(rates, burstNanos);
+        }
+    }
+
+    /**
+     * Removes limits of a user, the user is limited by the default user limits again.
+     *
+     * @param username Username.
+     */
+    public void removeUserLimit(String username) {
+        userLimits.remove(username);
+        Buckets buckets = userBuckets.get(username);
+        if (buckets != null) {
+            buckets.setRates(defaultUserLimit, burstNanos);
+        }
+    }
+
+    /**
+     * Sets limits of users without their own limits.
+     *
+     * @param uploadBytesPerSecond   Upload limit, or {@link TokenBucket#UNLIMITED}.
+     * @param downloadBytesPerSecond Download limit, or {@link TokenBucket#UNLIMITED}.
+     */
+    public void setDefaultUserLimit(long uploadBytesPerSecond, long downloadBytesPerSecond) {
+        defaultUserLimit = new Rates(uploadBytesPerSecond, downloadBytesPerSecond);
+        for (Map.Entry<String, Buckets> entry : userBuckets.entrySet()) {
+            if (!userLimits.containsKey(entry.getKey())) {
+                entry.getValue().setRates(defaultUserLimit, burstNanos);
+            }
+        }
+    }
+
+    /**
+     * Sets limits of each new session.
+     *
+     * @param uploadBytesPerSecond   Upload limit, or {@link TokenBucket#UNLIMITED}.
+     * @param downloadBytesPerSecond Download limit, or {@link TokenBucket#UNLIMITED}.
+     */
+    public void setDefaultSessionLimit(long uploadBytesPerSecond, long downloadBytesPerSecond) {
+        defaultSessionLimit = new Rates(uploadBytesPerSecond, downloadBytesPerSecond);
+    }
+
+    /**
+     * Sets limits of a running session.
+     *
+     * @param session                Session.
+     * @param uploadBytesPerSecond   Upload limit, or {@link TokenBucket#UNLIMITED}.
+     * @param downloadBytesPerSecond Download limit, or {@link TokenBucket#UNLIMITED}.
+     * @return <code>false</code> if the session is not shaped by this shaper.
+     */
+    public boolean setSessionLimit(Session session, long uploadBytesPerSecond, long
+            downloadBytesPerSecond) {
+        Object buckets = session.getAttribute(SESSION_BUCKETS_KEY);
+        if (!(buckets instanceof Buckets)) {
+            return false;
+        }
+        ((Buckets) buckets).setRates(new Rates(uploadBytesPerSecond, downloadBytesPerSecond),
+                burstNanos);
+        return true;
+    }
+
+    public TokenBucket getGlobalBucket(Direction direction) {
+        return global.get(direction);
+    }
+
+    /**
+     * Returns a bucket of a user.
+     *
+     * @param username  Username.
+     * @param direction Direction.
+     * @return Bucket, or <code>null</code> if the user has no session since the shaper started.
+     */
+    @Nullable
+    public TokenBucket getUserBucket(String username, Direction direction) {
+        Buckets buckets = userBuckets.get(username);
+        return buckets == null ? null : buckets.get(direction);
+    }
+
+    /**
+     * Returns a bucket of a session.
+     *
+     * @param session   Session.
+     * @param direction Direction.
+     * @return Bucket, or <code>null</code> if the session is not shaped by this shaper.
+     */
+    @Nullable
+    public static TokenBucket getSessionBucket(Session session, Direction direction) {
+        Object buckets = session.getAttribute(SESSION_BUCKETS_KEY);
+        return buckets instanceof Buckets ? ((Buckets) buckets).get(direction) : null;
+    }
+
+    public long getBurst(TimeUnit unit) {
+        return unit.convert(burstNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets burst time, it applies to limits set after it.
+     *
+     * @param burst Burst time.
+     * @param unit  Unit of burst.
+     */
+    public void setBurst(long burst, TimeUnit unit) {
+        checkArgument(burst > 0, "Burst must be positive");
+        this.burstNanos = unit.toNanos(burst);
+    }
+
+    private Buckets getOrCreateUserBuckets(String username) {
+        Buckets buckets = userBuckets.get(username);
+        if (buckets == null) {
+            Rates rates = userLimits.get(username);
+            Buckets created = new Buckets(rates == null ? defaultUserLimit : rates, burstNanos);
+            buckets = userBuckets.putIfAbsent(username, created);
+            if (buckets == null) {
+                buckets = created;
+            }
+        }
+        return buckets;
+    }
+
+    private static void addLimiter(Pipe pipe, TransferLimiter limiter) {
+        if (pipe instanceof StreamPipe) {
+            ((StreamPipe) pipe).addTransferLimiter(limiter);
+        }
+    }
+
+    private static long burstBytes(long bytesPerSecond, long burstNanos) {
+        if (bytesPerSecond == TokenBucket.UNLIMITED) {
+            return MIN_BURST_BYTES;
+        }
+        return Math.max(MIN_BURST_BYTES, (long) (bytesPerSecond * (burstNanos / 1e9)));
+    }
+
+    private static final class Rates {
+
+        static final Rates UNLIMITED = new Rates(TokenBucket.UNLIMITED, TokenBucket.UNLIMITED);
+
+        final long upload;
+
+        final long download;
+
+        Rates(long upload, long download) {
+            checkArgument(upload > 0 || upload == TokenBucket.UNLIMITED, "Invalid upload limit");
+            checkArgument(download > 0 || download == TokenBucket.UNLIMITED, "Invalid download "
+                    + "limit");
+            this.upload = upload;
+            this.download = download;
+        }
+    }
+
+    private static final class Buckets {
+
+        final TokenBucket upload;
+
+        final TokenBucket download;
+
+        Buckets(Rates rates, long burstNanos) {
+            upload = new TokenBucket(rates.upload, burstBytes(rates.upload, burstNanos));
+            download = new TokenBucket(rates.download, burstBytes(rates.download, burstNanos));
+        }
+
+        void setRates(Rates rates, long burstNanos) {
+            upload.setRate(rates.upload, burstBytes(rates.upload, burstNanos));
+            download.setRate(rates.download, burstBytes(rates.download, burstNanos));
+        }
+
+        TokenBucket get(Direction direction) {
+            return direction == Direction.UPLOAD ? upload : download;
+        }
+    }
+
+    /**
+     * Reserves bytes at the slowest level and waits for it, then charges the other levels when
+     * the bytes pass, so a session held back by one level doesn't hold bandwidth of the others.
+     */
+    private static final class HierarchicalLimiter implements TransferLimiter {
+
+        private final TokenBucket[] levels;
+
+        HierarchicalLimiter(TokenBucket global, @Nullable TokenBucket user, TokenBucket session) {
+            levels = user == null ? new TokenBucket[]{session, global} : new TokenBucket[]{session,
+                    user, global};
+        }
+
+        @Override
+        public void acquire(Pipe pipe, int length) throws InterruptedException {
+            long now = System.nanoTime();
+            TokenBucket slowest = levels[0];
+            long maxDelay = slowest.getDelay(length, now);
+            for (int i = 1; i < levels.length; i++) {
+                long delay = levels[i].getDelay(length, now);
+                if (delay > maxDelay) {
+                    slowest = levels[i];
+                    maxDelay = delay;
+                }
+            }
+            long delay = slowest.reserve(length, now);
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+                now = System.nanoTime();
+            }
+            // Other levels may have been used meanwhile, they can still hold the bytes back.
+            delay = 0;
+            for (TokenBucket level : levels) {
+                if (level != slowest) {
+                    delay = Math.max(delay, level.reserve(length, now));
+                }
+            }
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        }
+    }
+}
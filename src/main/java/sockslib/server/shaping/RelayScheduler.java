@@ -0,0 +1,508 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.shaping;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import sockslib.server.Session;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.io.Pipe;
+import sockslib.server.io.SocketPipe;
+import sockslib.server.io.StreamPipe;
+import sockslib.server.io.TransferLimiter;
+import sockslib.server.listener.PipeInitializer;
+import sockslib.server.manager.User;
+
+/**
+ * The class <code>RelayScheduler</code> shares the bandwidth of a link fairly among relayed
+ * sessions by deficit round robin.
+ * <p>
+ * Each direction of the link has a rate, which should be a bit lower than the real bandwidth so
+ * that data queues here rather than in the network. While the rate isn't reached, data passes
+ * without scheduling. Once it is, relay threads queue up and a scheduler thread lets them write in
+ * turn: every round a session earns a quantum of bytes multiplied by the weight of its
+ * {@link TrafficClass}, and it may write when it has earned enough for its data. So sessions of
+ * the same class get the same throughput regardless of how hard they push, and a class with twice
+ * the weight gets twice the throughput per session.
+ * </p>
+ * <pre>
+ * RelayScheduler scheduler = new RelayScheduler(45L &lt;&lt; 20, 90L &lt;&lt; 20);
+ * scheduler.setUserClass("backup", TrafficClass.BULK);
+ * server.setPipeInitializer(scheduler);
+ * </pre>
+ * <p>
+ * The class of a session is taken from the session attribute {@link #TRAFFIC_CLASS_KEY}, which
+ * a listener may set before the relay starts, then from the class of its user, then from the
+ * default class.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:22 AM
+ */
+public class RelayScheduler implements PipeInitializer {
+
+    private static final String TAG = "RelayScheduler";
+
+    /**
+     * Key of the session attribute which holds the {@link TrafficClass} of a session.
+     */
+    public static final String TRAFFIC_CLASS_KEY = "TRAFFIC_CLASS";
+
+    /**
+     * Burst of the link, enough for the largest read of a limited pipe.
+     */
+    private static final int LINK_BURST_BYTES = 16 * 1024;
+
+    /**
+     * Smaller than a read, so a session of low weight has to wait for several rounds.
+     */
+    private static final int DEFAULT_QUANTUM = 4 * 1024;
+
+    private final Link upload;
+
+    private final Link download;
+
+    /**
+     * Weights by class, replaced as a whole when a weight is set.
+     */
+    private volatile int[] weights = {4, 2, 1};
+
+    private final ConcurrentMap<String, TrafficClass> userClasses = new ConcurrentHashMap<>();
+
+    private volatile TrafficClass defaultClass = TrafficClass.STANDARD;
+
+    private volatile int quantum = DEFAULT_QUANTUM;
+
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs a scheduler.
+     *
+     * @param uploadBytesPerSecond   Rate of the link from clients to remote hosts.
+     * @param downloadBytesPerSecond Rate of the link from remote hosts to clients.
+     */
+    public RelayScheduler(long uploadBytesPerSecond, long downloadBytesPerSecond) {
+        upload = new Link(BandwidthShaper.Direction.UPLOAD, uploadBytesPerSecond);
+        download = new Link(BandwidthShaper.Direction.DOWNLOAD, downloadBytesPerSecond);
+    }
+
+    @Override
+    public Pipe initialize(Pipe pipe) {
+        if (!(pipe instanceof SocketPipe)) {
+            return pipe;
+        }
+        TrafficClass trafficClass = classify(pipe.getAttribute(SocketPipe.ATTR_SESSION));
+        SocketPipe socketPipe = (SocketPipe) pipe;
+        addFlow(socketPipe.getOutputPipe(), new Flow(upload, trafficClass));
+        addFlow(socketPipe.getInputPipe(), new Flow(download, trafficClass));
+        return pipe;
+    }
+
+    /**
+     * Changes rates of the link.
+     *
+     * @param uploadBytesPerSecond   Rate of the link from clients to remote hosts.
+     * @param downloadBytesPerSecond Rate of the link from remote hosts to clients.
+     */
+    public void setLinkRate(long uploadBytesPerSecond, long downloadBytesPerSecond) {
+        upload.setRate(uploadBytesPerSecond);
+        download.setRate(downloadBytesPerSecond);
+    }
+
+    public long getLinkRate(BandwidthShaper.Direction direction) {
+        return link(direction).bucket.getRate();
+    }
+
+    public void setUserClass(String username, TrafficClass trafficClass) {
+        checkNotNull(username, "Argument [username] may not be null");
+        userClasses.put(username, checkNotNull(trafficClass, "Argument [trafficClass] may not be "
+                + "null"));
+    }
+
+    public void removeUserClass(String username) {
+        userClasses.remove(username);
+    }
+
+    public TrafficClass getDefaultClass() {
+        return defaultClass;
+    }
+
+    public void setDefaultClass(TrafficClass defaultClass) {
+        this.defaultClass = checkNotNull(defaultClass, "Argument [defaultClass] may not be null");
+    }
+
+    public int getWeight(TrafficClass trafficClass) {
+        return weights[trafficClass.ordinal()];
+    }
+
+    /**
+     * Sets weight of a class, sessions of the class get bandwidth in proportion to it.
+     *
+     * @param trafficClass Class.
+     * @param weight       Weight, between 1 and 1024.
+     */
+    public synchronized void setWeight(TrafficClass trafficClass, int weight) {
+        checkArgument(weight > 0 && weight <= 1024, "Weight must be between 1 and 1024");
+        int[] newWeights = weights.clone();
+        newWeights[trafficClass.ordinal()] = weight;
+        weights = newWeights;
+    }
+
+    public int getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * Sets bytes a session of weight 1 earns in a round.
+     *
+     * @param quantum Quantum in bytes.
+     */
+    public void setQuantum(int quantum) {
+        checkArgument(quantum > 0, "Quantum must be positive");
+        this.quantum = quantum;
+    }
+
+    /**
+     * Returns metrics of a class in a direction.
+     *
+     * @param direction    Direction.
+     * @param trafficClass Class.
+     * @return Metrics.
+     */
+    public ClassMetrics getMetrics(BandwidthShaper.Direction direction, TrafficClass
+            trafficClass) {
+        return link(direction).metrics[trafficClass.ordinal()];
+    }
+
+    /**
+     * Stops the scheduler threads. Waiting sessions are released, and data passes without
+     * scheduling afterwards.
+     */
+    public void shutdown() {
+        shutdown = true;
+        upload.shutdown();
+        download.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RelayScheduler{");
+        for (Link link : new Link[]{upload, download}) {
+            builder.append(link.direction).append("={rate=").append(link.bucket.getRate())
+                    .append(", waiting=").append(link.waiting.get());
+            for (TrafficClass trafficClass : TrafficClass.values()) {
+                builder.append(", ").append(trafficClass).append('=').append(link
+                        .metrics[trafficClass.ordinal()]);
+            }
+            builder.append("}, ");
+        }
+        builder.setLength(builder.length() - 2);
+        return builder.append('}').toString();
+    }
+
+    private TrafficClass classify(Object session) {
+        if (session instanceof Session) {
+            Object value = ((Session) session).getAttribute(TRAFFIC_CLASS_KEY);
+            if (value instanceof TrafficClass) {
+                return (TrafficClass) value;
+            }
+            Object user = ((Session) session).getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+            if (user instanceof User && ((User) user).getUsername() != null) {
+                TrafficClass trafficClass = userClasses.get(((User) user).getUsername());
+                if (trafficClass != null) {
+                    return trafficClass;
+                }
+            }
+        }
+        return defaultClass;
+    }
+
+    private Link link(BandwidthShaper.Direction direction) {
+        return direction == BandwidthShaper.Direction.UPLOAD ? upload : download;
+    }
+
+    private static void addFlow(Pipe pipe, Flow flow) {
+        if (pipe instanceof StreamPipe) {
+            ((StreamPipe) pipe).addTransferLimiter(flow);
+        }
+    }
+
+    /**
+     * The class <code>ClassMetrics</code> represents throughput and queueing delay of a class in a
+     * direction.
+     */
+    public static final class ClassMetrics {
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        private final AtomicLong scheduledCount = new AtomicLong();
+
+        private final AtomicLong queueingNanos = new AtomicLong();
+
+        private final AtomicLong maxQueueingNanos = new AtomicLong();
+
+        void onScheduled(int length, long queueing) {
+            bytes.addAndGet(length);
+            scheduledCount.incrementAndGet();
+            queueingNanos.addAndGet(queueing);
+            long max;
+            while (queueing > (max = maxQueueingNanos.get())) {
+                if (maxQueueingNanos.compareAndSet(max, queueing)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Returns bytes passed, scheduled or not.
+         *
+         * @return Number of bytes.
+         */
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * Returns number of writes that had to queue.
+         *
+         * @return Number of scheduled writes.
+         */
+        public long getScheduledCount() {
+            return scheduledCount.get();
+        }
+
+        public long getQueueingTime(TimeUnit unit) {
+            return unit.convert(queueingNanos.get(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getAverageQueueingTime(TimeUnit unit) {
+            long count = scheduledCount.get();
+            return count == 0 ? 0 : unit.convert(queueingNanos.get() / count, TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxQueueingTime(TimeUnit unit) {
+            return unit.convert(maxQueueingNanos.get(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return "{bytes=" + bytes.get() + ", scheduled=" + scheduledCount.get() + ", "
+                    + "avgQueueingMicros=" + getAverageQueueingTime(TimeUnit.MICROSECONDS) + ", "
+                    + "maxQueueingMicros=" + getMaxQueueingTime(TimeUnit.MICROSECONDS) + '}';
+        }
+    }
+
+    /**
+     * Relay direction of a session.
+     */
+    private final class Flow implements TransferLimiter {
+
+        final Link link;
+
+        final TrafficClass trafficClass;
+
+        final Condition granted;
+
+        /**
+         * Following fields are guarded by the lock of the link.
+         */
+        int pending;
+
+        long deficit;
+
+        long enqueuedAt;
+
+        boolean queued;
+
+        boolean done;
+
+        Flow(Link link, TrafficClass trafficClass) {
+            this.link = link;
+            this.trafficClass = trafficClass;
+            granted = link.lock.newCondition();
+        }
+
+        @Override
+        public void acquire(Pipe pipe, int length) throws InterruptedException {
+            link.acquire(this, length);
+        }
+    }
+
+    private final class Link implements Runnable {
+
+        final BandwidthShaper.Direction direction;
+
+        final TokenBucket bucket;
+
+        final ClassMetrics[] metrics = new ClassMetrics[TrafficClass.values().length];
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        final Condition notEmpty = lock.newCondition();
+
+        final ArrayDeque<Flow> active = new ArrayDeque<>();
+
+        final AtomicInteger waiting = new AtomicInteger();
+
+        private Thread dispatcher;
+
+        Link(BandwidthShaper.Direction direction, long bytesPerSecond) {
+            this.direction = direction;
+            checkArgument(bytesPerSecond > 0, "Link rate must be positive");
+            bucket = new TokenBucket(bytesPerSecond, LINK_BURST_BYTES);
+            for (int i = 0; i < metrics.length; i++) {
+                metrics[i] = new ClassMetrics();
+            }
+        }
+
+        void setRate(long bytesPerSecond) {
+            checkArgument(bytesPerSecond > 0, "Link rate must be positive");
+            bucket.setRate(bytesPerSecond, LINK_BURST_BYTES);
+        }
+
+        void acquire(Flow flow, int length) throws InterruptedException {
+            if (shutdown || (waiting.get() == 0 && bucket.tryReserve(length, System.nanoTime()))) {
+                metrics[flow.trafficClass.ordinal()].bytes.addAndGet(length);
+                return;
+            }
+            lock.lock();
+            try {
+                if (dispatcher == null) {
+                    dispatcher = new Thread(this, TAG + "-" + direction.name().toLowerCase());
+                    dispatcher.setDaemon(true);
+                    dispatcher.start();
+                }
+                flow.pending = length;
+                flow.enqueuedAt = System.nanoTime();
+                flow.done = false;
+                flow.queued = true;
+                active.addLast(flow);
+                waiting.incrementAndGet();
+                notEmpty.signal();
+                try {
+                    while (!flow.done && !shutdown) {
+                        flow.granted.await();
+                    }
+                } catch (InterruptedException e) {
+                    if (flow.queued) {
+                        active.remove(flow);
+                        flow.queued = false;
+                        waiting.decrementAndGet();
+                    }
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!shutdown) {
+                    Flow flow;
+                    lock.lock();
+                    try {
+                        while (active.isEmpty() && !shutdown) {
+                            notEmpty.await();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    // Pick the next flow only when the link has room, so that flows which have
+                    // just written are back in the queue by then.
+                    long wait = bucket.getDelay(LINK_BURST_BYTES, System.nanoTime());
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    lock.lock();
+                    try {
+                        if (shutdown) {
+                            break;
+                        }
+                        if (active.isEmpty()) {
+                            continue;
+                        }
+                        flow = next();
+                        flow.queued = false;
+                        waiting.decrementAndGet();
+                    } finally {
+                        lock.unlock();
+                    }
+                    long delay = bucket.reserve(flow.pending);
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                    lock.lock();
+                    try {
+                        flow.done = true;
+                        flow.granted.signal();
+                        metrics[flow.trafficClass.ordinal()].onScheduled(flow.pending, System
+                                .nanoTime() - flow.enqueuedAt);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Scheduler of " + direction + " interrupted");
+            }
+        }
+
+        /**
+         * Picks the next flow by deficit round robin. It must be called with the lock held.
+         */
+        private Flow next() {
+            while (true) {
+                Flow flow = active.peekFirst();
+                if (flow.deficit >= flow.pending) {
+                    flow.deficit -= flow.pending;
+                    active.pollFirst();
+                    return flow;
+                }
+                long share = (long) quantum * weights[flow.trafficClass.ordinal()];
+                // A flow can't save up more than a round of bytes.
+                flow.deficit = Math.min(flow.deficit + share, share + flow.pending);
+                if (flow.deficit < flow.pending) {
+                    active.addLast(active.pollFirst());
+                }
+            }
+        }
+
+        void shutdown() {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+                for (Flow flow : active) {
+                    flow.granted.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.shaping;
+
+import static androidx.core.util.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sockslib.server.io.Pipe;
+import sockslib.server.io.TransferLimiter;
+
+/**
+ * The class <code>TokenBucket</code> limits a byte rate with bursts.
+ * <p>
+ * It's implemented as a virtual scheduling clock: each reservation moves the clock forward by the
+ * time its bytes take at the rate, and the caller waits for the time the clock runs ahead of now
+ * by more than the burst. A reservation is a single compare-and-set, there's no lock and no refill
+ * thread. Reservations are never refused, bytes that have been read must be written anyway.
+ * </p>
+ * <p>
+ * The rate can be changed at any time, and {@link #UNLIMITED} turns the bucket into a counter. A
+ * change forgets the debt of earlier reservations, so the new rate applies at once.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:19 AM
+ */
+public class TokenBucket implements TransferLimiter {
+
+    public static final long UNLIMITED = -1;
+
+    private volatile Limit limit;
+
+    /**
+     * Time when all reserved bytes have passed at the rate, in {@link System#nanoTime()}.
+     */
+    private final AtomicLong clock = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    /**
+     * Constructs a bucket.
+     *
+     * @param bytesPerSecond Rate, or {@link #UNLIMITED}.
+     * @param burstBytes     Bytes that can pass at once after the bucket has been idle.
+     */
+    public TokenBucket(long bytesPerSecond, long burstBytes) {
+        setRate(bytesPerSecond, burstBytes);
+    }
+
+    /**
+     * Changes the rate. Reservations made at the old rate which haven't passed yet are forgotten,
+     * callers already waiting for them still wait.
+     *
+     * @param bytesPerSecond Rate, or {@link #UNLIMITED}.
+     * @param burstBytes     Bytes that can pass at once after the bucket has been idle.
+     */
+    public void setRate(long bytesPerSecond, long burstBytes) {
+        checkArgument(bytesPerSecond > 0 || bytesPerSecond == UNLIMITED, "Invalid rate");
+        checkArgument(burstBytes > 0, "Burst must be positive");
+        limit = new Limit(bytesPerSecond, burstBytes);
+        // The clock was moved at the old rate, rebase it to now.
+        long now = System.nanoTime();
+        while (true) {
+            long last = clock.get();
+            if (last - now <= 0 || clock.compareAndSet(last, now)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reserves bytes.
+     *
+     * @param length Number of bytes.
+     * @return Nanoseconds to wait before the bytes can pass, <code>0</code> if they can pass now.
+     */
+    public long reserve(int length) {
+        return reserve(length, System.nanoTime());
+    }
+
+    long reserve(int length, long now) {
+        bytes.addAndGet(length);
+        Limit current = limit;
+        if (current.bytesPerSecond == UNLIMITED) {
+            return 0;
+        }
+        long cost = (long) (length * current.nanosPerByte);
+        while (true) {
+            long last = clock.get();
+            long next = (last - now > 0 ? last : now) + cost;
+            if (clock.compareAndSet(last, next)) {
+                long delay = next - now - current.toleranceNanos;
+                if (delay <= 0) {
+                    return 0;
+                }
+                throttledCount.incrementAndGet();
+                throttledNanos.addAndGet(delay);
+                return delay;
+            }
+        }
+    }
+
+    /**
+     * Returns nanoseconds to wait before bytes can pass, without reserving them.
+     */
+    long getDelay(int length, long now) {
+        Limit current = limit;
+        if (current.bytesPerSecond == UNLIMITED) {
+            return 0;
+        }
+        long last = clock.get();
+        long next = (last - now > 0 ? last : now) + (long) (length * current.nanosPerByte);
+        return Math.max(0, next - now - current.toleranceNanos);
+    }
+
+    /**
+     * Reserves bytes only if they can pass now.
+     *
+     * @return <code>true</code> if the bytes are reserved.
+     */
+    boolean tryReserve(int length, long now) {
+        Limit current = limit;
+        if (current.bytesPerSecond != UNLIMITED) {
+            long cost = (long) (length * current.nanosPerByte);
+            while (true) {
+                long last = clock.get();
+                long next = (last - now > 0 ? last : now) + cost;
+                if (next - now - current.toleranceNanos > 0) {
+                    return false;
+                }
+                if (clock.compareAndSet(last, next)) {
+                    break;
+                }
+            }
+        }
+        bytes.addAndGet(length);
+        return true;
+    }
+
+    @Override
+    public void acquire(Pipe pipe, int length) throws InterruptedException {
+        long delay = reserve(length);
+        if (delay > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+    public long getRate() {
+        return limit.bytesPerSecond;
+    }
+
+    public long getBurst() {
+        return limit.burstBytes;
+    }
+
+    /**
+     * Returns number of bytes passed through this bucket, including the throttled ones.
+     *
+     * @return Number of bytes.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns number of reservations which had to wait.
+     *
+     * @return Number of throttled reservations.
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Returns total time that reservations had to wait.
+     *
+     * @param unit Unit of time.
+     * @return Throttled time.
+     */
+    public long getThrottledTime(TimeUnit unit) {
+        return unit.convert(throttledNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        Limit current = limit;
+        return "TokenBucket{rate=" + current.bytesPerSecond + ", burst=" + current.burstBytes + ", "
+                + "bytes=" + bytes.get() + ", throttled=" + throttledCount.get() + ", "
+                + "throttledMillis=" + getThrottledTime(TimeUnit.MILLISECONDS) + '}';
+    }
+
+    private static final class Limit {
+
+        final long bytesPerSecond;
+
+        final long burstBytes;
+
+        final double nanosPerByte;
+
+        final long toleranceNanos;
+
+        Limit(long bytesPerSecond, long burstBytes) {
+            this.bytesPerSecond = bytesPerSecond;
+            this.burstBytes = burstBytes;
+            nanosPerByte = bytesPerSecond == UNLIMITED ? 0 : 1e9 / bytesPerSecond;
+            toleranceNanos = (long) (burstBytes * nanosPerByte);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.shaping;
+
+/**
+ * The enumeration <code>TrafficClass</code> represents priority classes of sessions scheduled by
+ * {@link RelayScheduler}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:22 AM
+ */
+public enum TrafficClass {
+
+    /**
+     * Latency sensitive sessions, such as remote shells and chats.
+     */
+    INTERACTIVE,
+
+    STANDARD,
+
+    /**
+     * Downloads, backups and other sessions that only care about throughput.
+     */
+    BULK
+}
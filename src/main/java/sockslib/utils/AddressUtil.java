@@ -5,6 +5,7 @@ import sockslib.common.IP;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.UnknownHostException;
 
 /**
  * @author Youchao Feng
@@ -23,6 +24,20 @@ public class AddressUtil {
         }
     }
 
+    /**
+     * Returns 127.0.0.1, {@link InetAddress#getLoopbackAddress()} needs API 19.
+     *
+     * @return IPv4 loopback address.
+     */
+    public static InetAddress loopbackAddress() {
+        try {
+            return InetAddress.getByAddress(new byte[]{127, 0, 0, 1});
+        } catch (UnknownHostException e) {
+            // Never happens, the address has a valid length.
+            throw new AssertionError(e);
+        }
+    }
+
     public static boolean addressIn(SocketAddress address, String ip) {
         return false;
     }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <code>ConcurrentCounterMap</code> counts holders of keys with a limit, such as
+ * connections of client addresses. A key is removed when its count drops to zero, so the map only
+ * holds keys in use.
+ * <p>
+ * Both operations are O(1) and lock-free, counts of different keys don't contend.
+ * </p>
+ *
+ * @param <K> Type of keys.
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:30 AM
+ */
+public class ConcurrentCounterMap<K> {
+
+    /**
+     * Count of a counter which has been removed from the map.
+     */
+    private static final int REMOVED = -1;
+
+    private final ConcurrentMap<K, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Increments count of a key unless it has reached the limit.
+     *
+     * @param key   Key.
+     * @param limit Maximum count.
+     * @return <code>true</code> if the count is incremented.
+     */
+    public boolean tryIncrement(K key, int limit) {
+        checkNotNull(key, "Argument [key] may not be null");
+        while (true) {
+            AtomicInteger counter = counters.get(key);
+            if (counter == null) {
+                if (limit <= 0) {
+                    return false;
+                }
+                if (counters.putIfAbsent(key, new AtomicInteger(1)) == null) {
+                    return true;
+                }
+                continue;
+            }
+            int count = counter.get();
+            if (count == REMOVED) {
+                // Being removed by another thread, help it.
+                counters.remove(key, counter);
+                continue;
+            }
+            if (count >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Decrements count of a key, it must have been incremented.
+     *
+     * @param key Key.
+     */
+    public void decrement(K key) {
+        AtomicInteger counter = counters.get(key);
+        if (counter == null) {
+            return;
+        }
+        if (counter.decrementAndGet() == 0 && counter.compareAndSet(0, REMOVED)) {
+            counters.remove(key, counter);
+        }
+    }
+
+    /**
+     * Returns count of a key.
+     *
+     * @param key Key.
+     * @return Count.
+     */
+    public int get(K key) {
+        AtomicInteger counter = counters.get(key);
+        return counter == null ? 0 : Math.max(0, counter.get());
+    }
+
+    /**
+     * Returns number of keys whose count isn't zero.
+     *
+     * @return Number of keys.
+     */
+    public int size() {
+        return counters.size();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class <code>LatencyHistogram</code> records latencies in nanoseconds into log-linear
+ * buckets, like HdrHistogram: each power of two is split into 32 buckets, so a percentile is off by
+ * at most 1/32 of its value. Latencies from 0 to about 36 minutes are tracked, longer ones are
+ * counted as 36 minutes.
+ * <pre>
+ * long start = System.nanoTime();
+ * connect();
+ * histogram.recordSince(start);
+ * LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+ * long p99 = snapshot.getValueAtPercentile(99);
+ * </pre>
+ * <p>
+ * Recording is lock-free, it increments one bucket and a striped sum. A {@link Snapshot} is
+ * immutable, snapshots of different histograms, e.g. of different threads or servers, can be
+ * merged. {@link #intervalSnapshot()} returns what has been recorded since its last call.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:37 AM
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final StripedCounter sum = new StripedCounter();
+
+    private final AtomicLong max = new AtomicLong();
+
+    private Snapshot lastSnapshot = Snapshot.EMPTY;
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos Latency in nanoseconds, a negative value is recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since a start time.
+     *
+     * @param startNanos Start time from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns everything recorded so far. It's not an atomic snapshot if other threads are
+     * recording, each bucket is read once.
+     *
+     * @return Snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Returns what has been recorded since the last call of this method.
+     *
+     * @return Snapshot of the interval.
+     */
+    public synchronized Snapshot intervalSnapshot() {
+        Snapshot current = snapshot();
+        Snapshot interval = current.minus(lastSnapshot);
+        lastSnapshot = current;
+        return interval;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the highest value of a bucket.
+     */
+    static long highestValue(int index) {
+        int group = index >>> SUB_BUCKET_BITS;
+        long subBucket = index & (SUB_BUCKETS - 1);
+        if (group == 0) {
+            return subBucket;
+        }
+        int shift = group - 1;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * The class <code>Snapshot</code> is an immutable copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKETS], 0, 0, 0);
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns a snapshot that contains the values of both snapshots.
+         *
+         * @param other Another snapshot.
+         * @return Merged snapshot.
+         */
+        public Snapshot merge(Snapshot other) {
+            checkNotNull(other, "Argument [other] may not be null");
+            long[] merged = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(merged, count + other.count, sum + other.sum, Math.max(max,
+                    other.max));
+        }
+
+        /**
+         * Returns a snapshot of the values recorded after an earlier snapshot of the same
+         * histogram. Its maximum is the highest value of its highest bucket.
+         *
+         * @param earlier Earlier snapshot.
+         * @return Difference.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            checkNotNull(earlier, "Argument [earlier] may not be null");
+            long[] difference = new long[BUCKETS];
+            long differenceCount = 0;
+            long differenceMax = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                difference[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                differenceCount += difference[i];
+                if (difference[i] > 0) {
+                    differenceMax = Math.min(highestValue(i), max);
+                }
+            }
+            return new Snapshot(difference, differenceCount, Math.max(0, sum - earlier.sum),
+                    differenceMax);
+        }
+
+        /**
+         * Returns the value which the given percentage of values are less than or equal to.
+         *
+         * @param percentile Percentile, from 0 to 100.
+         * @return Value in nanoseconds, within 1/32 of the exact one; 0 if nothing is recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            checkArgument(percentile >= 0 && percentile <= 100, "Percentile must be between 0 "
+                    + "and 100");
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns sum of values.
+         *
+         * @return Sum in nanoseconds.
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{count=" + count + ", mean=" + TimeUnit.NANOSECONDS.toMicros((long)
+                    getMean()) + "us, p50=" + TimeUnit.NANOSECONDS.toMicros(getValueAtPercentile
+                    (50)) + "us, p99=" + TimeUnit.NANOSECONDS.toMicros(getValueAtPercentile(99))
+                    + "us, max=" + TimeUnit.NANOSECONDS.toMicros(max) + "us}";
+        }
+    }
+}
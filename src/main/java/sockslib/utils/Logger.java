@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.util.Log;
+
+import sockslib.utils.LogMessageBuilder.MsgType;
+
+/**
+ * The class <code>Logger</code> is a logging facade that checks the level before building a
+ * message, so disabled log statements cost neither formatting nor allocation.
+ * <p>
+ * Messages are patterns with <code>{}</code> placeholders, which are replaced by the arguments
+ * only if the level is enabled. Byte dumps are built by {@link #debugBytes(MsgType, byte[], int)}
+ * on the same condition. Arguments of primitive types are boxed by the caller, guard such
+ * statements in hot paths with {@link #isDebugEnabled()}.
+ * </p>
+ * <p>
+ * On Android messages go to {@link Log} and levels are checked by {@link Log#isLoggable(String,
+ * int)}, so debug messages are off unless enabled by <code>adb shell setprop log.tag.&lt;TAG&gt;
+ * DEBUG</code>. On other runtimes messages go to SLF4J if it's on the class path, the tag is the
+ * logger name.
+ * </p>
+ * <pre>
+ * private static final Logger logger = Logger.getLogger("SocksCommandSender");
+ * logger.debug("Server replied:Address as host:{}, port:{}", host, port);
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:44 AM
+ */
+public final class Logger {
+
+    /**
+     * Maximum length of tags accepted by {@link Log#isLoggable(String, int)} before API 24.
+     */
+    private static final int MAX_TAG_LENGTH = 23;
+
+    private static final boolean USE_SLF4J = !isAndroid() && isSlf4jAvailable();
+
+    private final String tag;
+
+    private final Slf4jLogger slf4jLogger;
+
+    private Logger(String tag) {
+        this.tag = tag.length() > MAX_TAG_LENGTH ? tag.substring(0, MAX_TAG_LENGTH) : tag;
+        slf4jLogger = USE_SLF4J ? new Slf4jLogger(tag) : null;
+    }
+
+    /**
+     * Returns a logger.
+     *
+     * @param tag Tag of Android log, or name of SLF4J logger.
+     * @return Logger.
+     */
+    public static Logger getLogger(String tag) {
+        return new Logger(checkNotNull(tag, "Argument [tag] may not be null"));
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Log.DEBUG);
+    }
+
+    public boolean isInfoEnabled() {
+        return isEnabled(Log.INFO);
+    }
+
+    public boolean isWarnEnabled() {
+        return isEnabled(Log.WARN);
+    }
+
+    public void debug(String message) {
+        if (isDebugEnabled()) {
+            log(Log.DEBUG, message, null);
+        }
+    }
+
+    public void debug(String pattern, Object arg) {
+        if (isDebugEnabled()) {
+            log(Log.DEBUG, format(pattern, arg, null, null, 1), null);
+        }
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if (isDebugEnabled()) {
+            log(Log.DEBUG, format(pattern, arg1, arg2, null, 2), null);
+        }
+    }
+
+    public void debug(String pattern, Object... args) {
+        if (isDebugEnabled()) {
+            log(Log.DEBUG, format(pattern, args), null);
+        }
+    }
+
+    /**
+     * Logs bytes in hex at debug level, the dump is only built if debug is enabled.
+     *
+     * @param type   Whether the bytes are sent or received.
+     * @param bytes  Bytes array.
+     * @param length Number of bytes to log.
+     */
+    public void debugBytes(MsgType type, byte[] bytes, int length) {
+        if (isDebugEnabled()) {
+            log(Log.DEBUG, LogMessageBuilder.build(bytes, length, type), null);
+        }
+    }
+
+    public void info(String message) {
+        if (isInfoEnabled()) {
+            log(Log.INFO, message, null);
+        }
+    }
+
+    public void info(String pattern, Object arg) {
+        if (isInfoEnabled()) {
+            log(Log.INFO, format(pattern, arg, null, null, 1), null);
+        }
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+        if (isInfoEnabled()) {
+            log(Log.INFO, format(pattern, arg1, arg2, null, 2), null);
+        }
+    }
+
+    public void info(String pattern, Object... args) {
+        if (isInfoEnabled()) {
+            log(Log.INFO, format(pattern, args), null);
+        }
+    }
+
+    public void warn(String pattern, Object... args) {
+        if (isWarnEnabled()) {
+            log(Log.WARN, format(pattern, args), null);
+        }
+    }
+
+    public void warn(String message, Throwable throwable) {
+        if (isWarnEnabled()) {
+            log(Log.WARN, message, throwable);
+        }
+    }
+
+    private boolean isEnabled(int level) {
+        return slf4jLogger != null ? slf4jLogger.isEnabled(level) : Log.isLoggable(tag, level);
+    }
+
+    private void log(int level, String message, Throwable throwable) {
+        if (slf4jLogger != null) {
+            slf4jLogger.log(level, message, throwable);
+            return;
+        }
+        switch (level) {
+            case Log.DEBUG:
+                Log.d(tag, message, throwable);
+                break;
+            case Log.INFO:
+                Log.i(tag, message, throwable);
+                break;
+            default:
+                Log.w(tag, message, throwable);
+                break;
+        }
+    }
+
+    private static String format(String pattern, Object... args) {
+        return format(pattern, args.length > 0 ? args[0] : null, args.length > 1 ? args[1] : null,
+                args, args.length);
+    }
+
+    /**
+     * Replaces <code>{}</code> in a pattern by arguments. The first two arguments are passed
+     * separately so that the common cases don't need an array.
+     */
+    private static String format(String pattern, Object arg1, Object arg2, Object[] args, int
+            count) {
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * count);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int placeholder = pattern.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
+            }
+            builder.append(pattern, start, placeholder);
+            Object arg = i == 0 ? arg1 : i == 1 ? arg2 : args[i];
+            if (arg instanceof byte[]) {
+                builder.append(LogMessageBuilder.bytesToHexString((byte[]) arg));
+            } else {
+                builder.append(arg);
+            }
+            start = placeholder + 2;
+        }
+        return builder.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static boolean isAndroid() {
+        return System.getProperty("java.vm.name", "").equals("Dalvik");
+    }
+
+    private static boolean isSlf4jAvailable() {
+        try {
+            Class.forName("org.slf4j.LoggerFactory");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wraps the SLF4J logger, this class is only loaded if SLF4J is available. {@link Logger}
+     * itself doesn't refer to SLF4J types, so it's verified without them on Android.
+     */
+    private static final class Slf4jLogger {
+
+        private final org.slf4j.Logger logger;
+
+        Slf4jLogger(String name) {
+            logger = org.slf4j.LoggerFactory.getLogger(name);
+        }
+
+        boolean isEnabled(int level) {
+            switch (level) {
+                case Log.DEBUG:
+                    return logger.isDebugEnabled();
+                case Log.INFO:
+                    return logger.isInfoEnabled();
+                default:
+                    return logger.isWarnEnabled();
+            }
+        }
+
+        void log(int level, String message, Throwable throwable) {
+            switch (level) {
+                case Log.DEBUG:
+                    logger.debug(message, throwable);
+                    break;
+                case Log.INFO:
+                    logger.info(message, throwable);
+                    break;
+                default:
+                    logger.warn(message, throwable);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class <code>StripedCounter</code> is a counter that many threads can add to without
+ * contending on a single memory location. It's like <code>LongAdder</code>, which isn't available
+ * on older Android versions.
+ * <p>
+ * Adding is cheap; {@link #sum()} visits every stripe, so it should be called much less often than
+ * {@link #add(long)}.
+ * </p>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:14 AM
+ */
+public class StripedCounter {
+
+    /**
+     * Each stripe is padded to a cache line of 64 bytes, which avoids false sharing.
+     */
+    private static final int PADDING = 8;
+
+    private static final int MAX_STRIPES = 64;
+
+    private static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Adds a value.
+     *
+     * @param value Value to add.
+     */
+    public void add(long value) {
+        cells.getAndAdd(index(), value);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Returns sum of all stripes. It's not an atomic snapshot if other threads are adding.
+     *
+     * @return Sum.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return ((hash ^ (hash >>> 16)) & (STRIPES - 1)) * PADDING;
+    }
+
+    private static int stripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = 1;
+        while (count < processors * 2 && count < MAX_STRIPES) {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkNotNull;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>TimingWheel</code> is a hashed timing wheel which runs tasks after delays. It's
+ * made for a large number of timeouts that are mostly cancelled or extended before they expire,
+ * such as timeouts of network sessions.
+ * <p>
+ * One thread advances the wheel every tick and runs expired tasks, so a task should be short, e.g.
+ * closing a socket. Scheduling, cancelling and resetting a timeout are O(1) and don't take a lock.
+ * A timeout expires within one tick after its deadline.
+ * </p>
+ * <pre>
+ * TimingWheel wheel = new TimingWheel(100, TimeUnit.MILLISECONDS, 512);
+ * TimingWheel.Timeout timeout = wheel.schedule(task, 30, TimeUnit.SECONDS);
+ * ...
+ * timeout.reset(30, TimeUnit.SECONDS); // Activity, expire 30 seconds from now.
+ * </pre>
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 12:27 AM
+ */
+public class TimingWheel {
+
+    private static final String TAG = "TimingWheel";
+
+    private static final int STATE_PENDING = 0;
+
+    private static final int STATE_CANCELLED = 1;
+
+    private static final int STATE_EXPIRED = 2;
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    private final long startTime = System.nanoTime();
+
+    private volatile Thread worker;
+
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a wheel which ticks every 100 milliseconds and has 512 buckets.
+     */
+    public TimingWheel() {
+        this(100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * Constructs a wheel.
+     *
+     * @param tickDuration Duration of a tick, which is the precision of timeouts.
+     * @param unit         Unit of tick duration.
+     * @param wheelSize    Number of buckets, it's rounded up to a power of 2. Timeouts longer than
+     *                     a turn of the wheel are checked once every turn until they expire.
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+        checkArgument(tickDuration > 0, "Tick duration must be positive");
+        checkArgument(wheelSize > 0 && wheelSize <= 1 << 20, "Wheel size must be between 1 and "
+                + "1048576");
+        tickNanos = unit.toNanos(tickDuration);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Schedules a task.
+     *
+     * @param task  Task, it runs in the thread of the wheel.
+     * @param delay Delay.
+     * @param unit  Unit of delay.
+     * @return Timeout of the task.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        checkNotNull(task, "Argument [task] may not be null");
+        if (stopped) {
+            throw new IllegalStateException("Timing wheel is stopped");
+        }
+        startWorker();
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos
+                (Math.max(0, delay)));
+        pendingCount.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel, pending timeouts will never expire.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Returns number of timeouts which haven't expired or been removed after cancelled.
+     *
+     * @return Number of pending timeouts.
+     */
+    public int size() {
+        return pendingCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheel{tickMillis=" + getTickDuration(TimeUnit.MILLISECONDS) + ", buckets="
+                + wheel.length + ", pending=" + pendingCount.get() + ", expired=" + expiredCount
+                .get() + '}';
+    }
+
+    private void startWorker() {
+        if (worker != null) {
+            return;
+        }
+        synchronized (this) {
+            if (worker == null && !stopped) {
+                Thread thread = new Thread(new Worker(), TAG);
+                thread.setDaemon(true);
+                thread.start();
+                worker = thread;
+            }
+        }
+    }
+
+    /**
+     * The class <code>Timeout</code> is a handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+                .newUpdater(Timeout.class, "state");
+
+        private final TimingWheel timingWheel;
+
+        private final Runnable task;
+
+        /**
+         * Deadline in nanoseconds since the wheel was created.
+         */
+        private volatile long deadline;
+
+        private volatile int state = STATE_PENDING;
+
+        /**
+         * Following fields are only accessed by the thread of the wheel.
+         */
+        private long remainingRounds;
+
+        private Timeout previous;
+
+        private Timeout next;
+
+        private Bucket bucket;
+
+        Timeout(TimingWheel timingWheel, Runnable task, long deadline) {
+            this.timingWheel = timingWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task.
+         *
+         * @return <code>false</code> if the task has expired or been cancelled.
+         */
+        public boolean cancel() {
+            return STATE.compareAndSet(this, STATE_PENDING, STATE_CANCELLED);
+        }
+
+        /**
+         * Moves the deadline to a delay from now. It only writes the deadline, the wheel moves
+         * the timeout when its old deadline comes. So a deadline can be extended at almost no
+         * cost, but a deadline earlier than the old one only takes effect at the old one.
+         *
+         * @param delay Delay from now.
+         * @param unit  Unit of delay.
+         */
+        public void reset(long delay, TimeUnit unit) {
+            deadline = System.nanoTime() - timingWheel.startTime + unit.toNanos(Math.max(0,
+                    delay));
+        }
+
+        public boolean isCancelled() {
+            return state == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == STATE_EXPIRED;
+        }
+
+        /**
+         * Returns time until the deadline.
+         *
+         * @param unit Unit of time.
+         * @return Remaining time, negative if the deadline has passed.
+         */
+        public long getRemaining(TimeUnit unit) {
+            return unit.convert(deadline - (System.nanoTime() - timingWheel.startTime), TimeUnit
+                    .NANOSECONDS);
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, only accessed by the thread of the wheel.
+     */
+    private static final class Bucket {
+
+        Timeout head;
+
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.previous == null) {
+                head = next;
+            } else {
+                timeout.previous.next = next;
+            }
+            if (next == null) {
+                tail = timeout.previous;
+            } else {
+                next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+            return next;
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final List<Timeout> moved = new ArrayList<>();
+
+        private long tick;
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                long tickDeadline = tickNanos * (tick + 1);
+                long sleepNanos = tickDeadline - (System.nanoTime() - startTime);
+                if (sleepNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                transferNewTimeouts();
+                expire(wheel[(int) (tick & mask)], tickDeadline);
+                tick++;
+            }
+        }
+
+        private void transferNewTimeouts() {
+            Timeout timeout;
+            while ((timeout = newTimeouts.poll()) != null) {
+                if (timeout.state == STATE_CANCELLED) {
+                    pendingCount.decrementAndGet();
+                    continue;
+                }
+                place(timeout, tick);
+            }
+        }
+
+        /**
+         * Places a timeout in the bucket of its deadline.
+         *
+         * @param timeout   Timeout.
+         * @param firstTick First tick whose bucket hasn't been expired yet, rounds are counted
+         *                  from it.
+         */
+        private void place(Timeout timeout, long firstTick) {
+            long deadlineTick = Math.max(timeout.deadline / tickNanos, firstTick);
+            timeout.remainingRounds = (deadlineTick - firstTick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(timeout);
+        }
+
+        private void expire(Bucket bucket, long tickDeadline) {
+            Timeout timeout = bucket.head;
+            while (timeout != null) {
+                if (timeout.state == STATE_CANCELLED) {
+                    timeout = bucket.remove(timeout);
+                    pendingCount.decrementAndGet();
+                } else if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                } else if (timeout.deadline > tickDeadline) {
+                    // The deadline has been reset. Place it after the loop, it may come back to
+                    // this bucket.
+                    moved.add(timeout);
+                    timeout = bucket.remove(timeout);
+                } else {
+                    Timeout expired = timeout;
+                    timeout = bucket.remove(timeout);
+                    pendingCount.decrementAndGet();
+                    if (Timeout.STATE.compareAndSet(expired, STATE_PENDING, STATE_EXPIRED)) {
+                        expiredCount.incrementAndGet();
+                        try {
+                            expired.task.run();
+                        } catch (RuntimeException e) {
+                            Log.w(TAG, "Timeout task failed", e);
+                        }
+                    }
+                }
+            }
+            // This bucket is done, so its next visit is a turn later.
+            for (int i = 0; i < moved.size(); i++) {
+                place(moved.get(i), tick + 1);
+            }
+            moved.clear();
+        }
+    }
+}
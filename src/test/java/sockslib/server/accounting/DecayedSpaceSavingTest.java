@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.accounting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DecayedSpaceSaving}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:45 AM
+ */
+public class DecayedSpaceSavingTest {
+
+    private static final long HALF_LIFE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    public void countsAreExactUnderCapacity() {
+        DecayedSpaceSaving sketch = new DecayedSpaceSaving(4, 0, 0);
+        sketch.add("a", 10, 0);
+        sketch.add("b", 20, 1);
+        sketch.add("a", 5, 2);
+        Map<String, HeavyHitter> hitters = snapshot(sketch, 3);
+        assertEquals(2, hitters.size());
+        assertEquals(15, hitters.get("a").getCount());
+        assertEquals(0, hitters.get("a").getError());
+        assertEquals(20, hitters.get("b").getCount());
+        assertEquals(35, sketch.getTotal(3), 0);
+    }
+
+    @Test
+    public void heavyKeysSurviveEviction() {
+        int capacity = 20;
+        DecayedSpaceSaving sketch = new DecayedSpaceSaving(capacity, 0, 0);
+        Map<String, Long> weights = new HashMap<>();
+        Random random = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 100000; i++) {
+            String key = random.nextInt(10) < 4 ? "heavy" + random.nextInt(4) : "light" + random
+                    .nextInt(1000);
+            long weight = 1 + random.nextInt(100);
+            sketch.add(key, weight, i);
+            Long sum = weights.get(key);
+            weights.put(key, sum == null ? weight : sum + weight);
+            total += weight;
+        }
+        assertEquals(total, sketch.getTotal(0), 0);
+        Map<String, HeavyHitter> hitters = snapshot(sketch, 0);
+        assertEquals(capacity, hitters.size());
+        for (int i = 0; i < 4; i++) {
+            assertNotNull("heavy" + i + " was evicted", hitters.get("heavy" + i));
+        }
+        for (HeavyHitter hitter : hitters.values()) {
+            long weight = weights.get(hitter.getKey());
+            assertTrue(hitter + " underestimates " + weight, hitter.getCount() >= weight);
+            assertTrue(hitter + " misses " + weight, hitter.getMinCount() <= weight);
+            assertTrue(hitter + " has a large error", hitter.getError() <= total / capacity);
+        }
+    }
+
+    @Test
+    public void countsDecayWithHalfLife() {
+        DecayedSpaceSaving sketch = new DecayedSpaceSaving(4, HALF_LIFE, 0);
+        sketch.add("old", 1000, 0);
+        sketch.add("new", 1000, HALF_LIFE);
+        Map<String, HeavyHitter> hitters = snapshot(sketch, HALF_LIFE);
+        assertEquals(500, hitters.get("old").getCount());
+        assertEquals(1000, hitters.get("new").getCount());
+        assertEquals(1500, sketch.getTotal(HALF_LIFE), 1e-6);
+        hitters = snapshot(sketch, 3 * HALF_LIFE);
+        assertEquals(125, hitters.get("old").getCount());
+        assertEquals(250, hitters.get("new").getCount());
+    }
+
+    @Test
+    public void recentKeysReplaceDecayedOnes() {
+        DecayedSpaceSaving sketch = new DecayedSpaceSaving(2, HALF_LIFE, 0);
+        sketch.add("old", 1000, 0);
+        sketch.add("steady", 300, 0);
+        sketch.add("steady", 300, 10 * HALF_LIFE);
+        sketch.add("recent", 10, 10 * HALF_LIFE);
+        Map<String, HeavyHitter> hitters = snapshot(sketch, 10 * HALF_LIFE);
+        assertTrue(hitters.containsKey("recent"));
+        assertTrue(hitters.containsKey("steady"));
+        assertEquals(1, hitters.get("recent").getError());
+    }
+
+    @Test
+    public void countsSurviveRenormalization() {
+        DecayedSpaceSaving sketch = new DecayedSpaceSaving(4, 1, 0);
+        sketch.add("a", 1000, 0);
+        sketch.add("b", 1000, 100);
+        Map<String, HeavyHitter> hitters = snapshot(sketch, 100);
+        assertEquals(0, hitters.get("a").getCount());
+        assertEquals(1000, hitters.get("b").getCount());
+        assertEquals(1000, sketch.getTotal(100), 1e-6);
+        sketch.add("b", 1000, 100);
+        assertEquals(2000, snapshot(sketch, 100).get("b").getCount());
+    }
+
+    private static Map<String, HeavyHitter> snapshot(DecayedSpaceSaving sketch, long now) {
+        List<HeavyHitter> list = new ArrayList<>();
+        sketch.snapshot(now, list);
+        Map<String, HeavyHitter> hitters = new HashMap<>();
+        for (HeavyHitter hitter : list) {
+            hitters.put(hitter.getKey(), hitter);
+        }
+        return hitters;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DomainSuffixTrie}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:20 AM
+ */
+public class DomainSuffixTrieTest {
+
+    @Test
+    public void suffixMatchesItselfAndSubDomains() {
+        DomainSuffixTrie<String> trie = new DomainSuffixTrie<>();
+        trie.put("example.com", "example");
+        assertEquals("example", trie.longestMatch("example.com"));
+        assertEquals("example", trie.longestMatch("www.example.com"));
+        assertEquals("example", trie.longestMatch("a.b.example.com."));
+        assertNull(trie.longestMatch("badexample.com"));
+        assertNull(trie.longestMatch("com"));
+        assertNull(trie.longestMatch(null));
+    }
+
+    @Test
+    public void longestSuffixWins() {
+        DomainSuffixTrie<String> trie = new DomainSuffixTrie<>();
+        trie.put("com", "com");
+        trie.put("*.example.com", "example");
+        trie.put(".cdn.example.com", "cdn");
+        assertEquals("cdn", trie.longestMatch("img.cdn.example.com"));
+        assertEquals("example", trie.longestMatch("www.example.com"));
+        assertEquals("com", trie.longestMatch("other.com"));
+        assertNull(trie.longestMatch("example.org"));
+    }
+
+    @Test
+    public void matchingIgnoresCase() {
+        DomainSuffixTrie<String> trie = new DomainSuffixTrie<>();
+        trie.put("Example.COM", "example");
+        assertEquals("example", trie.longestMatch("WWW.example.com"));
+        assertEquals("example", trie.get("example.com"));
+    }
+
+    @Test
+    public void allMatchesFromShortestToLongest() {
+        DomainSuffixTrie<String> trie = new DomainSuffixTrie<>();
+        trie.put("example.com", "example");
+        trie.put("com", "com");
+        trie.put("www.example.com", "www");
+        trie.put("mail.example.com", "mail");
+        List<String> result = new ArrayList<>();
+        trie.allMatches("www.example.com", result);
+        assertEquals(Arrays.asList("com", "example", "www"), result);
+    }
+
+    @Test
+    public void putReplacesValueOfSameSuffix() {
+        DomainSuffixTrie<String> trie = new DomainSuffixTrie<>();
+        assertNull(trie.put("example.com", "a"));
+        assertEquals("a", trie.put("*.example.com", "b"));
+        assertEquals(1, trie.size());
+        assertEquals("b", trie.get("example.com"));
+        assertNull(trie.get("www.example.com"));
+    }
+
+    @Test
+    public void manySiblingsStaySorted() {
+        DomainSuffixTrie<Integer> trie = new DomainSuffixTrie<>();
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+        for (int i : order) {
+            trie.put("host" + i + ".example.com", i);
+        }
+        assertEquals(200, trie.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(Integer.valueOf(i), trie.longestMatch("a.host" + i + ".example.com"));
+        }
+        assertNull(trie.longestMatch("host200.example.com"));
+        List<String> suffixes = trie.suffixes();
+        assertEquals(200, suffixes.size());
+        assertTrue(suffixes.contains("host7.example.com"));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link TicketAuthority}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:38 AM
+ */
+public class TicketAuthorityTest {
+
+    private static final byte[] KEY = "0123456789abcdef".getBytes();
+
+    private static final byte[] OTHER_KEY = "fedcba9876543210".getBytes();
+
+    @Test
+    public void verifiesIssuedTicket() {
+        TicketAuthority authority = new TicketAuthority(KEY);
+        assertEquals("alice", authority.verify(authority.issue("alice")));
+        assertEquals("\u00e9l\u00e8ve", authority.verify(authority.issue("\u00e9l\u00e8ve")));
+        assertEquals(2, authority.getIssuedCount());
+        assertEquals(2, authority.getAcceptedCount());
+    }
+
+    @Test
+    public void rejectsTamperedTicket() {
+        TicketAuthority authority = new TicketAuthority(KEY);
+        byte[] ticket = authority.issue("alice");
+        // Username "alice" becomes "blice".
+        byte[] renamed = ticket.clone();
+        renamed[11]++;
+        assertNull(authority.verify(renamed));
+        byte[] badMac = ticket.clone();
+        badMac[badMac.length - 1] ^= 1;
+        assertNull(authority.verify(badMac));
+        // A later expiration time.
+        byte[] extended = ticket.clone();
+        extended[2]++;
+        assertNull(authority.verify(extended));
+        assertEquals(3, authority.getRejectedCount());
+    }
+
+    @Test
+    public void rejectsMalformedTicket() {
+        TicketAuthority authority = new TicketAuthority(KEY);
+        byte[] ticket = authority.issue("alice");
+        assertNull(authority.verify(null));
+        assertNull(authority.verify(new byte[0]));
+        assertNull(authority.verify(Arrays.copyOf(ticket, ticket.length - 1)));
+        assertNull(authority.verify(Arrays.copyOf(ticket, ticket.length + 1)));
+        byte[] version = ticket.clone();
+        version[0] = 2;
+        assertNull(authority.verify(version));
+        assertEquals(5, authority.getRejectedCount());
+    }
+
+    @Test
+    public void rejectsExpiredTicket() throws InterruptedException {
+        TicketAuthority authority = new TicketAuthority(KEY);
+        authority.setLifetime(1, TimeUnit.MILLISECONDS);
+        byte[] ticket = authority.issue("alice");
+        Thread.sleep(10);
+        assertNull(authority.verify(ticket));
+        assertEquals(1, authority.getExpiredCount());
+        assertEquals(0, authority.getRejectedCount());
+    }
+
+    @Test
+    public void acceptsTicketsOfSharedKey() {
+        TicketAuthority issuer = new TicketAuthority(KEY);
+        byte[] ticket = issuer.issue("alice");
+        assertEquals("alice", new TicketAuthority(KEY).verify(ticket));
+        assertNull(new TicketAuthority(OTHER_KEY).verify(ticket));
+    }
+
+    @Test
+    public void rotatesKeys() {
+        TicketAuthority authority = new TicketAuthority(0, KEY);
+        byte[] oldTicket = authority.issue("alice");
+        authority.addKey(1, OTHER_KEY);
+        authority.setIssuingKeyId(1);
+        byte[] newTicket = authority.issue("alice");
+        assertEquals(1, newTicket[1]);
+        assertEquals("alice", authority.verify(oldTicket));
+        assertEquals("alice", authority.verify(newTicket));
+        authority.removeKey(0);
+        assertNull(authority.verify(oldTicket));
+        assertEquals("alice", authority.verify(newTicket));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotRemoveIssuingKey() {
+        new TicketAuthority(0, KEY).removeKey(0);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.log;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import sockslib.common.AddressType;
+import sockslib.common.SocksCommand;
+import sockslib.server.SessionTimeline;
+import sockslib.server.SocksSession;
+import sockslib.server.msg.CommandMessage;
+
+/**
+ * Tests the ring buffer of {@link AccessLog}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:21 AM
+ */
+public class AccessLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ServerSocket serverSocket;
+
+    private Socket client;
+
+    private Socket accepted;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        client = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        accepted = serverSocket.accept();
+        file = new File(folder.getRoot(), "access.log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        accepted.close();
+        client.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void writesOneLinePerSession() throws IOException {
+        AccessLog accessLog = AccessLog.newBuilder().setFile(file).setCapacity(16).build();
+        accessLog.start();
+        for (int i = 0; i < 3; i++) {
+            accessLog.onClose(newSession(i, "host" + i + ".example.com"));
+        }
+        accessLog.close();
+        List<String> lines = readLines();
+        assertEquals(3, lines.size());
+        for (int i = 0; i < 3; i++) {
+            String[] fields = lines.get(i).split(" ");
+            assertEquals(String.valueOf(i), fields[2]);
+            assertEquals("CONNECT", fields[5]);
+            // The destination isn't resolved, it's logged by host.
+            assertEquals("host" + i + ".example.com:443", fields[6]);
+        }
+        assertEquals(3, accessLog.getWrittenCount());
+        assertEquals(0, accessLog.getDroppedCount());
+    }
+
+    @Test
+    public void dropsRecordsWhenRingIsFull() throws IOException {
+        AccessLog accessLog = AccessLog.newBuilder().setFile(file).setCapacity(4).build();
+        for (int i = 0; i < 10; i++) {
+            accessLog.onClose(newSession(i, "example.com"));
+        }
+        assertEquals(4, accessLog.getPublishedCount());
+        assertEquals(6, accessLog.getDroppedCount());
+        accessLog.start();
+        accessLog.close();
+        assertEquals(4, accessLog.getWrittenCount());
+        List<String> lines = readLines();
+        assertEquals(4, lines.size());
+        assertEquals("3", lines.get(3).split(" ")[2]);
+    }
+
+    @Test
+    public void concurrentClosesAreWrittenOrCounted() throws Exception {
+        final AccessLog accessLog = AccessLog.newBuilder().setFile(file).setCapacity(256).build();
+        accessLog.start();
+        final int threads = 8;
+        final int perThread = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final SocksSession session = newSession(t, "example.com");
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        accessLog.onClose(session);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        accessLog.close();
+        assertEquals(threads * perThread, accessLog.getPublishedCount() + accessLog
+                .getDroppedCount());
+        assertEquals(accessLog.getPublishedCount(), accessLog.getWrittenCount());
+        assertEquals(accessLog.getWrittenCount(), readLines().size());
+        assertEquals(0, accessLog.getErrorCount());
+    }
+
+    private SocksSession newSession(long id, String host) {
+        SocksSession session = new SocksSession(id, accepted, null);
+        CommandMessage message = new CommandMessage();
+        message.setCommand(SocksCommand.CONNECT);
+        message.setAddressType(AddressType.DOMAIN_NAME);
+        message.setHost(host);
+        message.setPort(443);
+        new SessionTimeline(System.nanoTime()).attach(session);
+        SessionTimeline.setCommand(session, message);
+        return session;
+    }
+
+    private List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream
+                (file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package sockslib.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link FileBasedUserManager}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 4:10 AM
+ */
+public class FileBasedUserManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "users.txt");
+        write(file, "alice:secret1\nbob:secret2\n");
+    }
+
+    @Test
+    public void loadsUsers() throws IOException {
+        FileBasedUserManager userManager = new FileBasedUserManager(file);
+        assertEquals(2, userManager.size());
+        assertNotNull(userManager.check("alice", "secret1"));
+        assertNull(userManager.check("alice", "secret2"));
+        assertFalse(userManager.reload());
+    }
+
+    @Test
+    public void reloadsSameSizeEditWithSameModificationTime() throws IOException {
+        FileBasedUserManager userManager = new FileBasedUserManager(file);
+        long modified = file.lastModified();
+        write(file, "alice:secret9\nbob:secret2\n");
+        assertTrue(file.setLastModified(modified));
+        assertTrue(userManager.reload());
+        assertNull(userManager.check("alice", "secret1"));
+        assertNotNull(userManager.check("alice", "secret9"));
+    }
+
+    @Test
+    public void ignoresCacheOfRestoredFile() throws IOException {
+        new FileBasedUserManager(file);
+        long modified = file.lastModified();
+        write(file, "alice:secret9\nbob:secret2\n");
+        assertTrue(file.setLastModified(modified));
+        FileBasedUserManager userManager = new FileBasedUserManager(file);
+        assertNull(userManager.check("alice", "secret1"));
+        assertNotNull(userManager.check("alice", "secret9"));
+    }
+
+    @Test
+    public void writesAreNotReloaded() throws IOException {
+        FileBasedUserManager userManager = new FileBasedUserManager(file);
+        userManager.addUser("carol", "secret3");
+        assertFalse(userManager.reload());
+        assertEquals(3, new FileBasedUserManager(file).size());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
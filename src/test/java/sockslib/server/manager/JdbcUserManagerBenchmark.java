@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tomcat.dbcp.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Measures authentications per second of {@link JdbcUserManager} with the default password
+ * hasher: with both caches warm, with a warm user cache but verifying the hash every time, and
+ * with a database query every time. It's skipped unless the system property
+ * <code>sockslib.benchmark</code> is <code>true</code>, run it alone, e.g.
+ * <code>./gradlew test --tests '*JdbcUserManagerBenchmark' -Dsockslib.benchmark=true</code>.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:25 AM
+ */
+public class JdbcUserManagerBenchmark {
+
+    private static final int USERS = 64;
+
+    private static final int THREADS = 4;
+
+    private static final long DURATION_MILLIS = 2000;
+
+    private BasicDataSource dataSource;
+
+    private JdbcUserManager userManager;
+
+    @BeforeClass
+    public static void checkEnabled() {
+        assumeTrue(Boolean.getBoolean("sockslib.benchmark"));
+    }
+
+    @Before
+    public void setUp() {
+        dataSource = JdbcUserManagerTest.newDataSource();
+        dataSource.setMaxActive(THREADS);
+        userManager = new JdbcUserManager(dataSource);
+        userManager.createTable();
+        for (int i = 0; i < USERS; i++) {
+            userManager.addUser("user" + i, "password" + i);
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        dataSource.close();
+    }
+
+    @Test
+    public void authenticationThroughput() throws InterruptedException {
+        double cached = run("cached credentials", new Invalidation() {
+            @Override
+            public void before(String username) {
+            }
+        });
+        double hashed = run("hash verified", new Invalidation() {
+            @Override
+            public void before(String username) {
+                userManager.getCredentialCache().invalidate(username);
+            }
+        });
+        double loaded = run("user loaded", new Invalidation() {
+            @Override
+            public void before(String username) {
+                userManager.getUserCache().invalidate(username);
+            }
+        });
+        assertTrue(cached > hashed);
+        assertTrue(loaded > 0);
+    }
+
+    private double run(String name, final Invalidation invalidation) throws
+            InterruptedException {
+        // Warm up both caches and the JIT.
+        for (int i = 0; i < USERS; i++) {
+            assertNotNull(userManager.check("user" + i, "password" + i));
+        }
+        final AtomicLong count = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long checks = 0;
+                    for (int i = offset; System.nanoTime() < deadline; i++) {
+                        int user = i % USERS;
+                        invalidation.before("user" + user);
+                        if (userManager.check("user" + user, "password" + user) != null) {
+                            checks++;
+                        }
+                    }
+                    count.addAndGet(checks);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double perSecond = count.get() * 1000.0 / DURATION_MILLIS;
+        System.out.printf("%-20s %12.0f auth/s (%d threads, %d iterations)%n", name, perSecond,
+                THREADS, userManager.getPasswordHasher().getIterations());
+        return perSecond;
+    }
+
+    private interface Invalidation {
+
+        void before(String username);
+    }
+}
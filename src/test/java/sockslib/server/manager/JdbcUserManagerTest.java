@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tomcat.dbcp.dbcp.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link JdbcUserManager} against an in-memory H2 database.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:25 AM
+ */
+public class JdbcUserManagerTest {
+
+    private static final AtomicInteger DATABASE_ID = new AtomicInteger();
+
+    private BasicDataSource dataSource;
+
+    private JdbcUserManager userManager;
+
+    @Before
+    public void setUp() {
+        dataSource = newDataSource();
+        userManager = newUserManager(dataSource);
+        userManager.createTable();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        dataSource.close();
+    }
+
+    @Test
+    public void passwordsAreStoredHashed() throws SQLException {
+        userManager.addUser("alice", "secret");
+        String stored = readPassword("alice");
+        assertTrue(PasswordHasher.isHashed(stored));
+        assertFalse(stored.contains("secret"));
+        assertNotNull(userManager.check("alice", "secret"));
+        assertNull(userManager.check("alice", "wrong"));
+        assertNull(userManager.check("nobody", "secret"));
+    }
+
+    @Test
+    public void hashedPasswordIsStoredAsIs() throws SQLException {
+        String hashed = userManager.getPasswordHasher().hash("secret");
+        userManager.update(new User("bob", hashed));
+        assertEquals(hashed, readPassword("bob"));
+        assertNotNull(userManager.check("bob", "secret"));
+    }
+
+    @Test
+    public void checksReadThroughCaches() {
+        userManager.addUser("alice", "secret");
+        UserCache userCache = userManager.getUserCache();
+        CredentialCache credentialCache = userManager.getCredentialCache();
+        assertNotNull(userManager.check("alice", "secret"));
+        assertEquals(1, userCache.getMissCount());
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(userManager.check("alice", "secret"));
+        }
+        assertEquals(1, userCache.getMissCount());
+        assertEquals(10, userCache.getHitCount());
+        assertEquals(10, credentialCache.getHitCount());
+    }
+
+    @Test
+    public void updateInvalidatesCachedCredentials() {
+        userManager.addUser("alice", "secret");
+        assertNotNull(userManager.check("alice", "secret"));
+        userManager.update(new User("alice", "changed"));
+        assertNull(userManager.check("alice", "secret"));
+        assertNotNull(userManager.check("alice", "changed"));
+    }
+
+    @Test
+    public void updateCreatesMissingUser() {
+        userManager.update(new User("carol", "secret"));
+        assertNotNull(userManager.find("carol"));
+        assertEquals(1, userManager.findAll().size());
+    }
+
+    @Test
+    public void deleteRemovesCachedUser() {
+        userManager.addUser("alice", "secret");
+        assertNotNull(userManager.check("alice", "secret"));
+        userManager.delete("alice");
+        assertNull(userManager.check("alice", "secret"));
+        assertNull(userManager.find("alice"));
+    }
+
+    @Test
+    public void changesByOthersAreVisibleAfterInvalidation() {
+        userManager.addUser("alice", "secret");
+        assertNotNull(userManager.check("alice", "secret"));
+        JdbcUserManager other = newUserManager(dataSource);
+        other.update(new User("alice", "changed"));
+        assertNotNull(userManager.check("alice", "secret"));
+        userManager.getUserCache().invalidateAll();
+        assertNull(userManager.check("alice", "secret"));
+        assertNotNull(userManager.check("alice", "changed"));
+    }
+
+    @Test
+    public void preloadFillsUserCache() {
+        for (int i = 0; i < 5; i++) {
+            userManager.addUser("user" + i, "secret" + i);
+        }
+        JdbcUserManager restarted = newUserManager(dataSource);
+        assertEquals(5, restarted.preload());
+        assertEquals(5, restarted.getUserCache().size());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(restarted.check("user" + i, "secret" + i));
+        }
+        assertEquals(0, restarted.getUserCache().getMissCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tableNameMustBeIdentifier() {
+        new JdbcUserManager(dataSource, "SOCKS_USER; DROP TABLE SOCKS_USER");
+    }
+
+    @Test(expected = UserManagerException.class)
+    public void duplicateUserIsRejected() {
+        userManager.addUser("alice", "secret");
+        userManager.addUser("alice", "other");
+    }
+
+    static BasicDataSource newDataSource() {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:users" + DATABASE_ID.incrementAndGet()
+                + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+
+    static JdbcUserManager newUserManager(BasicDataSource dataSource) {
+        // Few iterations keep tests fast, hashing is the same code path.
+        return new JdbcUserManager(dataSource, JdbcUserManager.DEFAULT_TABLE, new
+                PasswordHasher(1000), new UserCache(100, 1, TimeUnit.MINUTES), new
+                CredentialCache(100));
+    }
+
+    private String readPassword(String username) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement("SELECT PASSWORD FROM "
+                    + JdbcUserManager.DEFAULT_TABLE + " WHERE USERNAME = ?");
+            try {
+                statement.setString(1, username);
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    assertTrue(resultSet.next());
+                    return resultSet.getString(1);
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.shaping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link TokenBucket}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:41 AM
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Tolerance of delays, for rounding of costs.
+     */
+    private static final long EPSILON = TimeUnit.MICROSECONDS.toNanos(10);
+
+    @Test
+    public void burstPassesAtOnce() {
+        TokenBucket bucket = new TokenBucket(1000, 1000);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.reserve(1000, now));
+        assertEquals(0, bucket.getThrottledCount());
+    }
+
+    @Test
+    public void bytesOverBurstWaitAtRate() {
+        TokenBucket bucket = new TokenBucket(1000, 1000);
+        long now = System.nanoTime();
+        bucket.reserve(1000, now);
+        assertDelay(SECOND, bucket.reserve(1000, now));
+        assertDelay(2 * SECOND, bucket.reserve(1000, now));
+        assertDelay(SECOND / 2, bucket.reserve(500, now + 2 * SECOND));
+        assertEquals(3, bucket.getThrottledCount());
+        assertEquals(3500, bucket.getBytes());
+    }
+
+    @Test
+    public void idleBucketSavesOnlyBurst() {
+        TokenBucket bucket = new TokenBucket(1000, 1000);
+        long now = System.nanoTime();
+        assertDelay(2 * SECOND, bucket.reserve(3000, now + 60 * SECOND));
+    }
+
+    @Test
+    public void rateChangeForgetsDebt() {
+        TokenBucket bucket = new TokenBucket(1000, 1000);
+        long now = System.nanoTime();
+        // Ten seconds of debt at the old rate.
+        bucket.reserve(11000, now);
+        bucket.setRate(1000000, 1000000);
+        long later = System.nanoTime();
+        assertEquals(0, bucket.reserve(1000000, later));
+        assertDelay(SECOND, bucket.reserve(1000000, later));
+    }
+
+    @Test
+    public void lowerRateAppliesToNewReservations() {
+        TokenBucket bucket = new TokenBucket(1000000, 1000);
+        bucket.setRate(1000, 1000);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.reserve(1000, now));
+        assertDelay(SECOND, bucket.reserve(1000, now));
+    }
+
+    @Test
+    public void unlimitedBucketOnlyCounts() {
+        TokenBucket bucket = new TokenBucket(TokenBucket.UNLIMITED, 1);
+        long now = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.reserve(1 << 20, now));
+        }
+        assertEquals(10L << 20, bucket.getBytes());
+        assertEquals(0, bucket.getDelay(1 << 30, now));
+    }
+
+    @Test
+    public void tryReserveRefusesBytesThatWouldWait() {
+        TokenBucket bucket = new TokenBucket(1000, 1000);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryReserve(1000, now));
+        assertFalse(bucket.tryReserve(1, now));
+        assertEquals(1000, bucket.getBytes());
+        assertDelay(SECOND / 2, bucket.getDelay(500, now));
+        assertTrue(bucket.tryReserve(500, now + SECOND / 2));
+    }
+
+    private static void assertDelay(long expected, long actual) {
+        assertTrue("Delay " + actual + " ns, expected " + expected + " ns", Math.abs(expected
+                - actual) <= EPSILON);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LatencyHistogram}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:44 AM
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 32; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(32, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(0));
+        assertEquals(15, snapshot.getValueAtPercentile(50));
+        assertEquals(31, snapshot.getValueAtPercentile(100));
+        assertEquals(31 * 32 / 2, snapshot.getSum());
+    }
+
+    @Test
+    public void percentilesAreWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int n = 100000;
+        for (int i = 1; i <= n; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        for (double percentile : new double[]{1, 25, 50, 90, 99, 99.9, 100}) {
+            long exact = (long) Math.ceil(percentile / 100 * n) * 1000L;
+            long estimate = snapshot.getValueAtPercentile(percentile);
+            assertTrue("p" + percentile + " is " + estimate + ", exact " + exact, estimate >= exact
+                    && estimate - exact <= exact / 32);
+        }
+        assertEquals(n * 1000L, snapshot.getMax());
+        assertEquals((n + 1) * 500.0, snapshot.getMean(), 1e-6);
+    }
+
+    @Test
+    public void valuesOutOfRangeAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        long max = snapshot.getMax();
+        assertTrue(max > TimeUnit.MINUTES.toNanos(30) && max < TimeUnit.MINUTES.toNanos(40));
+        assertEquals(max, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    @Test
+    public void mergesSnapshots() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            a.record(1000);
+            b.record(1000000);
+        }
+        LatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+        assertEquals(200, merged.getCount());
+        assertEquals(100 * 1000 + 100 * 1000000, merged.getSum());
+        assertEquals(1000000, merged.getMax());
+        assertEquals(1000, merged.getValueAtPercentile(50), 1000 / 32);
+        assertEquals(1000000, merged.getValueAtPercentile(51), 1000000 / 32);
+    }
+
+    @Test
+    public void intervalSnapshotHasOnlyNewValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5000000);
+        assertEquals(1, histogram.intervalSnapshot().getCount());
+        histogram.record(1000);
+        histogram.record(2000);
+        LatencyHistogram.Snapshot interval = histogram.intervalSnapshot();
+        assertEquals(2, interval.getCount());
+        assertEquals(3000, interval.getSum());
+        assertEquals(2000, interval.getMax(), 2000 / 32);
+        assertEquals(0, histogram.intervalSnapshot().getCount());
+        assertEquals(3, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void concurrentRecordsAreCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int perThread = 100000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(i);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4 * perThread, snapshot.getCount());
+        assertEquals(4L * perThread * (perThread - 1) / 2, snapshot.getSum());
+        assertEquals(perThread - 1, snapshot.getMax());
+    }
+}
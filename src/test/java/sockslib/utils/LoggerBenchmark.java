@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import sockslib.utils.LogMessageBuilder.MsgType;
+
+/**
+ * Measures CPU time per client handshake spent in debug log statements when debug logging is
+ * off: eager statements, which build hex dumps and format messages before logging, against the
+ * same statements through {@link Logger}. It's skipped unless the system property
+ * <code>sockslib.benchmark</code> is <code>true</code>, run it alone, e.g.
+ * <code>./gradlew test --tests '*LoggerBenchmark' -Dsockslib.benchmark=true</code>.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:26 AM
+ */
+public class LoggerBenchmark {
+
+    private static final int WARM_UP_HANDSHAKES = 200000;
+
+    private static final int HANDSHAKES = 1000000;
+
+    /**
+     * Method selection, CONNECT request and reply of a handshake, as sent on the wire.
+     */
+    private static final byte[] METHODS = {0x05, 0x01, 0x00};
+
+    private static final byte[] METHOD_REPLY = {0x05, 0x00};
+
+    private static final byte[] REQUEST = {0x05, 0x01, 0x00, 0x03, 0x0b, 'e', 'x', 'a', 'm', 'p',
+            'l', 'e', '.', 'c', 'o', 'm', 0x01, (byte) 0xbb};
+
+    private static final byte[] REPLY = {0x05, 0x00, 0x00, 0x01, 10, 0, 0, 1, 0x04, 0x38};
+
+    private final Logger logger = Logger.getLogger("LoggerBenchmark");
+
+    private long sink;
+
+    @BeforeClass
+    public static void checkEnabled() {
+        assumeTrue(Boolean.getBoolean("sockslib.benchmark"));
+    }
+
+    @Test
+    public void cpuPerHandshake() {
+        assertFalse("Debug logging must be off", logger.isDebugEnabled());
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isCurrentThreadCpuTimeSupported());
+        for (int i = 0; i < WARM_UP_HANDSHAKES; i++) {
+            eagerHandshake(i);
+            lazyHandshake(i);
+        }
+        long start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < HANDSHAKES; i++) {
+            eagerHandshake(i);
+        }
+        double eager = (threads.getCurrentThreadCpuTime() - start) / (double) HANDSHAKES;
+        start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < HANDSHAKES; i++) {
+            lazyHandshake(i);
+        }
+        double lazy = (threads.getCurrentThreadCpuTime() - start) / (double) HANDSHAKES;
+        System.out.printf("eager %8.1f ns/handshake%nlazy  %8.1f ns/handshake%n", eager, lazy);
+        assertTrue(sink != 0);
+        assertTrue(lazy < eager);
+    }
+
+    /**
+     * The statements of a handshake as they were written before {@link Logger}.
+     */
+    private void eagerHandshake(int port) {
+        sink += LogMessageBuilder.build(METHODS, MsgType.SEND).length();
+        sink += LogMessageBuilder.build(METHOD_REPLY, MsgType.RECEIVE).length();
+        sink += LogMessageBuilder.build(REQUEST, MsgType.SEND).length();
+        sink += LogMessageBuilder.build(REPLY, MsgType.RECEIVE).length();
+        sink += String.format("Server replied:Address as host:%s, port:%d", "10.0.0.1", port)
+                .length();
+    }
+
+    private void lazyHandshake(int port) {
+        logger.debugBytes(MsgType.SEND, METHODS, METHODS.length);
+        logger.debugBytes(MsgType.RECEIVE, METHOD_REPLY, METHOD_REPLY.length);
+        logger.debugBytes(MsgType.SEND, REQUEST, REQUEST.length);
+        logger.debugBytes(MsgType.RECEIVE, REPLY, REPLY.length);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Server replied:Address as host:{}, port:{}", "10.0.0.1", port);
+        }
+        sink++;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link TimingWheel}.
+ *
+ * @author Youchao Feng
+ * @version 1.0
+ * @date Oct 19, 2026 1:36 AM
+ */
+public class TimingWheelTest {
+
+    private static final long TICK_MILLIS = 50;
+
+    private static final int WHEEL_SIZE = 4;
+
+    private TimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new TimingWheel(TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void expiresAfterDelay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        TimingWheel.Timeout timeout = wheel.schedule(countDown(latch), 120, TimeUnit
+                .MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Expired after " + elapsed + " ms", elapsed >= 120);
+        assertTrue(timeout.isExpired());
+        assertEquals(1, wheel.getExpiredCount());
+    }
+
+    @Test
+    public void expiresAfterSeveralTurns() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        // Three turns of the wheel and a bit.
+        wheel.schedule(countDown(latch), 3 * WHEEL_SIZE * TICK_MILLIS + 20, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Expired after " + elapsed + " ms", elapsed >= 3 * WHEEL_SIZE * TICK_MILLIS
+                + 20 && elapsed < 4 * WHEEL_SIZE * TICK_MILLIS);
+    }
+
+    @Test
+    public void cancelledTimeoutNeverRuns() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(countDown(latch), 60, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertFalse(latch.await(300, TimeUnit.MILLISECONDS));
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void resetMovesDeadline() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        TimingWheel.Timeout timeout = wheel.schedule(countDown(latch), 60, TimeUnit.MILLISECONDS);
+        timeout.reset(300, TimeUnit.MILLISECONDS);
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Expired after " + elapsed + " ms", elapsed >= 300);
+    }
+
+    @Test
+    public void resetByOneTurnIsNotLate() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        // The timeout is placed in the bucket of tick 1 at the end of tick 0. The reset moves its
+        // deadline to tick 5, so when tick 1 expires, it goes back to the same bucket.
+        TimingWheel.Timeout timeout = wheel.schedule(countDown(latch), 60, TimeUnit.MILLISECONDS);
+        Thread.sleep(75);
+        timeout.reset(200, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Expired after " + elapsed + " ms", elapsed >= 275 && elapsed < 400);
+    }
+
+    private static Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+}